@@ -0,0 +1,58 @@
+package com.catanatron.core.bench;
+
+import com.catanatron.core.env.BatchEnv;
+import java.util.Random;
+
+/**
+ * Environment steps per second of {@link BatchEnv} under uniformly random legal actions.
+ *
+ * <p>Usage: {@code BatchEnvBench [envs] [threads] [seconds]}
+ */
+public class BatchEnvBench {
+  public static void main(String[] args) {
+    int envs = args.length > 0 ? Integer.parseInt(args[0]) : 1024;
+    int threads = args.length > 1 ? Integer.parseInt(args[1]) : 1;
+    double seconds = args.length > 2 ? Double.parseDouble(args[2]) : 5;
+
+    try (BatchEnv env = new BatchEnv(envs, 4, 42, threads)) {
+      Random rng = new Random(1);
+      int[] actions = new int[envs];
+      run(env, rng, actions, 1); // warmup
+      long start = System.nanoTime();
+      long[] counts = run(env, rng, actions, seconds);
+      double elapsed = (System.nanoTime() - start) / 1e9;
+      System.out.printf(
+          "envs=%d threads=%d steps/s=%.0f batches/s=%.1f episodes/s=%.1f%n",
+          envs, threads, counts[0] * envs / elapsed, counts[0] / elapsed, counts[1] / elapsed);
+    }
+  }
+
+  // Returns {batches, finished games}
+  static long[] run(BatchEnv env, Random rng, int[] actions, double seconds) {
+    long batches = 0, episodes = 0;
+    long end = System.nanoTime() + (long) (seconds * 1e9);
+    while (System.nanoTime() < end) {
+      for (int e = 0; e < env.numEnvs; e++) actions[e] = sample(env, e, rng);
+      env.step(actions);
+      batches++;
+      for (boolean done : env.dones) if (done) episodes++;
+    }
+    return new long[] {batches, episodes};
+  }
+
+  static int sample(BatchEnv env, int e, Random rng) {
+    int base = e * env.maskWords;
+    int legal = 0;
+    for (int w = 0; w < env.maskWords; w++) legal += Long.bitCount(env.masks[base + w]);
+    int k = rng.nextInt(legal);
+    for (int w = 0; ; w++) {
+      int n = Long.bitCount(env.masks[base + w]);
+      if (k < n) {
+        long word = env.masks[base + w];
+        for (int i = 0; i < k; i++) word &= word - 1;
+        return (w << 6) + Long.numberOfTrailingZeros(word);
+      }
+      k -= n;
+    }
+  }
+}
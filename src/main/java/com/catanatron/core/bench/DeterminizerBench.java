@@ -0,0 +1,56 @@
+package com.catanatron.core.bench;
+
+import com.catanatron.core.engine.Game;
+import com.catanatron.core.engine.LegalActions;
+import com.catanatron.core.engine.Reducer;
+import com.catanatron.core.engine.State;
+import com.catanatron.core.model.Action;
+import com.catanatron.core.model.PlayerColor;
+import com.catanatron.core.search.BeliefTracker;
+import com.catanatron.core.search.Determinizer;
+import java.util.Random;
+
+/**
+ * Determinizations per millisecond from a mid-game position, resampled in place and as fresh
+ * copies.
+ *
+ * <p>Usage: {@code DeterminizerBench [seconds per mode] [plies into the game]}
+ */
+public class DeterminizerBench {
+  public static void main(String[] args) {
+    double seconds = args.length > 0 ? Double.parseDouble(args[0]) : 3;
+    int plies = args.length > 1 ? Integer.parseInt(args[1]) : 300;
+    State truth = new State(RolloutBench.fourPlayers(), 7);
+    var belief = new BeliefTracker(truth, PlayerColor.RED);
+    var legal = new LegalActions();
+    Random rng = new Random(7);
+    for (int i = 0; i < plies && Game.winningColor(truth) == null; i++) {
+      legal.reset(truth);
+      Action<?> action = legal.get(rng.nextInt(legal.count()));
+      Reducer.apply(truth, action);
+      belief.observe(action, truth);
+    }
+    var determinizer = new Determinizer(belief);
+    run(null, determinizer, truth, true, 1); // warmup
+    run("in-place", determinizer, truth, true, seconds);
+    run("copy", determinizer, truth, false, seconds);
+  }
+
+  private static void run(
+      String name, Determinizer determinizer, State truth, boolean inPlace, double seconds) {
+    Random rng = new Random(1);
+    State scratch = truth.copy();
+    long samples = 0;
+    long start = System.nanoTime();
+    long end = start + (long) (seconds * 1e9);
+    while (System.nanoTime() < end) {
+      for (int i = 0; i < 1000; i++) {
+        if (inPlace) determinizer.determinize(scratch, rng);
+        else scratch = determinizer.sample(truth, rng);
+      }
+      samples += 1000;
+    }
+    double millis = (System.nanoTime() - start) / 1e6;
+    if (name != null) System.out.printf("%-8s samples/ms=%.1f%n", name, samples / millis);
+  }
+}
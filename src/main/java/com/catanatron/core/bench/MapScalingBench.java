@@ -0,0 +1,176 @@
+package com.catanatron.core.bench;
+
+import com.catanatron.core.engine.PlayerStateMap;
+import com.catanatron.core.engine.Reducer;
+import com.catanatron.core.engine.State;
+import com.catanatron.core.map.CatanMap;
+import com.catanatron.core.map.MapTemplate;
+import com.catanatron.core.model.Action;
+import com.catanatron.core.model.ActionType;
+import com.catanatron.core.model.Edge;
+import com.catanatron.core.model.PlayerColor;
+import com.catanatron.core.model.Resource;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * How map construction and the board's hot queries scale on procedural maps of 16 tiles up to
+ * thousands ({@link MapTemplate#buildProceduralTemplate}). Four players hold the same handful of
+ * pieces whatever the size, so queries about them should not slow down as the map grows; building
+ * the map and listing every free node in the initial phase are linear. The growth exponent of each
+ * operation, the slope of log time against log tiles over the three largest maps, is compared with
+ * that expectation; one growing faster by more than {@value #TOLERANCE} is flagged and the exit
+ * status is 1. Run with a fixed heap ({@code -Xms2g -Xmx2g}): while the heap grows, collections
+ * make construction on the largest maps look superlinear.
+ *
+ * <p>Usage: {@code MapScalingBench [largest map in tiles] [milliseconds per measurement]}
+ */
+public class MapScalingBench {
+  private static final String[] OPS = {
+    "construct", "nodes-initial", "nodes", "edges", "longest-road", "payout"
+  };
+  private static final double[] EXPECTED = {1, 1, 0, 0, 0, 0};
+  private static final double TOLERANCE = 0.5;
+  private static final int ROADS_PER_PLAYER = 10;
+  private static long sink;
+
+  public static void main(String[] args) {
+    int largest = args.length > 0 ? Integer.parseInt(args[0]) : 16384;
+    long millis = args.length > 1 ? Long.parseLong(args[1]) : 200;
+    int numSizes = 0;
+    for (int tiles = 16; tiles <= largest; tiles *= 4) numSizes++;
+    int[] sizes = new int[numSizes];
+    for (int i = 0, tiles = 16; i < numSizes; i++, tiles *= 4) sizes[i] = tiles;
+    double[][] nanos = new double[OPS.length][numSizes];
+
+    System.out.printf("%7s %7s", "tiles", "nodes");
+    for (String op : OPS) System.out.printf(" %14s", op);
+    System.out.println("   (ns/op)");
+    for (int i = 0; i < numSizes; i++) {
+      Fixture f = new Fixture(sizes[i]);
+      System.out.printf("%7d %7d", sizes[i], f.map.landNodes.size());
+      for (int op = 0; op < OPS.length; op++) {
+        nanos[op][i] = nanosPerOp(f, op, millis);
+        System.out.printf(" %14.1f", nanos[op][i]);
+      }
+      System.out.println();
+    }
+
+    boolean flagged = false;
+    int from = Math.max(0, numSizes - 3);
+    for (int op = 0; op < OPS.length; op++) {
+      double slope = slope(sizes, nanos[op], from);
+      boolean tooFast = slope > EXPECTED[op] + TOLERANCE;
+      flagged |= tooFast;
+      System.out.printf(
+          "%-13s exponent=%5.2f expected=%.0f%s%n",
+          OPS[op], slope, EXPECTED[op], tooFast ? "  FLAGGED: grows faster than expected" : "");
+    }
+    if (sink == 42) System.out.println(); // keep results observable
+    if (flagged) System.exit(1);
+  }
+
+  // A map of the given size with the same few pieces per player at its centre
+  private static final class Fixture {
+    final MapTemplate template;
+    final CatanMap map;
+    final State state;
+    final Action<?>[] rolls = new Action<?>[10];
+    final int[] bank;
+    final int[] hands;
+    int nextRoll;
+
+    Fixture(int tiles) {
+      template = MapTemplate.buildProceduralTemplate(tiles, new Random(tiles));
+      map = CatanMap.fromTemplate(template);
+      state = new State(RolloutBench.fourPlayers(), tiles, map);
+      Random rng = new Random(1);
+      List<PlayerColor> colors = state.colors;
+      // Two settlements each on the first tiles grown, then a road network off them
+      int next = 0;
+      for (int round = 0; round < 2; round++) {
+        for (PlayerColor color : colors) {
+          while (!state.board.buildableNodeIds(color, true).contains(next)) next++;
+          state.board.buildSettlement(color, next);
+        }
+      }
+      for (int r = 0; r < ROADS_PER_PLAYER; r++) {
+        for (PlayerColor color : colors) {
+          List<Edge> edges = state.board.buildableEdges(color);
+          if (edges.isEmpty()) continue;
+          Edge edge = edges.get(rng.nextInt(edges.size()));
+          state.board.buildRoad(color, edge.a(), edge.b());
+        }
+      }
+      state.board.buildCity(
+          colors.get(0),
+          state.board.ownedSettlementNodes(colors.get(0)).stream().findFirst().orElseThrow());
+      state.isInitialBuildPhase = false;
+      for (int sum = 2, i = 0; sum <= 12; sum++) {
+        if (sum == 7) continue;
+        int d1 = Math.min(6, sum - 1);
+        rolls[i++] = new Action<>(colors.get(0), ActionType.ROLL, new int[] {d1, sum - d1});
+      }
+      bank = state.bank.clone();
+      hands = new int[colors.size() * Resource.COUNT];
+    }
+
+    // Pays out one roll, then puts the cards back so that every call sees the same bank
+    long payout() {
+      Reducer.step(state, rolls[nextRoll++ % rolls.length]);
+      long paid = 0;
+      for (int s = 0; s < state.colors.size(); s++) {
+        for (int r = 0; r < Resource.COUNT; r++) {
+          paid += state.playerState.get(s, PlayerStateMap.FIRST_RESOURCE + r);
+          state.playerState.set(
+              s, PlayerStateMap.FIRST_RESOURCE + r, hands[s * Resource.COUNT + r]);
+        }
+      }
+      System.arraycopy(bank, 0, state.bank, 0, bank.length);
+      return paid;
+    }
+  }
+
+  private static long run(Fixture f, int op, int i) {
+    PlayerColor color = f.state.colors.get(i & 3);
+    return switch (op) {
+      case 0 -> CatanMap.fromTemplate(f.template).landNodes.size();
+      case 1 -> f.state.board.buildableNodeIds(color, true).size();
+      case 2 -> f.state.board.buildableNodeIds(color, false).size();
+      case 3 -> f.state.board.buildableEdges(color).size();
+      case 4 -> f.state.board.longestRoadLength(color);
+      case 5 -> f.payout();
+      default -> throw new IllegalArgumentException("op " + op);
+    };
+  }
+
+  private static double nanosPerOp(Fixture f, int op, long millis) {
+    int batch = op == 0 ? 1 : 64;
+    for (long end = System.nanoTime() + millis * 500_000; System.nanoTime() < end; ) {
+      for (int i = 0; i < batch; i++) sink += run(f, op, i); // warmup
+    }
+    long ops = 0;
+    long start = System.nanoTime(), end = start + millis * 1_000_000;
+    long now;
+    do {
+      for (int i = 0; i < batch; i++) sink += run(f, op, i);
+      ops += batch;
+    } while ((now = System.nanoTime()) < end);
+    return (double) (now - start) / ops;
+  }
+
+  // Least-squares slope of log(nanos) against log(tiles) over sizes from index `from`
+  private static double slope(int[] sizes, double[] nanos, int from) {
+    int n = sizes.length - from;
+    if (n < 2) return 0;
+    double sx = 0, sy = 0, sxx = 0, sxy = 0;
+    for (int i = from; i < sizes.length; i++) {
+      double x = Math.log(sizes[i]), y = Math.log(nanos[i]);
+      sx += x;
+      sy += y;
+      sxx += x * x;
+      sxy += x * y;
+    }
+    return (n * sxy - sx * sy) / (n * sxx - sx * sx);
+  }
+}
@@ -0,0 +1,85 @@
+package com.catanatron.core.bench;
+
+import com.catanatron.core.engine.ActionPrompt;
+import com.catanatron.core.engine.PlayerStateMap;
+import com.catanatron.core.engine.Reducer;
+import com.catanatron.core.engine.State;
+import com.catanatron.core.model.Action;
+import com.catanatron.core.model.ActionType;
+import com.catanatron.core.model.PlayerColor;
+import com.catanatron.core.model.Resource;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Heap bytes allocated per robber steal, monopoly and discard, measured with the per-thread
+ * allocation counter after warmup, through {@link Reducer#step} so that no action record is built;
+ * each path should report 0. Exits with status 1 if any path allocates.
+ *
+ * <p>Usage: {@code ReducerAllocationBench [operations per path]}
+ */
+public class ReducerAllocationBench {
+  private static final com.sun.management.ThreadMXBean THREADS =
+      (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+  public static void main(String[] args) {
+    int ops = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+    State state = new State(RolloutBench.fourPlayers(), 3);
+    state.isInitialBuildPhase = false;
+    // Everyone settles around one tile so that a steal has several victims
+    int tile = state.map.landTileIds[0];
+    int[] corners = state.map.tileNodeIds[tile];
+    state.board.buildSettlement(PlayerColor.BLUE, corners[0]);
+    state.board.buildSettlement(PlayerColor.ORANGE, corners[2]);
+    state.board.buildSettlement(PlayerColor.WHITE, corners[4]);
+
+    Action<?> robber = new Action<>(PlayerColor.RED, ActionType.MOVE_ROBBER, tile);
+    Action<?> monopoly = new Action<>(PlayerColor.RED, ActionType.PLAY_MONOPOLY, "ORE");
+    Action<?> discard = new Action<>(PlayerColor.RED, ActionType.DISCARD, null);
+    boolean allocates = false;
+    allocates |= report("steal", ops, () -> steal(state, robber));
+    allocates |= report("monopoly", ops, () -> monopoly(state, monopoly));
+    allocates |= report("discard", ops, () -> discard(state, discard));
+    if (allocates) System.exit(1);
+  }
+
+  private static void steal(State state, Action<?> robber) {
+    fillHands(state);
+    state.currentPrompt = ActionPrompt.MOVE_ROBBER;
+    Reducer.step(state, robber);
+  }
+
+  private static void monopoly(State state, Action<?> monopoly) {
+    fillHands(state);
+    state.playerState.set(0, PlayerStateMap.field("_MONOPOLY_IN_HAND"), 1);
+    Reducer.step(state, monopoly);
+  }
+
+  private static void discard(State state, Action<?> discard) {
+    fillHands(state);
+    state.currentPlayerIndex = 0;
+    state.currentPrompt = ActionPrompt.DISCARD;
+    Reducer.step(state, discard);
+  }
+
+  // Three of every resource per player, the rest in the bank
+  private static void fillHands(State state) {
+    int seats = state.colors.size();
+    for (int r = 0; r < Resource.COUNT; r++) {
+      for (int s = 0; s < seats; s++)
+        state.playerState.set(s, PlayerStateMap.FIRST_RESOURCE + r, 3);
+      state.bank[r] = 19 - 3 * seats;
+    }
+  }
+
+  private static boolean report(String name, int ops, Runnable op) {
+    for (int i = 0; i < ops; i++) op.run(); // warmup: let the JIT compile and inline
+    long thread = Thread.currentThread().getId();
+    long bytes = THREADS.getThreadAllocatedBytes(thread);
+    long start = System.nanoTime();
+    for (int i = 0; i < ops; i++) op.run();
+    long elapsed = System.nanoTime() - start;
+    double perOp = (double) (THREADS.getThreadAllocatedBytes(thread) - bytes) / ops;
+    System.out.printf("%-9s bytes/op=%.2f ns/op=%.1f%n", name, perOp, (double) elapsed / ops);
+    return perOp >= 1;
+  }
+}
@@ -0,0 +1,77 @@
+package com.catanatron.core.bench;
+
+import com.catanatron.core.engine.Player;
+import com.catanatron.core.engine.RandomPlayer;
+import com.catanatron.core.engine.State;
+import com.catanatron.core.model.PlayerColor;
+import com.catanatron.core.sim.RolloutEngine;
+import com.catanatron.core.sim.RolloutPolicy;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Playout throughput from the opening position, one engine per thread.
+ *
+ * <p>Usage: {@code RolloutBench [threads] [seconds] [uniform|build-first]}
+ */
+public class RolloutBench {
+  public static void main(String[] args) throws InterruptedException {
+    int threads = args.length > 0 ? Integer.parseInt(args[0]) : 1;
+    double seconds = args.length > 1 ? Double.parseDouble(args[1]) : 5;
+    RolloutPolicy policy =
+        args.length > 2 && args[2].equals("uniform")
+            ? RolloutPolicy.UNIFORM
+            : RolloutPolicy.BUILD_FIRST;
+
+    RolloutEngine[] engines = new RolloutEngine[threads];
+    long[] wins = new long[threads];
+    List<Thread> workers = new ArrayList<>();
+    for (int t = 0; t < threads; t++) {
+      final int id = t;
+      engines[id] = new RolloutEngine(policy, 1000 + id);
+      State root = new State(fourPlayers(), 42 + id);
+      workers.add(
+          new Thread(
+              () -> {
+                long warmupEnd = System.nanoTime() + 1_000_000_000L;
+                while (System.nanoTime() < warmupEnd) playCopy(engines[id], root);
+                engines[id].resetStats();
+                long end = System.nanoTime() + (long) (seconds * 1e9);
+                while (System.nanoTime() < end) {
+                  if (playCopy(engines[id], root) != null) wins[id]++;
+                }
+              }));
+    }
+    for (Thread w : workers) w.start();
+    for (Thread w : workers) w.join();
+
+    long playouts = 0, steps = 0, decided = 0;
+    double perCore = 0;
+    for (int t = 0; t < threads; t++) {
+      playouts += engines[t].playouts();
+      steps += engines[t].steps();
+      decided += wins[t];
+      perCore += engines[t].playoutsPerSecond();
+    }
+    perCore /= threads;
+    System.out.printf(
+        "threads=%d playouts=%d steps/playout=%.1f decided=%.1f%%%n",
+        threads, playouts, (double) steps / playouts, 100.0 * decided / playouts);
+    System.out.printf(
+        "playouts/s/core=%.1f playouts/s=%.1f steps/s/core=%.0f%n",
+        perCore, perCore * threads, perCore * steps / playouts);
+  }
+
+  // Plays out a copy of root under the engine's own dice
+  private static PlayerColor playCopy(RolloutEngine engine, State root) {
+    State state = root.copy();
+    engine.reseed(state);
+    return engine.playout(state);
+  }
+
+  static List<Player> fourPlayers() {
+    List<Player> players = new ArrayList<>();
+    for (int s = 0; s < 4; s++) players.add(new RandomPlayer(PlayerColor.values()[s]));
+    return players;
+  }
+}
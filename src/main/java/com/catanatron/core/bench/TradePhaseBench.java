@@ -0,0 +1,64 @@
+package com.catanatron.core.bench;
+
+import com.catanatron.core.engine.ActionPrompt;
+import com.catanatron.core.engine.Game;
+import com.catanatron.core.engine.LegalActions;
+import com.catanatron.core.engine.Reducer;
+import com.catanatron.core.engine.State;
+import com.catanatron.core.engine.TradeOptions;
+import com.catanatron.core.model.ActionType;
+import java.util.Random;
+
+/**
+ * Cost of the domestic trade phase: uniform playouts from the same openings with trade disabled,
+ * with the default offers and with every offer shape.
+ *
+ * <p>Usage: {@code TradePhaseBench [seconds per configuration]}
+ */
+public class TradePhaseBench {
+  public static void main(String[] args) {
+    double seconds = args.length > 0 ? Double.parseDouble(args[0]) : 3;
+    run(null, TradeOptions.ALL, 1); // warmup
+    run("disabled", TradeOptions.DISABLED, seconds);
+    run("default", TradeOptions.DEFAULT, seconds);
+    run("all", TradeOptions.ALL, seconds);
+  }
+
+  private static void run(String name, TradeOptions options, double seconds) {
+    LegalActions legal = new LegalActions();
+    Random rng = new Random(1);
+    long playouts = 0, steps = 0, tradeSteps = 0, branching = 0, offers = 0, confirmed = 0;
+    long start = System.nanoTime();
+    long end = start + (long) (seconds * 1e9);
+    while (System.nanoTime() < end) {
+      State state = new State(RolloutBench.fourPlayers(), playouts);
+      state.tradeOptions = options;
+      while (Game.winningColor(state) == null && state.numTurns < Game.TURNS_LIMIT) {
+        legal.reset(state);
+        if (legal.count() == 0) break;
+        branching += legal.count();
+        if (state.currentPrompt == ActionPrompt.DECIDE_TRADE
+            || state.currentPrompt == ActionPrompt.DECIDE_ACCEPTEES) tradeSteps++;
+        int k = rng.nextInt(legal.count());
+        ActionType type = legal.typeAt(k);
+        if (type == ActionType.OFFER_TRADE) offers++;
+        if (type == ActionType.CONFIRM_TRADE) confirmed++;
+        Reducer.apply(state, legal.get(k));
+        steps++;
+      }
+      playouts++;
+    }
+    double elapsed = (System.nanoTime() - start) / 1e9;
+    if (name == null) return;
+    System.out.printf(
+        "%-8s playouts/s=%.1f steps/playout=%.1f trade-steps=%.1f%% branching=%.1f"
+            + " offers/playout=%.1f confirmed=%.1f%%%n",
+        name,
+        playouts / elapsed,
+        (double) steps / playouts,
+        100.0 * tradeSteps / steps,
+        (double) branching / steps,
+        (double) offers / playouts,
+        offers == 0 ? 0 : 100.0 * confirmed / offers);
+  }
+}
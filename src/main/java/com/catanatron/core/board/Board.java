@@ -3,173 +3,308 @@ package com.catanatron.core.board;
 import com.catanatron.core.map.CatanMap;
 import com.catanatron.core.model.BuildingType;
 import com.catanatron.core.model.PlayerColor;
+import com.catanatron.core.util.Bits;
 import java.util.*;
 
-// Board backed by CatanMap: basic buildability and placement
+// Board backed by CatanMap: basic buildability and placement. Node sets are bitsets of
+// map.nodeWords words (see Bits), one word on maps of up to 64 nodes such as the base map. Queries
+// about a player's pieces visit only the words holding them, so they cost the pieces and their
+// local degree rather than the map's size.
 public class Board {
-  private final CatanMap map;
-  // nodeId -> (color, building)
-  private final Map<Integer, Map.Entry<PlayerColor, BuildingType>> buildings = new HashMap<>();
-  // edge (min,max) -> color
-  private final Map<Long, PlayerColor> roads = new HashMap<>();
-  private final Set<Integer> blockedNodes = new HashSet<>(); // distance-1 rule
+  private static final PlayerColor[] COLORS = PlayerColor.values();
+  private static final int NUM_COLORS = COLORS.length;
+  // buildingAt's answers by color ordinal and building type, so that building never allocates
+  private static final Map.Entry<PlayerColor, BuildingType>[][] ENTRIES = buildingEntries();
+
+  private CatanMap map;
+  // edge id -> color (null if free)
+  private PlayerColor[] roads;
+  private int words;
+  // Node bitsets; per player ones hold a run of words per color ordinal
+  private long[] blockedNodes; // distance-1 rule
+  private long[] ownedNodes;
+  private long[] settlementNodes;
+  private long[] roadNodes; // endpoints of owned roads
+  // Per color, ascending indices of the words holding any of its buildings or road ends
+  private int[] activeWords;
+  private final int[] numActive = new int[NUM_COLORS];
+  private boolean[] usedEdges; // longest-road scratch, all false between calls
 
   public Board(CatanMap map) {
     this.map = map;
+    this.roads = new PlayerColor[map.edgeA.length];
+    allocateNodeSets(map.nodeWords);
   }
 
-  public Set<Integer> buildableNodeIds(PlayerColor playerColor, boolean initialPhase) {
-    if (initialPhase) {
-      // any unblocked, empty land node
-      Set<Integer> out = new HashSet<>(map.landNodes);
-      out.removeAll(blockedNodes);
-      out.removeAll(buildings.keySet());
-      return out;
+  private Board(Board other) {
+    this.map = other.map;
+    this.roads = other.roads.clone();
+    this.words = other.words;
+    this.blockedNodes = other.blockedNodes.clone();
+    this.ownedNodes = other.ownedNodes.clone();
+    this.settlementNodes = other.settlementNodes.clone();
+    this.roadNodes = other.roadNodes.clone();
+    this.activeWords = other.activeWords.clone();
+    System.arraycopy(other.numActive, 0, numActive, 0, NUM_COLORS);
+  }
+
+  private void allocateNodeSets(int words) {
+    this.words = words;
+    blockedNodes = new long[words];
+    ownedNodes = new long[NUM_COLORS * words];
+    settlementNodes = new long[NUM_COLORS * words];
+    roadNodes = new long[NUM_COLORS * words];
+    activeWords = new int[NUM_COLORS * words];
+  }
+
+  /** Independent copy sharing the (immutable) map. */
+  public Board copy() {
+    return new Board(this);
+  }
+
+  /** Removes every piece and moves to {@code map}, keeping storage if the map's size matches. */
+  public void reset(CatanMap map) {
+    this.map = map;
+    if (roads.length == map.edgeA.length) Arrays.fill(roads, null);
+    else roads = new PlayerColor[map.edgeA.length];
+    if (words == map.nodeWords) {
+      Arrays.fill(blockedNodes, 0L);
+      Arrays.fill(ownedNodes, 0L);
+      Arrays.fill(settlementNodes, 0L);
+      Arrays.fill(roadNodes, 0L);
+    } else {
+      allocateNodeSets(map.nodeWords);
     }
-    // Connected to existing road or building, still respecting distance-1
-    Set<Integer> candidates = new HashSet<>();
-    for (Integer nodeId : map.landNodes) {
-      if (blockedNodes.contains(nodeId) || buildings.containsKey(nodeId)) continue;
-      // must touch at least one of our roads
-      boolean touchesOwnedRoad = false;
-      for (Integer neighbor : map.nodeNeighbors.getOrDefault(nodeId, Set.of())) {
-        if (roads.getOrDefault(edgeKey(nodeId, neighbor), null) == playerColor) {
-          touchesOwnedRoad = true;
-          break;
-        }
+    Arrays.fill(numActive, 0);
+  }
+
+  /** Words per node bitset; node {@code w * 64 + i} is bit i of word w. */
+  public int nodeWords() {
+    return words;
+  }
+
+  /**
+   * Number of words holding any of the color's buildings or road ends: outside them its settlement,
+   * city and (after the initial phase) buildable node words are all zero.
+   */
+  public int activeNodeWords(PlayerColor color) {
+    return numActive[color.ordinal()];
+  }
+
+  /** Index of the i-th such word, ascending in i. */
+  public int activeNodeWord(PlayerColor color, int i) {
+    return activeWords[color.ordinal() * words + i];
+  }
+
+  public Set<Integer> buildableNodeIds(PlayerColor playerColor, boolean initialPhase) {
+    Set<Integer> out = new HashSet<>();
+    int n = initialPhase ? words : activeNodeWords(playerColor);
+    for (int i = 0; i < n; i++) {
+      int w = initialPhase ? i : activeNodeWord(playerColor, i);
+      for (long m = buildableNodeWord(playerColor, initialPhase, w); m != 0; m &= m - 1) {
+        out.add((w << 6) + Long.numberOfTrailingZeros(m));
       }
-      if (touchesOwnedRoad) candidates.add(nodeId);
     }
-    return candidates;
+    return out;
+  }
+
+  /**
+   * Word {@code w} of the bitset of nodes where a settlement may go: any unblocked land node in the
+   * initial phase, otherwise only those also touching one of the player's roads.
+   */
+  public long buildableNodeWord(PlayerColor playerColor, boolean initialPhase, int w) {
+    long free = map.landNodeWords[w] & ~blockedNodes[w];
+    return initialPhase ? free : free & roadNodes[playerColor.ordinal() * words + w];
   }
 
   public List<com.catanatron.core.model.Edge> buildableEdges(PlayerColor playerColor) {
-    List<com.catanatron.core.model.Edge> edges = new ArrayList<>();
-    // Only edges adjacent to owned nodes OR extend from existing own roads
-    Set<Integer> ownedNodes = ownedNodes(playerColor);
-    // Edges from owned nodes
-    for (Integer nodeA : ownedNodes) {
-      for (Integer nodeB : map.nodeNeighbors.getOrDefault(nodeA, Set.of())) {
-        long key = edgeKey(nodeA, nodeB);
-        if (!roads.containsKey(key))
-          edges.add(
-              new com.catanatron.core.model.Edge(Math.min(nodeA, nodeB), Math.max(nodeA, nodeB)));
+    // Sized by the degree of the player's nodes rather than the number of edges
+    int c = playerColor.ordinal() * words, bound = 0;
+    for (int i = 0; i < activeNodeWords(playerColor); i++) {
+      int w = activeNodeWord(playerColor, i);
+      for (long m = ownedNodes[c + w] | roadNodes[c + w]; m != 0; m &= m - 1) {
+        bound += map.nodeNeighborIds[(w << 6) + Long.numberOfTrailingZeros(m)].length;
       }
     }
-    // Edges extending owned roads (one endpoint shared)
-    for (Map.Entry<Long, PlayerColor> roadEntry : roads.entrySet()) {
-      if (roadEntry.getValue() != playerColor) continue;
-      int nodeA = (int) (roadEntry.getKey() >> 32);
-      int nodeB = (int) (roadEntry.getKey().longValue());
-      for (Integer neighborOfA : map.nodeNeighbors.getOrDefault(nodeA, Set.of())) {
-        long key = edgeKey(nodeA, neighborOfA);
-        if (!roads.containsKey(key))
-          edges.add(
-              new com.catanatron.core.model.Edge(
-                  Math.min(nodeA, neighborOfA), Math.max(nodeA, neighborOfA)));
-      }
-      for (Integer neighborOfB : map.nodeNeighbors.getOrDefault(nodeB, Set.of())) {
-        long key = edgeKey(nodeB, neighborOfB);
-        if (!roads.containsKey(key))
-          edges.add(
-              new com.catanatron.core.model.Edge(
-                  Math.min(nodeB, neighborOfB), Math.max(nodeB, neighborOfB)));
-      }
+    int[] edgeIds = new int[bound];
+    int n = buildableEdgeIds(playerColor, edgeIds);
+    List<com.catanatron.core.model.Edge> edges = new ArrayList<>(n);
+    for (int i = 0; i < n; i++) {
+      edges.add(new com.catanatron.core.model.Edge(map.edgeA[edgeIds[i]], map.edgeB[edgeIds[i]]));
     }
     return edges;
   }
 
+  /**
+   * Writes the ids of free edges touching an owned building or extending an owned road into {@code
+   * out} (sized for every edge) and returns how many were written. Each edge appears once.
+   */
+  public int buildableEdgeIds(PlayerColor playerColor, int[] out) {
+    int count = 0;
+    int c = playerColor.ordinal() * words;
+    for (int a = 0; a < activeNodeWords(playerColor); a++) {
+      int w = activeNodeWord(playerColor, a);
+      for (long m = ownedNodes[c + w] | roadNodes[c + w]; m != 0; m &= m - 1) {
+        int node = (w << 6) + Long.numberOfTrailingZeros(m);
+        int[] neighbors = map.nodeNeighborIds[node];
+        int[] edgeIds = map.nodeEdgeIds[node];
+        for (int i = 0; i < neighbors.length; i++) {
+          int neighbor = neighbors[i];
+          // emit shared edges from their lower endpoint only
+          if (neighbor < node && isSource(c, neighbor)) continue;
+          if (roads[edgeIds[i]] == null) out[count++] = edgeIds[i];
+        }
+      }
+    }
+    return count;
+  }
+
+  // Whether the node holds a building or road end of the color whose words start at c
+  private boolean isSource(int c, int node) {
+    return Bits.get(ownedNodes, c, node) || Bits.get(roadNodes, c, node);
+  }
+
+  public boolean isBuildableEdge(PlayerColor playerColor, int nodeA, int nodeB) {
+    int edgeId = map.edgeId(nodeA, nodeB);
+    if (edgeId < 0 || roads[edgeId] != null) return false;
+    int c = playerColor.ordinal() * words;
+    return isSource(c, nodeA) || isSource(c, nodeB);
+  }
+
   public void buildSettlement(PlayerColor color, int nodeId) {
-    if (buildings.containsKey(nodeId)) throw new IllegalArgumentException("occupied");
-    buildings.put(nodeId, Map.entry(color, BuildingType.SETTLEMENT));
+    if (ownerAt(nodeId) != null) throw new IllegalArgumentException("occupied");
+    activate(color, nodeId);
+    Bits.set(ownedNodes, color.ordinal() * words, nodeId);
+    Bits.set(settlementNodes, color.ordinal() * words, nodeId);
     // distance-1 rule: block neighbors
-    blockedNodes.add(nodeId);
-    for (Integer n : map.nodeNeighbors.getOrDefault(nodeId, Set.of())) blockedNodes.add(n);
+    Bits.set(blockedNodes, 0, nodeId);
+    for (int n : map.nodeNeighborIds[nodeId]) Bits.set(blockedNodes, 0, n);
   }
 
   public void buildCity(PlayerColor color, int nodeId) {
-    var entry = buildings.get(nodeId);
-    if (entry == null || entry.getKey() != color || entry.getValue() != BuildingType.SETTLEMENT) {
+    if (!Bits.get(settlementNodes, color.ordinal() * words, nodeId)) {
       throw new IllegalArgumentException("no player settlement to upgrade");
     }
-    buildings.put(nodeId, Map.entry(color, BuildingType.CITY));
+    Bits.clear(settlementNodes, color.ordinal() * words, nodeId);
   }
 
   public void buildRoad(PlayerColor color, int nodeA, int nodeB) {
-    long key = edgeKey(nodeA, nodeB);
-    if (roads.containsKey(key)) throw new IllegalArgumentException("road exists");
-    roads.put(key, color);
+    int edgeId = map.edgeId(nodeA, nodeB);
+    if (edgeId < 0) throw new IllegalArgumentException("not an edge");
+    if (roads[edgeId] != null) throw new IllegalArgumentException("road exists");
+    roads[edgeId] = color;
+    // One end at a time: both may fall in the same newly active word
+    activate(color, nodeA);
+    Bits.set(roadNodes, color.ordinal() * words, nodeA);
+    activate(color, nodeB);
+    Bits.set(roadNodes, color.ordinal() * words, nodeB);
+  }
+
+  // Records the node's word as active for the color; call before setting its bits
+  private void activate(PlayerColor color, int nodeId) {
+    int c = color.ordinal(), base = c * words, w = nodeId >>> 6;
+    if ((ownedNodes[base + w] | roadNodes[base + w]) != 0) return;
+    int i = numActive[c]++;
+    for (; i > 0 && activeWords[base + i - 1] > w; i--)
+      activeWords[base + i] = activeWords[base + i - 1];
+    activeWords[base + i] = w;
+  }
+
+  /** Color of the building on {@code nodeId}, or null; unlike {@link #buildingAt} never boxes. */
+  public PlayerColor ownerAt(int nodeId) {
+    for (int c = 0; c < NUM_COLORS; c++) {
+      if (Bits.get(ownedNodes, c * words, nodeId)) return COLORS[c];
+    }
+    return null;
+  }
+
+  /** Whether a city stands on {@code nodeId}; never boxes. */
+  public boolean isCity(int nodeId) {
+    PlayerColor owner = ownerAt(nodeId);
+    return owner != null && !Bits.get(settlementNodes, owner.ordinal() * words, nodeId);
   }
 
   public Map.Entry<PlayerColor, BuildingType> buildingAt(int nodeId) {
-    return buildings.get(nodeId);
+    PlayerColor owner = ownerAt(nodeId);
+    if (owner == null) return null;
+    boolean settlement = Bits.get(settlementNodes, owner.ordinal() * words, nodeId);
+    return ENTRIES[owner.ordinal()][
+        (settlement ? BuildingType.SETTLEMENT : BuildingType.CITY).ordinal()];
   }
 
-  private Set<Integer> ownedNodes(PlayerColor color) {
-    Set<Integer> nodesOwned = new HashSet<>();
-    for (Map.Entry<Integer, Map.Entry<PlayerColor, BuildingType>> buildingEntry :
-        buildings.entrySet()) {
-      if (buildingEntry.getValue().getKey() == color) nodesOwned.add(buildingEntry.getKey());
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  private static Map.Entry<PlayerColor, BuildingType>[][] buildingEntries() {
+    BuildingType[] types = BuildingType.values();
+    Map.Entry<PlayerColor, BuildingType>[][] entries = new Map.Entry[NUM_COLORS][types.length];
+    for (PlayerColor color : COLORS) {
+      for (BuildingType type : types)
+        entries[color.ordinal()][type.ordinal()] = Map.entry(color, type);
     }
-    return nodesOwned;
+    return entries;
   }
 
   public Set<Integer> ownedSettlementNodes(PlayerColor color) {
     Set<Integer> owned = new HashSet<>();
-    for (Map.Entry<Integer, Map.Entry<PlayerColor, BuildingType>> e : buildings.entrySet()) {
-      if (e.getValue().getKey() == color && e.getValue().getValue() == BuildingType.SETTLEMENT)
-        owned.add(e.getKey());
+    for (int i = 0; i < activeNodeWords(color); i++) {
+      int w = activeNodeWord(color, i);
+      for (long m = settlementNodeWord(color, w); m != 0; m &= m - 1) {
+        owned.add((w << 6) + Long.numberOfTrailingZeros(m));
+      }
     }
     return owned;
   }
 
-  private static long edgeKey(int nodeA, int nodeB) {
-    int min = Math.min(nodeA, nodeB), max = Math.max(nodeA, nodeB);
-    return (((long) min) << 32) | (max & 0xffffffffL);
+  /** Word {@code w} of the bitset of the color's settlements. */
+  public long settlementNodeWord(PlayerColor color, int w) {
+    return settlementNodes[color.ordinal() * words + w];
+  }
+
+  /** Word {@code w} of the bitset of the color's cities. */
+  public long cityNodeWord(PlayerColor color, int w) {
+    int i = color.ordinal() * words + w;
+    return ownedNodes[i] & ~settlementNodes[i];
+  }
+
+  /** Owner of the road on a dense edge id (see {@link CatanMap#edgeId}), or null. */
+  public PlayerColor roadAt(int edgeId) {
+    return roads[edgeId];
   }
 
   private boolean isEnemyNode(int nodeId, PlayerColor color) {
-    var entry = buildings.get(nodeId);
-    return entry != null && entry.getKey() != color;
+    PlayerColor owner = ownerAt(nodeId);
+    return owner != null && owner != color;
   }
 
   public int longestRoadLength(PlayerColor color) {
-    // Build adjacency for this player's roads
-    Map<Integer, List<Integer>> adj = new HashMap<>();
-    Set<Integer> nodes = new HashSet<>();
-    for (Map.Entry<Long, PlayerColor> e : roads.entrySet()) {
-      if (e.getValue() != color) continue;
-      int a = (int) (e.getKey() >> 32);
-      int b = (int) (e.getKey().longValue());
-      adj.computeIfAbsent(a, k -> new ArrayList<>()).add(b);
-      adj.computeIfAbsent(b, k -> new ArrayList<>()).add(a);
-      nodes.add(a);
-      nodes.add(b);
-    }
+    if (usedEdges == null || usedEdges.length != roads.length)
+      usedEdges = new boolean[roads.length];
     int best = 0;
-    Set<Long> usedEdges = new HashSet<>();
-    for (Integer start : nodes) {
-      best = Math.max(best, dfsLongest(color, start, -1, adj, usedEdges));
+    int c = color.ordinal() * words;
+    for (int i = 0; i < activeNodeWords(color); i++) {
+      int w = activeNodeWord(color, i);
+      for (long m = roadNodes[c + w]; m != 0; m &= m - 1) {
+        int start = (w << 6) + Long.numberOfTrailingZeros(m);
+        best = Math.max(best, dfsLongest(color, start, usedEdges));
+      }
     }
     return best;
   }
 
-  private int dfsLongest(
-      PlayerColor color, int node, int parent, Map<Integer, List<Integer>> adj, Set<Long> used) {
+  private int dfsLongest(PlayerColor color, int node, boolean[] used) {
     // If an enemy building is on this node, cannot expand from here (but reaching here counts via
     // the edge already used)
     if (isEnemyNode(node, color)) return 0;
     int best = 0;
-    for (Integer nb : adj.getOrDefault(node, List.of())) {
-      if (nb == parent) {
-        // We cannot rely only on parent because graph can have cycles; use edge-used set
-      }
-      long key = edgeKey(node, nb);
-      if (used.contains(key)) continue;
-      used.add(key);
-      int candidate = 1 + dfsLongest(color, nb, node, adj, used);
+    int[] neighbors = map.nodeNeighborIds[node];
+    int[] edgeIds = map.nodeEdgeIds[node];
+    for (int i = 0; i < neighbors.length; i++) {
+      // graph can have cycles; track used edges rather than the parent node
+      int edgeId = edgeIds[i];
+      if (roads[edgeId] != color || used[edgeId]) continue;
+      used[edgeId] = true;
+      int candidate = 1 + dfsLongest(color, neighbors[i], used);
       best = Math.max(best, candidate);
-      used.remove(key);
+      used[edgeId] = false;
     }
     return best;
   }
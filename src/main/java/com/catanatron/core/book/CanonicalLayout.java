@@ -0,0 +1,208 @@
+package com.catanatron.core.book;
+
+import com.catanatron.core.engine.State;
+import com.catanatron.core.map.CatanMap;
+import com.catanatron.core.map.Coordinate;
+import com.catanatron.core.map.Direction;
+import com.catanatron.core.map.tiles.LandTile;
+import com.catanatron.core.map.tiles.Tile;
+import com.catanatron.core.model.Action;
+import com.catanatron.core.model.ActionType;
+import com.catanatron.core.model.Edge;
+import com.catanatron.core.model.PlayerColor;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Opening book keys of one map that do not depend on how it is drawn: node ids, tile order, or
+ * which of its 12 rotations and reflections about the centre hex it is. Each node gets a position,
+ * three times its centre in cube coordinates (the sum of its three hexes), which every symmetry
+ * maps to another position; the layout hash is the least over the symmetries of a hash of tiles
+ * (position, resource, number) and port nodes. Positions of a game are keyed by the pieces on the
+ * board, by seat, under the symmetry giving the least key among those that map the layout onto
+ * itself.
+ */
+public final class CanonicalLayout {
+  private static final int SYMMETRIES = 12;
+  // The two hexes besides its own around each corner, in NodeRef order
+  private static final Direction[][] CORNERS = {
+    {Direction.NORTHWEST, Direction.NORTHEAST}, // NORTH
+    {Direction.NORTHEAST, Direction.EAST}, // NORTHEAST
+    {Direction.EAST, Direction.SOUTHEAST}, // SOUTHEAST
+    {Direction.SOUTHEAST, Direction.SOUTHWEST}, // SOUTH
+    {Direction.SOUTHWEST, Direction.WEST}, // SOUTHWEST
+    {Direction.WEST, Direction.NORTHWEST} // NORTHWEST
+  };
+
+  private static final long TILE = 1;
+  private static final long PORT = 2;
+  private static final long TURN = 3;
+  private static final long SETTLEMENT = 4;
+  private static final long CITY = 5;
+  private static final long ROAD = 6;
+  private static final long LAST_SETTLEMENT = 7;
+  private static final long MARKER = 8;
+
+  public final CatanMap map;
+  private final long layoutHash;
+  // Symmetries mapping the layout onto its canonical form, and their node keys by node id
+  private final int[] symmetries;
+  private final long[][] nodeKeys = new long[SYMMETRIES][];
+
+  private CanonicalLayout(CatanMap map) {
+    this.map = map;
+    int nodes = map.nodeNeighborIds.length;
+    int[] q3 = new int[nodes], r3 = new int[nodes];
+    for (Map.Entry<Coordinate, Tile> entry : map.tiles.entrySet()) {
+      Coordinate c = entry.getKey();
+      entry
+          .getValue()
+          .nodes()
+          .forEach(
+              (corner, node) -> {
+                if (node >= nodes) return; // only touches water
+                Coordinate a = c.neighbor(CORNERS[corner.ordinal()][0]);
+                Coordinate b = c.neighbor(CORNERS[corner.ordinal()][1]);
+                q3[node] = c.q + a.q + b.q;
+                r3[node] = c.r + a.r + b.r;
+              });
+    }
+    long[] hashes = new long[SYMMETRIES];
+    long[][] keys = new long[SYMMETRIES][nodes];
+    for (int g = 0; g < SYMMETRIES; g++) {
+      for (int node = 0; node < nodes; node++)
+        keys[g][node] = mix(transform(g, q3[node], r3[node]));
+      long h = 0;
+      for (Map.Entry<Coordinate, LandTile> entry : map.landTiles.entrySet()) {
+        Coordinate c = entry.getKey();
+        LandTile tile = entry.getValue();
+        int resource = tile.resource() == null ? 0 : tile.resource().ordinal() + 1;
+        int number = tile.number() == null ? 0 : tile.number();
+        h += feature(TILE, resource * 16 + number, mix(transform(g, 3 * c.q, 3 * c.r)));
+      }
+      for (int node = 0; node < nodes; node++) {
+        if (map.nodePortMask[node] != 0) h += feature(PORT, map.nodePortMask[node], keys[g][node]);
+      }
+      hashes[g] = h;
+    }
+    long least = Long.MAX_VALUE;
+    for (long h : hashes) least = Math.min(least, h);
+    int tied = 0;
+    int[] found = new int[SYMMETRIES];
+    for (int g = 0; g < SYMMETRIES; g++) {
+      if (hashes[g] != least) continue;
+      found[tied++] = g;
+      nodeKeys[g] = keys[g];
+    }
+    this.layoutHash = least;
+    this.symmetries = Arrays.copyOf(found, tied);
+  }
+
+  public static CanonicalLayout of(CatanMap map) {
+    return new CanonicalLayout(map);
+  }
+
+  /** Equal for any two drawings, rotations or reflections of the same layout. */
+  public long layoutHash() {
+    return layoutHash;
+  }
+
+  /** Key marking the layout as analyzed for {@code seats} players. */
+  public long layoutKey(int seats) {
+    return feature(MARKER, seats, layoutHash);
+  }
+
+  /** The symmetry under which {@code state} is keyed; pass it to the other methods. */
+  public int symmetry(State state) {
+    int best = symmetries[0];
+    long least = positionKey(state, best);
+    for (int i = 1; i < symmetries.length; i++) {
+      long key = positionKey(state, symmetries[i]);
+      if (Long.compareUnsigned(key, least) < 0) {
+        least = key;
+        best = symmetries[i];
+      }
+    }
+    return best;
+  }
+
+  /** The state's pieces, last initial settlements and turn, under {@code symmetry}. */
+  public long positionKey(State state, int symmetry) {
+    long[] keys = nodeKeys[symmetry];
+    int seats = state.colors.size();
+    long h =
+        feature(
+            TURN,
+            (seats << 16) | (state.currentPrompt.ordinal() << 8) | state.currentPlayerIndex,
+            layoutHash);
+    for (int seat = 0; seat < seats; seat++) {
+      PlayerColor color = state.colors.get(seat);
+      for (int w = 0; w < state.board.nodeWords(); w++) {
+        for (long m = state.board.settlementNodeWord(color, w); m != 0; m &= m - 1)
+          h += feature(SETTLEMENT, seat, keys[(w << 6) + Long.numberOfTrailingZeros(m)]);
+        for (long m = state.board.cityNodeWord(color, w); m != 0; m &= m - 1)
+          h += feature(CITY, seat, keys[(w << 6) + Long.numberOfTrailingZeros(m)]);
+      }
+      Integer last = state.lastInitialSettlement.get(color);
+      if (last != null) h += feature(LAST_SETTLEMENT, seat, keys[last]);
+    }
+    for (int e = 0; e < map.edgeA.length; e++) {
+      PlayerColor owner = state.board.roadAt(e);
+      if (owner != null)
+        h += feature(ROAD, state.colors.indexOf(owner), keys[map.edgeA[e]] + keys[map.edgeB[e]]);
+    }
+    return h;
+  }
+
+  /** Key of playing {@code action}, a settlement, city or road, from the keyed position. */
+  public long actionKey(long positionKey, int symmetry, Action<?> action) {
+    long[] keys = nodeKeys[symmetry];
+    long target =
+        switch (action.type) {
+          case BUILD_SETTLEMENT -> feature(SETTLEMENT, 0, keys[(Integer) action.value]);
+          case BUILD_CITY -> feature(CITY, 0, keys[(Integer) action.value]);
+          case BUILD_ROAD -> {
+            Edge edge = (Edge) action.value;
+            yield feature(ROAD, 0, keys[edge.a()] + keys[edge.b()]);
+          }
+          default -> throw new IllegalArgumentException("not a placement: " + action);
+        };
+    return mix(positionKey ^ target);
+  }
+
+  /** Whether the book keys {@code type}. */
+  public static boolean isPlacement(ActionType type) {
+    return type == ActionType.BUILD_SETTLEMENT
+        || type == ActionType.BUILD_CITY
+        || type == ActionType.BUILD_ROAD;
+  }
+
+  // Symmetry g of cube coordinates (q, r, -q-r): g % 6 rotations by 60 degrees, reflected if g >= 6
+  private static long transform(int g, int q, int r) {
+    int s = -q - r;
+    for (int k = 0; k < g % 6; k++) {
+      int q0 = q;
+      q = -r;
+      r = -s;
+      s = -q0;
+    }
+    if (g >= 6) {
+      int r0 = r;
+      r = s;
+      s = r0;
+    }
+    return ((long) q << 32) ^ (r & 0xFFFFFFFFL);
+  }
+
+  private static long feature(long tag, int detail, long key) {
+    return mix(key ^ mix((tag << 40) ^ detail));
+  }
+
+  // SplitMix64 finalizer
+  private static long mix(long z) {
+    z += 0x9E3779B97F4A7C15L;
+    z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+    z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+    return z ^ (z >>> 31);
+  }
+}
@@ -0,0 +1,198 @@
+package com.catanatron.core.book;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Persistent hash table of placement results, memory-mapped from one file: per key (see {@link
+ * CanonicalLayout#actionKey}) the playouts run and the wins they gave the player who placed.
+ * Lookups are one probe sequence in the mapping; results for a key add up over builds, so the book
+ * grows as more layouts are analyzed. When three quarters full the table is rehashed into a file of
+ * twice the capacity, which then replaces the old one.
+ *
+ * <p>Layout: a 32-byte header (magic, version, capacity, size) then {@code capacity} slots of key,
+ * playouts and win sum, 8 bytes each, with linear probing; key 0 marks an empty slot. Methods are
+ * synchronized, so players and a builder may share a book.
+ */
+public final class OpeningBook implements AutoCloseable {
+  private static final long MAGIC = 0x4341544E424F4F4BL; // "CATNBOOK"
+  private static final int VERSION = 1;
+  private static final int HEADER = 32;
+  private static final int SLOT = 24;
+  private static final int DEFAULT_CAPACITY = 1 << 16;
+  private static final int MAX_CAPACITY =
+      Integer.highestOneBit((Integer.MAX_VALUE - HEADER) / SLOT);
+
+  /** Scratch result of {@link #probe}. */
+  public static final class Entry {
+    public long playouts;
+    public double wins;
+
+    /** Share of playouts won. */
+    public double value() {
+      return playouts == 0 ? 0 : wins / playouts;
+    }
+  }
+
+  private final Path file;
+  private FileChannel channel;
+  private MappedByteBuffer buffer;
+  private int capacity;
+  private int size;
+
+  private OpeningBook(Path file, FileChannel channel) throws IOException {
+    this.file = file;
+    this.channel = channel;
+    map();
+  }
+
+  /** Opens the book in {@code file}, creating an empty one if there is none. */
+  public static OpeningBook open(Path file) {
+    return open(file, DEFAULT_CAPACITY);
+  }
+
+  /** As {@link #open(Path)}; a new book starts with {@code capacity} slots (a power of two). */
+  public static OpeningBook open(Path file, int capacity) {
+    if (Integer.bitCount(capacity) != 1 || capacity > MAX_CAPACITY)
+      throw new IllegalArgumentException("capacity must be a power of two: " + capacity);
+    try {
+      if (!Files.exists(file) || Files.size(file) == 0) create(file, capacity);
+      return new OpeningBook(file, openChannel(file));
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /** Keys stored. */
+  public synchronized int size() {
+    return size;
+  }
+
+  public synchronized int capacity() {
+    return capacity;
+  }
+
+  /** Fills {@code out} and returns true if {@code key} is in the book. */
+  public synchronized boolean probe(long key, Entry out) {
+    int slot = find(nonZero(key));
+    if (buffer.getLong(offset(slot)) == 0) return false;
+    out.playouts = buffer.getLong(offset(slot) + 8);
+    out.wins = buffer.getDouble(offset(slot) + 16);
+    return true;
+  }
+
+  /** Adds {@code playouts} and their {@code wins} to the results of {@code key}. */
+  public synchronized void add(long key, long playouts, double wins) {
+    key = nonZero(key);
+    int slot = find(key);
+    int at = offset(slot);
+    if (buffer.getLong(at) == 0) {
+      if (4L * (size + 1) > 3L * capacity) {
+        grow();
+        add(key, playouts, wins);
+        return;
+      }
+      buffer.putLong(at, key);
+      buffer.putInt(20, ++size);
+    }
+    buffer.putLong(at + 8, buffer.getLong(at + 8) + playouts);
+    buffer.putDouble(at + 16, buffer.getDouble(at + 16) + wins);
+  }
+
+  /** Writes changes through to the file. */
+  public synchronized void flush() {
+    buffer.force();
+  }
+
+  @Override
+  public synchronized void close() {
+    flush();
+    try {
+      channel.close();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  // The key's slot, or the empty slot where it would go
+  private int find(long key) {
+    int mask = capacity - 1;
+    int slot = (int) (key ^ (key >>> 32)) & mask;
+    while (true) {
+      long stored = buffer.getLong(offset(slot));
+      if (stored == key || stored == 0) return slot;
+      slot = (slot + 1) & mask;
+    }
+  }
+
+  private static long nonZero(long key) {
+    return key == 0 ? 1 : key;
+  }
+
+  private static int offset(int slot) {
+    return HEADER + slot * SLOT;
+  }
+
+  private void map() throws IOException {
+    buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+    buffer.order(ByteOrder.LITTLE_ENDIAN);
+    if (buffer.getLong(0) != MAGIC || buffer.getInt(8) != VERSION)
+      throw new IOException(file + " is not an opening book");
+    capacity = buffer.getInt(16);
+    size = buffer.getInt(20);
+    if (channel.size() != HEADER + (long) capacity * SLOT)
+      throw new IOException(file + " is truncated");
+  }
+
+  // Rehashes every key into a file twice the size, then swaps it in
+  private void grow() {
+    if (capacity == MAX_CAPACITY) throw new IllegalStateException("opening book full");
+    Path next = file.resolveSibling(file.getFileName() + ".grow");
+    try {
+      create(next, 2 * capacity);
+      try (OpeningBook bigger = new OpeningBook(next, openChannel(next))) {
+        for (int slot = 0; slot < capacity; slot++) {
+          int at = offset(slot);
+          long key = buffer.getLong(at);
+          if (key != 0) bigger.add(key, buffer.getLong(at + 8), buffer.getDouble(at + 16));
+        }
+      }
+      channel.close();
+      Files.move(next, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      channel = openChannel(file);
+      map();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private static void create(Path file, int capacity) throws IOException {
+    try (FileChannel ch =
+        FileChannel.open(
+            file,
+            StandardOpenOption.CREATE,
+            StandardOpenOption.TRUNCATE_EXISTING,
+            StandardOpenOption.READ,
+            StandardOpenOption.WRITE)) {
+      MappedByteBuffer b =
+          ch.map(FileChannel.MapMode.READ_WRITE, 0, HEADER + (long) capacity * SLOT);
+      b.order(ByteOrder.LITTLE_ENDIAN);
+      b.putLong(0, MAGIC);
+      b.putInt(8, VERSION);
+      b.putInt(16, capacity);
+      b.putInt(20, 0);
+      b.force();
+    }
+  }
+
+  private static FileChannel openChannel(Path file) throws IOException {
+    return FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+  }
+}
@@ -0,0 +1,117 @@
+package com.catanatron.core.book;
+
+import com.catanatron.core.engine.LegalActions;
+import com.catanatron.core.engine.Player;
+import com.catanatron.core.engine.RandomPlayer;
+import com.catanatron.core.engine.Reducer;
+import com.catanatron.core.engine.State;
+import com.catanatron.core.map.CatanMap;
+import com.catanatron.core.model.Action;
+import com.catanatron.core.model.PlayerColor;
+import com.catanatron.core.sim.RolloutPolicy;
+import com.catanatron.core.sim.WinProbabilityEstimator;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Fills an {@link OpeningBook} offline. For a layout it walks the initial placement phase: at each
+ * placement every legal settlement or road is tried and its position played out a fixed number of
+ * times in parallel ({@link WinProbabilityEstimator}); the wins of the player who placed are added
+ * to the book, and the walk continues with the best placement. Analyzing a layout again adds
+ * playouts to the same keys.
+ *
+ * <p>Usage: {@code OpeningBookBuilder <book file> [layouts] [playouts per placement] [threads]
+ * [first seed]}; layouts are base maps drawn from consecutive seeds, and those already in the book
+ * are skipped.
+ */
+public final class OpeningBookBuilder implements AutoCloseable {
+  private static final long BUDGET_NANOS = 3_600_000_000_000L; // per placement; playouts decide
+  private final OpeningBook book;
+  private final WinProbabilityEstimator estimator;
+  private final int playouts;
+  private final LegalActions legal = new LegalActions();
+
+  public OpeningBookBuilder(OpeningBook book, RolloutPolicy policy, int threads, int playouts) {
+    this.book = book;
+    this.estimator = new WinProbabilityEstimator(policy, threads, 1);
+    this.playouts = playouts;
+  }
+
+  /** Whether {@code layout} has been analyzed for {@code seats} players. */
+  public boolean contains(CanonicalLayout layout, int seats) {
+    return book.probe(layout.layoutKey(seats), new OpeningBook.Entry());
+  }
+
+  /**
+   * Analyzes the initial phase from {@code root}, which is left unchanged; returns the number of
+   * placements evaluated.
+   */
+  public int analyze(State root) {
+    CanonicalLayout layout = CanonicalLayout.of(root.map);
+    State state = root.copy();
+    int evaluated = 0;
+    while (state.isInitialBuildPhase) {
+      int symmetry = layout.symmetry(state);
+      long position = layout.positionKey(state, symmetry);
+      int seat = state.currentPlayerIndex;
+      legal.reset(state);
+      if (legal.count() == 0) break;
+      Action<?> best = null;
+      double bestValue = -1;
+      for (int k = 0; k < legal.count(); k++) {
+        Action<?> action = legal.get(k);
+        if (!CanonicalLayout.isPlacement(action.type)) continue;
+        State child = state.copy();
+        Reducer.step(child, action);
+        var estimate = estimator.estimate(child, 0, BUDGET_NANOS, playouts);
+        long wins = estimate.wins()[seat];
+        book.add(layout.actionKey(position, symmetry, action), estimate.playouts(), wins);
+        evaluated++;
+        double value = (double) wins / Math.max(1, estimate.playouts());
+        if (value > bestValue) {
+          bestValue = value;
+          best = action;
+        }
+      }
+      if (best == null) break;
+      Reducer.step(state, best);
+    }
+    book.add(layout.layoutKey(root.colors.size()), 1, 0);
+    return evaluated;
+  }
+
+  @Override
+  public void close() {
+    estimator.close();
+  }
+
+  public static void main(String[] args) {
+    Path file = Path.of(args[0]);
+    int layouts = args.length > 1 ? Integer.parseInt(args[1]) : 1;
+    int playouts = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+    int threads =
+        args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+    long firstSeed = args.length > 4 ? Long.parseLong(args[4]) : 0;
+    List<Player> players = new ArrayList<>();
+    for (int s = 0; s < 4; s++) players.add(new RandomPlayer(PlayerColor.values()[s]));
+
+    try (OpeningBook book = OpeningBook.open(file);
+        var builder = new OpeningBookBuilder(book, RolloutPolicy.BUILD_FIRST, threads, playouts)) {
+      for (long seed = firstSeed; seed < firstSeed + layouts; seed++) {
+        CatanMap map = CatanMap.base(new Random(seed));
+        if (builder.contains(CanonicalLayout.of(map), players.size())) {
+          System.out.printf("layout %d: already in the book%n", seed);
+          continue;
+        }
+        long start = System.nanoTime();
+        int evaluated = builder.analyze(new State(players, seed, map));
+        book.flush();
+        System.out.printf(
+            "layout %d: %d placements in %.1fs, book holds %d keys%n",
+            seed, evaluated, (System.nanoTime() - start) / 1e9, book.size());
+      }
+    }
+  }
+}
@@ -0,0 +1,59 @@
+package com.catanatron.core.book;
+
+import com.catanatron.core.engine.Game;
+import com.catanatron.core.engine.Player;
+import com.catanatron.core.engine.State;
+import com.catanatron.core.model.Action;
+import java.util.List;
+
+/**
+ * Plays initial placements from an {@link OpeningBook}: the playable placement with the best
+ * recorded share of wins, among those with at least {@code minPlayouts}. Everything else, and
+ * positions the book does not know, is left to the fallback player.
+ */
+public class OpeningBookPlayer extends Player {
+  private final OpeningBook book;
+  private final Player fallback;
+  private final long minPlayouts;
+  private final OpeningBook.Entry entry = new OpeningBook.Entry();
+  private CanonicalLayout layout; // of the last map seen
+
+  public OpeningBookPlayer(OpeningBook book, Player fallback, long minPlayouts) {
+    super(fallback.color, true);
+    this.book = book;
+    this.fallback = fallback;
+    this.minPlayouts = minPlayouts;
+  }
+
+  @Override
+  public Action<?> decide(Game game, List<Action<?>> playable) {
+    Action<?> action = lookup(game.state, playable);
+    return action != null ? action : fallback.decide(game, playable);
+  }
+
+  /** The book's placement among {@code playable}, or null if it has none. */
+  public Action<?> lookup(State state, List<Action<?>> playable) {
+    if (!state.isInitialBuildPhase) return null;
+    if (layout == null || layout.map != state.map) layout = CanonicalLayout.of(state.map);
+    int symmetry = layout.symmetry(state);
+    long position = layout.positionKey(state, symmetry);
+    Action<?> best = null;
+    double bestValue = -1;
+    for (Action<?> action : playable) {
+      if (!CanonicalLayout.isPlacement(action.type)) continue;
+      long key = layout.actionKey(position, symmetry, action);
+      if (!book.probe(key, entry) || entry.playouts < minPlayouts) continue;
+      if (entry.value() > bestValue) {
+        bestValue = entry.value();
+        best = action;
+      }
+    }
+    return best;
+  }
+
+  @Override
+  public void resetState() {
+    layout = null; // a reset may re-deal the same map in place
+    fallback.resetState();
+  }
+}
@@ -5,5 +5,7 @@ public enum ActionPrompt {
   BUILD_INITIAL_ROAD,
   PLAY_TURN,
   DISCARD,
-  MOVE_ROBBER
+  MOVE_ROBBER,
+  DECIDE_TRADE, // other players accept or reject the current offer, in seat order
+  DECIDE_ACCEPTEES // the offerer confirms with one acceptee or cancels
 }
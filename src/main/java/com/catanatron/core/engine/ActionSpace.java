@@ -0,0 +1,304 @@
+package com.catanatron.core.engine;
+
+import com.catanatron.core.map.CatanMap;
+import com.catanatron.core.model.*;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Fixed enumeration of every action on a map, independent of the acting color. Ids are dense and
+ * stable for a given topology; {@link #action(PlayerColor, int)} returns shared instances so
+ * callers stepping by id allocate nothing. They are shared by every game on the same topology, so
+ * their array values (Year of Plenty picks, maritime trades, offers) must not be modified.
+ *
+ * <p>Layout: ROLL, END_TURN, DISCARD, BUY_DEVELOPMENT_CARD, PLAY_KNIGHT_CARD, PLAY_ROAD_BUILDING,
+ * then BUILD_SETTLEMENT per node, BUILD_CITY per node, BUILD_ROAD per edge, MOVE_ROBBER per land
+ * tile, PLAY_YEAR_OF_PLENTY per choice, PLAY_MONOPOLY per resource and MARITIME_TRADE per rate (4,
+ * 3, 2), given and requested resource.
+ */
+public final class ActionSpace {
+  public static final int ROLL = 0;
+  public static final int END_TURN = 1;
+  public static final int DISCARD = 2;
+  public static final int BUY_DEVELOPMENT_CARD = 3;
+  public static final int PLAY_KNIGHT_CARD = 4;
+  public static final int PLAY_ROAD_BUILDING = 5;
+  private static final int MARITIME_RATES = 3; // 4:1, 3:1, 2:1
+  private static final int RESOURCE_PAIRS = Resource.COUNT * (Resource.COUNT - 1);
+  // OFFER_TRADE shapes as (given, asked) counts
+  static final int ONE_FOR_ONE = 0;
+  static final int TWO_FOR_ONE = 1;
+  static final int ONE_FOR_TWO = 2;
+  private static final int[] SHAPE_GIVEN = {1, 2, 1};
+  private static final int[] SHAPE_ASKED = {1, 1, 2};
+
+  // One space per topology, kept for the JVM's lifetime; maps dealt on the same board share it
+  private static final Map<Topology, ActionSpace> SPACES = new ConcurrentHashMap<>();
+
+  // What a space is built from: node, edge and land tile ids and the adjacency between them
+  private record Topology(
+      int[] edgeA, int[] edgeB, int[] landTileIds, int[][] nodeNeighborIds, int[][] nodeEdgeIds) {
+    Topology(CatanMap map) {
+      this(map.edgeA, map.edgeB, map.landTileIds, map.nodeNeighborIds, map.nodeEdgeIds);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      return o instanceof Topology t
+          && Arrays.equals(edgeA, t.edgeA)
+          && Arrays.equals(edgeB, t.edgeB)
+          && Arrays.equals(landTileIds, t.landTileIds)
+          && Arrays.deepEquals(nodeNeighborIds, t.nodeNeighborIds)
+          && Arrays.deepEquals(nodeEdgeIds, t.nodeEdgeIds);
+    }
+
+    // Counts and edges tell topologies apart; the rest follows from them on generated maps
+    @Override
+    public int hashCode() {
+      int h = 31 * nodeNeighborIds.length + landTileIds.length;
+      h = 31 * h + Arrays.hashCode(edgeA);
+      return 31 * h + Arrays.hashCode(edgeB);
+    }
+  }
+
+  public final int settlementBase;
+  public final int cityBase;
+  public final int roadBase;
+  public final int robberBase;
+  public final int yearOfPlentyBase;
+  public final int monopolyBase;
+  public final int maritimeBase;
+  public final int offerBase;
+  public final int acceptTrade;
+  public final int rejectTrade;
+  public final int cancelTrade;
+  public final int confirmBase;
+  private final int size;
+  private final int[] tileIndexById;
+  private final int[] edgeA;
+  private final int[] edgeB;
+  private final int[] landTileIds;
+  private final int[][] nodeNeighborIds;
+  private final int[][] nodeEdgeIds;
+  private final Action<?>[][] actions; // [color ordinal][id]
+
+  public ActionSpace(CatanMap map) {
+    this.edgeA = map.edgeA;
+    this.edgeB = map.edgeB;
+    this.landTileIds = map.landTileIds;
+    this.nodeNeighborIds = map.nodeNeighborIds;
+    this.nodeEdgeIds = map.nodeEdgeIds;
+    int numNodes = map.nodeNeighborIds.length;
+    settlementBase = PLAY_ROAD_BUILDING + 1;
+    cityBase = settlementBase + numNodes;
+    roadBase = cityBase + numNodes;
+    robberBase = roadBase + map.edgeA.length;
+    yearOfPlentyBase = robberBase + map.landTileIds.length;
+    monopolyBase = yearOfPlentyBase + LegalActions.YEAR_OF_PLENTY_CHOICES.length;
+    maritimeBase = monopolyBase + LegalActions.RESOURCES.length;
+    offerBase = maritimeBase + MARITIME_RATES * RESOURCE_PAIRS;
+    acceptTrade = offerBase + SHAPE_GIVEN.length * RESOURCE_PAIRS;
+    rejectTrade = acceptTrade + 1;
+    cancelTrade = rejectTrade + 1;
+    confirmBase = cancelTrade + 1;
+    size = confirmBase + PlayerColor.values().length;
+
+    int maxTileId = Arrays.stream(map.landTileIds).max().orElse(0);
+    tileIndexById = new int[maxTileId + 1];
+    Arrays.fill(tileIndexById, -1);
+    for (int i = 0; i < map.landTileIds.length; i++) tileIndexById[map.landTileIds[i]] = i;
+
+    PlayerColor[] colors = PlayerColor.values();
+    actions = new Action<?>[colors.length][];
+    for (PlayerColor color : colors) {
+      Action<?>[] row = new Action<?>[size];
+      for (int id = 0; id < size; id++) row[id] = build(color, id);
+      actions[color.ordinal()] = row;
+    }
+  }
+
+  /**
+   * Shared space for a map, cached per topology. The space depends only on the map's node, edge and
+   * tile ids, which {@link CatanMap#redeal} keeps, so a re-dealt map keeps its space and maps of
+   * the same layout share one.
+   */
+  public static ActionSpace of(CatanMap map) {
+    Topology topology = new Topology(map);
+    ActionSpace space = SPACES.get(topology);
+    return space != null ? space : SPACES.computeIfAbsent(topology, t -> new ActionSpace(map));
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public Action<?> action(PlayerColor color, int id) {
+    return actions[color.ordinal()][id];
+  }
+
+  public int settlementId(int nodeId) {
+    return settlementBase + nodeId;
+  }
+
+  public int cityId(int nodeId) {
+    return cityBase + nodeId;
+  }
+
+  public int roadId(int edgeId) {
+    return roadBase + edgeId;
+  }
+
+  public int robberId(int tileId) {
+    return robberBase + tileIndexById[tileId];
+  }
+
+  public int maritimeId(int give, int get, int rate) {
+    return maritimeBase + (4 - rate) * RESOURCE_PAIRS + pairIndex(give, get);
+  }
+
+  public int offerId(int shape, int give, int get) {
+    return offerBase + shape * RESOURCE_PAIRS + pairIndex(give, get);
+  }
+
+  public int confirmId(PlayerColor partner) {
+    return confirmBase + partner.ordinal();
+  }
+
+  private static int pairIndex(int give, int get) {
+    return give * (Resource.COUNT - 1) + (get < give ? get : get - 1);
+  }
+
+  private static int pairGive(int pair) {
+    return pair / (Resource.COUNT - 1);
+  }
+
+  private static int pairGet(int pair) {
+    int get = pair % (Resource.COUNT - 1);
+    return get >= pairGive(pair) ? get + 1 : get;
+  }
+
+  /** Id of an action by type and value, or -1 if it is not part of this space. */
+  public int id(Action<?> action) {
+    return switch (action.type) {
+      case ROLL -> ROLL;
+      case END_TURN -> END_TURN;
+      case DISCARD -> DISCARD;
+      case BUY_DEVELOPMENT_CARD -> BUY_DEVELOPMENT_CARD;
+      case PLAY_KNIGHT_CARD -> PLAY_KNIGHT_CARD;
+      case PLAY_ROAD_BUILDING -> PLAY_ROAD_BUILDING;
+      case BUILD_SETTLEMENT -> settlementId((Integer) action.value);
+      case BUILD_CITY -> cityId((Integer) action.value);
+      case BUILD_ROAD -> {
+        Edge edge = (Edge) action.value;
+        int edgeId = edgeId(edge.a(), edge.b());
+        yield edgeId < 0 ? -1 : roadId(edgeId);
+      }
+      case MOVE_ROBBER -> robberId((Integer) action.value);
+      case PLAY_YEAR_OF_PLENTY -> yearOfPlentyId((String[]) action.value);
+      case PLAY_MONOPOLY -> {
+        int r = Arrays.asList(LegalActions.RESOURCES).indexOf((String) action.value);
+        yield r < 0 ? -1 : monopolyBase + r;
+      }
+      case MARITIME_TRADE -> {
+        String[] trade = (String[]) action.value;
+        int give = resourceIndex(trade[0]);
+        int get = resourceIndex(trade[trade.length - 1]);
+        int rate = trade.length - 1;
+        yield give < 0 || get < 0 || give == get || rate < 2 || rate > 4
+            ? -1
+            : maritimeId(give, get, rate);
+      }
+      case OFFER_TRADE -> offerId((int[]) action.value);
+      case ACCEPT_TRADE -> acceptTrade;
+      case REJECT_TRADE -> rejectTrade;
+      case CANCEL_TRADE -> cancelTrade;
+      case CONFIRM_TRADE -> confirmId((PlayerColor) action.value);
+      default -> -1;
+    };
+  }
+
+  // Only single-resource offers of the enumerated shapes have ids
+  private int offerId(int[] offer) {
+    int give = -1, get = -1;
+    for (int r = 0; r < Resource.COUNT; r++) {
+      if (offer[r] > 0) give = give < 0 ? r : Resource.COUNT;
+      if (offer[Resource.COUNT + r] > 0) get = get < 0 ? r : Resource.COUNT;
+    }
+    if (give < 0 || get < 0 || give == Resource.COUNT || get == Resource.COUNT || give == get)
+      return -1;
+    for (int shape = 0; shape < SHAPE_GIVEN.length; shape++) {
+      if (offer[give] == SHAPE_GIVEN[shape] && offer[Resource.COUNT + get] == SHAPE_ASKED[shape])
+        return offerId(shape, give, get);
+    }
+    return -1;
+  }
+
+  private int edgeId(int nodeA, int nodeB) {
+    if (nodeA < 0 || nodeA >= nodeNeighborIds.length) return -1;
+    for (int i = 0; i < nodeNeighborIds[nodeA].length; i++) {
+      if (nodeNeighborIds[nodeA][i] == nodeB) return nodeEdgeIds[nodeA][i];
+    }
+    return -1;
+  }
+
+  private int yearOfPlentyId(String[] pick) {
+    String[] sorted = pick.clone();
+    Arrays.sort(sorted, (x, y) -> resourceIndex(x) - resourceIndex(y));
+    String[][] choices = LegalActions.YEAR_OF_PLENTY_CHOICES;
+    for (int i = 0; i < choices.length; i++) {
+      if (Arrays.equals(choices[i], sorted)) return yearOfPlentyBase + i;
+    }
+    return -1;
+  }
+
+  private static int resourceIndex(String resource) {
+    return Arrays.asList(LegalActions.RESOURCES).indexOf(resource);
+  }
+
+  private Action<?> build(PlayerColor color, int id) {
+    if (id == ROLL) return new Action<>(color, ActionType.ROLL, null);
+    if (id == END_TURN) return new Action<>(color, ActionType.END_TURN, null);
+    if (id == DISCARD) return new Action<>(color, ActionType.DISCARD, null);
+    if (id == BUY_DEVELOPMENT_CARD)
+      return new Action<>(color, ActionType.BUY_DEVELOPMENT_CARD, null);
+    if (id == PLAY_KNIGHT_CARD) return new Action<>(color, ActionType.PLAY_KNIGHT_CARD, null);
+    if (id == PLAY_ROAD_BUILDING) return new Action<>(color, ActionType.PLAY_ROAD_BUILDING, null);
+    if (id < cityBase) return new Action<>(color, ActionType.BUILD_SETTLEMENT, id - settlementBase);
+    if (id < roadBase) return new Action<>(color, ActionType.BUILD_CITY, id - cityBase);
+    if (id < robberBase) {
+      int edgeId = id - roadBase;
+      return new Action<>(color, ActionType.BUILD_ROAD, new Edge(edgeA[edgeId], edgeB[edgeId]));
+    }
+    if (id < yearOfPlentyBase)
+      return new Action<>(color, ActionType.MOVE_ROBBER, landTileIds[id - robberBase]);
+    if (id < monopolyBase)
+      return new Action<>(
+          color,
+          ActionType.PLAY_YEAR_OF_PLENTY,
+          LegalActions.YEAR_OF_PLENTY_CHOICES[id - yearOfPlentyBase]);
+    if (id < maritimeBase)
+      return new Action<>(
+          color, ActionType.PLAY_MONOPOLY, LegalActions.RESOURCES[id - monopolyBase]);
+    if (id < offerBase) {
+      int rate = 4 - (id - maritimeBase) / RESOURCE_PAIRS;
+      int pair = (id - maritimeBase) % RESOURCE_PAIRS;
+      String[] trade = new String[rate + 1];
+      Arrays.fill(trade, 0, rate, LegalActions.RESOURCES[pairGive(pair)]);
+      trade[rate] = LegalActions.RESOURCES[pairGet(pair)];
+      return new Action<>(color, ActionType.MARITIME_TRADE, trade);
+    }
+    if (id < acceptTrade) {
+      int shape = (id - offerBase) / RESOURCE_PAIRS;
+      int pair = (id - offerBase) % RESOURCE_PAIRS;
+      int[] offer = new int[2 * Resource.COUNT];
+      offer[pairGive(pair)] = SHAPE_GIVEN[shape];
+      offer[Resource.COUNT + pairGet(pair)] = SHAPE_ASKED[shape];
+      return new Action<>(color, ActionType.OFFER_TRADE, offer);
+    }
+    if (id == acceptTrade) return new Action<>(color, ActionType.ACCEPT_TRADE, null);
+    if (id == rejectTrade) return new Action<>(color, ActionType.REJECT_TRADE, null);
+    if (id == cancelTrade) return new Action<>(color, ActionType.CANCEL_TRADE, null);
+    return new Action<>(color, ActionType.CONFIRM_TRADE, PlayerColor.values()[id - confirmBase]);
+  }
+}
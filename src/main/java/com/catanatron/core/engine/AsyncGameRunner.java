@@ -0,0 +1,131 @@
+package com.catanatron.core.engine;
+
+import com.catanatron.core.model.Action;
+import com.catanatron.core.model.PlayerColor;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Plays games without dedicating a thread to each: a game advances while its players answer at once
+ * and parks on the pending {@link Player#decideAsync} future otherwise, resuming on the executor
+ * when it completes. A handful of threads can thus host many thousands of games whose players think
+ * at different speeds.
+ *
+ * <p>A decision that does not complete within the move timeout, fails, or is not among the playable
+ * actions is replaced by the {@link FallbackPolicy}'s choice; the late future is cancelled and its
+ * eventual result ignored.
+ */
+public final class AsyncGameRunner {
+  /** Per-seat counts of fallback moves; {@code timeouts} is the subset caused by the timeout. */
+  public record Result(Game game, PlayerColor winner, int[] fallbacks, int[] timeouts) {}
+
+  private final Executor executor;
+  private final long moveTimeoutNanos;
+  private final FallbackPolicy fallback;
+
+  /**
+   * @param moveTimeoutMillis time a player gets per decision; 0 waits forever
+   */
+  public AsyncGameRunner(Executor executor, long moveTimeoutMillis, FallbackPolicy fallback) {
+    this.executor = executor;
+    this.moveTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(moveTimeoutMillis);
+    this.fallback = fallback;
+  }
+
+  /** Starts {@code game} and completes with its result when it ends (winner or turn limit). */
+  public CompletableFuture<Result> play(Game game) {
+    int seats = game.state.colors.size();
+    var run = new Run(game, new int[seats], new int[seats], new CompletableFuture<>());
+    executor.execute(() -> advance(run));
+    return run.result;
+  }
+
+  private record Run(
+      Game game, int[] fallbacks, int[] timeouts, CompletableFuture<Result> result) {}
+
+  // Plays moves until a decision is pending or the game is over
+  private void advance(Run run) {
+    try {
+      Game game = run.game;
+      while (true) {
+        PlayerColor winner = game.winningColor();
+        if (winner != null || game.state.numTurns >= Game.TURNS_LIMIT) {
+          run.result.complete(new Result(game, winner, run.fallbacks, run.timeouts));
+          return;
+        }
+        int seat = game.state.currentPlayerIndex;
+        List<Action<?>> playable = game.playableActions;
+        CompletableFuture<Action<?>> pending;
+        try {
+          pending = game.state.currentPlayer().decideAsync(game, playable);
+        } catch (RuntimeException e) {
+          pending = CompletableFuture.failedFuture(e);
+        }
+        if (!pending.isDone()) {
+          CompletableFuture<Action<?>> decision = pending;
+          CompletableFuture<Action<?>> bounded = pending.copy();
+          if (moveTimeoutNanos > 0) bounded.orTimeout(moveTimeoutNanos, TimeUnit.NANOSECONDS);
+          bounded.whenCompleteAsync(
+              (action, error) -> {
+                if (error != null) decision.cancel(true);
+                resume(run, seat, playable, action, error);
+              },
+              executor);
+          return;
+        }
+        Action<?> action = null;
+        Throwable error = null;
+        try {
+          action = pending.join();
+        } catch (RuntimeException e) {
+          error = e;
+        }
+        apply(run, seat, playable, action, error);
+      }
+    } catch (RuntimeException e) {
+      run.result.completeExceptionally(e);
+    }
+  }
+
+  private void resume(
+      Run run, int seat, List<Action<?>> playable, Action<?> action, Throwable error) {
+    try {
+      apply(run, seat, playable, action, error);
+    } catch (RuntimeException e) {
+      run.result.completeExceptionally(e);
+      return;
+    }
+    advance(run);
+  }
+
+  private void apply(
+      Run run, int seat, List<Action<?>> playable, Action<?> action, Throwable error) {
+    if (error != null || !isPlayable(playable, action)) {
+      run.fallbacks[seat]++;
+      if (unwrap(error) instanceof java.util.concurrent.TimeoutException) run.timeouts[seat]++;
+      action = fallback.choose(run.game, playable);
+    }
+    run.game.execute(action);
+  }
+
+  static boolean isPlayable(List<Action<?>> playable, Action<?> action) {
+    if (action == null) return false;
+    for (Action<?> a : playable) {
+      if (a == action
+          || (a.color == action.color
+              && a.type == action.type
+              && Objects.deepEquals(a.value, action.value))) return true;
+    }
+    return false;
+  }
+
+  private static Throwable unwrap(Throwable error) {
+    while (error instanceof java.util.concurrent.CompletionException && error.getCause() != null) {
+      error = error.getCause();
+    }
+    return error;
+  }
+}
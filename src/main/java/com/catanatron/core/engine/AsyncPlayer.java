@@ -0,0 +1,24 @@
+package com.catanatron.core.engine;
+
+import com.catanatron.core.model.Action;
+import com.catanatron.core.model.PlayerColor;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Base for players whose decisions complete later, e.g. on a reply from another process. {@link
+ * #decide} blocks on {@link #decideAsync} so that these players also work in {@link Game#play()}.
+ */
+public abstract class AsyncPlayer extends Player {
+  protected AsyncPlayer(PlayerColor color, boolean isBot) {
+    super(color, isBot);
+  }
+
+  @Override
+  public abstract CompletableFuture<Action<?>> decideAsync(Game game, List<Action<?>> playable);
+
+  @Override
+  public Action<?> decide(Game game, List<Action<?>> playable) {
+    return decideAsync(game, playable).join();
+  }
+}
@@ -1,49 +1,52 @@
 package com.catanatron.core.engine;
 
+import com.catanatron.core.model.Resource;
+
 public final class Costs {
   private Costs() {}
 
   public static boolean canAffordSettlement(State s, com.catanatron.core.model.PlayerColor c) {
-    return has(s, c, "WOOD", 1)
-        && has(s, c, "BRICK", 1)
-        && has(s, c, "SHEEP", 1)
-        && has(s, c, "WHEAT", 1);
+    return has(s, c, Resource.WOOD, 1)
+        && has(s, c, Resource.BRICK, 1)
+        && has(s, c, Resource.SHEEP, 1)
+        && has(s, c, Resource.WHEAT, 1);
   }
 
   public static boolean canAffordCity(State s, com.catanatron.core.model.PlayerColor c) {
-    return has(s, c, "WHEAT", 2) && has(s, c, "ORE", 3);
+    return has(s, c, Resource.WHEAT, 2) && has(s, c, Resource.ORE, 3);
   }
 
   public static boolean canAffordRoad(State s, com.catanatron.core.model.PlayerColor c) {
-    return has(s, c, "WOOD", 1) && has(s, c, "BRICK", 1);
+    return has(s, c, Resource.WOOD, 1) && has(s, c, Resource.BRICK, 1);
   }
 
   public static void paySettlement(State s, com.catanatron.core.model.PlayerColor c) {
-    add(s, c, "WOOD", -1);
-    add(s, c, "BRICK", -1);
-    add(s, c, "SHEEP", -1);
-    add(s, c, "WHEAT", -1);
+    add(s, c, Resource.WOOD, -1);
+    add(s, c, Resource.BRICK, -1);
+    add(s, c, Resource.SHEEP, -1);
+    add(s, c, Resource.WHEAT, -1);
   }
 
   public static void payCity(State s, com.catanatron.core.model.PlayerColor c) {
-    add(s, c, "WHEAT", -2);
-    add(s, c, "ORE", -3);
+    add(s, c, Resource.WHEAT, -2);
+    add(s, c, Resource.ORE, -3);
   }
 
   public static void payRoad(State s, com.catanatron.core.model.PlayerColor c) {
-    add(s, c, "WOOD", -1);
-    add(s, c, "BRICK", -1);
+    add(s, c, Resource.WOOD, -1);
+    add(s, c, Resource.BRICK, -1);
   }
 
   private static boolean has(
-      State s, com.catanatron.core.model.PlayerColor c, String res, int amount) {
+      State s, com.catanatron.core.model.PlayerColor c, Resource res, int amount) {
     int idx = s.colors.indexOf(c);
-    return s.playerState.get("P" + idx + "_" + res + "_IN_HAND") >= amount;
+    return s.playerState.get(idx, PlayerStateMap.FIRST_RESOURCE + res.ordinal()) >= amount;
   }
 
-  private static void add(State s, com.catanatron.core.model.PlayerColor c, String res, int delta) {
+  private static void add(
+      State s, com.catanatron.core.model.PlayerColor c, Resource res, int delta) {
     int idx = s.colors.indexOf(c);
-    String key = "P" + idx + "_" + res + "_IN_HAND";
-    s.playerState.put(key, s.playerState.get(key) + delta);
+    s.playerState.add(idx, PlayerStateMap.FIRST_RESOURCE + res.ordinal(), delta);
+    s.bank[res.ordinal()] -= delta;
   }
 }
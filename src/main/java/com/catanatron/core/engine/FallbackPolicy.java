@@ -0,0 +1,25 @@
+package com.catanatron.core.engine;
+
+import com.catanatron.core.model.Action;
+import com.catanatron.core.model.ActionType;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/** Picks the action played for a player that failed to decide in time or decided illegally. */
+@FunctionalInterface
+public interface FallbackPolicy {
+  Action<?> choose(Game game, List<Action<?>> playable);
+
+  /** Ends the turn (or rolls) when possible, otherwise the first legal action. */
+  FallbackPolicy PASSIVE =
+      (game, playable) -> {
+        for (Action<?> a : playable) {
+          if (a.type == ActionType.END_TURN || a.type == ActionType.ROLL) return a;
+        }
+        return playable.get(0);
+      };
+
+  /** A uniformly random legal action; does not touch the game's rng. */
+  FallbackPolicy RANDOM =
+      (game, playable) -> playable.get(ThreadLocalRandom.current().nextInt(playable.size()));
+}
@@ -1,6 +1,9 @@
 package com.catanatron.core.engine;
 
+import com.catanatron.core.map.CatanMap;
 import com.catanatron.core.model.*;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
 import java.util.*;
 
 public class Game {
@@ -10,7 +13,25 @@ public class Game {
   public List<Action<?>> playableActions;
 
   public Game(List<Player> players) {
-    this.state = new State(players);
+    this(new State(players));
+  }
+
+  public Game(List<Player> players, long seed) {
+    this(new State(players, seed));
+  }
+
+  public Game(State state) {
+    this.state = state;
+    this.playableActions = MoveGeneration.generatePlayable(state);
+  }
+
+  /**
+   * Starts a new game with the same players, reusing this game's storage; see {@link State#reset}.
+   * Every player's {@link Player#resetState} is called first.
+   */
+  public void reset(long seed, CatanMap layout) {
+    for (Player player : state.players) player.resetState();
+    state.reset(seed, layout);
     this.playableActions = MoveGeneration.generatePlayable(state);
   }
 
@@ -38,21 +59,72 @@ public class Game {
     return winningColor();
   }
 
-  public PlayerColor winningColor() {
-    // Basic win rule: 10 VP or all pieces exhausted (simplified)
-    for (int i = 0; i < state.colors.size(); i++) {
-      int vps = state.playerState.get("P" + i + "_ACTUAL_VICTORY_POINTS");
-      if (vps >= 10) return state.colors.get(i);
-      int settlementsLeft = state.playerState.get("P" + i + "_SETTLEMENTS_AVAILABLE");
-      int citiesLeft = state.playerState.get("P" + i + "_CITIES_AVAILABLE");
-      if (settlementsLeft == 0 && citiesLeft == 0) return state.colors.get(i);
+  /**
+   * Plays to the end like {@link #play()} while metering each player's thinking time. {@code
+   * decide} runs on this thread and cannot be interrupted: an answer that took longer than the
+   * per-move budget is discarded in favour of the fallback, as is a failed or illegal one, and a
+   * player whose game budget is spent is no longer asked at all.
+   */
+  public GameResult play(TimeControl timeControl) {
+    ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    boolean cpu = threads.isCurrentThreadCpuTimeSupported() && threads.isThreadCpuTimeEnabled();
+    int seats = state.colors.size();
+    int[] decisions = new int[seats], overBudget = new int[seats], fallbacks = new int[seats];
+    long[] wall = new long[seats], cpuTime = new long[seats], maxWall = new long[seats];
+    while (winningColor() == null && state.numTurns < TURNS_LIMIT) {
+      int seat = state.currentPlayerIndex;
+      Action<?> action = null;
+      if (!timeControl.gameOver(wall[seat], cpuTime[seat])) {
+        long wallStart = System.nanoTime();
+        long cpuStart = cpu ? threads.getCurrentThreadCpuTime() : 0;
+        try {
+          action = state.currentPlayer().decide(this, playableActions);
+        } catch (RuntimeException e) {
+          action = null;
+        }
+        long moveWall = System.nanoTime() - wallStart;
+        long moveCpu = cpu ? threads.getCurrentThreadCpuTime() - cpuStart : 0;
+        decisions[seat]++;
+        wall[seat] += moveWall;
+        cpuTime[seat] += moveCpu;
+        maxWall[seat] = Math.max(maxWall[seat], moveWall);
+        if (timeControl.moveOver(moveWall, moveCpu)) {
+          overBudget[seat]++;
+          action = null;
+        }
+      }
+      if (action == null || !AsyncGameRunner.isPlayable(playableActions, action)) {
+        fallbacks[seat]++;
+        action = timeControl.fallback().choose(this, playableActions);
+      }
+      execute(action);
+    }
+    List<GameResult.Usage> usage = new ArrayList<>();
+    for (int i = 0; i < seats; i++) {
+      usage.add(
+          new GameResult.Usage(
+              state.colors.get(i),
+              decisions[i],
+              wall[i],
+              cpuTime[i],
+              maxWall[i],
+              overBudget[i],
+              fallbacks[i]));
     }
-    return null;
+    return new GameResult(winningColor(), state.numTurns, usage);
+  }
+
+  public PlayerColor winningColor() {
+    return winningColor(state);
+  }
+
+  public static PlayerColor winningColor(State state) {
+    // Basic win rule: 10 VP or all pieces exhausted (simplified); cached by the state
+    return state.winner();
   }
 
   public Game copy() {
-    Game g = new Game(this.state.players); // shares players
-    // replace state and actions
+    Game g = new Game(this.state.copy()); // shares players
     g.playableActions = new ArrayList<>(this.playableActions);
     return g;
   }
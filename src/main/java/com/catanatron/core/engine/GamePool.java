@@ -0,0 +1,47 @@
+package com.catanatron.core.engine;
+
+import com.catanatron.core.map.CatanMap;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.function.Supplier;
+
+/**
+ * Idle {@link Game}s for runners that play many games: {@link #borrow} resets a pooled game in
+ * place instead of building a new state, board and player-state map (without a fixed layout, the
+ * game's own map is re-dealt), so once the pool is warm a run allocates little beyond what the
+ * moves themselves do. Safe to share between threads.
+ */
+public final class GamePool {
+  private final ArrayBlockingQueue<Game> idle;
+  private final Supplier<List<Player>> players;
+
+  /**
+   * @param capacity games kept idle; this many are built up front
+   * @param players seats of a new game, called only when the pool is empty
+   */
+  public GamePool(int capacity, Supplier<List<Player>> players) {
+    this.idle = new ArrayBlockingQueue<>(capacity);
+    this.players = players;
+    for (int i = 0; i < capacity; i++) idle.add(new Game(players.get()));
+  }
+
+  /**
+   * A game at its first move, on {@code layout} or, if null, on a board drawn from {@code seed}.
+   * The players are those the game was built with, their state reset.
+   */
+  public Game borrow(long seed, CatanMap layout) {
+    Game game = idle.poll();
+    if (game == null) game = new Game(players.get());
+    game.reset(seed, layout);
+    return game;
+  }
+
+  /** Returns a game for reuse; it is dropped if the pool is full. */
+  public void release(Game game) {
+    idle.offer(game);
+  }
+
+  public int idle() {
+    return idle.size();
+  }
+}
@@ -0,0 +1,31 @@
+package com.catanatron.core.engine;
+
+import com.catanatron.core.model.PlayerColor;
+import java.util.List;
+
+/**
+ * Outcome of {@link Game#play(TimeControl)}.
+ *
+ * @param winner null if the turn limit was reached
+ * @param usage per seat, in seat order
+ */
+public record GameResult(PlayerColor winner, int turns, List<Usage> usage) {
+  /**
+   * Thinking time of one player. {@code overBudget} decisions exceeded the per-move limit and were
+   * discarded; {@code fallbacks} counts every move the fallback played instead (over budget, game
+   * budget exhausted, failed or illegal decision).
+   */
+  public record Usage(
+      PlayerColor color,
+      int decisions,
+      long wallNanos,
+      long cpuNanos,
+      long maxMoveWallNanos,
+      int overBudget,
+      int fallbacks) {}
+
+  public Usage usage(PlayerColor color) {
+    for (Usage u : usage) if (u.color() == color) return u;
+    throw new IllegalArgumentException(color + " did not play");
+  }
+}
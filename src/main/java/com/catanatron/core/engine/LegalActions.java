@@ -0,0 +1,309 @@
+package com.catanatron.core.engine;
+
+import com.catanatron.core.model.*;
+import com.catanatron.core.util.Bits;
+import com.catanatron.core.util.Decks;
+import java.util.Random;
+
+/**
+ * Lazy view over the legal actions of a state. {@link #reset(State)} computes how many actions each
+ * category contributes; individual actions are only built when asked for by index. The ordering is
+ * the one {@link MoveGeneration#generatePlayable(State)} returns.
+ *
+ * <p>Instances hold scratch buffers and are meant to be reused, one per thread.
+ */
+public final class LegalActions {
+  static final String[] RESOURCES = {"WOOD", "BRICK", "SHEEP", "WHEAT", "ORE"};
+  private static final int HAND = PlayerStateMap.FIRST_RESOURCE; // + resource ordinal
+  // Year of Plenty choices: 5 single cards, then 15 unordered pairs
+  static final String[][] YEAR_OF_PLENTY_CHOICES = yearOfPlentyChoices();
+  private static final int[][] YEAR_OF_PLENTY_FREQS = yearOfPlentyFreqs();
+
+  private static final int MAX_CATEGORIES = ActionType.values().length;
+
+  private State state;
+  private PlayerColor color;
+  private ActionSpace space;
+  private com.catanatron.core.map.CatanMap spaceMap;
+  private final ActionType[] types = new ActionType[MAX_CATEGORIES];
+  private final int[] counts = new int[MAX_CATEGORIES];
+  private int numCategories;
+  private int total;
+
+  private long[] settlementWords = new long[1]; // node bitsets, state.board.nodeWords() long
+  private long[] cityWords = new long[1];
+  private int nodeWords;
+  private int yearOfPlentyMask; // bit i: choice i is coverable by the bank
+  private int tradeMask; // bit give * 5 + get: maritime trade possible
+  private final int[] tradeRate = new int[Resource.COUNT];
+  // per offer shape (1:1, 2:1, 1:2), bit give * 5 + get: domestic offer possible
+  private final int[] offerMasks = new int[3];
+  private int acceptees; // bit i: seat i accepted the open offer
+  private int[] edgeIds = new int[0];
+  private int numEdges;
+
+  public LegalActions reset(State state) {
+    this.state = state;
+    this.color = state.currentColor();
+    if (spaceMap != state.map) {
+      space = ActionSpace.of(state.map);
+      spaceMap = state.map;
+    }
+    this.numCategories = 0;
+    this.total = 0;
+    this.numEdges = 0;
+    if (edgeIds.length < state.map.edgeA.length) edgeIds = new int[state.map.edgeA.length];
+    nodeWords = state.board.nodeWords();
+    if (settlementWords.length < nodeWords) {
+      settlementWords = new long[nodeWords];
+      cityWords = new long[nodeWords];
+    }
+    switch (state.currentPrompt) {
+      case PLAY_TURN -> {
+        if (MoveGeneration.get(state, color, PlayerStateMap.HAS_ROLLED) == 0) {
+          add(ActionType.ROLL, 1);
+          break;
+        }
+        add(ActionType.END_TURN, 1);
+        if (MoveGeneration.get(state, color, PlayerStateMap.SETTLEMENTS_AVAILABLE) > 0
+            && Costs.canAffordSettlement(state, color)) {
+          for (int w = 0; w < nodeWords; w++)
+            settlementWords[w] = state.board.buildableNodeWord(color, false, w);
+          add(ActionType.BUILD_SETTLEMENT, Bits.count(settlementWords, 0, nodeWords));
+        }
+        if (MoveGeneration.get(state, color, PlayerStateMap.CITIES_AVAILABLE) > 0
+            && Costs.canAffordCity(state, color)) {
+          for (int w = 0; w < nodeWords; w++)
+            cityWords[w] = state.board.settlementNodeWord(color, w);
+          add(ActionType.BUILD_CITY, Bits.count(cityWords, 0, nodeWords));
+        }
+        // Computed once: also gates Road Building below
+        numEdges = state.board.buildableEdgeIds(color, edgeIds);
+        boolean hasFreeRoads = state.isRoadBuilding && state.freeRoadsAvailable > 0;
+        if (hasFreeRoads || Costs.canAffordRoad(state, color)) {
+          add(ActionType.BUILD_ROAD, numEdges);
+        }
+        if (state.developmentCardsLeft() > 0
+            && MoveGeneration.get(state, color, HAND + Resource.SHEEP.ordinal()) >= 1
+            && MoveGeneration.get(state, color, HAND + Resource.WHEAT.ordinal()) >= 1
+            && MoveGeneration.get(state, color, HAND + Resource.ORE.ordinal()) >= 1) {
+          add(ActionType.BUY_DEVELOPMENT_CARD, 1);
+        }
+        if (MoveGeneration.canPlayDev(state, color, DevCard.YEAR_OF_PLENTY)) {
+          yearOfPlentyMask = 0;
+          for (int i = 0; i < YEAR_OF_PLENTY_CHOICES.length; i++) {
+            if (Decks.contains(state.bank, YEAR_OF_PLENTY_FREQS[i])) yearOfPlentyMask |= 1 << i;
+          }
+          add(ActionType.PLAY_YEAR_OF_PLENTY, Integer.bitCount(yearOfPlentyMask));
+        }
+        if (MoveGeneration.canPlayDev(state, color, DevCard.ROAD_BUILDING) && numEdges > 0) {
+          add(ActionType.PLAY_ROAD_BUILDING, 1);
+        }
+        if (MoveGeneration.canPlayDev(state, color, DevCard.KNIGHT)) {
+          add(ActionType.PLAY_KNIGHT_CARD, 1);
+        }
+        if (MoveGeneration.canPlayDev(state, color, DevCard.MONOPOLY)) {
+          add(ActionType.PLAY_MONOPOLY, RESOURCES.length);
+        }
+        // Maritime trades: per given resource, best rate from port access; bank must have the
+        // requested resource
+        int portBits = state.portAccess[state.currentPlayerIndex];
+        int bankMask = 0;
+        for (int r = 0; r < Resource.COUNT; r++) if (state.bank[r] > 0) bankMask |= 1 << r;
+        tradeMask = 0;
+        for (int r = 0; r < Resource.COUNT; r++) {
+          tradeRate[r] = Reducer.maritimeRate(portBits, r);
+          if (MoveGeneration.get(state, color, HAND + r) >= tradeRate[r]) {
+            tradeMask |= (bankMask & ~(1 << r)) << (r * Resource.COUNT);
+          }
+        }
+        add(ActionType.MARITIME_TRADE, Integer.bitCount(tradeMask));
+        addOffers();
+      }
+      case DECIDE_TRADE -> {
+        if (Reducer.canAffordAsk(state, state.currentPlayerIndex)) add(ActionType.ACCEPT_TRADE, 1);
+        add(ActionType.REJECT_TRADE, 1);
+      }
+      case DECIDE_ACCEPTEES -> {
+        acceptees = 0;
+        for (int i = 0; i < state.acceptees.length; i++) {
+          if (state.acceptees[i]) acceptees |= 1 << i;
+        }
+        add(ActionType.CONFIRM_TRADE, Integer.bitCount(acceptees));
+        add(ActionType.CANCEL_TRADE, 1);
+      }
+      case BUILD_INITIAL_SETTLEMENT -> {
+        for (int w = 0; w < nodeWords; w++)
+          settlementWords[w] = state.board.buildableNodeWord(color, true, w);
+        add(ActionType.BUILD_SETTLEMENT, Bits.count(settlementWords, 0, nodeWords));
+      }
+      case BUILD_INITIAL_ROAD -> {
+        // Only roads adjacent to the last initial settlement for this player
+        Integer lastSettlementNodeId = state.lastInitialSettlement.get(color);
+        int n = state.board.buildableEdgeIds(color, edgeIds);
+        for (int i = 0; i < n; i++) {
+          int edgeId = edgeIds[i];
+          if (lastSettlementNodeId == null
+              || state.map.edgeA[edgeId] == lastSettlementNodeId
+              || state.map.edgeB[edgeId] == lastSettlementNodeId) {
+            edgeIds[numEdges++] = edgeId;
+          }
+        }
+        add(ActionType.BUILD_ROAD, numEdges);
+      }
+      case DISCARD -> add(ActionType.DISCARD, 1);
+      case MOVE_ROBBER -> {
+        boolean robberOnLand = state.map.tilesById.containsKey(state.robberTileId);
+        add(ActionType.MOVE_ROBBER, state.map.landTileIds.length - (robberOnLand ? 1 : 0));
+      }
+    }
+    return this;
+  }
+
+  // Domestic offers of one resource kind for another, within the state's TradeOptions
+  private void addOffers() {
+    TradeOptions options = state.tradeOptions;
+    if (state.colors.size() < 2 || state.tradeOffersThisTurn >= options.maxOffersPerTurn()) return;
+    int ones = 0, twos = 0;
+    for (int r = 0; r < Resource.COUNT; r++) {
+      int inHand = MoveGeneration.get(state, color, HAND + r);
+      int others = ((1 << Resource.COUNT) - 1) & ~(1 << r);
+      if (inHand >= 1) ones |= others << (r * Resource.COUNT);
+      if (inHand >= 2) twos |= others << (r * Resource.COUNT);
+    }
+    offerMasks[ActionSpace.ONE_FOR_ONE] = options.oneForOne() ? ones : 0;
+    offerMasks[ActionSpace.TWO_FOR_ONE] = options.twoForOne() ? twos : 0;
+    offerMasks[ActionSpace.ONE_FOR_TWO] = options.oneForTwo() ? ones : 0;
+    int numOffers = 0;
+    for (int mask : offerMasks) numOffers += Integer.bitCount(mask);
+    add(ActionType.OFFER_TRADE, numOffers);
+  }
+
+  public int count() {
+    return total;
+  }
+
+  /** Number of legal actions of the given type. */
+  public int count(ActionType type) {
+    for (int c = 0; c < numCategories; c++) {
+      if (types[c] == type) return counts[c];
+    }
+    return 0;
+  }
+
+  /** Number of non-empty categories; actions of category c follow those of categories < c. */
+  public int categories() {
+    return numCategories;
+  }
+
+  public ActionType categoryType(int c) {
+    return types[c];
+  }
+
+  public int categoryCount(int c) {
+    return counts[c];
+  }
+
+  public ActionType typeAt(int k) {
+    checkIndex(k);
+    int c = 0;
+    while (k >= counts[c]) k -= counts[c++];
+    return types[c];
+  }
+
+  /** The k-th legal action, built without materializing the others. */
+  public Action<?> get(int k) {
+    return space.action(color, idAt(k));
+  }
+
+  /** {@link ActionSpace} id of the k-th legal action. */
+  public int idAt(int k) {
+    checkIndex(k);
+    int c = 0;
+    while (k >= counts[c]) k -= counts[c++];
+    return switch (types[c]) {
+      case ROLL -> ActionSpace.ROLL;
+      case END_TURN -> ActionSpace.END_TURN;
+      case DISCARD -> ActionSpace.DISCARD;
+      case BUY_DEVELOPMENT_CARD -> ActionSpace.BUY_DEVELOPMENT_CARD;
+      case PLAY_KNIGHT_CARD -> ActionSpace.PLAY_KNIGHT_CARD;
+      case PLAY_ROAD_BUILDING -> ActionSpace.PLAY_ROAD_BUILDING;
+      case BUILD_SETTLEMENT -> space.settlementId(Bits.nth(settlementWords, 0, nodeWords, k));
+      case BUILD_CITY -> space.cityId(Bits.nth(cityWords, 0, nodeWords, k));
+      case BUILD_ROAD -> space.roadId(edgeIds[k]);
+      case PLAY_YEAR_OF_PLENTY -> space.yearOfPlentyBase + nthSetBit(yearOfPlentyMask, k);
+      case MARITIME_TRADE -> {
+        int bit = nthSetBit(tradeMask, k);
+        int give = bit / Resource.COUNT;
+        yield space.maritimeId(give, bit % Resource.COUNT, tradeRate[give]);
+      }
+      case PLAY_MONOPOLY -> space.monopolyBase + k;
+      case MOVE_ROBBER -> space.robberId(robberTargetAt(k));
+      case OFFER_TRADE -> {
+        int shape = 0;
+        while (k >= Integer.bitCount(offerMasks[shape])) k -= Integer.bitCount(offerMasks[shape++]);
+        int bit = nthSetBit(offerMasks[shape], k);
+        yield space.offerId(shape, bit / Resource.COUNT, bit % Resource.COUNT);
+      }
+      case ACCEPT_TRADE -> space.acceptTrade;
+      case REJECT_TRADE -> space.rejectTrade;
+      case CANCEL_TRADE -> space.cancelTrade;
+      case CONFIRM_TRADE -> space.confirmId(state.colors.get(nthSetBit(acceptees, k)));
+      default -> throw new IllegalStateException("not enumerated: " + types[c]);
+    };
+  }
+
+  public ActionSpace space() {
+    return space;
+  }
+
+  public Action<?> sample(Random rng) {
+    if (total == 0) throw new IllegalStateException("no legal actions");
+    return get(rng.nextInt(total));
+  }
+
+  private int robberTargetAt(int k) {
+    int[] tileIds = state.map.landTileIds;
+    for (int tileId : tileIds) {
+      if (tileId == state.robberTileId) continue;
+      if (k-- == 0) return tileId;
+    }
+    throw new IndexOutOfBoundsException();
+  }
+
+  private void add(ActionType type, int count) {
+    if (count <= 0) return;
+    types[numCategories] = type;
+    counts[numCategories++] = count;
+    total += count;
+  }
+
+  private void checkIndex(int k) {
+    if (k < 0 || k >= total) throw new IndexOutOfBoundsException(k + " of " + total);
+  }
+
+  static int nthSetBit(long mask, int k) {
+    for (int i = 0; i < k; i++) mask &= mask - 1;
+    return Long.numberOfTrailingZeros(mask);
+  }
+
+  private static int[][] yearOfPlentyFreqs() {
+    int[][] freqs = new int[YEAR_OF_PLENTY_CHOICES.length][Resource.COUNT];
+    for (int i = 0; i < freqs.length; i++) {
+      for (String r : YEAR_OF_PLENTY_CHOICES[i]) freqs[i][Decks.index(Resource.valueOf(r))]++;
+    }
+    return freqs;
+  }
+
+  private static String[][] yearOfPlentyChoices() {
+    String[][] choices = new String[20][];
+    int n = 0;
+    for (String resource : RESOURCES) choices[n++] = new String[] {resource};
+    for (int i = 0; i < RESOURCES.length; i++) {
+      for (int j = i; j < RESOURCES.length; j++) {
+        choices[n++] = new String[] {RESOURCES[i], RESOURCES[j]};
+      }
+    }
+    return choices;
+  }
+}
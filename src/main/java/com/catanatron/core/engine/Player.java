@@ -3,6 +3,7 @@ package com.catanatron.core.engine;
 import com.catanatron.core.model.Action;
 import com.catanatron.core.model.PlayerColor;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 public abstract class Player {
   public final PlayerColor color;
@@ -15,6 +16,15 @@ public abstract class Player {
 
   public abstract Action<?> decide(Game game, List<Action<?>> playable);
 
+  /**
+   * Non-blocking variant of {@link #decide} used by {@link AsyncGameRunner}. The default decides
+   * synchronously; players that wait on something slow should override it and return at once.
+   */
+  public CompletableFuture<Action<?>> decideAsync(Game game, List<Action<?>> playable) {
+    return CompletableFuture.completedFuture(decide(game, playable));
+  }
+
+  /** Forgets the last game; {@link Game#reset} calls it before a reused game starts. */
   public void resetState() {}
 
   @Override
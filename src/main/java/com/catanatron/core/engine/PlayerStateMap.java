@@ -0,0 +1,281 @@
+package com.catanatron.core.engine;
+
+import com.catanatron.core.model.PlayerColor;
+import com.catanatron.core.model.Resource;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * The per-player counters of a {@link State} ("P0_WOOD_IN_HAND", ...), stored in one {@code int[]}
+ * but readable and writable as a {@code Map}. Every seat always has every counter of {@link
+ * #FIELDS}; other keys may be added and live in a side map.
+ *
+ * <p>Writes keep derived quantities current, so that hot checks are field reads: each seat's hand
+ * size, and the winner, recomputed only after a write to a counter it depends on.
+ */
+public final class PlayerStateMap extends AbstractMap<String, Integer> {
+  /** Counter suffixes, in storage order; a seat's counters are contiguous. */
+  public static final String[] FIELDS = {
+    "_VICTORY_POINTS",
+    "_ACTUAL_VICTORY_POINTS",
+    "_HAS_ROLLED",
+    "_ROADS_AVAILABLE",
+    "_SETTLEMENTS_AVAILABLE",
+    "_CITIES_AVAILABLE",
+    "_HAS_ROAD",
+    "_LONGEST_ROAD_LENGTH",
+    "_HAS_ARMY",
+    "_HAS_PLAYED_DEVELOPMENT_CARD_IN_TURN",
+    // Dev cards in hand
+    "_KNIGHT_IN_HAND",
+    "_YEAR_OF_PLENTY_IN_HAND",
+    "_ROAD_BUILDING_IN_HAND",
+    "_MONOPOLY_IN_HAND",
+    "_VICTORY_POINT_IN_HAND",
+    // Played dev counters
+    "_PLAYED_KNIGHT",
+    "_PLAYED_YEAR_OF_PLENTY",
+    "_PLAYED_ROAD_BUILDING",
+    "_PLAYED_MONOPOLY",
+    // Owned at start flags
+    "_KNIGHT_OWNED_AT_START",
+    "_YEAR_OF_PLENTY_OWNED_AT_START",
+    "_ROAD_BUILDING_OWNED_AT_START",
+    "_MONOPOLY_OWNED_AT_START",
+    // Resources in hand, in Resource order
+    "_WOOD_IN_HAND",
+    "_BRICK_IN_HAND",
+    "_SHEEP_IN_HAND",
+    "_WHEAT_IN_HAND",
+    "_ORE_IN_HAND"
+  };
+
+  public static final int VICTORY_POINTS = 0;
+  public static final int ACTUAL_VICTORY_POINTS = 1;
+  public static final int HAS_ROLLED = 2;
+  public static final int ROADS_AVAILABLE = 3;
+  public static final int SETTLEMENTS_AVAILABLE = 4;
+  public static final int CITIES_AVAILABLE = 5;
+  public static final int HAS_ROAD = 6;
+  public static final int LONGEST_ROAD_LENGTH = 7;
+  public static final int HAS_ARMY = 8;
+  public static final int HAS_PLAYED_DEVELOPMENT_CARD_IN_TURN = 9;
+  public static final int FIRST_RESOURCE = 23;
+  public static final int WINNING_POINTS = 10;
+  private static final int STRIDE = FIELDS.length;
+  private static final int[] INITIAL = new int[STRIDE];
+  // "P{seat}{field}" <-> seat * STRIDE + field, for every seat a game can have
+  private static final Map<String, Integer> INDEX = new HashMap<>();
+  private static final String[] KEYS = new String[PlayerColor.values().length * STRIDE];
+
+  static {
+    INITIAL[ROADS_AVAILABLE] = 15;
+    INITIAL[SETTLEMENTS_AVAILABLE] = 5;
+    INITIAL[CITIES_AVAILABLE] = 4;
+    for (int seat = 0; seat < PlayerColor.values().length; seat++) {
+      for (int f = 0; f < STRIDE; f++) {
+        KEYS[seat * STRIDE + f] = "P" + seat + FIELDS[f];
+        INDEX.put(KEYS[seat * STRIDE + f], seat * STRIDE + f);
+      }
+    }
+  }
+
+  /** Off by default; when on, {@link State} cross-checks derived values after every action. */
+  public static boolean checkDerived = Boolean.getBoolean("catanatron.checkDerived");
+
+  private final int seats;
+  private final int[] values;
+  private final int[] handSizes;
+  private int winner = -2; // seat, -1 for none, -2 to recompute
+  private Map<String, Integer> extra; // keys outside FIELDS; null while empty
+
+  public PlayerStateMap(int seats) {
+    this.seats = seats;
+    this.values = new int[seats * STRIDE];
+    this.handSizes = new int[seats];
+    reset();
+  }
+
+  private PlayerStateMap(PlayerStateMap other) {
+    this.seats = other.seats;
+    this.values = other.values.clone();
+    this.handSizes = other.handSizes.clone();
+    this.winner = other.winner;
+    this.extra = other.extra == null ? null : new HashMap<>(other.extra);
+  }
+
+  public PlayerStateMap copy() {
+    return new PlayerStateMap(this);
+  }
+
+  /** Back to the counters of a new game; added keys are dropped. */
+  public void reset() {
+    for (int seat = 0; seat < seats; seat++) {
+      System.arraycopy(INITIAL, 0, values, seat * STRIDE, STRIDE);
+    }
+    Arrays.fill(handSizes, 0);
+    winner = -1;
+    extra = null;
+  }
+
+  /** Index into {@link #FIELDS} of a counter suffix such as {@code "_WOOD_IN_HAND"}. */
+  public static int field(String suffix) {
+    for (int f = 0; f < STRIDE; f++) if (FIELDS[f].equals(suffix)) return f;
+    throw new IllegalArgumentException("no counter " + suffix);
+  }
+
+  /** Counter {@code field} (an index into {@link #FIELDS}) of {@code seat}. */
+  public int get(int seat, int field) {
+    return values[seat * STRIDE + field];
+  }
+
+  public void set(int seat, int field, int value) {
+    write(seat * STRIDE + field, value);
+  }
+
+  public void add(int seat, int field, int delta) {
+    int i = seat * STRIDE + field;
+    write(i, values[i] + delta);
+  }
+
+  /** Resource cards in {@code seat}'s hand. */
+  public int handSize(int seat) {
+    return handSizes[seat];
+  }
+
+  /**
+   * Seat that has won, or -1: ten actual victory points, or (a simplification) no settlements and
+   * cities left to place.
+   */
+  public int winner() {
+    if (winner == -2) winner = computeWinner();
+    return winner;
+  }
+
+  /** Recomputes every derived value from the counters and fails on any difference. */
+  public void verifyDerived() {
+    for (int seat = 0; seat < seats; seat++) {
+      int hand = 0;
+      for (int r = 0; r < Resource.COUNT; r++) hand += values[seat * STRIDE + FIRST_RESOURCE + r];
+      if (hand != handSizes[seat])
+        throw new IllegalStateException(
+            "seat " + seat + " hand size " + handSizes[seat] + ", counted " + hand);
+    }
+    if (winner != -2 && winner != computeWinner())
+      throw new IllegalStateException("cached winner " + winner + ", computed " + computeWinner());
+  }
+
+  private int computeWinner() {
+    for (int seat = 0; seat < seats; seat++) {
+      int base = seat * STRIDE;
+      if (values[base + ACTUAL_VICTORY_POINTS] >= WINNING_POINTS) return seat;
+      if (values[base + SETTLEMENTS_AVAILABLE] == 0 && values[base + CITIES_AVAILABLE] == 0)
+        return seat;
+    }
+    return -1;
+  }
+
+  private void write(int i, int value) {
+    int field = i % STRIDE;
+    if (field >= FIRST_RESOURCE) {
+      handSizes[i / STRIDE] += value - values[i];
+    } else if (field == ACTUAL_VICTORY_POINTS
+        || field == SETTLEMENTS_AVAILABLE
+        || field == CITIES_AVAILABLE) {
+      winner = -2;
+    }
+    values[i] = value;
+  }
+
+  // Storage index of a counter key, or -1 if it is not one of this map's counters
+  private int index(Object key) {
+    Integer i = INDEX.get(key);
+    return i != null && i < values.length ? i : -1;
+  }
+
+  @Override
+  public Integer get(Object key) {
+    int i = index(key);
+    if (i >= 0) return values[i];
+    return extra == null ? null : extra.get(key);
+  }
+
+  @Override
+  public boolean containsKey(Object key) {
+    return index(key) >= 0 || (extra != null && extra.containsKey(key));
+  }
+
+  @Override
+  public Integer put(String key, Integer value) {
+    int i = index(key);
+    if (i < 0) {
+      if (extra == null) extra = new HashMap<>();
+      return extra.put(key, value);
+    }
+    int old = values[i];
+    write(i, value);
+    return old;
+  }
+
+  @Override
+  public Integer remove(Object key) {
+    if (index(key) >= 0) throw new UnsupportedOperationException("counters cannot be removed");
+    return extra == null ? null : extra.remove(key);
+  }
+
+  @Override
+  public void clear() {
+    throw new UnsupportedOperationException("counters cannot be removed; use reset()");
+  }
+
+  @Override
+  public int size() {
+    return values.length + (extra == null ? 0 : extra.size());
+  }
+
+  @Override
+  public Set<Entry<String, Integer>> entrySet() {
+    return new AbstractSet<>() {
+      @Override
+      public int size() {
+        return PlayerStateMap.this.size();
+      }
+
+      @Override
+      public Iterator<Entry<String, Integer>> iterator() {
+        Iterator<Entry<String, Integer>> rest = extra == null ? null : extra.entrySet().iterator();
+        return new Iterator<>() {
+          int next = 0;
+
+          @Override
+          public boolean hasNext() {
+            return next < values.length || (rest != null && rest.hasNext());
+          }
+
+          @Override
+          public Entry<String, Integer> next() {
+            if (next >= values.length) {
+              if (rest == null) throw new NoSuchElementException();
+              return rest.next();
+            }
+            int i = next++;
+            String key = KEYS[i];
+            return new SimpleEntry<>(key, values[i]) {
+              @Override
+              public Integer setValue(Integer value) {
+                super.setValue(value);
+                return put(key, value);
+              }
+            };
+          }
+        };
+      }
+    };
+  }
+}
@@ -1,14 +1,62 @@
 package com.catanatron.core.engine;
 
+import com.catanatron.core.map.CatanMap;
 import com.catanatron.core.model.*;
-import java.util.Random;
+import com.catanatron.core.util.Decks;
 
 public final class Reducer {
-  private Reducer() {}
+  private static final DevCard[] DEV_CARDS = DevCard.values();
+  private static final Resource[] RESOURCE_TYPES = Resource.values();
+  private static final int HAND = PlayerStateMap.FIRST_RESOURCE; // + resource ordinal
+  private static final int HAS_PLAYED_DEV = PlayerStateMap.HAS_PLAYED_DEVELOPMENT_CARD_IN_TURN;
+  private static final int VP = PlayerStateMap.VICTORY_POINTS;
+  private static final int ACTUAL_VP = PlayerStateMap.ACTUAL_VICTORY_POINTS;
+  // PlayerStateMap fields by DevCard ordinal; victory points are never played
+  static final int[] DEV_IN_HAND = new int[DEV_CARDS.length];
+  static final int[] DEV_PLAYED = new int[DEV_CARDS.length];
+  static final int[] DEV_OWNED_AT_START = new int[DEV_CARDS.length];
+  // Every roll's dice, handed out as the ROLL result instead of a new array per roll
+  private static final int[][][] DICE = new int[6][6][];
+
+  static {
+    for (DevCard card : DEV_CARDS) {
+      DEV_IN_HAND[card.ordinal()] = PlayerStateMap.field("_" + card.name() + "_IN_HAND");
+      if (card != DevCard.VICTORY_POINT) {
+        DEV_PLAYED[card.ordinal()] = PlayerStateMap.field("_PLAYED_" + card.name());
+        DEV_OWNED_AT_START[card.ordinal()] =
+            PlayerStateMap.field("_" + card.name() + "_OWNED_AT_START");
+      }
+    }
+    for (int d1 = 1; d1 <= 6; d1++)
+      for (int d2 = 1; d2 <= 6; d2++) DICE[d1 - 1][d2 - 1] = new int[] {d1, d2};
+  }
 
-  private static final Random RNG = new Random();
+  private Reducer() {}
 
   public static ActionRecord<?> apply(State state, Action<?> action) {
+    Object result = step(state, action);
+    // The record gets its own dice, so editing it cannot change what later rolls return
+    if (action.type == ActionType.ROLL) result = ((int[]) result).clone();
+    // Dice and purchases are recorded with their outcome as the action's value
+    if (action.type == ActionType.ROLL || action.type == ActionType.BUY_DEVELOPMENT_CARD)
+      return new ActionRecord<>(new Action<>(action.color, action.type, result), result);
+    return new ActionRecord<>(action, result);
+  }
+
+  /**
+   * Applies {@code action} like {@link #apply} without building its record, for callers that
+   * discard it (rollouts, search): the result is what the record would hold, i.e. the dice, the
+   * card drawn or the resource stolen, else null. Rolled dice are shared arrays that must not be
+   * modified. Only actions that carry a value to parse (Year of Plenty, maritime trades, offers)
+   * allocate.
+   */
+  public static Object step(State state, Action<?> action) {
+    Object result = dispatch(state, action);
+    if (PlayerStateMap.checkDerived) state.playerState.verifyDerived();
+    return result;
+  }
+
+  private static Object dispatch(State state, Action<?> action) {
     return switch (action.type) {
       case END_TURN -> endTurn(state, action);
       case ROLL -> roll(state, action);
@@ -22,95 +70,121 @@ public final class Reducer {
       case PLAY_ROAD_BUILDING -> playRoadBuilding(state, action);
       case PLAY_KNIGHT_CARD -> playKnight(state, action);
       case PLAY_MONOPOLY -> playMonopoly(state, action);
-      default -> new ActionRecord<>(action, null);
+      case MARITIME_TRADE -> maritimeTrade(state, action);
+      case OFFER_TRADE -> offerTrade(state, action);
+      case ACCEPT_TRADE -> decideTrade(state, action, true);
+      case REJECT_TRADE -> decideTrade(state, action, false);
+      case CONFIRM_TRADE -> confirmTrade(state, action);
+      case CANCEL_TRADE -> cancelTrade(state, action);
+      default -> null;
     };
   }
 
-  private static ActionRecord<?> endTurn(State s, Action<?> a) {
+  private static Object endTurn(State s, Action<?> a) {
     // Clean per-turn flags
-    set(s, s.currentColor(), "_HAS_ROLLED", 0);
-    // Reset dev-card per-turn flag and set owned-at-start markers for next turn
     int playerIndex = s.currentPlayerIndex;
-    s.playerState.put("P" + playerIndex + "_HAS_PLAYED_DEVELOPMENT_CARD_IN_TURN", 0);
+    s.playerState.set(playerIndex, PlayerStateMap.HAS_ROLLED, 0);
+    // Reset dev-card per-turn flag and set owned-at-start markers for next turn
+    s.playerState.set(playerIndex, HAS_PLAYED_DEV, 0);
     // Owned-at-start means playable next turn if in hand
-    for (var card :
-        new DevCard[] {
-          DevCard.KNIGHT, DevCard.YEAR_OF_PLENTY, DevCard.ROAD_BUILDING, DevCard.MONOPOLY
-        }) {
-      String base = "P" + playerIndex + "_" + card.name();
-      boolean inHand = s.playerState.get(base + "_IN_HAND") > 0;
-      s.playerState.put(base + "_OWNED_AT_START", inHand ? 1 : 0);
+    for (DevCard card : DEV_CARDS) {
+      if (card == DevCard.VICTORY_POINT) continue;
+      boolean inHand = s.playerState.get(playerIndex, DEV_IN_HAND[card.ordinal()]) > 0;
+      s.playerState.set(playerIndex, DEV_OWNED_AT_START[card.ordinal()], inHand ? 1 : 0);
     }
     // Advance
     int nextPlayerIndex = (s.currentPlayerIndex + 1) % s.colors.size();
     s.currentPlayerIndex = nextPlayerIndex;
     s.currentTurnIndex = nextPlayerIndex;
     s.numTurns += 1;
+    s.tradeOffersThisTurn = 0;
     s.currentPrompt = ActionPrompt.PLAY_TURN;
-    return new ActionRecord<>(a, null);
+    return null;
   }
 
-  private static ActionRecord<?> buyDev(State s, Action<?> a) {
-    if (s.developmentDeck.isEmpty()) throw new IllegalStateException("no dev cards");
+  private static Object buyDev(State s, Action<?> a) {
+    if (s.developmentCardsLeft() == 0) throw new IllegalStateException("no dev cards");
     // Cost: 1 sheep, 1 wheat, 1 ore
-    if (s.playerState.get("P" + s.currentPlayerIndex + "_SHEEP_IN_HAND") < 1
-        || s.playerState.get("P" + s.currentPlayerIndex + "_WHEAT_IN_HAND") < 1
-        || s.playerState.get("P" + s.currentPlayerIndex + "_ORE_IN_HAND") < 1) {
+    int idx = s.currentPlayerIndex;
+    if (s.playerState.get(idx, HAND + Resource.SHEEP.ordinal()) < 1
+        || s.playerState.get(idx, HAND + Resource.WHEAT.ordinal()) < 1
+        || s.playerState.get(idx, HAND + Resource.ORE.ordinal()) < 1) {
       throw new IllegalStateException("cannot afford dev card");
     }
-    s.playerState.put(
-        "P" + s.currentPlayerIndex + "_SHEEP_IN_HAND",
-        s.playerState.get("P" + s.currentPlayerIndex + "_SHEEP_IN_HAND") - 1);
-    s.playerState.put(
-        "P" + s.currentPlayerIndex + "_WHEAT_IN_HAND",
-        s.playerState.get("P" + s.currentPlayerIndex + "_WHEAT_IN_HAND") - 1);
-    s.playerState.put(
-        "P" + s.currentPlayerIndex + "_ORE_IN_HAND",
-        s.playerState.get("P" + s.currentPlayerIndex + "_ORE_IN_HAND") - 1);
-
-    var drawnCard = s.developmentDeck.remove(s.developmentDeck.size() - 1);
-    String inHandKey = "P" + s.currentPlayerIndex + "_" + drawnCard.name() + "_IN_HAND";
-    s.playerState.put(inHandKey, s.playerState.get(inHandKey) + 1);
+    s.playerState.add(idx, HAND + Resource.SHEEP.ordinal(), -1);
+    s.playerState.add(idx, HAND + Resource.WHEAT.ordinal(), -1);
+    s.playerState.add(idx, HAND + Resource.ORE.ordinal(), -1);
+    s.bank[Decks.index(Resource.SHEEP)] += 1;
+    s.bank[Decks.index(Resource.WHEAT)] += 1;
+    s.bank[Decks.index(Resource.ORE)] += 1;
+
+    var drawnCard = drawDevelopmentCard(s);
+    s.playerState.add(idx, DEV_IN_HAND[drawnCard.ordinal()], +1);
     if (drawnCard == DevCard.VICTORY_POINT) {
-      addByIndex(s, s.currentPlayerIndex, "_ACTUAL_VICTORY_POINTS", +1);
+      s.playerState.add(idx, ACTUAL_VP, +1);
+    }
+    return drawnCard;
+  }
+
+  // Picks a card with probability proportional to what is left and removes it from the deck
+  private static DevCard drawDevelopmentCard(State s) {
+    int left = s.developmentCardsLeft();
+    int k;
+    if (s.isDeckSeeded) {
+      // The n-th draw of a seeded deck hashes (seed, n), independent of s.rng
+      int drawn = Decks.DEVELOPMENT_DECK_SIZE - left;
+      long h = (s.deckSeed + drawn) * 0x9E3779B97F4A7C15L;
+      h = (h ^ (h >>> 31)) * 0x94D049BB133111EBL;
+      h ^= h >>> 29;
+      k = (int) Math.floorMod(h, (long) left);
+    } else {
+      k = s.rng.nextInt(left);
     }
-    return new ActionRecord<>(new Action<>(a.color, a.type, drawnCard), drawnCard);
+    for (DevCard card : DEV_CARDS) {
+      k -= s.developmentDeck[card.ordinal()];
+      if (k < 0) {
+        s.developmentDeck[card.ordinal()]--;
+        return card;
+      }
+    }
+    throw new IllegalStateException("development deck counts out of sync");
   }
 
-  private static ActionRecord<?> playYearOfPlenty(State s, Action<?> a) {
+  private static Object playYearOfPlenty(State s, Action<?> a) {
     // value is String[]{resourceName} size 1 or 2
     String[] pick = (String[]) a.value;
     if (pick.length == 0 || pick.length > 2)
       throw new IllegalArgumentException("invalid YOP selection");
-    for (String r : pick) add(s, a.color, "_" + r + "_IN_HAND", +1);
+    int first = Resource.valueOf(pick[0]).ordinal();
+    int second = pick.length == 2 ? Resource.valueOf(pick[1]).ordinal() : -1;
+    if (s.bank[first] < (second == first ? 2 : 1) || (second >= 0 && s.bank[second] < 1))
+      throw new IllegalStateException("bank cannot give " + java.util.Arrays.toString(pick));
+    for (String r : pick) addResource(s, a.color, Resource.valueOf(r), +1);
     markDevPlayed(s, a.color, DevCard.YEAR_OF_PLENTY);
-    return new ActionRecord<>(a, null);
+    return null;
   }
 
-  private static ActionRecord<?> playRoadBuilding(State s, Action<?> a) {
+  private static Object playRoadBuilding(State s, Action<?> a) {
     s.isRoadBuilding = true;
     s.freeRoadsAvailable = 2;
     markDevPlayed(s, a.color, DevCard.ROAD_BUILDING);
-    return new ActionRecord<>(a, null);
+    return null;
   }
 
-  private static ActionRecord<?> playKnight(State s, Action<?> a) {
+  private static Object playKnight(State s, Action<?> a) {
     // Set prompt to move robber; increase played knight count; handle largest army later
     s.currentPrompt = ActionPrompt.MOVE_ROBBER;
     int playerIndex = s.colors.indexOf(a.color);
-    s.playerState.put(
-        "P" + playerIndex + "_PLAYED_KNIGHT",
-        s.playerState.get("P" + playerIndex + "_PLAYED_KNIGHT") + 1);
     markDevPlayed(s, a.color, DevCard.KNIGHT);
     maintainLargestArmy(s, playerIndex);
-    return new ActionRecord<>(a, null);
+    return null;
   }
 
   private static void maintainLargestArmy(State s, int idxCurrent) {
     int bestIdx = -1;
     int bestCount = 0;
     for (int i = 0; i < s.colors.size(); i++) {
-      int count = s.playerState.get("P" + i + "_PLAYED_KNIGHT");
+      int count = s.playerState.get(i, DEV_PLAYED[DevCard.KNIGHT.ordinal()]);
       if (count > bestCount) {
         bestCount = count;
         bestIdx = i;
@@ -119,68 +193,178 @@ public final class Reducer {
     // Threshold of 3 knights
     int prevIdx = -1;
     for (int i = 0; i < s.colors.size(); i++)
-      if (s.playerState.get("P" + i + "_HAS_ARMY") == 1) {
+      if (s.playerState.get(i, PlayerStateMap.HAS_ARMY) == 1) {
         prevIdx = i;
         break;
       }
-    for (int i = 0; i < s.colors.size(); i++) s.playerState.put("P" + i + "_HAS_ARMY", 0);
+    for (int i = 0; i < s.colors.size(); i++) s.playerState.set(i, PlayerStateMap.HAS_ARMY, 0);
     if (bestCount >= 3 && bestIdx >= 0) {
-      s.playerState.put("P" + bestIdx + "_HAS_ARMY", 1);
+      s.playerState.set(bestIdx, PlayerStateMap.HAS_ARMY, 1);
       if (prevIdx != bestIdx) {
         if (prevIdx >= 0) {
-          addByIndex(s, prevIdx, "_VICTORY_POINTS", -2);
-          addByIndex(s, prevIdx, "_ACTUAL_VICTORY_POINTS", -2);
+          addVictoryPoints(s, prevIdx, -2);
         }
-        addByIndex(s, bestIdx, "_VICTORY_POINTS", +2);
-        addByIndex(s, bestIdx, "_ACTUAL_VICTORY_POINTS", +2);
+        addVictoryPoints(s, bestIdx, +2);
       }
     } else {
       if (prevIdx >= 0) {
-        addByIndex(s, prevIdx, "_VICTORY_POINTS", -2);
-        addByIndex(s, prevIdx, "_ACTUAL_VICTORY_POINTS", -2);
+        addVictoryPoints(s, prevIdx, -2);
       }
     }
   }
 
-  private static ActionRecord<?> playMonopoly(State s, Action<?> a) {
-    String resource = (String) a.value;
+  private static Object playMonopoly(State s, Action<?> a) {
+    int field = HAND + Resource.valueOf((String) a.value).ordinal();
     int idx = s.colors.indexOf(a.color);
     int total = 0;
     // For all opponents, collect all of that resource
     for (int i = 0; i < s.colors.size(); i++) {
       if (i == idx) continue;
-      String key = "P" + i + "_" + resource + "_IN_HAND";
-      int have = s.playerState.get(key);
-      if (have > 0) {
-        s.playerState.put(key, 0);
-        total += have;
-      }
+      total += s.playerState.get(i, field);
+      s.playerState.set(i, field, 0);
     }
-    s.playerState.put(
-        "P" + idx + "_" + resource + "_IN_HAND",
-        s.playerState.get("P" + idx + "_" + resource + "_IN_HAND") + total);
+    s.playerState.add(idx, field, total);
     markDevPlayed(s, a.color, DevCard.MONOPOLY);
-    return new ActionRecord<>(a, null);
+    return null;
   }
 
   private static void markDevPlayed(State s, PlayerColor c, DevCard card) {
     int idx = s.colors.indexOf(c);
-    s.playerState.put("P" + idx + "_HAS_PLAYED_DEVELOPMENT_CARD_IN_TURN", 1);
+    s.playerState.set(idx, HAS_PLAYED_DEV, 1);
     // consume one from hand
-    String key = "P" + idx + "_" + card.name() + "_IN_HAND";
-    s.playerState.put(key, s.playerState.get(key) - 1);
+    s.playerState.add(idx, DEV_IN_HAND[card.ordinal()], -1);
+    s.playerState.add(idx, DEV_PLAYED[card.ordinal()], +1);
   }
 
-  private static ActionRecord<?> roll(State s, Action<?> a) {
-    set(s, s.currentColor(), "_HAS_ROLLED", 1);
+  private static Object maritimeTrade(State s, Action<?> a) {
+    // value is String[]: `rate` copies of the given resource followed by the requested one
+    String[] trade = (String[]) a.value;
+    int rate = trade.length - 1;
+    Resource give = Resource.valueOf(trade[0]);
+    Resource get = Resource.valueOf(trade[rate]);
+    for (int i = 1; i < rate; i++) {
+      if (!trade[i].equals(trade[0]))
+        throw new IllegalArgumentException("mixed trade " + java.util.Arrays.toString(trade));
+    }
+    int idx = s.colors.indexOf(a.color);
+    if (give == get || rate < maritimeRate(s.portAccess[idx], Decks.index(give)) || rate > 4)
+      throw new IllegalArgumentException(
+          "invalid maritime trade " + java.util.Arrays.toString(trade));
+    if (s.playerState.get(idx, HAND + give.ordinal()) < rate)
+      throw new IllegalStateException("cannot afford trade " + java.util.Arrays.toString(trade));
+    if (s.bank[Decks.index(get)] < 1) throw new IllegalStateException("bank has no " + get);
+    addResource(s, a.color, give, -rate);
+    addResource(s, a.color, get, +1);
+    return null;
+  }
+
+  private static Object offerTrade(State s, Action<?> a) {
+    // value is int[10]: offered counts (WOOD..ORE) then asked counts
+    int[] offer = (int[]) a.value;
+    if (offer.length != 2 * Resource.COUNT) throw new IllegalArgumentException("invalid offer");
+    int idx = s.colors.indexOf(a.color);
+    int given = 0, asked = 0;
+    for (int r = 0; r < Resource.COUNT; r++) {
+      if (offer[r] < 0 || offer[Resource.COUNT + r] < 0)
+        throw new IllegalArgumentException("negative offer");
+      if (offer[r] > 0 && offer[Resource.COUNT + r] > 0)
+        throw new IllegalArgumentException("cannot offer and ask the same resource");
+      if (s.playerState.get(idx, HAND + r) < offer[r])
+        throw new IllegalStateException("cannot afford offer");
+      given += offer[r];
+      asked += offer[Resource.COUNT + r];
+    }
+    if (given == 0 || asked == 0) throw new IllegalArgumentException("offer must give and ask");
+    if (s.colors.size() < 2) throw new IllegalStateException("nobody to trade with");
+    if (s.tradeOffersThisTurn >= s.tradeOptions.maxOffersPerTurn())
+      throw new IllegalStateException("no trade offers left this turn");
+    System.arraycopy(offer, 0, s.currentTradeOffer, 0, offer.length);
+    java.util.Arrays.fill(s.acceptees, false);
+    s.isResolvingTrade = true;
+    s.tradeOffersThisTurn += 1;
+    s.currentPlayerIndex = (s.currentTurnIndex + 1) % s.colors.size();
+    s.currentPrompt = ActionPrompt.DECIDE_TRADE;
+    return null;
+  }
+
+  private static Object decideTrade(State s, Action<?> a, boolean accept) {
+    int idx = s.currentPlayerIndex;
+    if (accept) {
+      if (!canAffordAsk(s, idx)) throw new IllegalStateException("cannot afford trade");
+      s.acceptees[idx] = true;
+    }
+    int next = (idx + 1) % s.colors.size();
+    if (next != s.currentTurnIndex) {
+      s.currentPlayerIndex = next;
+      return null;
+    }
+    // Everybody answered; nothing to confirm if nobody accepted
+    s.currentPlayerIndex = s.currentTurnIndex;
+    boolean anyAccepted = false;
+    for (boolean accepted : s.acceptees) anyAccepted |= accepted;
+    if (anyAccepted) {
+      s.currentPrompt = ActionPrompt.DECIDE_ACCEPTEES;
+    } else {
+      resetTrade(s);
+    }
+    return null;
+  }
+
+  static boolean canAffordAsk(State s, int playerIndex) {
+    for (int r = 0; r < Resource.COUNT; r++) {
+      int asked = s.currentTradeOffer[Resource.COUNT + r];
+      if (asked > 0 && s.playerState.get(playerIndex, HAND + r) < asked) return false;
+    }
+    return true;
+  }
+
+  private static Object confirmTrade(State s, Action<?> a) {
+    PlayerColor partner = (PlayerColor) a.value;
+    int partnerIdx = s.colors.indexOf(partner);
+    if (partnerIdx < 0 || !s.acceptees[partnerIdx])
+      throw new IllegalStateException(partner + " did not accept");
+    int offererIdx = s.currentTurnIndex;
+    for (int r = 0; r < Resource.COUNT; r++) {
+      int given = s.currentTradeOffer[r];
+      int asked = s.currentTradeOffer[Resource.COUNT + r];
+      s.playerState.add(offererIdx, HAND + r, asked - given);
+      s.playerState.add(partnerIdx, HAND + r, given - asked);
+    }
+    resetTrade(s);
+    return null;
+  }
+
+  private static Object cancelTrade(State s, Action<?> a) {
+    resetTrade(s);
+    return null;
+  }
+
+  private static void resetTrade(State s) {
+    s.isResolvingTrade = false;
+    java.util.Arrays.fill(s.currentTradeOffer, 0);
+    java.util.Arrays.fill(s.acceptees, false);
+    s.currentPlayerIndex = s.currentTurnIndex;
+    s.currentPrompt = ActionPrompt.PLAY_TURN;
+  }
+
+  /** Best bank rate for giving a resource: 2 with its port, 3 with a generic port, else 4. */
+  static int maritimeRate(int portBits, int resourceIndex) {
+    if ((portBits & (1 << resourceIndex)) != 0) return 2;
+    return (portBits & CatanMap.THREE_TO_ONE_PORT) != 0 ? 3 : 4;
+  }
+
+  private static Object roll(State s, Action<?> a) {
     int d1, d2;
     if (a.value instanceof int[] arr && arr.length == 2) {
       d1 = arr[0];
       d2 = arr[1];
+      if (d1 < 1 || d1 > 6 || d2 < 1 || d2 > 6)
+        throw new IllegalArgumentException("invalid dice " + java.util.Arrays.toString(arr));
     } else {
-      d1 = RNG.nextInt(6) + 1;
-      d2 = RNG.nextInt(6) + 1;
+      d1 = s.rng.nextInt(6) + 1;
+      d2 = s.rng.nextInt(6) + 1;
     }
+    s.playerState.set(s.currentPlayerIndex, PlayerStateMap.HAS_ROLLED, 1);
     int sum = d1 + d2;
     if (sum == 7) {
       // Check discards
@@ -194,46 +378,80 @@ public final class Reducer {
         s.isMovingKnight = true;
       }
     } else {
-      // Payout: for each tile with this number, give 1 per settlement, 2 per city to owner if not
-      // robbed
-      for (int tileId : s.map.getTileIdsByNumber(sum)) {
-        if (tileId == s.robberTileId) continue;
-        var res = s.map.getTileResource(tileId);
-        if (res == null) continue;
-        for (Integer nodeId : s.map.getTileNodes(tileId)) {
-          var building = s.board.buildingAt(nodeId);
-          if (building == null) continue;
-          var color = building.getKey();
-          var type = building.getValue();
-          int amount = (type == com.catanatron.core.model.BuildingType.CITY ? 2 : 1);
-          addResource(s, color, res, amount);
+      payout(s, sum);
+      s.currentPrompt = ActionPrompt.PLAY_TURN;
+    }
+    return DICE[d1 - 1][d2 - 1];
+  }
+
+  // Each settlement yields 1 and each city 2 of its tiles' resource unless robbed. A resource the
+  // bank cannot cover in full goes to nobody, unless a single player is owed it: they get the rest.
+  // Walks the players' buildings rather than the tiles, so the cost does not grow with the map.
+  private static void payout(State s, int number) {
+    int numPlayers = s.colors.size();
+    if (s.owedScratch == null) s.owedScratch = new int[numPlayers * Resource.COUNT];
+    int[] owed = s.owedScratch;
+    java.util.Arrays.fill(owed, 0);
+    for (int i = 0; i < numPlayers; i++) {
+      PlayerColor color = s.colors.get(i);
+      int at = i * Resource.COUNT;
+      for (int a = 0; a < s.board.activeNodeWords(color); a++) {
+        int w = s.board.activeNodeWord(color, a);
+        for (long m = s.board.settlementNodeWord(color, w); m != 0; m &= m - 1) {
+          collect(s, (w << 6) + Long.numberOfTrailingZeros(m), number, 1, owed, at);
+        }
+        for (long m = s.board.cityNodeWord(color, w); m != 0; m &= m - 1) {
+          collect(s, (w << 6) + Long.numberOfTrailingZeros(m), number, 2, owed, at);
         }
       }
-      s.currentPrompt = ActionPrompt.PLAY_TURN;
     }
-    return new ActionRecord<>(
-        new Action<>(a.color, a.type, new int[] {d1, d2}), new int[] {d1, d2});
+    for (int r = 0; r < Resource.COUNT; r++) {
+      int total = 0, recipients = 0;
+      for (int i = 0; i < numPlayers; i++) {
+        total += owed[i * Resource.COUNT + r];
+        if (owed[i * Resource.COUNT + r] > 0) recipients++;
+      }
+      if (total == 0 || (total > s.bank[r] && recipients > 1)) continue;
+      for (int i = 0; i < numPlayers; i++) {
+        int amount = Math.min(owed[i * Resource.COUNT + r], s.bank[r]);
+        if (amount > 0) addResource(s, i, r, amount);
+      }
+    }
+  }
+
+  // Adds what the building on nodeId yields to owed[at + resource]
+  private static void collect(State s, int nodeId, int number, int amount, int[] owed, int at) {
+    for (int tileId : s.map.nodeTileIds[nodeId]) {
+      if (s.map.tileNumbers[tileId] != number || tileId == s.robberTileId) continue;
+      owed[at + s.map.tileResources[tileId].ordinal()] += amount;
+    }
   }
 
   private static int nextDiscardIndex(State s) {
     for (int i = 0; i < s.colors.size(); i++) {
       int idx = (s.currentTurnIndex + i) % s.colors.size();
-      if (numResources(s, s.colors.get(idx)) > s.discardLimit) return idx;
+      if (s.handSize(idx) > s.discardLimit) return idx;
     }
     return -1;
   }
 
-  private static ActionRecord<?> initialBuildSettlement(State s, Action<?> a) {
+  private static Object initialBuildSettlement(State s, Action<?> a) {
     if (s.isInitialBuildPhase) {
       // Advance prompts as in snake placement (simplified)
       // Award 1 VP for settlement and consume piece.
-      add(s, s.currentColor(), "_VICTORY_POINTS", 1);
-      add(s, s.currentColor(), "_ACTUAL_VICTORY_POINTS", 1);
-      add(s, s.currentColor(), "_SETTLEMENTS_AVAILABLE", -1);
+      addVictoryPoints(s, s.currentPlayerIndex, 1);
+      add(s, PlayerStateMap.SETTLEMENTS_AVAILABLE, -1);
       int nodeId = (int) a.value;
       s.board.buildSettlement(s.currentColor(), nodeId);
+      s.portAccess[s.currentPlayerIndex] |= s.map.nodePortMask[nodeId];
       // Track last initial settlement to constrain initial road
       s.lastInitialSettlement.put(s.currentColor(), nodeId);
+      // Second settlement yields one of each adjacent resource
+      if (s.playerState.get(s.currentPlayerIndex, PlayerStateMap.SETTLEMENTS_AVAILABLE) == 3) {
+        for (var tile : s.map.adjacentTiles.getOrDefault(nodeId, java.util.List.of())) {
+          if (tile.resource() != null) addResource(s, s.currentColor(), tile.resource(), 1);
+        }
+      }
       maintainLongestRoad(s); // settlements can block/cut in full rules; safe to recompute
       s.currentPrompt = ActionPrompt.BUILD_INITIAL_ROAD;
     } else {
@@ -243,36 +461,44 @@ public final class Reducer {
       Costs.paySettlement(s, s.currentColor());
       int nodeId = (int) a.value;
       s.board.buildSettlement(s.currentColor(), nodeId);
-      add(s, s.currentColor(), "_SETTLEMENTS_AVAILABLE", -1);
-      add(s, s.currentColor(), "_VICTORY_POINTS", 1);
-      add(s, s.currentColor(), "_ACTUAL_VICTORY_POINTS", 1);
+      s.portAccess[s.currentPlayerIndex] |= s.map.nodePortMask[nodeId];
+      add(s, PlayerStateMap.SETTLEMENTS_AVAILABLE, -1);
+      addVictoryPoints(s, s.currentPlayerIndex, 1);
       maintainLongestRoad(s);
       s.currentPrompt = ActionPrompt.PLAY_TURN;
     }
-    return new ActionRecord<>(a, null);
+    return null;
   }
 
-  private static ActionRecord<?> initialBuildRoad(State s, Action<?> a) {
+  private static Object initialBuildRoad(State s, Action<?> a) {
     if (s.isInitialBuildPhase) {
+      com.catanatron.core.model.Edge edge = (com.catanatron.core.model.Edge) a.value;
+      int aN = edge.a();
+      int bN = edge.b();
+      // Initial road must be adjacent to last settlement
+      Integer lastNode = s.lastInitialSettlement.get(s.currentColor());
+      if (lastNode != null && aN != lastNode && bN != lastNode) {
+        throw new IllegalStateException("initial road must touch last settlement");
+      }
+      // validate
+      if (!isEdgeBuildable(s, s.currentColor(), edge))
+        throw new IllegalStateException("illegal road placement");
+      add(s, PlayerStateMap.ROADS_AVAILABLE, -1);
+      s.board.buildRoad(s.currentColor(), aN, bN);
+      // Snake order: forward through the seats, the last seat places twice, then backward
       int numPlayers = s.colors.size();
-      // naive: first round forward, then backward, then start play
-      int buildings = 0; // simplified placeholder
-      if (buildings < numPlayers) {
-        add(s, s.currentColor(), "_ROADS_AVAILABLE", -1);
-        com.catanatron.core.model.Edge edge = (com.catanatron.core.model.Edge) a.value;
-        int aN = edge.a();
-        int bN = edge.b();
-        // Initial road must be adjacent to last settlement
-        Integer lastNode = s.lastInitialSettlement.get(s.currentColor());
-        if (lastNode != null && aN != lastNode && bN != lastNode) {
-          throw new IllegalStateException("initial road must touch last settlement");
-        }
-        // validate
-        if (!isEdgeBuildable(s, s.currentColor(), edge))
-          throw new IllegalStateException("illegal road placement");
-        s.board.buildRoad(s.currentColor(), aN, bN);
+      int settlements = 0;
+      for (int i = 0; i < numPlayers; i++) {
+        settlements += 5 - s.playerState.get(i, PlayerStateMap.SETTLEMENTS_AVAILABLE);
+      }
+      if (settlements < numPlayers) {
         advance(s, +1);
         s.currentPrompt = ActionPrompt.BUILD_INITIAL_SETTLEMENT;
+      } else if (settlements == numPlayers) {
+        s.currentPrompt = ActionPrompt.BUILD_INITIAL_SETTLEMENT;
+      } else if (settlements < 2 * numPlayers) {
+        advance(s, -1);
+        s.currentPrompt = ActionPrompt.BUILD_INITIAL_SETTLEMENT;
       } else {
         s.isInitialBuildPhase = false;
         s.currentPrompt = ActionPrompt.PLAY_TURN;
@@ -285,7 +511,7 @@ public final class Reducer {
         throw new IllegalStateException("illegal road placement");
       if (s.isRoadBuilding && s.freeRoadsAvailable > 0) {
         s.board.buildRoad(s.currentColor(), aN, bN);
-        add(s, s.currentColor(), "_ROADS_AVAILABLE", -1);
+        add(s, PlayerStateMap.ROADS_AVAILABLE, -1);
         s.freeRoadsAvailable -= 1;
         if (s.freeRoadsAvailable == 0) s.isRoadBuilding = false;
       } else {
@@ -293,32 +519,25 @@ public final class Reducer {
           throw new IllegalStateException("cannot afford road");
         Costs.payRoad(s, s.currentColor());
         s.board.buildRoad(s.currentColor(), aN, bN);
-        add(s, s.currentColor(), "_ROADS_AVAILABLE", -1);
+        add(s, PlayerStateMap.ROADS_AVAILABLE, -1);
       }
       maintainLongestRoad(s);
       s.currentPrompt = ActionPrompt.PLAY_TURN;
     }
-    return new ActionRecord<>(a, null);
+    return null;
   }
 
-  private static ActionRecord<?> applyDiscard(State s, Action<?> a) {
+  private static Object applyDiscard(State s, Action<?> a) {
     // Minimal: discard half at random not implemented; for now just clear excess to limit
     int idx = s.currentPlayerIndex;
-    PlayerColor c = s.colors.get(idx);
-    int total = numResources(s, c);
-    int toKeep = s.discardLimit; // keep exactly limit
-    if (total > toKeep) {
-      // naive: reduce WOOD first, then others
-      int[] order = {0, 1, 2, 3, 4};
-      String[] keys = {"WOOD", "BRICK", "SHEEP", "WHEAT", "ORE"};
-      int reduce = total - toKeep;
-      for (int i = 0; i < order.length && reduce > 0; i++) {
-        String key = "P" + idx + "_" + keys[i] + "_IN_HAND";
-        int have = s.playerState.get(key);
-        int take = Math.min(have, reduce);
-        s.playerState.put(key, have - take);
-        reduce -= take;
-      }
+    // naive: reduce WOOD first, then others
+    int reduce = s.handSize(idx) - s.discardLimit; // keep exactly limit
+    for (int r = 0; r < Resource.COUNT && reduce > 0; r++) {
+      int have = s.playerState.get(idx, HAND + r);
+      int take = Math.min(have, reduce);
+      s.playerState.set(idx, HAND + r, have - take);
+      s.bank[r] += take;
+      reduce -= take;
     }
     // advance to next discarder or robber
     int next = nextDiscardIndex(s);
@@ -331,57 +550,50 @@ public final class Reducer {
       s.isDiscarding = false;
       s.isMovingKnight = true;
     }
-    return new ActionRecord<>(a, null);
+    return null;
   }
 
-  private static ActionRecord<?> applyMoveRobber(State s, Action<?> a) {
+  private static Object applyMoveRobber(State s, Action<?> a) {
     int newTileId = (int) a.value;
     s.robberTileId = newTileId;
 
-    // Attempt to steal from a victim with resources on this tile (adjacent building)
-    java.util.List<PlayerColor> victims = new java.util.ArrayList<>();
-    for (Integer nodeId : s.map.getTileNodes(newTileId)) {
-      var b = s.board.buildingAt(nodeId);
-      if (b == null) continue;
-      var victim = b.getKey();
-      if (victim == a.color) continue;
-      if (numResources(s, victim) > 0) victims.add(victim);
+    // Victims: other players with a building on the tile and cards in hand, each once
+    int victims = 0; // seat bitset
+    for (int nodeId : s.map.tileNodeIds[newTileId]) {
+      PlayerColor owner = s.board.ownerAt(nodeId);
+      if (owner == null || owner == a.color) continue;
+      int seat = s.colors.indexOf(owner);
+      if (s.handSize(seat) > 0) victims |= 1 << seat;
     }
-    PlayerColor stolenFrom = null;
-    com.catanatron.core.model.Resource stolenRes = null;
-    if (!victims.isEmpty()) {
-      stolenFrom = victims.get(RNG.nextInt(victims.size()));
-      // Choose a random resource from victim's hand proportionally to counts
-      java.util.List<com.catanatron.core.model.Resource> bag = new java.util.ArrayList<>();
-      for (var r : com.catanatron.core.model.Resource.values()) {
-        int idx = s.colors.indexOf(stolenFrom);
-        int count = s.playerState.get("P" + idx + "_" + r.name() + "_IN_HAND");
-        for (int i = 0; i < count; i++) bag.add(r);
-      }
-      if (!bag.isEmpty()) {
-        stolenRes = bag.get(RNG.nextInt(bag.size()));
-        addResource(s, stolenFrom, stolenRes, -1);
-        addResource(s, a.color, stolenRes, +1);
-      }
+    Resource stolenRes = null;
+    if (victims != 0) {
+      for (int k = s.rng.nextInt(Integer.bitCount(victims)); k > 0; k--) victims &= victims - 1;
+      int victim = Integer.numberOfTrailingZeros(victims);
+      // The k-th card of the victim's hand, in resource order
+      int card = s.rng.nextInt(s.handSize(victim));
+      int r = 0;
+      while ((card -= s.playerState.get(victim, HAND + r)) >= 0) r++;
+      stolenRes = RESOURCE_TYPES[r];
+      s.playerState.add(victim, HAND + r, -1);
+      s.playerState.add(s.colors.indexOf(a.color), HAND + r, +1);
     }
 
     s.currentPrompt = ActionPrompt.PLAY_TURN;
     s.isMovingKnight = false;
-    return new ActionRecord<>(a, stolenRes);
+    return stolenRes;
   }
 
-  private static ActionRecord<?> buildCity(State s, Action<?> a) {
+  private static Object buildCity(State s, Action<?> a) {
     int nodeId = (int) a.value;
     if (!Costs.canAffordCity(s, s.currentColor()))
       throw new IllegalStateException("cannot afford city");
     Costs.payCity(s, s.currentColor());
     s.board.buildCity(s.currentColor(), nodeId);
-    add(s, s.currentColor(), "_CITIES_AVAILABLE", -1);
-    add(s, s.currentColor(), "_SETTLEMENTS_AVAILABLE", +1);
-    add(s, s.currentColor(), "_VICTORY_POINTS", +1);
-    add(s, s.currentColor(), "_ACTUAL_VICTORY_POINTS", +1);
+    add(s, PlayerStateMap.CITIES_AVAILABLE, -1);
+    add(s, PlayerStateMap.SETTLEMENTS_AVAILABLE, +1);
+    addVictoryPoints(s, s.currentPlayerIndex, +1);
     maintainLongestRoad(s);
-    return new ActionRecord<>(a, null);
+    return null;
   }
 
   private static void maintainLongestRoad(State s) {
@@ -390,7 +602,7 @@ public final class Reducer {
     for (int i = 0; i < s.colors.size(); i++) {
       var color = s.colors.get(i);
       int length = s.board.longestRoadLength(color);
-      s.playerState.put("P" + i + "_LONGEST_ROAD_LENGTH", length);
+      s.playerState.set(i, PlayerStateMap.LONGEST_ROAD_LENGTH, length);
       if (length > bestLength) {
         bestLength = length;
         bestPlayerIndex = i;
@@ -399,36 +611,33 @@ public final class Reducer {
     // Find previous holder
     int previousHolderIndex = -1;
     for (int i = 0; i < s.colors.size(); i++) {
-      if (s.playerState.get("P" + i + "_HAS_ROAD") == 1) {
+      if (s.playerState.get(i, PlayerStateMap.HAS_ROAD) == 1) {
         previousHolderIndex = i;
         break;
       }
     }
     // Clear flags
-    for (int i = 0; i < s.colors.size(); i++) s.playerState.put("P" + i + "_HAS_ROAD", 0);
+    for (int i = 0; i < s.colors.size(); i++) s.playerState.set(i, PlayerStateMap.HAS_ROAD, 0);
 
     if (bestLength >= 5 && bestPlayerIndex >= 0) {
-      s.playerState.put("P" + bestPlayerIndex + "_HAS_ROAD", 1);
+      s.playerState.set(bestPlayerIndex, PlayerStateMap.HAS_ROAD, 1);
       if (previousHolderIndex != bestPlayerIndex) {
         if (previousHolderIndex >= 0) {
-          addByIndex(s, previousHolderIndex, "_VICTORY_POINTS", -2);
-          addByIndex(s, previousHolderIndex, "_ACTUAL_VICTORY_POINTS", -2);
+          addVictoryPoints(s, previousHolderIndex, -2);
         }
-        addByIndex(s, bestPlayerIndex, "_VICTORY_POINTS", +2);
-        addByIndex(s, bestPlayerIndex, "_ACTUAL_VICTORY_POINTS", +2);
+        addVictoryPoints(s, bestPlayerIndex, +2);
       }
     } else {
       // No valid longest road; revoke from previous holder if any
       if (previousHolderIndex >= 0) {
-        addByIndex(s, previousHolderIndex, "_VICTORY_POINTS", -2);
-        addByIndex(s, previousHolderIndex, "_ACTUAL_VICTORY_POINTS", -2);
+        addVictoryPoints(s, previousHolderIndex, -2);
       }
     }
   }
 
-  private static void addByIndex(State s, int idx, String suffix, int delta) {
-    String key = "P" + idx + suffix;
-    s.playerState.put(key, s.playerState.get(key) + delta);
+  private static void addVictoryPoints(State s, int idx, int delta) {
+    s.playerState.add(idx, VP, delta);
+    s.playerState.add(idx, ACTUAL_VP, delta);
   }
 
   private static void advance(State s, int step) {
@@ -438,46 +647,23 @@ public final class Reducer {
     s.numTurns += 1;
   }
 
-  private static void set(State s, PlayerColor c, String suffix, int v) {
-    int playerIndex = s.colors.indexOf(c);
-    s.playerState.put("P" + playerIndex + suffix, v);
-  }
-
-  private static void add(State s, PlayerColor c, String suffix, int delta) {
-    int playerIndex = s.colors.indexOf(c);
-    String key = "P" + playerIndex + suffix;
-    s.playerState.put(key, s.playerState.get(key) + delta);
+  // Adds to a counter of the player to move
+  private static void add(State s, int field, int delta) {
+    s.playerState.add(s.currentPlayerIndex, field, delta);
   }
 
   private static void addResource(
       State s, PlayerColor c, com.catanatron.core.model.Resource r, int amount) {
-    int playerIndex = s.colors.indexOf(c);
-    String key = "P" + playerIndex + "_" + r.name() + "_IN_HAND";
-    s.playerState.put(key, s.playerState.get(key) + amount);
-    // Bank accounting omitted for now
+    addResource(s, s.colors.indexOf(c), r.ordinal(), amount);
   }
 
-  private static int numResources(State s, PlayerColor c) {
-    int playerIndex = s.colors.indexOf(c);
-    int wood = s.playerState.get("P" + playerIndex + "_WOOD_IN_HAND");
-    int brick = s.playerState.get("P" + playerIndex + "_BRICK_IN_HAND");
-    int sheep = s.playerState.get("P" + playerIndex + "_SHEEP_IN_HAND");
-    int wheat = s.playerState.get("P" + playerIndex + "_WHEAT_IN_HAND");
-    int ore = s.playerState.get("P" + playerIndex + "_ORE_IN_HAND");
-    return wood + brick + sheep + wheat + ore;
+  private static void addResource(State s, int idx, int r, int amount) {
+    s.playerState.add(idx, HAND + r, amount);
+    s.bank[r] -= amount;
   }
 
   private static boolean isEdgeBuildable(
       State s, PlayerColor color, com.catanatron.core.model.Edge edge) {
-    long requestedKey =
-        (((long) Math.min(edge.a(), edge.b())) << 32)
-            | (((int) Math.max(edge.a(), edge.b())) & 0xffffffffL);
-    for (var allowedEdge : s.board.buildableEdges(color)) {
-      long allowedKey =
-          (((long) Math.min(allowedEdge.a(), allowedEdge.b())) << 32)
-              | (((int) Math.max(allowedEdge.a(), allowedEdge.b())) & 0xffffffffL);
-      if (allowedKey == requestedKey) return true;
-    }
-    return false;
+    return s.board.isBuildableEdge(color, edge.a(), edge.b());
   }
 }
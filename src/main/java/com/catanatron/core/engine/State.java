@@ -2,7 +2,10 @@ package com.catanatron.core.engine;
 
 import com.catanatron.core.board.Board;
 import com.catanatron.core.map.CatanMap;
+import com.catanatron.core.map.MapTemplate;
 import com.catanatron.core.model.PlayerColor;
+import com.catanatron.core.model.Resource;
+import com.catanatron.core.util.CopyableRandom;
 import com.catanatron.core.util.Decks;
 import java.util.*;
 
@@ -11,7 +14,9 @@ public class State {
   public final List<PlayerColor> colors;
 
   public int[] bank = Decks.startingResourceBank();
-  public final Map<String, Integer> playerState = new HashMap<>();
+  // seat index -> port bits of settled port nodes (see CatanMap.THREE_TO_ONE_PORT)
+  public int[] portAccess;
+  public final PlayerStateMap playerState;
   public int currentPlayerIndex = 0;
   public int currentTurnIndex = 0;
   public int numTurns = 0;
@@ -21,68 +26,133 @@ public class State {
   public boolean isDiscarding = false;
   public boolean isMovingKnight = false;
 
-  public final CatanMap map;
+  public CatanMap map;
+  // Whether map was drawn by this state (not passed in, not a copy's), so reset may re-deal it
+  private boolean ownsMap;
   public final Board board;
   public int robberTileId;
   public int discardLimit = 7;
   public final java.util.Map<PlayerColor, Integer> lastInitialSettlement =
       new java.util.HashMap<>();
-  // Dev cards
-  public java.util.List<com.catanatron.core.model.DevCard> developmentDeck;
+  // Dev cards left in the deck, by DevCard ordinal; which one is drawn is decided on purchase
+  public final int[] developmentDeck;
+  // Seeded deck: the k-th card drawn depends only on this seed (see seedDevelopmentDeck)
+  public boolean isDeckSeeded = false;
+  public long deckSeed;
   public boolean isRoadBuilding = false;
   public int freeRoadsAvailable = 0;
+  // Domestic trade: offered resources (0-4) then asked resources (5-9) of the open offer
+  public boolean isResolvingTrade = false;
+  public final int[] currentTradeOffer = new int[2 * Resource.COUNT];
+  public final boolean[] acceptees;
+  public int tradeOffersThisTurn = 0;
+  public TradeOptions tradeOptions = TradeOptions.DEFAULT;
+  // Source of dice, steals and shuffles; seed it for reproducible games
+  public CopyableRandom rng;
+  // Reducer.payout's resources owed per seat, seat * Resource.COUNT + resource; made on first use
+  int[] owedScratch;
+
+  private static final int[] NEW_BANK = Decks.startingResourceBank();
+  private static final int[] NEW_DECK = Decks.startingDevelopmentDeck();
 
   public State(List<Player> players) {
+    this(players, new CopyableRandom(), null);
+  }
+
+  public State(List<Player> players, long seed) {
+    this(players, new CopyableRandom(seed), null);
+  }
+
+  /** A game on {@code layout}, which is shared and not copied; any topology and seat count. */
+  public State(List<Player> players, long seed, CatanMap layout) {
+    this(players, new CopyableRandom(seed), layout);
+  }
+
+  private State(List<Player> players, CopyableRandom rng, CatanMap layout) {
     this.players = new ArrayList<>(players);
     this.colors = players.stream().map(p -> p.color).toList();
-    this.map = CatanMap.base();
+    this.rng = rng;
+    this.playerState = new PlayerStateMap(colors.size());
+    this.portAccess = new int[colors.size()];
+    this.acceptees = new boolean[colors.size()];
+    this.map = layout != null ? layout : CatanMap.base(rng);
+    this.ownsMap = layout == null;
     this.board = new Board(map);
-    this.robberTileId = map.getDesertTileId();
-    // Initialize development deck
-    this.developmentDeck = new java.util.ArrayList<>();
-    for (int i = 0; i < 14; i++) developmentDeck.add(com.catanatron.core.model.DevCard.KNIGHT);
-    for (int i = 0; i < 2; i++)
-      developmentDeck.add(com.catanatron.core.model.DevCard.YEAR_OF_PLENTY);
-    for (int i = 0; i < 2; i++)
-      developmentDeck.add(com.catanatron.core.model.DevCard.ROAD_BUILDING);
-    for (int i = 0; i < 2; i++) developmentDeck.add(com.catanatron.core.model.DevCard.MONOPOLY);
-    for (int i = 0; i < 5; i++)
-      developmentDeck.add(com.catanatron.core.model.DevCard.VICTORY_POINT);
-    java.util.Collections.shuffle(developmentDeck);
-    for (int i = 0; i < colors.size(); i++) {
-      String key = "P" + i;
-      playerState.put(key + "_VICTORY_POINTS", 0);
-      playerState.put(key + "_ACTUAL_VICTORY_POINTS", 0);
-      playerState.put(key + "_HAS_ROLLED", 0);
-      playerState.put(key + "_ROADS_AVAILABLE", 15);
-      playerState.put(key + "_SETTLEMENTS_AVAILABLE", 5);
-      playerState.put(key + "_CITIES_AVAILABLE", 4);
-      playerState.put(key + "_HAS_ROAD", 0);
-      playerState.put(key + "_LONGEST_ROAD_LENGTH", 0);
-      playerState.put(key + "_HAS_ARMY", 0);
-      playerState.put(key + "_HAS_PLAYED_DEVELOPMENT_CARD_IN_TURN", 0);
-      // Dev cards in hand
-      playerState.put(key + "_KNIGHT_IN_HAND", 0);
-      playerState.put(key + "_YEAR_OF_PLENTY_IN_HAND", 0);
-      playerState.put(key + "_ROAD_BUILDING_IN_HAND", 0);
-      playerState.put(key + "_MONOPOLY_IN_HAND", 0);
-      playerState.put(key + "_VICTORY_POINT_IN_HAND", 0);
-      // Played dev counters
-      playerState.put(key + "_PLAYED_KNIGHT", 0);
-      playerState.put(key + "_PLAYED_YEAR_OF_PLENTY", 0);
-      playerState.put(key + "_PLAYED_ROAD_BUILDING", 0);
-      playerState.put(key + "_PLAYED_MONOPOLY", 0);
-      // Owned at start flags
-      playerState.put(key + "_KNIGHT_OWNED_AT_START", 0);
-      playerState.put(key + "_YEAR_OF_PLENTY_OWNED_AT_START", 0);
-      playerState.put(key + "_ROAD_BUILDING_OWNED_AT_START", 0);
-      playerState.put(key + "_MONOPOLY_OWNED_AT_START", 0);
-      playerState.put(key + "_WOOD_IN_HAND", 0);
-      playerState.put(key + "_BRICK_IN_HAND", 0);
-      playerState.put(key + "_SHEEP_IN_HAND", 0);
-      playerState.put(key + "_WHEAT_IN_HAND", 0);
-      playerState.put(key + "_ORE_IN_HAND", 0);
+    this.developmentDeck = Decks.startingDevelopmentDeck();
+    initialize();
+  }
+
+  /**
+   * Starts a new game with the same players in place, reusing this state's storage. With a null
+   * {@code layout} the board is drawn from the seed and the result matches {@code new
+   * State(players, seed)}; a board this state drew itself is re-dealt in place, keeping its
+   * topology and action space, so copies of the previous game must not outlive the reset. Otherwise
+   * the game is played on {@code layout}, which is shared and not copied.
+   */
+  public void reset(long seed, CatanMap layout) {
+    rng.setSeed(seed);
+    if (layout != null) {
+      this.map = layout;
+    } else if (ownsMap) {
+      map.redeal(MapTemplate.buildBaseTemplate(rng));
+    } else {
+      this.map = CatanMap.base(rng);
     }
+    this.ownsMap = layout == null;
+    board.reset(map);
+    System.arraycopy(NEW_BANK, 0, bank, 0, bank.length);
+    Arrays.fill(portAccess, 0);
+    currentPlayerIndex = 0;
+    currentTurnIndex = 0;
+    numTurns = 0;
+    currentPrompt = ActionPrompt.BUILD_INITIAL_SETTLEMENT;
+    isInitialBuildPhase = true;
+    isDiscarding = false;
+    isMovingKnight = false;
+    discardLimit = 7;
+    lastInitialSettlement.clear();
+    System.arraycopy(NEW_DECK, 0, developmentDeck, 0, developmentDeck.length);
+    isDeckSeeded = false;
+    isRoadBuilding = false;
+    freeRoadsAvailable = 0;
+    isResolvingTrade = false;
+    Arrays.fill(currentTradeOffer, 0);
+    Arrays.fill(acceptees, false);
+    tradeOffersThisTurn = 0;
+    initialize();
+  }
+
+  // Robber and the per-player counters of a new game
+  private void initialize() {
+    this.robberTileId = map.getDesertTileId();
+    playerState.reset();
+  }
+
+  /** Resource cards in the hand of the player at {@code seat}; a field read. */
+  public int handSize(int seat) {
+    return playerState.handSize(seat);
+  }
+
+  /** The winner, or null while the game goes on; cached between relevant changes. */
+  public PlayerColor winner() {
+    int seat = playerState.winner();
+    return seat < 0 ? null : colors.get(seat);
+  }
+
+  /** Development cards left in the deck. */
+  public int developmentCardsLeft() {
+    int left = 0;
+    for (int count : developmentDeck) left += count;
+    return left;
+  }
+
+  /**
+   * Draws cards in a sequence fixed by {@code seed}, whatever else happens in the game, as a deck
+   * shuffled up front would. Copies are not seeded, so search does not see future cards.
+   */
+  public void seedDevelopmentDeck(long seed) {
+    this.isDeckSeeded = true;
+    this.deckSeed = seed;
   }
 
   public Player currentPlayer() {
@@ -93,18 +163,40 @@ public class State {
     return colors.get(currentPlayerIndex);
   }
 
+  private State(State other) {
+    this.players = other.players; // players are references; ok for read-only
+    this.colors = other.colors;
+    this.bank = Arrays.copyOf(other.bank, other.bank.length);
+    this.portAccess = other.portAccess.clone();
+    this.playerState = other.playerState.copy();
+    this.currentPlayerIndex = other.currentPlayerIndex;
+    this.currentTurnIndex = other.currentTurnIndex;
+    this.numTurns = other.numTurns;
+    this.currentPrompt = other.currentPrompt;
+    this.isInitialBuildPhase = other.isInitialBuildPhase;
+    this.isDiscarding = other.isDiscarding;
+    this.isMovingKnight = other.isMovingKnight;
+    this.map = other.map;
+    this.board = other.board.copy();
+    this.robberTileId = other.robberTileId;
+    this.discardLimit = other.discardLimit;
+    this.lastInitialSettlement.putAll(other.lastInitialSettlement);
+    this.developmentDeck = other.developmentDeck.clone();
+    // Not seeded: like the dice, the copy's draws come from its own stream
+    this.isRoadBuilding = other.isRoadBuilding;
+    this.freeRoadsAvailable = other.freeRoadsAvailable;
+    this.isResolvingTrade = other.isResolvingTrade;
+    System.arraycopy(other.currentTradeOffer, 0, currentTradeOffer, 0, currentTradeOffer.length);
+    this.acceptees = other.acceptees.clone();
+    this.tradeOffersThisTurn = other.tradeOffersThisTurn;
+    this.tradeOptions = other.tradeOptions;
+    // The copy draws its own stream so that it diverges from, but is determined by, this state;
+    // splitting leaves this state's own dice as they were
+    this.rng = other.rng.split();
+  }
+
+  /** Independent copy of this position on the same map. */
   public State copy() {
-    State s = new State(this.players); // players are references; ok for read-only
-    s.bank = Arrays.copyOf(this.bank, this.bank.length);
-    s.playerState.clear();
-    s.playerState.putAll(this.playerState);
-    s.currentPlayerIndex = this.currentPlayerIndex;
-    s.currentTurnIndex = this.currentTurnIndex;
-    s.numTurns = this.numTurns;
-    s.currentPrompt = this.currentPrompt;
-    s.isInitialBuildPhase = this.isInitialBuildPhase;
-    s.isDiscarding = this.isDiscarding;
-    s.isMovingKnight = this.isMovingKnight;
-    return s;
+    return new State(this);
   }
 }
@@ -0,0 +1,34 @@
+package com.catanatron.core.engine;
+
+/**
+ * Thinking-time limits for {@link Game#play(TimeControl)}, in nanoseconds; 0 means unlimited. CPU
+ * time is the deciding thread's, as reported by {@link java.lang.management.ThreadMXBean}.
+ *
+ * @param moveWallNanos wall-clock time per decision
+ * @param moveCpuNanos CPU time per decision
+ * @param gameWallNanos wall-clock time per player over the whole game
+ * @param gameCpuNanos CPU time per player over the whole game
+ * @param fallback plays for a player over budget
+ */
+public record TimeControl(
+    long moveWallNanos,
+    long moveCpuNanos,
+    long gameWallNanos,
+    long gameCpuNanos,
+    FallbackPolicy fallback) {
+  public static final TimeControl UNLIMITED = new TimeControl(0, 0, 0, 0, FallbackPolicy.PASSIVE);
+
+  public static TimeControl perMoveMillis(long millis) {
+    return new TimeControl(millis * 1_000_000L, 0, 0, 0, FallbackPolicy.PASSIVE);
+  }
+
+  boolean moveOver(long wallNanos, long cpuNanos) {
+    return (moveWallNanos > 0 && wallNanos > moveWallNanos)
+        || (moveCpuNanos > 0 && cpuNanos > moveCpuNanos);
+  }
+
+  boolean gameOver(long wallNanos, long cpuNanos) {
+    return (gameWallNanos > 0 && wallNanos >= gameWallNanos)
+        || (gameCpuNanos > 0 && cpuNanos >= gameCpuNanos);
+  }
+}
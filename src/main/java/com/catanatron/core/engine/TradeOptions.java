@@ -0,0 +1,17 @@
+package com.catanatron.core.engine;
+
+/**
+ * Bounds on the domestic trade offers move generation produces. Offers always give one kind of
+ * resource for another; the shapes say how many of each.
+ *
+ * @param maxOffersPerTurn offers a player may make per turn (0 disables domestic trade)
+ * @param oneForOne offer 1 card for 1
+ * @param twoForOne offer 2 of a kind for 1
+ * @param oneForTwo offer 1 card for 2 of a kind
+ */
+public record TradeOptions(
+    int maxOffersPerTurn, boolean oneForOne, boolean twoForOne, boolean oneForTwo) {
+  public static final TradeOptions DISABLED = new TradeOptions(0, false, false, false);
+  public static final TradeOptions DEFAULT = new TradeOptions(1, true, true, false);
+  public static final TradeOptions ALL = new TradeOptions(1, true, true, true);
+}
@@ -0,0 +1,134 @@
+package com.catanatron.core.engine;
+
+import com.catanatron.core.map.NodeValues;
+import com.catanatron.core.model.Action;
+import com.catanatron.core.model.ActionType;
+import com.catanatron.core.model.DevCard;
+import com.catanatron.core.model.PlayerColor;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Greedy one-ply player: applies each playable action to a copy of the state and keeps the one
+ * whose result scores best under a weighted sum of features. Ties are broken at random. Chance is
+ * sampled once per action, and a lone playable action is taken without scoring.
+ */
+public class ValueFunctionPlayer extends Player {
+  /**
+   * Feature weights.
+   *
+   * @param victoryPoints actual victory points
+   * @param production pips of own settlements (cities count twice), robbed tile excluded
+   * @param opponentProduction the same summed over opponents
+   * @param reachableSpots nodes where a settlement could be built now
+   * @param devCards development cards in hand
+   * @param handSize resource cards in hand, up to the discard limit
+   * @param excessCards resource cards above the discard limit
+   */
+  public record Weights(
+      double victoryPoints,
+      double production,
+      double opponentProduction,
+      double reachableSpots,
+      double devCards,
+      double handSize,
+      double excessCards) {
+    public static final Weights DEFAULT = new Weights(100, 4, -1, 10, 20, 2, -4);
+  }
+
+  // PlayerStateMap fields of the development cards in hand, by DevCard ordinal
+  private static final int[] IN_HAND = new int[DevCard.values().length];
+
+  static {
+    for (DevCard card : DevCard.values()) {
+      IN_HAND[card.ordinal()] = PlayerStateMap.field("_" + card.name() + "_IN_HAND");
+    }
+  }
+
+  private final Weights weights;
+  private final Random rng;
+
+  public ValueFunctionPlayer(PlayerColor color) {
+    this(color, Weights.DEFAULT, new Random());
+  }
+
+  public ValueFunctionPlayer(PlayerColor color, Weights weights, Random rng) {
+    super(color, true);
+    this.weights = weights;
+    this.rng = rng;
+  }
+
+  @Override
+  public Action<?> decide(Game game, List<Action<?>> playable) {
+    if (playable.size() == 1) return playable.get(0);
+    Action<?> best = null;
+    double bestScore = Double.NEGATIVE_INFINITY;
+    int ties = 0;
+    for (Action<?> action : playable) {
+      // Rolling is forced whenever it is offered; no need to sample dice
+      if (action.type == ActionType.ROLL) return action;
+      State scratch = game.state.copy();
+      Reducer.step(scratch, action);
+      double score = evaluate(scratch, color, weights);
+      if (score > bestScore) {
+        bestScore = score;
+        best = action;
+        ties = 1;
+      } else if (score == bestScore && rng.nextInt(++ties) == 0) {
+        best = action; // reservoir sampling among equal scores
+      }
+    }
+    return best;
+  }
+
+  /** Weighted feature sum of {@code state} for {@code color}; higher is better. */
+  public static double evaluate(State state, PlayerColor color, Weights weights) {
+    int seat = state.colors.indexOf(color);
+    var ps = state.playerState;
+    int hand = state.handSize(seat);
+    int devCards = 0;
+    for (int field : IN_HAND) devCards += ps.get(seat, field);
+    int ownProduction = 0, opponentProduction = 0;
+    for (int s = 0; s < state.colors.size(); s++) {
+      int p = production(state, state.colors.get(s));
+      if (s == seat) ownProduction = p;
+      else opponentProduction += p;
+    }
+    int reachable = 0;
+    for (int a = 0; a < state.board.activeNodeWords(color); a++) {
+      int w = state.board.activeNodeWord(color, a);
+      reachable += Long.bitCount(state.board.buildableNodeWord(color, false, w));
+    }
+    return weights.victoryPoints() * ps.get(seat, PlayerStateMap.ACTUAL_VICTORY_POINTS)
+        + weights.production() * ownProduction
+        + weights.opponentProduction() * opponentProduction
+        + weights.reachableSpots() * reachable
+        + weights.devCards() * devCards
+        + weights.handSize() * Math.min(hand, state.discardLimit)
+        + weights.excessCards() * Math.max(0, hand - state.discardLimit);
+  }
+
+  // Pips of the color's buildings, cities doubled, without the robbed tile's share
+  private static int production(State state, PlayerColor color) {
+    NodeValues values = state.map.nodeValues;
+    int robber = state.robberTileId;
+    boolean robberOnLand = robber >= 0 && robber < values.tilePips.length;
+    int total = 0;
+    for (int a = 0; a < state.board.activeNodeWords(color); a++) {
+      int w = state.board.activeNodeWord(color, a);
+      for (long m = state.board.settlementNodeWord(color, w); m != 0; m &= m - 1) {
+        total += values.totalPips[(w << 6) + Long.numberOfTrailingZeros(m)];
+      }
+      for (long m = state.board.cityNodeWord(color, w); m != 0; m &= m - 1) {
+        total += 2 * values.totalPips[(w << 6) + Long.numberOfTrailingZeros(m)];
+      }
+    }
+    if (robberOnLand && values.tilePips[robber] > 0) {
+      for (int node : state.map.tileNodeIds[robber]) {
+        if (state.board.ownerAt(node) != color) continue;
+        total -= (state.board.isCity(node) ? 2 : 1) * values.tilePips[robber];
+      }
+    }
+    return total;
+  }
+}
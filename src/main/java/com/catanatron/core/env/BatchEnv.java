@@ -0,0 +1,270 @@
+package com.catanatron.core.env;
+
+import com.catanatron.core.engine.ActionSpace;
+import com.catanatron.core.engine.Game;
+import com.catanatron.core.engine.LegalActions;
+import com.catanatron.core.engine.Player;
+import com.catanatron.core.engine.PlayerStateMap;
+import com.catanatron.core.engine.RandomPlayer;
+import com.catanatron.core.engine.Reducer;
+import com.catanatron.core.engine.State;
+import com.catanatron.core.engine.TradeOptions;
+import com.catanatron.core.map.CatanMap;
+import com.catanatron.core.model.PlayerColor;
+import com.catanatron.core.model.Resource;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Steps many self-play games in lockstep for training. Actions are {@link ActionSpace} ids for the
+ * player to act in each game; observations, rewards, done flags and legal-action masks are written
+ * into the public buffers below, laid out game-major (game {@code e}, seat {@code s} and resource
+ * {@code r} of {@link #hands} is at {@code (e * numSeats + s) * Resource.COUNT + r}).
+ *
+ * <p>A game that ends in a step gets its rewards and done flag and is immediately replaced by a new
+ * one, so the observation and mask of that game already describe the next game. Games are split
+ * into contiguous chunks, one per worker thread.
+ *
+ * <p>The constructor calls {@link #reset()}. Not thread-safe: call {@link #reset()} and {@link
+ * #step(int[])} from one thread.
+ */
+public final class BatchEnv implements AutoCloseable {
+  public final int numEnvs;
+  public final int numSeats;
+  public final int numNodes;
+  public final int numEdges;
+  public final int actionCount;
+  public final int maskWords; // longs per game in masks
+
+  // Observations (full information)
+  public final int[] hands; // [env][seat][resource]
+  public final int[] victoryPoints; // [env][seat], public points
+  public final byte[]
+      buildings; // [env][node]: 0, 1 + seat (settlement), 1 + numSeats + seat (city)
+  public final byte[] roads; // [env][edge]: 0 or 1 + seat
+  public final int[] robberTile; // [env]: index into map.landTileIds
+  public final int[] bank; // [env][resource]
+  public final int[] currentSeat; // [env]
+  public final int[] prompt; // [env]: ActionPrompt ordinal
+  // Step results
+  public final float[] rewards; // [env][seat]: +1 winner, -1 others when a game is won
+  public final boolean[] dones; // [env]
+  public final long[] masks; // [env][maskWords]: bit id set if action id is legal
+
+  private final List<Player> players = new ArrayList<>();
+  private final TradeOptions tradeOptions;
+  private final State[] states;
+  private final Random[] seeds;
+  private final LegalActions[] legal;
+  private final ExecutorService pool;
+  private final List<Callable<Void>> resetTasks = new ArrayList<>();
+  private final List<Callable<Void>> stepTasks = new ArrayList<>();
+  private int[] actionIds;
+
+  public BatchEnv(int numEnvs, int numSeats, long seed, int threads) {
+    this(numEnvs, numSeats, seed, threads, TradeOptions.DISABLED);
+  }
+
+  public BatchEnv(int numEnvs, int numSeats, long seed, int threads, TradeOptions tradeOptions) {
+    if (numSeats < 2 || numSeats > PlayerColor.values().length)
+      throw new IllegalArgumentException("seats: " + numSeats);
+    this.numEnvs = numEnvs;
+    this.numSeats = numSeats;
+    this.tradeOptions = tradeOptions;
+    for (int s = 0; s < numSeats; s++) players.add(new RandomPlayer(PlayerColor.values()[s]));
+
+    this.states = new State[numEnvs];
+    this.seeds = new Random[numEnvs];
+    this.legal = new LegalActions[numEnvs];
+    Random root = new Random(seed);
+    for (int e = 0; e < numEnvs; e++) {
+      seeds[e] = new Random(root.nextLong());
+      legal[e] = new LegalActions();
+    }
+    // Every base map has the same topology, hence the same action space
+    CatanMap map = CatanMap.base();
+    this.numNodes = map.nodeNeighborIds.length;
+    this.numEdges = map.edgeA.length;
+    this.actionCount = ActionSpace.of(map).size();
+    this.maskWords = (actionCount + 63) >>> 6;
+
+    this.hands = new int[numEnvs * numSeats * Resource.COUNT];
+    this.victoryPoints = new int[numEnvs * numSeats];
+    this.buildings = new byte[numEnvs * numNodes];
+    this.roads = new byte[numEnvs * numEdges];
+    this.robberTile = new int[numEnvs];
+    this.bank = new int[numEnvs * Resource.COUNT];
+    this.currentSeat = new int[numEnvs];
+    this.prompt = new int[numEnvs];
+    this.rewards = new float[numEnvs * numSeats];
+    this.dones = new boolean[numEnvs];
+    this.masks = new long[numEnvs * maskWords];
+
+    int workers = Math.max(1, Math.min(threads, numEnvs));
+    this.pool = workers > 1 ? Executors.newFixedThreadPool(workers, BatchEnv::daemon) : null;
+    for (int w = 0; w < workers; w++) {
+      int from = (int) ((long) numEnvs * w / workers);
+      int to = (int) ((long) numEnvs * (w + 1) / workers);
+      resetTasks.add(
+          () -> {
+            for (int e = from; e < to; e++) {
+              states[e] = newGame(e);
+              observe(e);
+            }
+            return null;
+          });
+      stepTasks.add(
+          () -> {
+            for (int e = from; e < to; e++) stepOne(e);
+            return null;
+          });
+    }
+    reset();
+  }
+
+  /** Starts a new game in every slot and clears rewards and done flags. */
+  public void reset() {
+    Arrays.fill(rewards, 0f);
+    Arrays.fill(dones, false);
+    run(resetTasks);
+  }
+
+  /**
+   * Applies {@code actionIds[e]} to game {@code e} for every game.
+   *
+   * @throws IllegalArgumentException if an action is not legal in its game; no game is stepped then
+   */
+  public void step(int[] actionIds) {
+    if (actionIds.length != numEnvs) throw new IllegalArgumentException("expected " + numEnvs);
+    for (int e = 0; e < numEnvs; e++) {
+      if (!isLegal(e, actionIds[e]))
+        throw new IllegalArgumentException("illegal action " + actionIds[e] + " in env " + e);
+    }
+    this.actionIds = actionIds;
+    run(stepTasks);
+  }
+
+  public boolean isLegal(int env, int actionId) {
+    if (actionId < 0 || actionId >= actionCount) return false;
+    return (masks[env * maskWords + (actionId >>> 6)] & (1L << actionId)) != 0;
+  }
+
+  /** The live game behind slot {@code env}; reset in place when that game ends. */
+  public State state(int env) {
+    return states[env];
+  }
+
+  @Override
+  public void close() {
+    if (pool != null) pool.shutdownNow();
+  }
+
+  private void stepOne(int e) {
+    State state = states[e];
+    Arrays.fill(rewards, e * numSeats, (e + 1) * numSeats, 0f);
+    Reducer.step(state, legal[e].space().action(state.currentColor(), actionIds[e]));
+    PlayerColor winner = Game.winningColor(state);
+    if (winner != null) {
+      for (int s = 0; s < numSeats; s++) {
+        rewards[e * numSeats + s] = state.colors.get(s) == winner ? 1f : -1f;
+      }
+    }
+    // A game without legal actions is over as well (a draw, like the turn limit)
+    boolean done = winner != null || state.numTurns >= Game.TURNS_LIMIT || observe(e) == 0;
+    dones[e] = done;
+    if (done) {
+      states[e] = newGame(e);
+      observe(e);
+    }
+  }
+
+  // Reuses the slot's state once it has one
+  private State newGame(int e) {
+    State state = states[e];
+    if (state != null) {
+      state.reset(seeds[e].nextLong(), null);
+      return state;
+    }
+    state = new State(players, seeds[e].nextLong());
+    state.tradeOptions = tradeOptions;
+    return state;
+  }
+
+  // Writes the observation and legal-action mask of game e
+  private int observe(int e) {
+    State state = states[e];
+    LegalActions actions = legal[e].reset(state);
+    int maskBase = e * maskWords;
+    Arrays.fill(masks, maskBase, maskBase + maskWords, 0L);
+    for (int k = 0; k < actions.count(); k++) {
+      int id = actions.idAt(k);
+      masks[maskBase + (id >>> 6)] |= 1L << id;
+    }
+
+    for (int s = 0; s < numSeats; s++) {
+      for (int r = 0; r < Resource.COUNT; r++) {
+        hands[(e * numSeats + s) * Resource.COUNT + r] =
+            state.playerState.get(s, PlayerStateMap.FIRST_RESOURCE + r);
+      }
+      victoryPoints[e * numSeats + s] = state.playerState.get(s, PlayerStateMap.VICTORY_POINTS);
+    }
+    int nodeBase = e * numNodes;
+    Arrays.fill(buildings, nodeBase, nodeBase + numNodes, (byte) 0);
+    for (int s = 0; s < numSeats; s++) {
+      PlayerColor color = state.colors.get(s);
+      for (int a = 0; a < state.board.activeNodeWords(color); a++) {
+        int w = state.board.activeNodeWord(color, a);
+        int wordBase = nodeBase + (w << 6);
+        for (long m = state.board.settlementNodeWord(color, w); m != 0; m &= m - 1) {
+          buildings[wordBase + Long.numberOfTrailingZeros(m)] = (byte) (1 + s);
+        }
+        for (long m = state.board.cityNodeWord(color, w); m != 0; m &= m - 1) {
+          buildings[wordBase + Long.numberOfTrailingZeros(m)] = (byte) (1 + numSeats + s);
+        }
+      }
+    }
+    int edgeBase = e * numEdges;
+    for (int edge = 0; edge < numEdges; edge++) {
+      PlayerColor owner = state.board.roadAt(edge);
+      roads[edgeBase + edge] = owner == null ? 0 : (byte) (1 + state.colors.indexOf(owner));
+    }
+    robberTile[e] = Arrays.binarySearch(state.map.landTileIds, state.robberTileId);
+    System.arraycopy(state.bank, 0, bank, e * Resource.COUNT, Resource.COUNT);
+    currentSeat[e] = state.currentPlayerIndex;
+    prompt[e] = state.currentPrompt.ordinal();
+    return actions.count();
+  }
+
+  private void run(List<Callable<Void>> tasks) {
+    if (pool == null) {
+      try {
+        tasks.get(0).call();
+      } catch (Exception ex) {
+        throw ex instanceof RuntimeException re ? re : new IllegalStateException(ex);
+      }
+      return;
+    }
+    try {
+      for (var future : pool.invokeAll(tasks)) future.get();
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("interrupted", ex);
+    } catch (ExecutionException ex) {
+      throw ex.getCause() instanceof RuntimeException re
+          ? re
+          : new IllegalStateException(ex.getCause());
+    }
+  }
+
+  private static Thread daemon(Runnable r) {
+    Thread t = new Thread(r, "batch-env");
+    t.setDaemon(true);
+    return t;
+  }
+}
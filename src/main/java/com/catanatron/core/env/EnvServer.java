@@ -0,0 +1,261 @@
+package com.catanatron.core.env;
+
+import java.io.IOException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Serves a {@link BatchEnv} to another process. Requests and replies are small binary messages over
+ * a Unix domain socket or stdin/stdout; observations, rewards, done flags and masks are not sent
+ * but written into a memory-mapped file the client maps as well. All integers are little-endian.
+ *
+ * <p>Requests start with an opcode byte:
+ *
+ * <ul>
+ *   <li>{@code RESET (1)}: start a new game in every slot.
+ *   <li>{@code STEP (2)} followed by {@code numEnvs} int32 action ids.
+ *   <li>{@code CLOSE (3)}: reply, then end the session.
+ * </ul>
+ *
+ * Each request gets a status byte: {@code 0} once the shared file holds the results, or {@code 1}
+ * followed by an int32 length and a UTF-8 message (e.g. an illegal action; no game was stepped).
+ *
+ * <p>The shared file starts with a {@link #HEADER_BYTES}-byte header of int32s: magic {@code
+ * "CATN"}, version, numEnvs, numSeats, numNodes, numEdges, actionCount, maskWords, then an int64
+ * sequence number incremented after every reset or step, then the byte offsets of the sections in
+ * {@link #SECTIONS} order. Each section is the {@link BatchEnv} buffer of the same name; booleans
+ * are stored as bytes.
+ */
+public final class EnvServer implements AutoCloseable {
+  public static final int MAGIC = 0x4e544143; // "CATN" little-endian
+  public static final int VERSION = 1;
+  public static final int HEADER_BYTES = 128;
+  public static final byte RESET = 1;
+  public static final byte STEP = 2;
+  public static final byte CLOSE = 3;
+  public static final String[] SECTIONS = {
+    "masks",
+    "hands",
+    "victoryPoints",
+    "buildings",
+    "roads",
+    "robberTile",
+    "bank",
+    "currentSeat",
+    "prompt",
+    "rewards",
+    "dones"
+  };
+  private static final int SEQUENCE_OFFSET = 32;
+  private static final int SECTION_TABLE_OFFSET = 40;
+
+  private final BatchEnv env;
+  private final FileChannel file;
+  private final MappedByteBuffer shared;
+  private final int[] offsets = new int[SECTIONS.length];
+  private final LongBuffer masks;
+  private final IntBuffer hands, victoryPoints, robberTile, bank, currentSeat, prompt;
+  private final FloatBuffer rewards;
+  private final ByteBuffer request;
+  private final ByteBuffer reply = ByteBuffer.allocate(1).order(ByteOrder.LITTLE_ENDIAN);
+  private final int[] actionIds;
+  private final byte[] dones;
+  private long sequence;
+
+  public EnvServer(BatchEnv env, Path sharedFile) throws IOException {
+    this.env = env;
+    this.actionIds = new int[env.numEnvs];
+    this.dones = new byte[env.numEnvs];
+    this.request = ByteBuffer.allocateDirect(1 + 4 * env.numEnvs).order(ByteOrder.LITTLE_ENDIAN);
+
+    int[] sizes = {
+      8 * env.masks.length,
+      4 * env.hands.length,
+      4 * env.victoryPoints.length,
+      env.buildings.length,
+      env.roads.length,
+      4 * env.robberTile.length,
+      4 * env.bank.length,
+      4 * env.currentSeat.length,
+      4 * env.prompt.length,
+      4 * env.rewards.length,
+      env.dones.length
+    };
+    int size = HEADER_BYTES;
+    for (int i = 0; i < sizes.length; i++) {
+      offsets[i] = size;
+      size = (size + sizes[i] + 7) & ~7; // keep sections 8-byte aligned
+    }
+    this.file =
+        FileChannel.open(
+            sharedFile,
+            StandardOpenOption.CREATE,
+            StandardOpenOption.READ,
+            StandardOpenOption.WRITE,
+            StandardOpenOption.TRUNCATE_EXISTING);
+    this.shared = file.map(FileChannel.MapMode.READ_WRITE, 0, size);
+    shared.order(ByteOrder.LITTLE_ENDIAN);
+    shared
+        .putInt(0, MAGIC)
+        .putInt(4, VERSION)
+        .putInt(8, env.numEnvs)
+        .putInt(12, env.numSeats)
+        .putInt(16, env.numNodes)
+        .putInt(20, env.numEdges)
+        .putInt(24, env.actionCount)
+        .putInt(28, env.maskWords);
+    for (int i = 0; i < offsets.length; i++)
+      shared.putInt(SECTION_TABLE_OFFSET + 4 * i, offsets[i]);
+    this.masks = section(0, sizes).asLongBuffer();
+    this.hands = section(1, sizes).asIntBuffer();
+    this.victoryPoints = section(2, sizes).asIntBuffer();
+    this.robberTile = section(5, sizes).asIntBuffer();
+    this.bank = section(6, sizes).asIntBuffer();
+    this.currentSeat = section(7, sizes).asIntBuffer();
+    this.prompt = section(8, sizes).asIntBuffer();
+    this.rewards = section(9, sizes).asFloatBuffer();
+    publish();
+  }
+
+  /**
+   * Handles requests until CLOSE or end of input.
+   *
+   * @return true if the client sent CLOSE
+   */
+  public boolean serve(ReadableByteChannel in, WritableByteChannel out) throws IOException {
+    while (true) {
+      request.clear().limit(1);
+      if (!readFully(in, request)) return false;
+      byte op = request.get(0);
+      String error = null;
+      switch (op) {
+        case RESET -> {
+          env.reset();
+          publish();
+        }
+        case STEP -> {
+          request.clear().limit(4 * env.numEnvs);
+          if (!readFully(in, request)) return false;
+          for (int e = 0; e < env.numEnvs; e++) actionIds[e] = request.getInt(4 * e);
+          try {
+            env.step(actionIds);
+            publish();
+          } catch (IllegalArgumentException ex) {
+            error = ex.getMessage();
+          }
+        }
+        case CLOSE -> {}
+        default -> error = "unknown opcode " + op;
+      }
+      if (error == null) {
+        reply.clear().put((byte) 0).flip();
+        writeFully(out, reply);
+      } else {
+        byte[] message = error.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer failure = ByteBuffer.allocate(5 + message.length).order(ByteOrder.LITTLE_ENDIAN);
+        failure.put((byte) 1).putInt(message.length).put(message).flip();
+        writeFully(out, failure);
+      }
+      if (op == CLOSE) return true;
+    }
+  }
+
+  /** Accepts clients on a Unix domain socket, one session at a time, until a client sends CLOSE. */
+  public void serveUnixSocket(Path socketPath) throws IOException {
+    Files.deleteIfExists(socketPath);
+    try (ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+      server.bind(UnixDomainSocketAddress.of(socketPath));
+      while (true) {
+        try (SocketChannel client = server.accept()) {
+          if (serve(client, client)) return;
+        }
+      }
+    } finally {
+      Files.deleteIfExists(socketPath);
+    }
+  }
+
+  public long sequence() {
+    return sequence;
+  }
+
+  @Override
+  public void close() throws IOException {
+    file.close();
+  }
+
+  // Copies the env buffers into the shared file, then bumps the sequence number
+  private void publish() {
+    masks.put(0, env.masks);
+    hands.put(0, env.hands);
+    victoryPoints.put(0, env.victoryPoints);
+    shared.put(offsets[3], env.buildings);
+    shared.put(offsets[4], env.roads);
+    robberTile.put(0, env.robberTile);
+    bank.put(0, env.bank);
+    currentSeat.put(0, env.currentSeat);
+    prompt.put(0, env.prompt);
+    rewards.put(0, env.rewards);
+    for (int e = 0; e < dones.length; e++) dones[e] = env.dones[e] ? (byte) 1 : 0;
+    shared.put(offsets[10], dones);
+    shared.putLong(SEQUENCE_OFFSET, ++sequence);
+  }
+
+  private ByteBuffer section(int i, int[] sizes) {
+    return shared.slice(offsets[i], sizes[i]).order(ByteOrder.LITTLE_ENDIAN);
+  }
+
+  private static boolean readFully(ReadableByteChannel in, ByteBuffer buf) throws IOException {
+    while (buf.hasRemaining()) {
+      if (in.read(buf) < 0) return false;
+    }
+    return true;
+  }
+
+  private static void writeFully(WritableByteChannel out, ByteBuffer buf) throws IOException {
+    while (buf.hasRemaining()) out.write(buf);
+  }
+
+  /**
+   * Usage: {@code EnvServer <shared-file> (--stdio | --socket <path>) [envs] [threads] [seats]
+   * [seed]}
+   */
+  public static void main(String[] args) throws IOException {
+    if (args.length < 2) {
+      System.err.println(
+          "usage: EnvServer <shared-file> (--stdio | --socket <path>) [envs] [threads] [seats]"
+              + " [seed]");
+      System.exit(2);
+    }
+    boolean stdio = args[1].equals("--stdio");
+    int rest = stdio ? 2 : 3;
+    int envs = args.length > rest ? Integer.parseInt(args[rest]) : 256;
+    int threads = args.length > rest + 1 ? Integer.parseInt(args[rest + 1]) : 1;
+    int seats = args.length > rest + 2 ? Integer.parseInt(args[rest + 2]) : 4;
+    long seed = args.length > rest + 3 ? Long.parseLong(args[rest + 3]) : 42;
+    try (BatchEnv env = new BatchEnv(envs, seats, seed, threads);
+        EnvServer server = new EnvServer(env, Path.of(args[0]))) {
+      if (stdio) {
+        server.serve(Channels.newChannel(System.in), Channels.newChannel(System.out));
+      } else {
+        server.serveUnixSocket(Path.of(args[2]));
+      }
+    }
+  }
+}
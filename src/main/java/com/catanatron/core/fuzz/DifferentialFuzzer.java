@@ -0,0 +1,229 @@
+package com.catanatron.core.fuzz;
+
+import com.catanatron.core.engine.ActionSpace;
+import com.catanatron.core.engine.Game;
+import com.catanatron.core.engine.Player;
+import com.catanatron.core.engine.RandomPlayer;
+import com.catanatron.core.engine.State;
+import com.catanatron.core.model.PlayerColor;
+import com.catanatron.core.search.Zobrist;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Plays the same games on two {@link Engine}s, a reference and a candidate, and after every step
+ * compares their legal action sets, their states ({@link StateDiff}) and their {@link Zobrist}
+ * hashes. A game is a seed plus a trace of choices, each an index into the sorted legal ids, so any
+ * divergence replays exactly; {@link #shrink} then cuts the trace down to a minimal one.
+ *
+ * <p>Usage: {@code DifferentialFuzzer [seconds] [threads] [first seed]}; exits with status 1 and
+ * the shrunk trace on the first divergence.
+ */
+public final class DifferentialFuzzer {
+  /** A divergence at {@code step} (0 for the new game) after playing {@code choices}. */
+  public record Failure(long seed, int[] choices, int step, String message) {
+    @Override
+    public String toString() {
+      return "seed="
+          + seed
+          + " step="
+          + step
+          + " choices="
+          + Arrays.toString(choices)
+          + ": "
+          + message;
+    }
+  }
+
+  private final Engine reference;
+  private final Engine candidate;
+  private int[] referenceIds = new int[0];
+  private int[] candidateIds = new int[0];
+  private int[] trace = new int[256];
+  private long steps;
+
+  public DifferentialFuzzer(Engine reference, Engine candidate) {
+    this.reference = reference;
+    this.candidate = candidate;
+  }
+
+  /** Steps compared so far, over all games and replays. */
+  public long steps() {
+    return steps;
+  }
+
+  /**
+   * Plays one game from {@code seed}, choosing actions with {@code rng}, for at most {@code
+   * maxSteps} steps; returns the first divergence, or null.
+   */
+  public Failure fuzz(long seed, Random rng, int maxSteps) {
+    return play(seed, null, rng, maxSteps);
+  }
+
+  /** Replays {@code choices} from {@code seed}; returns the first divergence, or null. */
+  public Failure replay(long seed, int[] choices) {
+    return play(seed, choices, null, choices.length);
+  }
+
+  /**
+   * A trace no longer than the failure's that still diverges: chunks of choices are dropped while
+   * the replay keeps failing, halving the chunk size down to single choices, then each remaining
+   * choice is lowered to 0 where that still fails. The divergence found may differ from the
+   * original one.
+   */
+  public Failure shrink(Failure failure) {
+    Failure best = failure;
+    for (int chunk = Math.max(1, best.choices.length / 2); chunk >= 1; chunk /= 2) {
+      for (int start = 0; start + chunk <= best.choices.length; ) {
+        int[] shorter = new int[best.choices.length - chunk];
+        System.arraycopy(best.choices, 0, shorter, 0, start);
+        System.arraycopy(
+            best.choices, start + chunk, shorter, start, best.choices.length - start - chunk);
+        Failure f = replay(best.seed, shorter);
+        if (f != null) best = f;
+        else start += chunk;
+      }
+    }
+    for (int i = 0; i < best.choices.length; i++) {
+      if (best.choices[i] == 0) continue;
+      int[] lower = best.choices.clone();
+      lower[i] = 0;
+      Failure f = replay(best.seed, lower);
+      if (f != null && f.choices.length <= best.choices.length) best = f;
+    }
+    return best;
+  }
+
+  // Replays `choices` if given, else draws them from rng
+  private Failure play(long seed, int[] choices, Random rng, int maxSteps) {
+    State a = reference.newGame(seed);
+    State b = candidate.newGame(seed);
+    String diff = compare(a, b);
+    if (diff != null) return new Failure(seed, new int[0], 0, diff);
+    int size = ActionSpace.of(a.map).size();
+    if (referenceIds.length < size) {
+      referenceIds = new int[size];
+      candidateIds = new int[size];
+    }
+    for (int step = 0; step < maxSteps; step++) {
+      if (a.winner() != null || a.numTurns >= Game.TURNS_LIMIT) return null;
+      int n = reference.legalIds(a, referenceIds);
+      int m = candidate.legalIds(b, candidateIds);
+      Arrays.sort(referenceIds, 0, n);
+      Arrays.sort(candidateIds, 0, m);
+      if (!Arrays.equals(referenceIds, 0, n, candidateIds, 0, m))
+        return failure(seed, step, legalDifference(a, n, m));
+      if (n == 0) return null;
+      int choice = (choices != null ? choices[step] : rng.nextInt(n)) % n;
+      if (step == trace.length) trace = Arrays.copyOf(trace, 2 * step);
+      trace[step] = choice;
+      int id = referenceIds[choice];
+      String thrownA = applyCatching(reference, a, id);
+      String thrownB = applyCatching(candidate, b, id);
+      steps++;
+      if (thrownA != null || thrownB != null) {
+        if (thrownA != null && thrownA.equals(thrownB)) return null; // both reject the action
+        return failure(
+            seed,
+            step + 1,
+            reference.name() + " threw " + thrownA + ", " + candidate.name() + " threw " + thrownB);
+      }
+      diff = compare(a, b);
+      if (diff != null) return failure(seed, step + 1, diff);
+    }
+    return null;
+  }
+
+  private Failure failure(long seed, int step, String message) {
+    // The trace up to and including the step that diverged
+    return new Failure(seed, Arrays.copyOf(trace, Math.max(0, step)), step, message);
+  }
+
+  private static String applyCatching(Engine engine, State state, int id) {
+    try {
+      engine.apply(state, id);
+      return null;
+    } catch (RuntimeException e) {
+      return e.getClass().getSimpleName() + ": " + e.getMessage();
+    }
+  }
+
+  private String compare(State a, State b) {
+    String diff = StateDiff.firstDifference(a, b);
+    if (diff != null) return diff;
+    if (Zobrist.hash(a) != Zobrist.hash(b)) return "hashes differ";
+    return null;
+  }
+
+  // The ids only one engine offers, as actions
+  private String legalDifference(State state, int n, int m) {
+    ActionSpace space = ActionSpace.of(state.map);
+    List<String> onlyReference = new ArrayList<>(), onlyCandidate = new ArrayList<>();
+    for (int i = 0; i < n; i++) {
+      if (Arrays.binarySearch(candidateIds, 0, m, referenceIds[i]) < 0)
+        onlyReference.add(space.action(state.currentColor(), referenceIds[i]).toString());
+    }
+    for (int i = 0; i < m; i++) {
+      if (Arrays.binarySearch(referenceIds, 0, n, candidateIds[i]) < 0)
+        onlyCandidate.add(space.action(state.currentColor(), candidateIds[i]).toString());
+    }
+    return "legal actions differ; only "
+        + reference.name()
+        + ": "
+        + onlyReference
+        + ", only "
+        + candidate.name()
+        + ": "
+        + onlyCandidate;
+  }
+
+  public static void main(String[] args) throws Exception {
+    double seconds = args.length > 0 ? Double.parseDouble(args[0]) : 60;
+    int threads = args.length > 1 ? Integer.parseInt(args[1]) : 1;
+    long firstSeed = args.length > 2 ? Long.parseLong(args[2]) : 0;
+    List<Player> players = new ArrayList<>();
+    for (int s = 0; s < 4; s++) players.add(new RandomPlayer(PlayerColor.values()[s]));
+
+    AtomicLong totalSteps = new AtomicLong(), games = new AtomicLong();
+    long end = System.nanoTime() + (long) (seconds * 1e9);
+    ExecutorService pool = Executors.newFixedThreadPool(threads);
+    List<Future<Failure>> results = new ArrayList<>();
+    long start = System.nanoTime();
+    for (int t = 0; t < threads; t++) {
+      long offset = t;
+      results.add(
+          pool.submit(
+              () -> {
+                var fuzzer =
+                    new DifferentialFuzzer(new ReferenceEngine(players), new PooledEngine(players));
+                try {
+                  for (long seed = firstSeed + offset; System.nanoTime() < end; seed += threads) {
+                    games.incrementAndGet();
+                    Failure failure = fuzzer.fuzz(seed, new Random(seed), Integer.MAX_VALUE);
+                    if (failure != null) return fuzzer.shrink(failure);
+                  }
+                  return null;
+                } finally {
+                  totalSteps.addAndGet(fuzzer.steps());
+                }
+              }));
+    }
+    Failure failure = null;
+    for (Future<Failure> result : results) if (failure == null) failure = result.get();
+    pool.shutdown();
+    double minutes = (System.nanoTime() - start) / 6e10;
+    System.out.printf(
+        "games=%d steps=%d steps/minute=%.0f%n",
+        games.get(), totalSteps.get(), totalSteps.get() / minutes);
+    if (failure != null) {
+      System.out.println("DIVERGED " + failure);
+      System.exit(1);
+    }
+  }
+}
@@ -0,0 +1,24 @@
+package com.catanatron.core.fuzz;
+
+import com.catanatron.core.engine.ActionSpace;
+import com.catanatron.core.engine.State;
+
+/**
+ * A rules implementation the {@link DifferentialFuzzer} can drive. Actions are named by {@link
+ * ActionSpace} ids, so implementations need not share action objects, and games are {@link State}s
+ * so that two of them can be compared field by field. An instance is used by one thread.
+ */
+public interface Engine {
+  String name();
+
+  /** A new game dealt from {@code seed}, as {@code new State(players, seed)} deals it. */
+  State newGame(long seed);
+
+  /**
+   * Writes the ids of the legal actions, in any order, into {@code out} (sized for the action
+   * space) and returns how many there are.
+   */
+  int legalIds(State state, int[] out);
+
+  void apply(State state, int id);
+}
@@ -0,0 +1,46 @@
+package com.catanatron.core.fuzz;
+
+import com.catanatron.core.engine.ActionSpace;
+import com.catanatron.core.engine.LegalActions;
+import com.catanatron.core.engine.Player;
+import com.catanatron.core.engine.Reducer;
+import com.catanatron.core.engine.State;
+import java.util.List;
+
+/**
+ * The rollout path: one {@link State} reset in place for every game, a reused {@link LegalActions}
+ * read by id and {@link Reducer#step}.
+ */
+public final class PooledEngine implements Engine {
+  private final List<Player> players;
+  private final LegalActions legal = new LegalActions();
+  private State state;
+
+  public PooledEngine(List<Player> players) {
+    this.players = players;
+  }
+
+  @Override
+  public String name() {
+    return "pooled";
+  }
+
+  @Override
+  public State newGame(long seed) {
+    if (state == null) state = new State(players, seed);
+    else state.reset(seed, null);
+    return state;
+  }
+
+  @Override
+  public int legalIds(State state, int[] out) {
+    legal.reset(state);
+    for (int k = 0; k < legal.count(); k++) out[k] = legal.idAt(k);
+    return legal.count();
+  }
+
+  @Override
+  public void apply(State state, int id) {
+    Reducer.step(state, ActionSpace.of(state.map).action(state.currentColor(), id));
+  }
+}
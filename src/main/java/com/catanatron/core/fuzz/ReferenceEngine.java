@@ -0,0 +1,44 @@
+package com.catanatron.core.fuzz;
+
+import com.catanatron.core.engine.ActionSpace;
+import com.catanatron.core.engine.MoveGeneration;
+import com.catanatron.core.engine.Player;
+import com.catanatron.core.engine.Reducer;
+import com.catanatron.core.engine.State;
+import com.catanatron.core.model.Action;
+import java.util.List;
+
+/**
+ * The straightforward path: a new {@link State} per game, the materialized move list of {@link
+ * MoveGeneration#generatePlayable} and {@link Reducer#apply} with its action record.
+ */
+public final class ReferenceEngine implements Engine {
+  private final List<Player> players;
+
+  public ReferenceEngine(List<Player> players) {
+    this.players = players;
+  }
+
+  @Override
+  public String name() {
+    return "reference";
+  }
+
+  @Override
+  public State newGame(long seed) {
+    return new State(players, seed);
+  }
+
+  @Override
+  public int legalIds(State state, int[] out) {
+    ActionSpace space = ActionSpace.of(state.map);
+    List<Action<?>> playable = MoveGeneration.generatePlayable(state);
+    for (int i = 0; i < playable.size(); i++) out[i] = space.id(playable.get(i));
+    return playable.size();
+  }
+
+  @Override
+  public void apply(State state, int id) {
+    Reducer.apply(state, ActionSpace.of(state.map).action(state.currentColor(), id));
+  }
+}
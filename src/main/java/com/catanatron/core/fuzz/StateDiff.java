@@ -0,0 +1,79 @@
+package com.catanatron.core.fuzz;
+
+import com.catanatron.core.engine.PlayerStateMap;
+import com.catanatron.core.engine.State;
+import com.catanatron.core.model.PlayerColor;
+import java.util.Arrays;
+
+/**
+ * Field-by-field comparison of two game states; allocates only to describe a difference. The random
+ * generator is left out: engines that agree on everything else but consume it differently diverge
+ * at the next roll or steal.
+ */
+public final class StateDiff {
+  private StateDiff() {}
+
+  /** The first field in which the states differ, described, or null if they agree. */
+  public static String firstDifference(State a, State b) {
+    if (!a.colors.equals(b.colors)) return "colors " + a.colors + " vs " + b.colors;
+    if (a.currentPlayerIndex != b.currentPlayerIndex)
+      return field("currentPlayerIndex", a.currentPlayerIndex, b.currentPlayerIndex);
+    if (a.currentTurnIndex != b.currentTurnIndex)
+      return field("currentTurnIndex", a.currentTurnIndex, b.currentTurnIndex);
+    if (a.numTurns != b.numTurns) return field("numTurns", a.numTurns, b.numTurns);
+    if (a.currentPrompt != b.currentPrompt)
+      return "currentPrompt " + a.currentPrompt + " vs " + b.currentPrompt;
+    if (a.isInitialBuildPhase != b.isInitialBuildPhase
+        || a.isDiscarding != b.isDiscarding
+        || a.isMovingKnight != b.isMovingKnight
+        || a.isRoadBuilding != b.isRoadBuilding
+        || a.isResolvingTrade != b.isResolvingTrade
+        || a.isDeckSeeded != b.isDeckSeeded) return "phase flags";
+    if (a.freeRoadsAvailable != b.freeRoadsAvailable)
+      return field("freeRoadsAvailable", a.freeRoadsAvailable, b.freeRoadsAvailable);
+    if (a.robberTileId != b.robberTileId)
+      return field("robberTileId", a.robberTileId, b.robberTileId);
+    if (a.tradeOffersThisTurn != b.tradeOffersThisTurn)
+      return field("tradeOffersThisTurn", a.tradeOffersThisTurn, b.tradeOffersThisTurn);
+    if (!Arrays.equals(a.bank, b.bank))
+      return "bank " + Arrays.toString(a.bank) + " vs " + Arrays.toString(b.bank);
+    if (!Arrays.equals(a.developmentDeck, b.developmentDeck))
+      return "developmentDeck "
+          + Arrays.toString(a.developmentDeck)
+          + " vs "
+          + Arrays.toString(b.developmentDeck);
+    if (!Arrays.equals(a.portAccess, b.portAccess)) return "portAccess";
+    if (!Arrays.equals(a.currentTradeOffer, b.currentTradeOffer)) return "currentTradeOffer";
+    if (!Arrays.equals(a.acceptees, b.acceptees)) return "acceptees";
+    if (!a.lastInitialSettlement.equals(b.lastInitialSettlement))
+      return "lastInitialSettlement " + a.lastInitialSettlement + " vs " + b.lastInitialSettlement;
+    for (int seat = 0; seat < a.colors.size(); seat++) {
+      for (int f = 0; f < PlayerStateMap.FIELDS.length; f++) {
+        int x = a.playerState.get(seat, f), y = b.playerState.get(seat, f);
+        if (x != y) return field("P" + seat + PlayerStateMap.FIELDS[f], x, y);
+      }
+      if (a.handSize(seat) != b.handSize(seat))
+        return field("hand size of P" + seat, a.handSize(seat), b.handSize(seat));
+    }
+    if (a.winner() != b.winner()) return "winner " + a.winner() + " vs " + b.winner();
+    if (a.map.edgeA.length != b.map.edgeA.length || a.board.nodeWords() != b.board.nodeWords())
+      return "map size";
+    for (PlayerColor color : a.colors) {
+      for (int w = 0; w < a.board.nodeWords(); w++) {
+        if (a.board.settlementNodeWord(color, w) != b.board.settlementNodeWord(color, w))
+          return color + " settlements in word " + w;
+        if (a.board.cityNodeWord(color, w) != b.board.cityNodeWord(color, w))
+          return color + " cities in word " + w;
+      }
+    }
+    for (int e = 0; e < a.map.edgeA.length; e++) {
+      if (a.board.roadAt(e) != b.board.roadAt(e))
+        return "road on edge " + e + ": " + a.board.roadAt(e) + " vs " + b.board.roadAt(e);
+    }
+    return null;
+  }
+
+  private static String field(String name, int a, int b) {
+    return name + " " + a + " vs " + b;
+  }
+}
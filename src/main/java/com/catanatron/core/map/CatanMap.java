@@ -2,39 +2,127 @@ package com.catanatron.core.map;
 
 import com.catanatron.core.map.tiles.Edge;
 import com.catanatron.core.map.tiles.LandTile;
+import com.catanatron.core.map.tiles.Port;
 import com.catanatron.core.map.tiles.Tile;
 import com.catanatron.core.map.tiles.Water;
 import com.catanatron.core.model.Resource;
+import com.catanatron.core.util.Bits;
 import java.util.*;
 
 public class CatanMap {
+  // Port bits in nodePortMask / per-player masks: bit r for a 2:1 port of resource ordinal r
+  public static final int THREE_TO_ONE_PORT = 1 << Resource.COUNT;
+
   public final Map<Coordinate, Tile> tiles = new LinkedHashMap<>();
   public final Map<Coordinate, LandTile> landTiles = new LinkedHashMap<>();
   public final Map<Integer, List<LandTile>> adjacentTiles = new HashMap<>(); // nodeId -> tiles
   public final Map<Integer, LandTile> tilesById = new HashMap<>();
+  public final List<Port> ports = new ArrayList<>();
 
   public final Set<Integer> landNodes = new HashSet<>();
-  public final Set<Long> edgeKeys = new HashSet<>(); // encoded (min,max)
   public final Map<Integer, Set<Integer>> nodeNeighbors = new HashMap<>();
   public final Map<Integer, Integer> tileNumberById = new HashMap<>();
   public final Map<Integer, com.catanatron.core.model.Resource> tileResourceById = new HashMap<>();
   public final Map<Integer, Set<Integer>> tileNodesById = new HashMap<>();
 
+  // Dense adjacency indexed by node id; nodeEdgeIds[n][i] connects n to nodeNeighborIds[n][i]
+  public int[][] nodeNeighborIds;
+  public int[][] nodeEdgeIds;
+  // edge id -> endpoints (edgeA < edgeB)
+  public int[] edgeA;
+  public int[] edgeB;
+  public int[] landTileIds; // ascending
+  public int[][] tileNodeIds; // tile id -> corner node ids, ascending; empty unless land
+  public int nodeWords; // longs per node bitset (see Bits); 1 up to 64 nodes, as on the BASE map
+  public long[] landNodeWords; // node bitset
+  public int[][] tileIdsByNumber; // dice number -> land tile ids, ascending
+  public int[][] nodeTileIds; // node id -> adjacent land tile ids, ascending
+  public Resource[] tileResources; // tile id -> resource; null for deserts and non-land
+  public int[] tileNumbers; // tile id -> dice number; 0 for deserts and non-land
+  public int desertTileId; // first desert, else 0
+  public int[] nodePortMask; // node id -> port bits (0 if none)
+  public NodeValues nodeValues; // production tables of this layout
+
   public static CatanMap base() {
     return fromTemplate(MapTemplate.buildBaseTemplate());
   }
 
-  private static CatanMap fromTemplate(MapTemplate mapTemplate) {
+  public static CatanMap base(Random rng) {
+    return fromTemplate(MapTemplate.buildBaseTemplate(rng));
+  }
+
+  /** The 30-tile board of the 5–6 player extension. */
+  public static CatanMap extension(Random rng) {
+    return fromTemplate(MapTemplate.buildExtensionTemplate(rng));
+  }
+
+  /** A roughly round map of {@code landTiles} tiles grown at random; see {@link MapTemplate}. */
+  public static CatanMap procedural(int landTiles, Random rng) {
+    return fromTemplate(MapTemplate.buildProceduralTemplate(landTiles, rng));
+  }
+
+  /** A map of any hex topology; tile and node ids follow the template's insertion order. */
+  public static CatanMap fromTemplate(MapTemplate mapTemplate) {
     CatanMap m = new CatanMap();
     buildTiles(m, mapTemplate);
     m.rebuildCaches();
     return m;
   }
 
+  /**
+   * Deals {@code template}'s resources, numbers and ports onto this map in place; afterwards it
+   * matches {@code fromTemplate(template)}. The template must have this map's topology, with hexes
+   * in the same order: node, edge and tile ids and the adjacency tables stay as they are, and so
+   * does an {@code ActionSpace} built for the map. For maps nobody else relies on, since everything
+   * holding this one sees the new deal.
+   */
+  public void redeal(MapTemplate template) {
+    Map<Coordinate, Object> topology = template.topology();
+    if (topology.size() != tiles.size())
+      throw new IllegalArgumentException("template has another topology");
+    Iterator<Coordinate> order = topology.keySet().iterator();
+    for (Map.Entry<Coordinate, Tile> entry : tiles.entrySet()) {
+      Coordinate c = order.next();
+      boolean land = topology.get(c) == LandTile.class;
+      if (!c.equals(entry.getKey()) || land != (entry.getValue() instanceof LandTile))
+        throw new IllegalArgumentException("template has another topology");
+    }
+    int landIndex = 0;
+    int desertsBefore = 0;
+    int portIndex = 0;
+    for (Map.Entry<Coordinate, Tile> entry : tiles.entrySet()) {
+      if (entry.getValue() instanceof LandTile lt) {
+        Resource resource = template.tileResources().get(landIndex);
+        Integer number =
+            resource == null ? null : template.numbers().get(landIndex - desertsBefore);
+        if (resource == null) desertsBefore++;
+        landIndex++;
+        LandTile dealt = new LandTile(lt.id(), resource, number, lt.nodes(), lt.edges());
+        entry.setValue(dealt);
+        landTiles.put(entry.getKey(), dealt);
+        tilesById.put(lt.id(), dealt);
+        tileNumberById.put(lt.id(), number);
+        tileResourceById.put(lt.id(), resource);
+      } else if (entry.getValue() instanceof Port port) {
+        Resource resource = template.portResources().get(portIndex);
+        Port dealt = new Port(port.id(), resource, port.direction(), port.nodes(), port.edges());
+        entry.setValue(dealt);
+        ports.set(portIndex++, dealt);
+      }
+    }
+    for (List<LandTile> adjacent : adjacentTiles.values()) {
+      for (int i = 0; i < adjacent.size(); i++)
+        adjacent.set(i, tilesById.get(adjacent.get(i).id()));
+    }
+    dealCaches();
+  }
+
   private static void buildTiles(CatanMap catanMap, MapTemplate mapTemplate) {
     int nodeAutoinc = 0;
     int landIndex = 0;
+    int desertsBefore = 0;
     int idAutoinc = 0;
+    int portIndex = 0;
     // Maintain insertion order for deterministic ids
     for (Map.Entry<Coordinate, Object> entry : mapTemplate.topology().entrySet()) {
       Coordinate coordinate = entry.getKey();
@@ -52,43 +140,41 @@ public class CatanMap {
 
       // Share with neighbors if present
       for (Direction direction : Direction.values()) {
-        Coordinate nodeCoordinate = add(coordinate, direction);
-        Tile neighbor = catanMap.tiles.get(nodeCoordinate);
-        if (neighbor == null) {
+        Coordinate nodeCoordinate = coordinate.neighbor(direction);
+        Tile neighborTile = catanMap.tiles.get(nodeCoordinate);
+        if (neighborTile == null) {
           continue;
         }
-        if (neighbor instanceof LandTile neighborTile) {
-          switch (direction) {
-            case EAST -> {
-              nodes.put(NodeRef.NORTHEAST, neighborTile.nodes().get(NodeRef.NORTHWEST));
-              nodes.put(NodeRef.SOUTHEAST, neighborTile.nodes().get(NodeRef.SOUTHWEST));
-              edges.put(EdgeRef.EAST, neighborTile.edges().get(EdgeRef.WEST));
-            }
-            case SOUTHEAST -> {
-              nodes.put(NodeRef.SOUTH, neighborTile.nodes().get(NodeRef.NORTHWEST));
-              nodes.put(NodeRef.SOUTHEAST, neighborTile.nodes().get(NodeRef.NORTH));
-              edges.put(EdgeRef.SOUTHEAST, neighborTile.edges().get(EdgeRef.NORTHWEST));
-            }
-            case SOUTHWEST -> {
-              nodes.put(NodeRef.SOUTH, neighborTile.nodes().get(NodeRef.NORTHEAST));
-              nodes.put(NodeRef.SOUTHWEST, neighborTile.nodes().get(NodeRef.NORTH));
-              edges.put(EdgeRef.SOUTHWEST, neighborTile.edges().get(EdgeRef.NORTHEAST));
-            }
-            case WEST -> {
-              nodes.put(NodeRef.NORTHWEST, neighborTile.nodes().get(NodeRef.NORTHEAST));
-              nodes.put(NodeRef.SOUTHWEST, neighborTile.nodes().get(NodeRef.SOUTHEAST));
-              edges.put(EdgeRef.WEST, neighborTile.edges().get(EdgeRef.EAST));
-            }
-            case NORTHWEST -> {
-              nodes.put(NodeRef.NORTH, neighborTile.nodes().get(NodeRef.SOUTHEAST));
-              nodes.put(NodeRef.NORTHWEST, neighborTile.nodes().get(NodeRef.SOUTH));
-              edges.put(EdgeRef.NORTHWEST, neighborTile.edges().get(EdgeRef.SOUTHEAST));
-            }
-            case NORTHEAST -> {
-              nodes.put(NodeRef.NORTH, neighborTile.nodes().get(NodeRef.SOUTHWEST));
-              nodes.put(NodeRef.NORTHEAST, neighborTile.nodes().get(NodeRef.SOUTH));
-              edges.put(EdgeRef.NORTHEAST, neighborTile.edges().get(EdgeRef.SOUTHWEST));
-            }
+        switch (direction) {
+          case EAST -> {
+            nodes.put(NodeRef.NORTHEAST, neighborTile.nodes().get(NodeRef.NORTHWEST));
+            nodes.put(NodeRef.SOUTHEAST, neighborTile.nodes().get(NodeRef.SOUTHWEST));
+            edges.put(EdgeRef.EAST, neighborTile.edges().get(EdgeRef.WEST));
+          }
+          case SOUTHEAST -> {
+            nodes.put(NodeRef.SOUTH, neighborTile.nodes().get(NodeRef.NORTHWEST));
+            nodes.put(NodeRef.SOUTHEAST, neighborTile.nodes().get(NodeRef.NORTH));
+            edges.put(EdgeRef.SOUTHEAST, neighborTile.edges().get(EdgeRef.NORTHWEST));
+          }
+          case SOUTHWEST -> {
+            nodes.put(NodeRef.SOUTH, neighborTile.nodes().get(NodeRef.NORTHEAST));
+            nodes.put(NodeRef.SOUTHWEST, neighborTile.nodes().get(NodeRef.NORTH));
+            edges.put(EdgeRef.SOUTHWEST, neighborTile.edges().get(EdgeRef.NORTHEAST));
+          }
+          case WEST -> {
+            nodes.put(NodeRef.NORTHWEST, neighborTile.nodes().get(NodeRef.NORTHEAST));
+            nodes.put(NodeRef.SOUTHWEST, neighborTile.nodes().get(NodeRef.SOUTHEAST));
+            edges.put(EdgeRef.WEST, neighborTile.edges().get(EdgeRef.EAST));
+          }
+          case NORTHWEST -> {
+            nodes.put(NodeRef.NORTH, neighborTile.nodes().get(NodeRef.SOUTHEAST));
+            nodes.put(NodeRef.NORTHWEST, neighborTile.nodes().get(NodeRef.SOUTH));
+            edges.put(EdgeRef.NORTHWEST, neighborTile.edges().get(EdgeRef.SOUTHEAST));
+          }
+          case NORTHEAST -> {
+            nodes.put(NodeRef.NORTH, neighborTile.nodes().get(NodeRef.SOUTHWEST));
+            nodes.put(NodeRef.NORTHEAST, neighborTile.nodes().get(NodeRef.SOUTH));
+            edges.put(EdgeRef.NORTHEAST, neighborTile.edges().get(EdgeRef.SOUTHWEST));
           }
         }
       }
@@ -113,15 +199,16 @@ public class CatanMap {
         // assign resource/number in order, desert gets null/none
         Resource resource = mapTemplate.tileResources().get(landIndex);
         Integer number =
-            (resource == null
-                ? null
-                : mapTemplate
-                    .numbers()
-                    .get(landIndex - countDesertsBefore(mapTemplate.tileResources(), landIndex)));
+            resource == null ? null : mapTemplate.numbers().get(landIndex - desertsBefore);
+        if (resource == null) desertsBefore++;
         tile = new LandTile(idAutoinc, resource, number, nodes, edges);
         catanMap.landTiles.put(coordinate, (LandTile) tile);
         catanMap.tilesById.put(idAutoinc, (LandTile) tile);
         landIndex++;
+      } else if (kind instanceof Map.Entry<?, ?> portKind && portKind.getKey() == Port.class) {
+        Resource resource = mapTemplate.portResources().get(portIndex++);
+        tile = new Port(idAutoinc, resource, (Direction) portKind.getValue(), nodes, edges);
+        catanMap.ports.add((Port) tile);
       } else {
         tile = new Water(nodes, edges);
       }
@@ -130,16 +217,6 @@ public class CatanMap {
     }
   }
 
-  private static int countDesertsBefore(List<Resource> tileResources, int idx) {
-    int count = 0;
-    for (int i = 0; i < idx; i++) {
-      if (tileResources.get(i) == null) {
-        count++;
-      }
-    }
-    return count;
-  }
-
   private static int edgeA(EdgeRef er, EnumMap<NodeRef, Integer> n) {
     return switch (er) {
       case EAST -> n.get(NodeRef.NORTHEAST);
@@ -162,17 +239,6 @@ public class CatanMap {
     };
   }
 
-  private static Coordinate add(Coordinate c, Direction d) {
-    return switch (d) {
-      case EAST -> new Coordinate(c.q + 1, c.r - 1, c.s);
-      case SOUTHEAST -> new Coordinate(c.q, c.r - 1, c.s + 1);
-      case SOUTHWEST -> new Coordinate(c.q - 1, c.r, c.s + 1);
-      case WEST -> new Coordinate(c.q - 1, c.r + 1, c.s);
-      case NORTHWEST -> new Coordinate(c.q, c.r + 1, c.s - 1);
-      case NORTHEAST -> new Coordinate(c.q + 1, c.r, c.s - 1);
-    };
-  }
-
   private void rebuildCaches() {
     // land nodes
     for (LandTile lt : landTiles.values()) {
@@ -180,8 +246,6 @@ public class CatanMap {
       for (Edge e : lt.edges().values()) {
         int a = Math.min(e.a(), e.b());
         int b = Math.max(e.a(), e.b());
-        long key = (((long) a) << 32) | (b & 0xffffffffL);
-        edgeKeys.add(key);
         nodeNeighbors.computeIfAbsent(a, k -> new HashSet<>()).add(b);
         nodeNeighbors.computeIfAbsent(b, k -> new HashSet<>()).add(a);
       }
@@ -195,6 +259,129 @@ public class CatanMap {
         adjacentTiles.computeIfAbsent(nodeId, k -> new ArrayList<>()).add(lt);
       }
     }
+    rebuildDenseCaches();
+  }
+
+  private void rebuildDenseCaches() {
+    int numNodes = 0;
+    for (Integer nodeId : landNodes) numNodes = Math.max(numNodes, nodeId + 1);
+    nodeWords = Bits.words(numNodes);
+    landNodeWords = new long[nodeWords];
+    for (Integer nodeId : landNodes) Bits.set(landNodeWords, 0, nodeId);
+
+    // Edge ids in tile insertion order for determinism; no hashing, as (min, max) pairs packed
+    // into a long collide badly on large maps
+    nodeNeighborIds = new int[numNodes][];
+    nodeEdgeIds = new int[numNodes][];
+    int ends = 0;
+    for (int n = 0; n < numNodes; n++) {
+      int d = nodeNeighbors.getOrDefault(n, Set.of()).size();
+      nodeNeighborIds[n] = new int[d];
+      nodeEdgeIds[n] = new int[d];
+      ends += d;
+    }
+    edgeA = new int[ends / 2];
+    edgeB = new int[ends / 2];
+    int[] degree = new int[numNodes];
+    int nextEdgeId = 0;
+    for (LandTile lt : landTiles.values()) {
+      for (Edge e : lt.edges().values()) {
+        int a = Math.min(e.a(), e.b()), b = Math.max(e.a(), e.b());
+        if (indexOf(nodeNeighborIds[a], degree[a], b) >= 0) continue; // shared with an earlier tile
+        edgeA[nextEdgeId] = a;
+        edgeB[nextEdgeId] = b;
+        nodeNeighborIds[a][degree[a]] = b;
+        nodeEdgeIds[a][degree[a]++] = nextEdgeId;
+        nodeNeighborIds[b][degree[b]] = a;
+        nodeEdgeIds[b][degree[b]++] = nextEdgeId;
+        nextEdgeId++;
+      }
+    }
+    landTileIds = tilesById.keySet().stream().mapToInt(Integer::intValue).sorted().toArray();
+    tileNodeIds = new int[landTileIds[landTileIds.length - 1] + 1][];
+    Arrays.fill(tileNodeIds, new int[0]);
+    for (LandTile lt : tilesById.values()) {
+      tileNodeIds[lt.id()] =
+          lt.nodes().values().stream().mapToInt(Integer::intValue).sorted().toArray();
+    }
+    nodeTileIds = new int[numNodes][];
+    int[] tilesPerNode = new int[numNodes];
+    for (int tileId : landTileIds) for (int n : tileNodeIds[tileId]) tilesPerNode[n]++;
+    for (int n = 0; n < numNodes; n++) nodeTileIds[n] = new int[tilesPerNode[n]];
+    Arrays.fill(tilesPerNode, 0);
+    for (int tileId : landTileIds) {
+      for (int n : tileNodeIds[tileId]) nodeTileIds[n][tilesPerNode[n]++] = tileId;
+    }
+    dealCaches();
+  }
+
+  // Tables that depend on the deal (resources, numbers, ports) rather than the topology; reuses
+  // their storage when re-dealing
+  private void dealCaches() {
+    int numNodes = nodeNeighborIds.length;
+    if (tileResources == null) {
+      tileResources = new Resource[tileNodeIds.length];
+      tileNumbers = new int[tileNodeIds.length];
+      tileIdsByNumber = new int[13][];
+      nodePortMask = new int[numNodes];
+    }
+    int[] perNumber = new int[13];
+    desertTileId = -1;
+    for (int tileId : landTileIds) {
+      LandTile lt = tilesById.get(tileId);
+      tileResources[tileId] = lt.resource();
+      tileNumbers[tileId] = lt.number() == null ? 0 : lt.number();
+      if (lt.number() != null) perNumber[lt.number()]++;
+      if (lt.resource() == null && desertTileId < 0) desertTileId = tileId;
+    }
+    if (desertTileId < 0) desertTileId = 0;
+    for (int number = 0; number < 13; number++) {
+      if (tileIdsByNumber[number] == null || tileIdsByNumber[number].length != perNumber[number])
+        tileIdsByNumber[number] = new int[perNumber[number]];
+    }
+    Arrays.fill(perNumber, 0);
+    for (int tileId : landTileIds) {
+      int number = tileNumbers[tileId];
+      if (number != 0) tileIdsByNumber[number][perNumber[number]++] = tileId;
+    }
+
+    Arrays.fill(nodePortMask, 0);
+    for (Port port : ports) {
+      int bit = port.resource() == null ? THREE_TO_ONE_PORT : 1 << port.resource().ordinal();
+      for (NodeRef nodeRef : portNodeRefs(port.direction())) {
+        int nodeId = port.nodes().get(nodeRef);
+        if (nodeId < numNodes) nodePortMask[nodeId] |= bit;
+      }
+    }
+    if (nodeValues == null) nodeValues = new NodeValues(this);
+    else nodeValues.compute(this);
+  }
+
+  // The two port nodes lie on the side facing the land tile in the port's direction
+  private static NodeRef[] portNodeRefs(Direction direction) {
+    return switch (direction) {
+      case WEST -> new NodeRef[] {NodeRef.NORTHWEST, NodeRef.SOUTHWEST};
+      case NORTHWEST -> new NodeRef[] {NodeRef.NORTH, NodeRef.NORTHWEST};
+      case NORTHEAST -> new NodeRef[] {NodeRef.NORTHEAST, NodeRef.NORTH};
+      case EAST -> new NodeRef[] {NodeRef.SOUTHEAST, NodeRef.NORTHEAST};
+      case SOUTHEAST -> new NodeRef[] {NodeRef.SOUTH, NodeRef.SOUTHEAST};
+      case SOUTHWEST -> new NodeRef[] {NodeRef.SOUTHWEST, NodeRef.SOUTH};
+    };
+  }
+
+  private static int indexOf(int[] values, int length, int value) {
+    for (int i = 0; i < length; i++) if (values[i] == value) return i;
+    return -1;
+  }
+
+  /** Edge id connecting two nodes, or -1 if they are not adjacent. */
+  public int edgeId(int nodeA, int nodeB) {
+    if (nodeA < 0 || nodeA >= nodeEdgeIds.length) return -1;
+    int[] neighbors = nodeNeighborIds[nodeA];
+    for (int i = 0; i < neighbors.length; i++) {
+      if (neighbors[i] == nodeB) return nodeEdgeIds[nodeA][i];
+    }
+    return -1;
   }
 
   public Set<Integer> getTileIdsByNumber(int number) {
@@ -214,10 +401,6 @@ public class CatanMap {
   }
 
   public int getDesertTileId() {
-    for (Map.Entry<Integer, com.catanatron.core.model.Resource> e : tileResourceById.entrySet()) {
-      if (e.getValue() == null) return e.getKey();
-    }
-    // fallback (shouldn't happen in BASE)
-    return 0;
+    return desertTileId;
   }
 }
@@ -1,7 +1,5 @@
 package com.catanatron.core.map;
 
-import java.util.Objects;
-
 // Cube coordinates (q, r, s) with q+r+s = 0
 public final class Coordinate {
   public final int q, r, s;
@@ -17,6 +15,18 @@ public final class Coordinate {
     return new Coordinate(q + o.q, r + o.r, s + o.s);
   }
 
+  /** The adjacent hex in {@code direction}. */
+  public Coordinate neighbor(Direction direction) {
+    return switch (direction) {
+      case EAST -> new Coordinate(q + 1, r - 1, s);
+      case SOUTHEAST -> new Coordinate(q, r - 1, s + 1);
+      case SOUTHWEST -> new Coordinate(q - 1, r, s + 1);
+      case WEST -> new Coordinate(q - 1, r + 1, s);
+      case NORTHWEST -> new Coordinate(q, r + 1, s - 1);
+      case NORTHEAST -> new Coordinate(q + 1, r, s - 1);
+    };
+  }
+
   @Override
   public boolean equals(Object o) {
     if (this == o) return true;
@@ -26,7 +36,8 @@ public final class Coordinate {
 
   @Override
   public int hashCode() {
-    return Objects.hash(q, r, s);
+    // s follows from q and r; Objects.hash(q, r, s) collides along whole rows on large maps
+    return q * 0x9E3779B9 + r;
   }
 
   @Override
@@ -1,12 +1,20 @@
 package com.catanatron.core.map;
 
 import com.catanatron.core.map.tiles.LandTile;
+import com.catanatron.core.map.tiles.Port;
+import com.catanatron.core.map.tiles.Water;
 import com.catanatron.core.model.Resource;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
+import java.util.Set;
 
 public record MapTemplate(
     List<Integer> numbers,
@@ -14,42 +22,60 @@ public record MapTemplate(
     List<Resource> tileResources, // includes null for desert
     Map<Coordinate, Object> topology // LandTile.class, Water.class, or (Port.class, Direction)
     ) {
+  // Spiral order of the base numbers; deserts are skipped
+  private static final List<Integer> BASE_NUMBERS =
+      List.of(11, 3, 6, 5, 4, 9, 10, 8, 4, 11, 12, 9, 10, 8, 3, 6, 2, 5);
+  // null is a 3:1 port
+  private static final List<Resource> BASE_PORTS =
+      Arrays.asList(
+          Resource.WOOD,
+          Resource.BRICK,
+          Resource.SHEEP,
+          Resource.WHEAT,
+          Resource.ORE,
+          null,
+          null,
+          null,
+          null);
+  // null is the desert
+  private static final List<Resource> BASE_TILES =
+      Arrays.asList(
+          Resource.WOOD,
+          Resource.WOOD,
+          Resource.WOOD,
+          Resource.WOOD,
+          Resource.BRICK,
+          Resource.BRICK,
+          Resource.BRICK,
+          Resource.SHEEP,
+          Resource.SHEEP,
+          Resource.SHEEP,
+          Resource.SHEEP,
+          Resource.WHEAT,
+          Resource.WHEAT,
+          Resource.WHEAT,
+          Resource.WHEAT,
+          Resource.ORE,
+          Resource.ORE,
+          Resource.ORE,
+          null);
+  // The same for every base board, so shared by their templates
+  private static final Map<Coordinate, Object> BASE_TOPOLOGY = baseTopology();
+
   public static MapTemplate buildBaseTemplate() {
-    List<Integer> numbers =
-        Arrays.asList(11, 3, 6, 5, 4, 9, 10, 8, 4, 11, 12, 9, 10, 8, 3, 6, 2, 5);
-    List<Resource> ports =
-        Arrays.asList(
-            Resource.WOOD,
-            Resource.BRICK,
-            Resource.SHEEP,
-            Resource.WHEAT,
-            Resource.ORE,
-            null,
-            null,
-            null,
-            null);
-    List<Resource> tiles =
-        Arrays.asList(
-            Resource.WOOD,
-            Resource.WOOD,
-            Resource.WOOD,
-            Resource.WOOD,
-            Resource.BRICK,
-            Resource.BRICK,
-            Resource.BRICK,
-            Resource.SHEEP,
-            Resource.SHEEP,
-            Resource.SHEEP,
-            Resource.SHEEP,
-            Resource.WHEAT,
-            Resource.WHEAT,
-            Resource.WHEAT,
-            Resource.WHEAT,
-            Resource.ORE,
-            Resource.ORE,
-            Resource.ORE,
-            null);
-    Collections.shuffle(tiles);
+    return buildBaseTemplate(new Random());
+  }
+
+  public static MapTemplate buildBaseTemplate(Random rng) {
+    List<Integer> numbers = new ArrayList<>(BASE_NUMBERS);
+    List<Resource> ports = new ArrayList<>(BASE_PORTS);
+    List<Resource> tiles = new ArrayList<>(BASE_TILES);
+    Collections.shuffle(tiles, rng);
+    Collections.shuffle(ports, rng);
+    return new MapTemplate(numbers, ports, tiles, BASE_TOPOLOGY);
+  }
+
+  private static Map<Coordinate, Object> baseTopology() {
     Map<Coordinate, Object> topology = new LinkedHashMap<>();
     // center
     topology.put(new Coordinate(0, 0, 0), LandTile.class);
@@ -73,7 +99,162 @@ public record MapTemplate(
     topology.put(new Coordinate(1, 1, -2), LandTile.class);
     topology.put(new Coordinate(2, 0, -2), LandTile.class);
     topology.put(new Coordinate(2, -1, -1), LandTile.class);
-    // third (water) layer
-    return new MapTemplate(numbers, ports, tiles, topology);
+    // third (water) layer; ports face the land tile in their direction
+    topology.put(new Coordinate(3, -3, 0), port(Direction.WEST));
+    topology.put(new Coordinate(2, -3, 1), Water.class);
+    topology.put(new Coordinate(1, -3, 2), port(Direction.NORTHWEST));
+    topology.put(new Coordinate(0, -3, 3), Water.class);
+    topology.put(new Coordinate(-1, -2, 3), port(Direction.NORTHWEST));
+    topology.put(new Coordinate(-2, -1, 3), Water.class);
+    topology.put(new Coordinate(-3, 0, 3), port(Direction.NORTHEAST));
+    topology.put(new Coordinate(-3, 1, 2), Water.class);
+    topology.put(new Coordinate(-3, 2, 1), port(Direction.EAST));
+    topology.put(new Coordinate(-3, 3, 0), Water.class);
+    topology.put(new Coordinate(-2, 3, -1), port(Direction.EAST));
+    topology.put(new Coordinate(-1, 3, -2), Water.class);
+    topology.put(new Coordinate(0, 3, -3), port(Direction.SOUTHEAST));
+    topology.put(new Coordinate(1, 2, -3), Water.class);
+    topology.put(new Coordinate(2, 1, -3), port(Direction.SOUTHWEST));
+    topology.put(new Coordinate(3, 0, -3), Water.class);
+    topology.put(new Coordinate(3, -1, -2), port(Direction.SOUTHWEST));
+    topology.put(new Coordinate(3, -2, -1), Water.class);
+    return Collections.unmodifiableMap(topology);
+  }
+
+  /**
+   * The 30-tile board of the 5–6 player extension: rows of 3, 4, 5, 6, 5, 4 and 3 tiles, two
+   * deserts, and 11 ports (an extra sheep and 3:1 port). Tiles, numbers and ports are shuffled; the
+   * numbers are not kept apart the way the base template's spiral order keeps them.
+   */
+  public static MapTemplate buildExtensionTemplate(Random rng) {
+    List<Coordinate> land = new ArrayList<>();
+    for (int r = -3; r <= 3; r++) {
+      for (int q = Math.max(-3, -3 - r); q < Math.min(3, 3 - r); q++) {
+        land.add(new Coordinate(q, r, -q - r));
+      }
+    }
+    List<Resource> tiles = new ArrayList<>();
+    int[] perResource = {6, 5, 6, 6, 5}; // by Resource ordinal
+    for (Resource resource : Resource.values()) {
+      tiles.addAll(Collections.nCopies(perResource[resource.ordinal()], resource));
+    }
+    tiles.addAll(Collections.nCopies(2, null));
+    List<Integer> numbers = new ArrayList<>();
+    for (int number = 2; number <= 12; number++) {
+      if (number != 7)
+        numbers.addAll(Collections.nCopies(number == 2 || number == 12 ? 2 : 3, number));
+    }
+    List<Resource> ports = new ArrayList<>(Arrays.asList(Resource.values()));
+    ports.add(Resource.SHEEP);
+    ports.addAll(Collections.nCopies(5, null));
+    Collections.shuffle(tiles, rng);
+    Collections.shuffle(numbers, rng);
+    Collections.shuffle(ports, rng);
+    return surround(land, tiles, numbers, ports);
+  }
+
+  /**
+   * A random island of {@code landTiles} tiles for stress tests: grown from the centre by adding,
+   * one at a time, a random hex next to the land so far, so the shape is roughly round with a
+   * ragged coast. Tiles and numbers repeat the base game's mix (one desert per 19 tiles) and there
+   * is a port on every other coastal water hex. Construction is linear in the number of tiles.
+   */
+  public static MapTemplate buildProceduralTemplate(int landTiles, Random rng) {
+    if (landTiles < 1) throw new IllegalArgumentException("landTiles: " + landTiles);
+    Set<Coordinate> land = new LinkedHashSet<>();
+    Set<Coordinate> frontierSet = new HashSet<>();
+    List<Coordinate> frontier = new ArrayList<>();
+    frontier.add(new Coordinate(0, 0, 0));
+    frontierSet.add(frontier.get(0));
+    while (land.size() < landTiles) {
+      // Swap-remove a random frontier hex
+      int i = rng.nextInt(frontier.size());
+      Coordinate c = frontier.get(i);
+      frontier.set(i, frontier.get(frontier.size() - 1));
+      frontier.remove(frontier.size() - 1);
+      land.add(c);
+      for (Direction d : Direction.values()) {
+        Coordinate n = c.neighbor(d);
+        if (!land.contains(n) && frontierSet.add(n)) frontier.add(n);
+      }
+    }
+    List<Resource> tiles = new ArrayList<>(landTiles);
+    for (int i = 0; i < landTiles; i++) tiles.add(BASE_TILES.get(i % BASE_TILES.size()));
+    Collections.shuffle(tiles, rng);
+    int deserts = Collections.frequency(tiles, null);
+    List<Integer> numbers = new ArrayList<>(landTiles - deserts);
+    for (int i = 0; i < landTiles - deserts; i++)
+      numbers.add(BASE_NUMBERS.get(i % BASE_NUMBERS.size()));
+    Collections.shuffle(numbers, rng);
+    // The coast has at least 2 * sqrt(3 * tiles) hexes, so every other one can hold a port
+    int coast = 0;
+    for (Coordinate c : frontierSet) if (!land.contains(c)) coast++;
+    List<Resource> ports = new ArrayList<>(coast / 2);
+    for (int i = 0; i < coast / 2; i++) ports.add(BASE_PORTS.get(i % BASE_PORTS.size()));
+    Collections.shuffle(ports, rng);
+    return surround(new ArrayList<>(land), tiles, numbers, ports);
+  }
+
+  /**
+   * A template of arbitrary shape: the land tiles in the given order, then a ring of water around
+   * them carrying the ports evenly spaced, each facing a land tile. {@code tileResources} has one
+   * entry per land tile (null for a desert) and {@code numbers} one per non-desert; nothing is
+   * shuffled.
+   */
+  public static MapTemplate surround(
+      List<Coordinate> land,
+      List<Resource> tileResources,
+      List<Integer> numbers,
+      List<Resource> portResources) {
+    if (tileResources.size() != land.size())
+      throw new IllegalArgumentException(tileResources.size() + " resources for " + land.size());
+    Map<Coordinate, Object> topology = new LinkedHashMap<>();
+    for (Coordinate c : land) topology.put(c, LandTile.class);
+    // Water ring in angular order around the land's centre, so that ports spread evenly
+    Set<Coordinate> ring = new LinkedHashSet<>();
+    double cx = 0, cy = 0;
+    for (Coordinate c : land) {
+      cx += x(c);
+      cy += y(c);
+      for (Direction d : Direction.values()) {
+        Coordinate n = c.neighbor(d);
+        if (!topology.containsKey(n)) ring.add(n);
+      }
+    }
+    double ox = cx / land.size(), oy = cy / land.size();
+    List<Coordinate> water = new ArrayList<>(ring);
+    water.sort(Comparator.comparingDouble(c -> Math.atan2(y(c) - oy, x(c) - ox)));
+    int numPorts = portResources.size();
+    if (numPorts > water.size())
+      throw new IllegalArgumentException(numPorts + " ports on " + water.size() + " water tiles");
+    int nextPort = 0;
+    for (int i = 0; i < water.size(); i++) {
+      Coordinate c = water.get(i);
+      boolean isPort =
+          nextPort < numPorts && i == (int) ((long) nextPort * water.size() / numPorts);
+      if (isPort) nextPort++;
+      topology.put(c, isPort ? port(facingLand(c, topology)) : Water.class);
+    }
+    return new MapTemplate(numbers, portResources, tileResources, topology);
+  }
+
+  private static Direction facingLand(Coordinate c, Map<Coordinate, Object> topology) {
+    for (Direction d : Direction.values()) {
+      if (topology.get(c.neighbor(d)) == LandTile.class) return d;
+    }
+    throw new IllegalStateException("no land next to " + c);
+  }
+
+  // Plane position of a hex; any embedding that keeps the three axes 120 degrees apart will do
+  private static double x(Coordinate c) {
+    return 1.5 * c.q;
+  }
+
+  private static double y(Coordinate c) {
+    return Math.sqrt(3) / 2 * (c.r - c.s);
+  }
+
+  private static Map.Entry<Class<Port>, Direction> port(Direction direction) {
+    return Map.entry(Port.class, direction);
   }
 }
@@ -1,3 +1,11 @@
 package com.catanatron.core.map.tiles;
 
-public sealed interface Tile permits LandTile, Port, Water {}
+import com.catanatron.core.map.EdgeRef;
+import com.catanatron.core.map.NodeRef;
+import java.util.Map;
+
+public sealed interface Tile permits LandTile, Port, Water {
+  Map<NodeRef, Integer> nodes();
+
+  Map<EdgeRef, Edge> edges();
+}
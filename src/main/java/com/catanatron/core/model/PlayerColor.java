@@ -1,8 +1,11 @@
 package com.catanatron.core.model;
 
+// GREEN and BROWN seat the fifth and sixth players of the extension
 public enum PlayerColor {
   RED,
   BLUE,
   ORANGE,
-  WHITE
+  WHITE,
+  GREEN,
+  BROWN
 }
@@ -0,0 +1,139 @@
+package com.catanatron.core.search;
+
+import com.catanatron.core.engine.PlayerStateMap;
+import com.catanatron.core.engine.State;
+import com.catanatron.core.model.Action;
+import com.catanatron.core.model.ActionType;
+import com.catanatron.core.model.PlayerColor;
+import com.catanatron.core.model.Resource;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * What one player can know about the others' resource cards, maintained from public information
+ * only. Every opponent's hand is a set of cards known by type plus a number of cards of unknown
+ * type; the hand size is always public. Cards become unknown when a steal between two other players
+ * moves a card face down, and become known again only by being observed; a card spent from the
+ * unknown part reveals nothing about the rest.
+ *
+ * <p>Feed every applied action to {@link #observe} together with the resulting state. The tracker
+ * derives resource movements from the state but hides the type of steals the observer took no part
+ * in. Development cards need no tracking: purchases and plays are public, so the per-type pool is
+ * computed from the state when sampling (see {@link Determinizer}).
+ */
+public final class BeliefTracker {
+  final List<PlayerColor> colors;
+  final PlayerColor observer;
+  final int me;
+  final int seats;
+  // [seat][resource] cards certainly held; exact for the observer
+  final int[][] known;
+  final int[] unknown;
+  // Development cards bought in the current turn, per seat: not yet playable
+  final int[] boughtThisTurn;
+  // Hands at the last observation, to derive the movements of the next action
+  private final int[][] last;
+
+  /** Starts tracking at {@code state}, whose hands are assumed public (e.g. a new game). */
+  public BeliefTracker(State state, PlayerColor observer) {
+    this.colors = state.colors;
+    this.observer = observer;
+    this.me = state.colors.indexOf(observer);
+    if (me < 0) throw new IllegalArgumentException(observer + " is not playing");
+    this.seats = state.colors.size();
+    this.known = new int[seats][Resource.COUNT];
+    this.unknown = new int[seats];
+    this.boughtThisTurn = new int[seats];
+    this.last = new int[seats][Resource.COUNT];
+    for (int s = 0; s < seats; s++) {
+      for (int r = 0; r < Resource.COUNT; r++) {
+        last[s][r] = hand(state, s, r);
+        known[s][r] = last[s][r];
+      }
+    }
+  }
+
+  public PlayerColor observer() {
+    return observer;
+  }
+
+  /** Cards of {@code resource} that {@code color} certainly holds. */
+  public int known(PlayerColor color, Resource resource) {
+    return known[seat(color)][resource.ordinal()];
+  }
+
+  /** Cards in {@code color}'s hand whose type the observer does not know. */
+  public int unknown(PlayerColor color) {
+    return unknown[seat(color)];
+  }
+
+  /** Updates the beliefs after {@code action} was applied, leading to {@code after}. */
+  public void observe(Action<?> action, State after) {
+    int thief = -1, victim = -1;
+    if (action.type == ActionType.MOVE_ROBBER) {
+      for (int s = 0; s < seats; s++) {
+        int delta = 0;
+        for (int r = 0; r < Resource.COUNT; r++) delta += hand(after, s, r) - last[s][r];
+        if (delta == 1) thief = s;
+        else if (delta == -1) victim = s;
+      }
+    }
+    boolean hidden = thief >= 0 && victim >= 0 && thief != me && victim != me;
+    for (int s = 0; s < seats; s++) {
+      if (hidden && (s == thief || s == victim)) continue;
+      for (int r = 0; r < Resource.COUNT; r++) {
+        int now = hand(after, s, r);
+        move(s, r, now - last[s][r]);
+        last[s][r] = now;
+      }
+    }
+    if (hidden) {
+      // One card changed hands face down: the thief gains an unknown card and every type the
+      // victim was known to hold may be the one taken
+      for (int r = 0; r < Resource.COUNT; r++) {
+        if (known[victim][r] > 0) known[victim][r]--;
+        last[thief][r] = hand(after, thief, r);
+        last[victim][r] = hand(after, victim, r);
+      }
+      unknown[thief]++;
+      int size = 0;
+      for (int r = 0; r < Resource.COUNT; r++) size += known[victim][r];
+      unknown[victim] = handSize(victim) - size;
+    }
+    if (action.type == ActionType.BUY_DEVELOPMENT_CARD) {
+      boughtThisTurn[colors.indexOf(action.color)]++;
+    } else if (action.type == ActionType.END_TURN) {
+      Arrays.fill(boughtThisTurn, 0);
+    }
+  }
+
+  // A public change of `delta` cards of type r in seat s's hand
+  private void move(int s, int r, int delta) {
+    if (delta >= 0) {
+      known[s][r] += delta;
+      return;
+    }
+    int fromKnown = Math.min(known[s][r], -delta);
+    known[s][r] -= fromKnown;
+    unknown[s] -= -delta - fromKnown;
+    if (unknown[s] < 0)
+      throw new IllegalStateException(
+          "seat " + s + " spent cards it cannot hold; missed an action?");
+  }
+
+  private int handSize(int s) {
+    int size = 0;
+    for (int r = 0; r < Resource.COUNT; r++) size += last[s][r];
+    return size;
+  }
+
+  private int hand(State state, int s, int r) {
+    return state.playerState.get(s, PlayerStateMap.FIRST_RESOURCE + r);
+  }
+
+  private int seat(PlayerColor color) {
+    int s = colors.indexOf(color);
+    if (s < 0) throw new IllegalArgumentException(color + " is not playing");
+    return s;
+  }
+}
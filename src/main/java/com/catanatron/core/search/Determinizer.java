@@ -0,0 +1,135 @@
+package com.catanatron.core.search;
+
+import com.catanatron.core.engine.PlayerStateMap;
+import com.catanatron.core.engine.State;
+import com.catanatron.core.model.DevCard;
+import com.catanatron.core.model.Resource;
+import com.catanatron.core.util.Decks;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Samples full positions consistent with what a {@link BeliefTracker}'s observer knows, for
+ * information-set search: the observer's cards and all public facts stay as they are, while the
+ * opponents' unknown resource cards, their development cards and the contents of the development
+ * deck are dealt at random from the cards unaccounted for. The dice to come are hidden as well: the
+ * state's generator is reseeded, so samples do not share the tracked game's future rolls.
+ *
+ * <p>Resources unaccounted for are the 19 of each type minus the bank and every known card; they
+ * fill the opponents' unknown slots. Development cards unaccounted for are the full deck minus the
+ * observer's hand and every card played; they fill the opponents' hands (whose sizes are public)
+ * and the rest becomes the deck. Victory points and which cards are playable this turn follow from
+ * the dealt cards. Sampling allocates nothing; one instance must not be used by two threads at
+ * once.
+ */
+public final class Determinizer {
+  private static final DevCard[] CARDS = DevCard.values();
+  private static final int VICTORY_POINT = DevCard.VICTORY_POINT.ordinal();
+  private static final int[] DECK = Decks.startingDevelopmentDeck();
+  private static final int[] RESOURCES = Decks.startingResourceBank();
+  // PlayerStateMap fields by DevCard ordinal
+  private static final int[] IN_HAND = new int[CARDS.length];
+  private static final int[] OWNED_AT_START = new int[CARDS.length];
+  private static final int[] PLAYED = new int[CARDS.length];
+  private static final int VICTORY_POINTS = PlayerStateMap.field("_VICTORY_POINTS");
+
+  static {
+    for (DevCard card : CARDS) {
+      IN_HAND[card.ordinal()] = PlayerStateMap.field("_" + card.name() + "_IN_HAND");
+      if (card == DevCard.VICTORY_POINT) continue; // never played
+      OWNED_AT_START[card.ordinal()] = PlayerStateMap.field("_" + card.name() + "_OWNED_AT_START");
+      PLAYED[card.ordinal()] = PlayerStateMap.field("_PLAYED_" + card.name());
+    }
+  }
+
+  private final BeliefTracker belief;
+  private final int[] resourcePool = new int[Resource.COUNT * 19];
+  private final DevCard[] devPool = new DevCard[Decks.DEVELOPMENT_DECK_SIZE];
+  private final int[] dealt = new int[Resource.COUNT];
+
+  public Determinizer(BeliefTracker belief) {
+    this.belief = belief;
+  }
+
+  /** A copy of {@code state}, the tracked position, with the hidden information resampled. */
+  public State sample(State state, Random rng) {
+    State copy = state.copy();
+    determinize(copy, rng);
+    return copy;
+  }
+
+  /**
+   * Resamples the hidden information of {@code state} in place. {@code state} must be the tracked
+   * position or a copy of it.
+   */
+  public void determinize(State state, Random rng) {
+    state.rng.setSeed(rng.nextLong());
+    dealResources(state, rng);
+    dealDevelopmentCards(state, rng);
+  }
+
+  private void dealResources(State state, Random rng) {
+    var ps = state.playerState;
+    int size = 0;
+    for (int r = 0; r < Resource.COUNT; r++) {
+      int free = RESOURCES[r] - state.bank[r];
+      for (int s = 0; s < belief.seats; s++) free -= belief.known[s][r];
+      for (int i = 0; i < free; i++) resourcePool[size++] = r;
+    }
+    for (int s = 0; s < belief.seats; s++) {
+      if (s == belief.me) continue;
+      int[] known = belief.known[s];
+      Arrays.fill(dealt, 0);
+      for (int i = 0; i < belief.unknown[s]; i++) {
+        // Draw without replacement: the last card fills the hole
+        int j = rng.nextInt(size);
+        int r = resourcePool[j];
+        resourcePool[j] = resourcePool[--size];
+        dealt[r]++;
+      }
+      for (int r = 0; r < Resource.COUNT; r++)
+        ps.set(s, PlayerStateMap.FIRST_RESOURCE + r, known[r] + dealt[r]);
+    }
+    if (size != 0) throw new IllegalStateException("beliefs do not match " + size + " cards");
+  }
+
+  private void dealDevelopmentCards(State state, Random rng) {
+    var ps = state.playerState;
+    int size = 0;
+    for (DevCard card : CARDS) {
+      int c = card.ordinal();
+      int free = DECK[c] - ps.get(belief.me, IN_HAND[c]);
+      // Victory point cards are never played
+      for (int s = 0; s < belief.seats && c != VICTORY_POINT; s++) free -= ps.get(s, PLAYED[c]);
+      for (int i = 0; i < free; i++) devPool[size++] = card;
+    }
+    for (int s = 0; s < belief.seats; s++) {
+      if (s == belief.me) continue;
+      int held = 0;
+      for (int c = 0; c < CARDS.length; c++) held += ps.get(s, IN_HAND[c]);
+      // Cards bought this turn are dealt last so that only the older ones are playable
+      int old = held - (s == state.currentTurnIndex ? belief.boughtThisTurn[s] : 0);
+      Arrays.fill(dealt, 0);
+      for (int c = 0; c < VICTORY_POINT; c++) ps.set(s, OWNED_AT_START[c], 0);
+      for (int i = 0; i < held; i++) {
+        int j = rng.nextInt(size);
+        DevCard card = devPool[j];
+        devPool[j] = devPool[--size];
+        dealt[card.ordinal()]++;
+        if (i < old && card.ordinal() != VICTORY_POINT)
+          ps.set(s, OWNED_AT_START[card.ordinal()], 1);
+      }
+      for (int c = 0; c < CARDS.length; c++) ps.set(s, IN_HAND[c], dealt[c]);
+      ps.set(
+          s,
+          PlayerStateMap.ACTUAL_VICTORY_POINTS,
+          ps.get(s, VICTORY_POINTS) + dealt[VICTORY_POINT]);
+    }
+    if (size != state.developmentCardsLeft())
+      throw new IllegalStateException(
+          "beliefs leave " + size + " cards for a deck of " + state.developmentCardsLeft());
+    // What is left is the deck; its order is only decided when a card is bought
+    Arrays.fill(state.developmentDeck, 0);
+    for (int i = 0; i < size; i++) state.developmentDeck[devPool[i].ordinal()]++;
+  }
+}
@@ -0,0 +1,179 @@
+package com.catanatron.core.search;
+
+import com.catanatron.core.engine.Game;
+import com.catanatron.core.engine.LegalActions;
+import com.catanatron.core.engine.Player;
+import com.catanatron.core.engine.RandomPlayer;
+import com.catanatron.core.engine.Reducer;
+import com.catanatron.core.engine.State;
+import com.catanatron.core.model.Action;
+import com.catanatron.core.model.ActionType;
+import com.catanatron.core.model.PlayerColor;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Counts the leaf positions reachable in exactly {@code depth} actions, as chess engines do to
+ * check and time their move generators. A roll branches into the 11 dice sums, one child each;
+ * other chance events (development card draws, steals) follow the position's random generator, and
+ * every child is a {@link State#copy} of its parent, so the counts are a fixed function of the
+ * position and its seed. Won positions are terminal. Leaves are counted in bulk from {@link
+ * LegalActions} at the last ply, so the time measured is move generation at every node plus {@link
+ * Reducer#step} and a copy at every inner edge.
+ *
+ * <p>Usage: {@code Perft [depth] [seed] [plies of random play first] [divide]}
+ */
+public final class Perft {
+  /** The dice of each roll child, one pair per sum from 2 to 12. */
+  public static final int[][] DICE = new int[11][];
+
+  static {
+    for (int sum = 2; sum <= 12; sum++) {
+      int d1 = Math.min(6, sum - 1);
+      DICE[sum - 2] = new int[] {d1, sum - d1};
+    }
+  }
+
+  /** Leaves under one root action; a roll appears once per dice sum. */
+  public record Divide(Action<?> action, long nodes) {}
+
+  private LegalActions[] legal = new LegalActions[0];
+  private final long[] byType = new long[ActionType.values().length];
+  private final Action<?>[][] rolls = new Action<?>[PlayerColor.values().length][];
+
+  /** Leaf positions {@code depth} actions below {@code state}, which is left as it was. */
+  public long count(State state, int depth) {
+    prepare(depth);
+    return perft(state, depth);
+  }
+
+  /** {@link #count}, split by root action in generation order. */
+  public List<Divide> divide(State state, int depth) {
+    if (depth < 1) throw new IllegalArgumentException("divide needs depth >= 1");
+    prepare(depth);
+    List<Divide> result = new ArrayList<>();
+    if (state.winner() != null) return result;
+    LegalActions actions = legal[depth].reset(state);
+    for (int k = 0; k < actions.count(); k++) {
+      Action<?> action = actions.get(k);
+      if (action.type != ActionType.ROLL) {
+        result.add(new Divide(action, child(state, action, depth)));
+        continue;
+      }
+      for (Action<?> roll : rolls(action.color)) {
+        result.add(new Divide(roll, child(state, roll, depth)));
+      }
+    }
+    return result;
+  }
+
+  /** Leaves of the last {@link #count} or {@link #divide} reached by an action of {@code type}. */
+  public long count(ActionType type) {
+    return byType[type.ordinal()];
+  }
+
+  private void prepare(int depth) {
+    if (depth < 0) throw new IllegalArgumentException("depth " + depth);
+    if (legal.length <= depth) {
+      int old = legal.length;
+      legal = Arrays.copyOf(legal, depth + 1);
+      for (int d = old; d <= depth; d++) legal[d] = new LegalActions();
+    }
+    Arrays.fill(byType, 0);
+  }
+
+  private long perft(State state, int depth) {
+    if (depth == 0) return 1;
+    if (state.winner() != null) return 0;
+    LegalActions actions = legal[depth].reset(state);
+    if (depth == 1) {
+      long nodes = 0;
+      for (int c = 0; c < actions.categories(); c++) {
+        ActionType type = actions.categoryType(c);
+        long n = (long) actions.categoryCount(c) * (type == ActionType.ROLL ? DICE.length : 1);
+        byType[type.ordinal()] += n;
+        nodes += n;
+      }
+      return nodes;
+    }
+    long nodes = 0;
+    for (int k = 0; k < actions.count(); k++) {
+      Action<?> action = actions.get(k);
+      if (action.type != ActionType.ROLL) {
+        nodes += child(state, action, depth);
+        continue;
+      }
+      for (Action<?> roll : rolls(action.color)) nodes += child(state, roll, depth);
+    }
+    return nodes;
+  }
+
+  private long child(State state, Action<?> action, int depth) {
+    State next = state.copy();
+    Reducer.step(next, action);
+    if (depth == 1) {
+      byType[action.type.ordinal()]++;
+      return 1;
+    }
+    return perft(next, depth - 1);
+  }
+
+  private Action<?>[] rolls(PlayerColor color) {
+    Action<?>[] r = rolls[color.ordinal()];
+    if (r == null) {
+      r = new Action<?>[DICE.length];
+      for (int i = 0; i < DICE.length; i++) r[i] = new Action<>(color, ActionType.ROLL, DICE[i]);
+      rolls[color.ordinal()] = r;
+    }
+    return r;
+  }
+
+  /**
+   * The position after {@code plies} random actions of a new four-player game from {@code seed}.
+   */
+  public static State position(long seed, int plies) {
+    List<Player> players = new ArrayList<>();
+    for (int s = 0; s < 4; s++) players.add(new RandomPlayer(PlayerColor.values()[s]));
+    State state = new State(players, seed);
+    Random rng = new Random(seed);
+    LegalActions legal = new LegalActions();
+    for (int i = 0; i < plies && state.winner() == null && state.numTurns < Game.TURNS_LIMIT; i++) {
+      legal.reset(state);
+      Reducer.step(state, legal.get(rng.nextInt(legal.count())));
+    }
+    return state;
+  }
+
+  public static void main(String[] args) {
+    int depth = args.length > 0 ? Integer.parseInt(args[0]) : 6;
+    long seed = args.length > 1 ? Long.parseLong(args[1]) : 0;
+    int plies = args.length > 2 ? Integer.parseInt(args[2]) : 300;
+    boolean divide = args.length > 3 && args[3].equals("divide");
+    var perft = new Perft();
+
+    System.out.printf("seed=%d plies=%d%n", seed, plies);
+    State root = position(seed, plies);
+    for (int d = 1; d <= depth; d++) {
+      long start = System.nanoTime();
+      long nodes = perft.count(root, d);
+      double seconds = (System.nanoTime() - start) / 1e9;
+      System.out.printf(
+          "depth %d nodes=%d time=%.3fs nodes/s=%.0f%n", d, nodes, seconds, nodes / seconds);
+    }
+    for (ActionType type : ActionType.values()) {
+      if (perft.count(type) > 0) System.out.printf("  %-20s %d%n", type, perft.count(type));
+    }
+    if (divide) {
+      long total = 0;
+      for (Divide entry : perft.divide(root, depth)) {
+        Action<?> a = entry.action();
+        Object value = a.value instanceof int[] dice ? Arrays.toString(dice) : a.value;
+        System.out.println(a.type + " " + value + ": " + entry.nodes());
+        total += entry.nodes();
+      }
+      System.out.println("total: " + total);
+    }
+  }
+}
@@ -0,0 +1,415 @@
+package com.catanatron.core.search;
+
+import com.catanatron.core.engine.ActionPrompt;
+import com.catanatron.core.engine.PlayerStateMap;
+import com.catanatron.core.engine.State;
+import com.catanatron.core.map.CatanMap;
+import com.catanatron.core.model.DevCard;
+import com.catanatron.core.model.PlayerColor;
+import com.catanatron.core.model.Resource;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Search tree nodes stored off the Java heap: node statistics plus a compact encoding of the node's
+ * position, in fixed-size records in direct {@link ByteBuffer} slabs, so that trees of millions of
+ * nodes cost the collector a handful of objects. Nodes are numbered from 0 in allocation order;
+ * {@link #allocate(int)} reserves a run of them (e.g. all children of a node) and {@link #reset}
+ * drops every node while keeping the memory. A {@link Cursor} decodes a node into a reusable
+ * scratch {@link State}.
+ *
+ * <p>A record holds parent, first child, child count, action id and visits (4 bytes each) and the
+ * value sum (8), then the position: turn, prompt, phase flags, robber, bank, deck, open trade,
+ * every player counter as a byte, port access and last initial settlement per seat, settlement and
+ * city words per seat and one byte per edge for its road. All positions of an arena share one map
+ * and seat order. The random generator, trade options and deck seeding are not stored: like {@link
+ * State#copy}, a decoded position keeps the scratch state's generator and an unseeded deck.
+ *
+ * <p>Not thread-safe.
+ */
+public final class StateArena {
+  private static final int SLAB_BYTES = 1 << 30;
+  private static final PlayerColor[] COLORS = PlayerColor.values();
+  private static final ActionPrompt[] PROMPTS = ActionPrompt.values();
+
+  // Node statistics, at the start of each record
+  private static final int PARENT = 0;
+  private static final int FIRST_CHILD = 4;
+  private static final int CHILD_COUNT = 8;
+  private static final int ACTION = 12;
+  private static final int VISITS = 16;
+  private static final int VALUE = 24;
+  private static final int HEADER = 32;
+
+  // Position scalars, after the header
+  private static final int PLAYER = HEADER;
+  private static final int TURN_PLAYER = HEADER + 1;
+  private static final int PROMPT = HEADER + 2;
+  private static final int FLAGS = HEADER + 3;
+  private static final int NUM_TURNS = HEADER + 4;
+  private static final int ROBBER = HEADER + 8;
+  private static final int FREE_ROADS = HEADER + 12;
+  private static final int DISCARD_LIMIT = HEADER + 13;
+  private static final int TRADE_OFFERS = HEADER + 14;
+  private static final int BANK = HEADER + 16;
+  private static final int DECK = BANK + Resource.COUNT;
+  private static final int OFFER = DECK + DevCard.values().length;
+  private static final int ACCEPTEES = OFFER + 2 * Resource.COUNT;
+  private static final int SEATS = ACCEPTEES + 1;
+  // Per seat: port bits, last initial settlement (4 bytes, -1 for none), then the counters
+  private static final int SEAT_BYTES = 1 + 4 + PlayerStateMap.FIELDS.length;
+
+  private static final int INITIAL_PHASE = 1;
+  private static final int DISCARDING = 2;
+  private static final int MOVING_KNIGHT = 4;
+  private static final int ROAD_BUILDING = 8;
+  private static final int RESOLVING_TRADE = 16;
+
+  private final CatanMap map;
+  private final int seats;
+  private final int words;
+  private final int edges;
+  private final int boardOffset; // settlement then city words per seat, 8-aligned
+  private final int roadsOffset;
+  private final int recordBytes;
+  private final int nodesPerSlab;
+  private final int capacity;
+  private final List<ByteBuffer> slabs = new ArrayList<>();
+  private final int[] seatOf = new int[COLORS.length];
+  private int size;
+
+  /**
+   * An arena for positions of {@code seats} players on {@code map}, of at most {@code capacity}.
+   */
+  public StateArena(CatanMap map, int seats, int capacity) {
+    this(map, seats, capacity, SLAB_BYTES);
+  }
+
+  StateArena(CatanMap map, int seats, int capacity, int slabBytes) {
+    if (seats > 8) throw new IllegalArgumentException("at most 8 seats: " + seats);
+    this.map = map;
+    this.seats = seats;
+    this.words = map.nodeWords;
+    this.edges = map.edgeA.length;
+    this.boardOffset = align(SEATS + seats * SEAT_BYTES);
+    this.roadsOffset = boardOffset + 2 * seats * words * 8;
+    this.recordBytes = align(roadsOffset + edges);
+    if (recordBytes > slabBytes) throw new IllegalArgumentException("map too large for a slab");
+    this.nodesPerSlab = slabBytes / recordBytes;
+    this.capacity = capacity;
+  }
+
+  private static int align(int bytes) {
+    return (bytes + 7) & ~7;
+  }
+
+  /** Bytes per node. */
+  public int recordBytes() {
+    return recordBytes;
+  }
+
+  /** Nodes allocated since the last {@link #reset}. */
+  public int size() {
+    return size;
+  }
+
+  public int capacity() {
+    return capacity;
+  }
+
+  /** Off-heap bytes held, whether or not in use. */
+  public long reservedBytes() {
+    return (long) slabs.size() * nodesPerSlab * recordBytes;
+  }
+
+  /** Drops every node; the memory is kept for the next tree. */
+  public void reset() {
+    size = 0;
+  }
+
+  /**
+   * Reserves {@code count} consecutive nodes, with no parent, children or statistics, and returns
+   * the first; their positions are unset until {@link #encode}d.
+   */
+  public int allocate(int count) {
+    if (count < 0 || count > capacity - size)
+      throw new IllegalStateException("arena full: " + size + " + " + count + " > " + capacity);
+    int first = size;
+    int last = first + count;
+    while ((long) slabs.size() * nodesPerSlab < last) {
+      int nodes =
+          (int) Math.min(nodesPerSlab, (long) capacity - (long) slabs.size() * nodesPerSlab);
+      slabs.add(ByteBuffer.allocateDirect(nodes * recordBytes).order(ByteOrder.nativeOrder()));
+    }
+    for (int node = first; node < last; node++) {
+      ByteBuffer b = slab(node);
+      int at = offset(node);
+      b.putInt(at + PARENT, -1);
+      b.putInt(at + FIRST_CHILD, -1);
+      b.putInt(at + CHILD_COUNT, 0);
+      b.putInt(at + ACTION, -1);
+      b.putInt(at + VISITS, 0);
+      b.putDouble(at + VALUE, 0);
+    }
+    size = last;
+    return first;
+  }
+
+  /**
+   * A new node holding {@code state}, reached from {@code parent} (or -1) by action id {@code
+   * action}.
+   */
+  public int add(State state, int parent, int action) {
+    int node = allocate(1);
+    encode(node, state);
+    setLink(node, parent, action);
+    return node;
+  }
+
+  // Statistics
+
+  public int parent(int node) {
+    return slab(node).getInt(offset(node) + PARENT);
+  }
+
+  public int action(int node) {
+    return slab(node).getInt(offset(node) + ACTION);
+  }
+
+  /** First of the node's consecutive children, or -1 while unexpanded. */
+  public int firstChild(int node) {
+    return slab(node).getInt(offset(node) + FIRST_CHILD);
+  }
+
+  public int childCount(int node) {
+    return slab(node).getInt(offset(node) + CHILD_COUNT);
+  }
+
+  public int visits(int node) {
+    return slab(node).getInt(offset(node) + VISITS);
+  }
+
+  /** Sum of the values backed up through the node. */
+  public double valueSum(int node) {
+    return slab(node).getDouble(offset(node) + VALUE);
+  }
+
+  public void setLink(int node, int parent, int action) {
+    ByteBuffer b = slab(node);
+    b.putInt(offset(node) + PARENT, parent);
+    b.putInt(offset(node) + ACTION, action);
+  }
+
+  /** Records {@code count} children from node {@code first}, as returned by {@link #allocate}. */
+  public void setChildren(int node, int first, int count) {
+    ByteBuffer b = slab(node);
+    b.putInt(offset(node) + FIRST_CHILD, first);
+    b.putInt(offset(node) + CHILD_COUNT, count);
+  }
+
+  /** Adds one visit with {@code value}. */
+  public void update(int node, double value) {
+    ByteBuffer b = slab(node);
+    int at = offset(node);
+    b.putInt(at + VISITS, b.getInt(at + VISITS) + 1);
+    b.putDouble(at + VALUE, b.getDouble(at + VALUE) + value);
+  }
+
+  // Positions
+
+  /** Stores {@code state}, which must be on this arena's map and seat count, in {@code node}. */
+  public void encode(int node, State state) {
+    if (state.map != map || state.colors.size() != seats)
+      throw new IllegalArgumentException("state is not on this arena's map and seats");
+    checkNode(node);
+    ByteBuffer b = slab(node);
+    int at = offset(node);
+    b.put(at + PLAYER, (byte) state.currentPlayerIndex);
+    b.put(at + TURN_PLAYER, (byte) state.currentTurnIndex);
+    b.put(at + PROMPT, (byte) state.currentPrompt.ordinal());
+    int flags =
+        (state.isInitialBuildPhase ? INITIAL_PHASE : 0)
+            | (state.isDiscarding ? DISCARDING : 0)
+            | (state.isMovingKnight ? MOVING_KNIGHT : 0)
+            | (state.isRoadBuilding ? ROAD_BUILDING : 0)
+            | (state.isResolvingTrade ? RESOLVING_TRADE : 0);
+    b.put(at + FLAGS, (byte) flags);
+    b.putInt(at + NUM_TURNS, state.numTurns);
+    b.putInt(at + ROBBER, state.robberTileId);
+    b.put(at + FREE_ROADS, (byte) state.freeRoadsAvailable);
+    b.put(at + DISCARD_LIMIT, (byte) state.discardLimit);
+    b.putShort(at + TRADE_OFFERS, (short) state.tradeOffersThisTurn);
+    for (int r = 0; r < Resource.COUNT; r++) b.put(at + BANK + r, (byte) state.bank[r]);
+    for (int d = 0; d < state.developmentDeck.length; d++)
+      b.put(at + DECK + d, (byte) state.developmentDeck[d]);
+    for (int i = 0; i < state.currentTradeOffer.length; i++)
+      b.put(at + OFFER + i, (byte) state.currentTradeOffer[i]);
+    int acceptees = 0;
+    for (int seat = 0; seat < seats; seat++) if (state.acceptees[seat]) acceptees |= 1 << seat;
+    b.put(at + ACCEPTEES, (byte) acceptees);
+
+    for (int seat = 0; seat < seats; seat++) {
+      PlayerColor color = state.colors.get(seat);
+      seatOf[color.ordinal()] = seat;
+      int s = at + SEATS + seat * SEAT_BYTES;
+      b.put(s, (byte) state.portAccess[seat]);
+      Integer last = state.lastInitialSettlement.get(color);
+      b.putInt(s + 1, last == null ? -1 : last);
+      for (int f = 0; f < PlayerStateMap.FIELDS.length; f++) {
+        int value = state.playerState.get(seat, f);
+        if ((byte) value != value)
+          throw new IllegalArgumentException(PlayerStateMap.FIELDS[f] + " out of range: " + value);
+        b.put(s + 5 + f, (byte) value);
+      }
+      int w0 = at + boardOffset + seat * 2 * words * 8;
+      for (int w = 0; w < words; w++) {
+        b.putLong(w0 + w * 8, state.board.settlementNodeWord(color, w));
+        b.putLong(w0 + (words + w) * 8, state.board.cityNodeWord(color, w));
+      }
+    }
+    for (int e = 0; e < edges; e++) {
+      PlayerColor road = state.board.roadAt(e);
+      b.put(at + roadsOffset + e, (byte) (road == null ? 0 : seatOf[road.ordinal()] + 1));
+    }
+  }
+
+  /**
+   * Overwrites {@code scratch}, which must have this arena's map and seats in the order encoded,
+   * with the position of {@code node}; its random generator and trade options are kept.
+   */
+  public void decode(int node, State scratch) {
+    if (scratch.map != map || scratch.colors.size() != seats)
+      throw new IllegalArgumentException("scratch state is not on this arena's map and seats");
+    checkNode(node);
+    ByteBuffer b = slab(node);
+    int at = offset(node);
+    scratch.currentPlayerIndex = b.get(at + PLAYER);
+    scratch.currentTurnIndex = b.get(at + TURN_PLAYER);
+    scratch.currentPrompt = PROMPTS[b.get(at + PROMPT)];
+    int flags = b.get(at + FLAGS);
+    scratch.isInitialBuildPhase = (flags & INITIAL_PHASE) != 0;
+    scratch.isDiscarding = (flags & DISCARDING) != 0;
+    scratch.isMovingKnight = (flags & MOVING_KNIGHT) != 0;
+    scratch.isRoadBuilding = (flags & ROAD_BUILDING) != 0;
+    scratch.isResolvingTrade = (flags & RESOLVING_TRADE) != 0;
+    scratch.numTurns = b.getInt(at + NUM_TURNS);
+    scratch.robberTileId = b.getInt(at + ROBBER);
+    scratch.freeRoadsAvailable = b.get(at + FREE_ROADS);
+    scratch.discardLimit = b.get(at + DISCARD_LIMIT);
+    scratch.tradeOffersThisTurn = b.getShort(at + TRADE_OFFERS);
+    for (int r = 0; r < Resource.COUNT; r++) scratch.bank[r] = b.get(at + BANK + r);
+    for (int d = 0; d < scratch.developmentDeck.length; d++)
+      scratch.developmentDeck[d] = b.get(at + DECK + d);
+    scratch.isDeckSeeded = false;
+    for (int i = 0; i < scratch.currentTradeOffer.length; i++)
+      scratch.currentTradeOffer[i] = b.get(at + OFFER + i);
+    int acceptees = b.get(at + ACCEPTEES);
+    for (int seat = 0; seat < seats; seat++) scratch.acceptees[seat] = (acceptees >> seat & 1) != 0;
+
+    scratch.board.reset(map);
+    scratch.playerState.reset();
+    scratch.lastInitialSettlement.clear();
+    for (int seat = 0; seat < seats; seat++) {
+      PlayerColor color = scratch.colors.get(seat);
+      int s = at + SEATS + seat * SEAT_BYTES;
+      scratch.portAccess[seat] = b.get(s);
+      int last = b.getInt(s + 1);
+      if (last >= 0) scratch.lastInitialSettlement.put(color, last);
+      for (int f = 0; f < PlayerStateMap.FIELDS.length; f++)
+        scratch.playerState.set(seat, f, b.get(s + 5 + f));
+      int w0 = at + boardOffset + seat * 2 * words * 8;
+      for (int w = 0; w < words; w++) {
+        long settlements = b.getLong(w0 + w * 8);
+        long cities = b.getLong(w0 + (words + w) * 8);
+        for (long m = settlements | cities; m != 0; m &= m - 1) {
+          int nodeId = (w << 6) + Long.numberOfTrailingZeros(m);
+          scratch.board.buildSettlement(color, nodeId);
+          if ((cities & (m & -m)) != 0) scratch.board.buildCity(color, nodeId);
+        }
+      }
+    }
+    for (int e = 0; e < edges; e++) {
+      int owner = b.get(at + roadsOffset + e);
+      if (owner != 0)
+        scratch.board.buildRoad(scratch.colors.get(owner - 1), map.edgeA[e], map.edgeB[e]);
+    }
+  }
+
+  /** A cursor decoding into {@code scratch}. */
+  public Cursor cursor(State scratch) {
+    return new Cursor(scratch);
+  }
+
+  /** Walks nodes of the arena, decoding each on demand into one scratch state. */
+  public final class Cursor {
+    private final State scratch;
+    private int node = -1;
+
+    private Cursor(State scratch) {
+      this.scratch = scratch;
+    }
+
+    /** Moves to {@code node} without decoding it. */
+    public Cursor seek(int node) {
+      checkNode(node);
+      this.node = node;
+      return this;
+    }
+
+    /** Moves to the i-th child of the current node. */
+    public Cursor child(int i) {
+      int count = StateArena.this.childCount(node);
+      if (i < 0 || i >= count) throw new IndexOutOfBoundsException("child " + i + " of " + count);
+      return seek(firstChild(node) + i);
+    }
+
+    /** Moves to the parent; returns false at the root. */
+    public boolean toParent() {
+      int parent = parent(node);
+      if (parent < 0) return false;
+      node = parent;
+      return true;
+    }
+
+    public int node() {
+      return node;
+    }
+
+    /** The current node's position, decoded into the scratch state. */
+    public State decode() {
+      StateArena.this.decode(node, scratch);
+      return scratch;
+    }
+
+    public int visits() {
+      return StateArena.this.visits(node);
+    }
+
+    public double valueSum() {
+      return StateArena.this.valueSum(node);
+    }
+
+    public int action() {
+      return StateArena.this.action(node);
+    }
+
+    public int childCount() {
+      return StateArena.this.childCount(node);
+    }
+  }
+
+  private void checkNode(int node) {
+    if (node < 0 || node >= size)
+      throw new IndexOutOfBoundsException("node " + node + " of " + size);
+  }
+
+  private ByteBuffer slab(int node) {
+    return slabs.get(node / nodesPerSlab);
+  }
+
+  private int offset(int node) {
+    return (node % nodesPerSlab) * recordBytes;
+  }
+}
@@ -0,0 +1,130 @@
+package com.catanatron.core.search;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * Fixed-size hash table of search results keyed by {@link Zobrist} hashes, shared by any number of
+ * search threads without locks.
+ *
+ * <p>Entries live in one preallocated {@code long[]}, three words each: the key XOR-ed with both
+ * data words, the value as double bits, and visits (32 bits), best action id (16), depth (8) and
+ * age (8). A reader accepts an entry only if the words XOR back to its key, so an entry torn by a
+ * concurrent writer reads as a miss instead of as someone else's data. Entries are grouped in
+ * buckets of {@link #WAYS}; a store replaces the same key, else an empty slot, else the entry with
+ * the lowest depth after penalizing entries from older searches (see {@link #newSearch()}).
+ */
+public final class TranspositionTable {
+  public static final int WAYS = 4;
+  private static final int WORDS = 3;
+  private static final VarHandle SLOT = MethodHandles.arrayElementVarHandle(long[].class);
+
+  /** Scratch result of {@link #probe}; one per thread. */
+  public static final class Entry {
+    public double value;
+    public int visits;
+    public int bestAction; // -1 if none
+    public int depth;
+  }
+
+  private final long[] table;
+  private final int bucketMask;
+  private volatile int age;
+
+  public TranspositionTable(int megabytes) {
+    long bytes = (long) megabytes << 20;
+    long buckets = Long.highestOneBit(Math.max(1, bytes / (8L * WORDS * WAYS)));
+    if (buckets * WORDS * WAYS > Integer.MAX_VALUE - 8)
+      throw new IllegalArgumentException("table too large: " + megabytes + " MB");
+    this.table = new long[(int) (buckets * WORDS * WAYS)];
+    this.bucketMask = (int) buckets - 1;
+  }
+
+  /** Entries the table can hold. */
+  public int capacity() {
+    return table.length / WORDS;
+  }
+
+  /** Starts a new search: older entries become preferred victims for replacement. */
+  public void newSearch() {
+    age = (age + 1) & 0xFF;
+  }
+
+  public void clear() {
+    java.util.Arrays.fill(table, 0L);
+    age = 0;
+  }
+
+  /** Fills {@code out} and returns true if {@code key} is stored. */
+  public boolean probe(long key, Entry out) {
+    int base = bucket(key);
+    for (int w = 0; w < WAYS; w++) {
+      int slot = base + w * WORDS;
+      long check = (long) SLOT.getOpaque(table, slot);
+      long value = (long) SLOT.getOpaque(table, slot + 1);
+      long meta = (long) SLOT.getOpaque(table, slot + 2);
+      if ((check ^ value ^ meta) != key || (check | value | meta) == 0) continue;
+      out.value = Double.longBitsToDouble(value);
+      out.visits = (int) (meta >>> 32);
+      out.bestAction = (int) ((meta >>> 16) & 0xFFFF) - 1;
+      out.depth = (int) ((meta >>> 8) & 0xFF);
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Stores a result. {@code visits} saturates at {@link Integer#MAX_VALUE}, depth at 255 and best
+   * action ids must be below 65535 (or -1).
+   */
+  public void store(long key, double value, long visits, int bestAction, int depth) {
+    int currentAge = age;
+    long valueBits = Double.doubleToRawLongBits(value);
+    long meta =
+        (Math.min(visits, Integer.MAX_VALUE) << 32)
+            | ((long) ((bestAction + 1) & 0xFFFF) << 16)
+            | ((long) Math.min(Math.max(depth, 0), 255) << 8)
+            | currentAge;
+    int base = bucket(key);
+    int victim = base;
+    int worst = Integer.MAX_VALUE;
+    for (int w = 0; w < WAYS; w++) {
+      int slot = base + w * WORDS;
+      long check = (long) SLOT.getOpaque(table, slot);
+      long oldValue = (long) SLOT.getOpaque(table, slot + 1);
+      long oldMeta = (long) SLOT.getOpaque(table, slot + 2);
+      if ((check | oldValue | oldMeta) == 0 || (check ^ oldValue ^ oldMeta) == key) {
+        victim = slot;
+        break;
+      }
+      int oldDepth = (int) ((oldMeta >>> 8) & 0xFF);
+      int staleness = (currentAge - (int) (oldMeta & 0xFF)) & 0xFF;
+      int score = oldDepth - 8 * staleness;
+      if (score < worst) {
+        worst = score;
+        victim = slot;
+      }
+    }
+    SLOT.setOpaque(table, victim, key ^ valueBits ^ meta);
+    SLOT.setOpaque(table, victim + 1, valueBits);
+    SLOT.setOpaque(table, victim + 2, meta);
+  }
+
+  /** Per mille of sampled slots holding an entry of the current search. */
+  public int hashfull() {
+    int sampled = Math.min(1000, capacity());
+    int used = 0;
+    int currentAge = age;
+    for (int i = 0; i < sampled; i++) {
+      long meta = (long) SLOT.getOpaque(table, i * WORDS + 2);
+      long check = (long) SLOT.getOpaque(table, i * WORDS);
+      if (check != 0 && (meta & 0xFF) == currentAge) used++;
+    }
+    return used * 1000 / sampled;
+  }
+
+  private int bucket(long key) {
+    // Low bits pick the bucket; the full key is still checked
+    return ((int) (key ^ (key >>> 32)) & bucketMask) * WORDS * WAYS;
+  }
+}
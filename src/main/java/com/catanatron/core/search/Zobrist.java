@@ -0,0 +1,89 @@
+package com.catanatron.core.search;
+
+import com.catanatron.core.engine.PlayerStateMap;
+import com.catanatron.core.engine.State;
+import com.catanatron.core.model.PlayerColor;
+
+/**
+ * 64-bit position hash for {@link TranspositionTable} keys: the XOR of one pseudo-random key per
+ * feature of the position (pieces on the board, every player-state counter, robber, whose turn and
+ * prompt, pending trade). Keys come from SplitMix64 of the feature index rather than from stored
+ * tables, so maps of any size hash without setup. Positions reached through different move orders
+ * hash alike; the development deck (implied by the cards in hands and played), the turn number and
+ * player-state keys added outside {@link PlayerStateMap#FIELDS} are not part of the hash.
+ */
+public final class Zobrist {
+  private static final long SETTLEMENT = 1L << 56;
+  private static final long CITY = 2L << 56;
+  private static final long ROAD = 3L << 56;
+  private static final long PLAYER_STATE = 4L << 56;
+  private static final long BANK = 5L << 56;
+  private static final long TURN = 6L << 56;
+  private static final long TRADE = 7L << 56;
+  private static final int NUM_COLORS = PlayerColor.values().length;
+  private static final int FIELDS = PlayerStateMap.FIELDS.length;
+  // Per (seat, field) of the player state, mixed with the counter's value
+  private static final long[] FIELD_KEYS = new long[NUM_COLORS * FIELDS];
+
+  static {
+    for (int i = 0; i < FIELD_KEYS.length; i++) FIELD_KEYS[i] = key(PLAYER_STATE, i);
+  }
+
+  private Zobrist() {}
+
+  public static long hash(State state) {
+    long h = 0;
+    for (int c = 0; c < state.colors.size(); c++) {
+      PlayerColor color = state.colors.get(c);
+      for (int a = 0; a < state.board.activeNodeWords(color); a++) {
+        int w = state.board.activeNodeWord(color, a);
+        for (long m = state.board.settlementNodeWord(color, w); m != 0; m &= m - 1) {
+          h ^= key(SETTLEMENT, (long) ((w << 6) + Long.numberOfTrailingZeros(m)) * NUM_COLORS + c);
+        }
+        for (long m = state.board.cityNodeWord(color, w); m != 0; m &= m - 1) {
+          h ^= key(CITY, (long) ((w << 6) + Long.numberOfTrailingZeros(m)) * NUM_COLORS + c);
+        }
+      }
+    }
+    int numEdges = state.map.edgeA.length;
+    for (int e = 0; e < numEdges; e++) {
+      PlayerColor owner = state.board.roadAt(e);
+      if (owner != null) h ^= key(ROAD, (long) e * NUM_COLORS + owner.ordinal());
+    }
+    for (int seat = 0; seat < state.colors.size(); seat++) {
+      for (int f = 0; f < FIELDS; f++)
+        h ^= key(FIELD_KEYS[seat * FIELDS + f], state.playerState.get(seat, f));
+    }
+    for (int r = 0; r < state.bank.length; r++) h ^= key(BANK, ((long) r << 24) | state.bank[r]);
+    h ^=
+        key(
+            TURN,
+            state.robberTileId
+                ^ ((long) state.currentPlayerIndex << 16)
+                ^ ((long) state.currentTurnIndex << 20)
+                ^ ((long) state.currentPrompt.ordinal() << 24)
+                ^ ((long) state.freeRoadsAvailable << 32)
+                ^ (state.isRoadBuilding ? 1L << 40 : 0)
+                ^ (state.isInitialBuildPhase ? 1L << 41 : 0)
+                ^ (state.isDiscarding ? 1L << 42 : 0)
+                ^ (state.isMovingKnight ? 1L << 43 : 0)
+                ^ ((long) state.tradeOffersThisTurn << 44));
+    if (state.isResolvingTrade) {
+      for (int i = 0; i < state.currentTradeOffer.length; i++) {
+        h ^= key(TRADE, ((long) i << 24) | state.currentTradeOffer[i]);
+      }
+      for (int i = 0; i < state.acceptees.length; i++) {
+        if (state.acceptees[i]) h ^= key(TRADE, (1L << 40) | i);
+      }
+    }
+    return h;
+  }
+
+  // SplitMix64 finalizer of a tagged feature index
+  static long key(long tag, long feature) {
+    long z = (tag ^ feature) + 0x9E3779B97F4A7C15L;
+    z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+    z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+    return z ^ (z >>> 31);
+  }
+}
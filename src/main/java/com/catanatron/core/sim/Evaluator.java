@@ -0,0 +1,10 @@
+package com.catanatron.core.sim;
+
+import com.catanatron.core.engine.State;
+import com.catanatron.core.model.PlayerColor;
+
+/** Value of a position for one player; higher is better. Must not modify the state. */
+@FunctionalInterface
+public interface Evaluator {
+  double evaluate(State state, PlayerColor color);
+}
@@ -0,0 +1,89 @@
+package com.catanatron.core.sim;
+
+import com.catanatron.core.engine.Game;
+import com.catanatron.core.engine.LegalActions;
+import com.catanatron.core.engine.Reducer;
+import com.catanatron.core.engine.State;
+import com.catanatron.core.model.PlayerColor;
+import java.util.Random;
+
+/**
+ * Plays positions forward without going through {@link Game}: no {@code Player.decide}, no action
+ * lists and a single move generation per step. Legal actions come from one reused {@link
+ * LegalActions} and are the shared {@link com.catanatron.core.engine.ActionSpace} instances, and
+ * the reducer works on player counters by (seat, field) index, so a step allocates nothing once
+ * warmed up. A copied state makes its own scratch buffers during its first turns.
+ *
+ * <p>Not thread-safe; use one engine per thread.
+ */
+public final class RolloutEngine {
+  private final RolloutPolicy policy;
+  private final Random rng;
+  private final LegalActions legal = new LegalActions();
+
+  private long playouts;
+  private long steps;
+  private long nanos;
+
+  public RolloutEngine(RolloutPolicy policy, long seed) {
+    this.policy = policy;
+    this.rng = new Random(seed);
+  }
+
+  /**
+   * Reseeds {@code state}'s dice from this engine's generator. Copies of a position roll the same
+   * dice; reseed each one to play the position out under different ones.
+   */
+  public void reseed(State state) {
+    state.rng.setSeed(rng.nextLong());
+  }
+
+  /** Plays {@code state} in place to completion (or the game's turn limit). */
+  public PlayerColor playout(State state) {
+    return playout(state, Game.TURNS_LIMIT);
+  }
+
+  /**
+   * Plays {@code state} in place for at most {@code horizonTurns} more turns.
+   *
+   * @return the winner, or null if the horizon or turn limit was reached first
+   */
+  public PlayerColor playout(State state, int horizonTurns) {
+    long start = System.nanoTime();
+    int lastTurn = (int) Math.min(Game.TURNS_LIMIT, (long) state.numTurns + horizonTurns);
+    PlayerColor winner = Game.winningColor(state);
+    while (winner == null && state.numTurns < lastTurn) {
+      legal.reset(state);
+      if (legal.count() == 0) break;
+      Reducer.step(state, legal.get(policy.choose(state, legal, rng)));
+      steps++;
+      winner = Game.winningColor(state);
+    }
+    playouts++;
+    nanos += System.nanoTime() - start;
+    return winner;
+  }
+
+  public long playouts() {
+    return playouts;
+  }
+
+  public long steps() {
+    return steps;
+  }
+
+  public long elapsedNanos() {
+    return nanos;
+  }
+
+  /** Throughput of this engine, i.e. of the one core running it. */
+  public double playoutsPerSecond() {
+    return nanos == 0 ? 0 : playouts * 1e9 / nanos;
+  }
+
+  public void resetStats() {
+    playouts = 0;
+    steps = 0;
+    nanos = 0;
+  }
+}
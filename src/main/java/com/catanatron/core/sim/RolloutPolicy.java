@@ -0,0 +1,42 @@
+package com.catanatron.core.sim;
+
+import com.catanatron.core.engine.LegalActions;
+import com.catanatron.core.engine.State;
+import java.util.Random;
+
+/** Picks the next action of a playout. Implementations must be cheap and must not allocate. */
+@FunctionalInterface
+public interface RolloutPolicy {
+  /**
+   * @return index into {@code legal}, in {@code [0, legal.count())}
+   */
+  int choose(State state, LegalActions legal, Random rng);
+
+  RolloutPolicy UNIFORM = (state, legal, rng) -> rng.nextInt(legal.count());
+
+  /** Builds whenever possible (city, then settlement, then road), otherwise uniform. */
+  RolloutPolicy BUILD_FIRST =
+      (state, legal, rng) -> {
+        int offset = 0;
+        int bestOffset = -1;
+        int bestCount = 0;
+        int bestRank = Integer.MAX_VALUE;
+        for (int c = 0; c < legal.categories(); c++) {
+          int rank =
+              switch (legal.categoryType(c)) {
+                case BUILD_CITY -> 0;
+                case BUILD_SETTLEMENT -> 1;
+                case BUILD_ROAD -> 2;
+                default -> Integer.MAX_VALUE;
+              };
+          if (rank < bestRank) {
+            bestRank = rank;
+            bestOffset = offset;
+            bestCount = legal.categoryCount(c);
+          }
+          offset += legal.categoryCount(c);
+        }
+        if (bestOffset < 0) return rng.nextInt(legal.count());
+        return bestOffset + rng.nextInt(bestCount);
+      };
+}
@@ -0,0 +1,190 @@
+package com.catanatron.core.sim;
+
+import com.catanatron.core.engine.Game;
+import com.catanatron.core.engine.State;
+import com.catanatron.core.model.PlayerColor;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Estimates each player's probability of winning a position by playing copies of it out in
+ * parallel. After every playout the 95% Wilson interval of every color is updated; the estimate
+ * stops once all intervals are narrower than the requested half-width, or when the time budget or
+ * playout cap is reached. Playouts that hit the horizon count as won by nobody.
+ *
+ * <p>The root is left untouched; each playout reseeds its copy's dice from the estimator's seed.
+ * One {@link #estimate} call at a time per estimator; with a single thread playouts run on the
+ * caller's thread.
+ */
+public final class WinProbabilityEstimator implements AutoCloseable {
+  public static final double Z95 = 1.959964;
+  private static final int MIN_PLAYOUTS = 30;
+
+  /** Outcome of one estimate; arrays are indexed by seat. */
+  public record Estimate(
+      List<PlayerColor> colors, long[] wins, long playouts, long elapsedNanos, boolean converged) {
+    public double probability(PlayerColor color) {
+      return playouts == 0 ? 0 : (double) wins[seat(color)] / playouts;
+    }
+
+    public double lower(PlayerColor color) {
+      return wilsonCenter(wins[seat(color)], playouts) - halfWidth(color);
+    }
+
+    public double upper(PlayerColor color) {
+      return wilsonCenter(wins[seat(color)], playouts) + halfWidth(color);
+    }
+
+    public double halfWidth(PlayerColor color) {
+      return wilsonHalfWidth(wins[seat(color)], playouts);
+    }
+
+    /** Playouts nobody won within the horizon. */
+    public long undecided() {
+      long decided = 0;
+      for (long w : wins) decided += w;
+      return playouts - decided;
+    }
+
+    private int seat(PlayerColor color) {
+      int seat = colors.indexOf(color);
+      if (seat < 0) throw new IllegalArgumentException(color + " is not playing");
+      return seat;
+    }
+  }
+
+  private final RolloutEngine[] engines;
+  private final int horizonTurns;
+  private final ExecutorService pool;
+
+  // Shared between workers during one estimate, guarded by lock
+  private final Object lock = new Object();
+  private long[] wins;
+  private long playouts;
+  private double targetHalfWidth;
+  private long maxPlayouts;
+  private long deadline;
+  private volatile boolean stop;
+  private boolean converged;
+
+  public WinProbabilityEstimator(RolloutPolicy policy, int threads, long seed) {
+    this(policy, threads, seed, Game.TURNS_LIMIT);
+  }
+
+  /**
+   * @param horizonTurns turns played past the root before a playout is counted as undecided
+   */
+  public WinProbabilityEstimator(RolloutPolicy policy, int threads, long seed, int horizonTurns) {
+    if (threads < 1) throw new IllegalArgumentException("threads: " + threads);
+    this.horizonTurns = horizonTurns;
+    this.engines = new RolloutEngine[threads];
+    java.util.Random seeds = new java.util.Random(seed);
+    for (int t = 0; t < threads; t++) engines[t] = new RolloutEngine(policy, seeds.nextLong());
+    this.pool =
+        threads > 1 ? Executors.newFixedThreadPool(threads, WinProbabilityEstimator::daemon) : null;
+  }
+
+  /**
+   * @param halfWidth stop once every color's 95% interval is at most this wide on either side
+   * @param budgetNanos wall-clock budget
+   */
+  public Estimate estimate(State root, double halfWidth, long budgetNanos) {
+    return estimate(root, halfWidth, budgetNanos, Long.MAX_VALUE);
+  }
+
+  public synchronized Estimate estimate(
+      State root, double halfWidth, long budgetNanos, long maxPlayouts) {
+    long start = System.nanoTime();
+    this.wins = new long[root.colors.size()];
+    this.playouts = 0;
+    this.targetHalfWidth = halfWidth;
+    this.maxPlayouts = maxPlayouts;
+    this.deadline = start + budgetNanos;
+    this.stop = false;
+    this.converged = false;
+
+    if (pool == null) {
+      work(engines[0], root);
+    } else {
+      // Copying reads the root only, so the workers share it
+      List<Callable<Void>> workers = new ArrayList<>();
+      for (RolloutEngine engine : engines) {
+        workers.add(
+            () -> {
+              work(engine, root);
+              return null;
+            });
+      }
+      try {
+        for (Future<Void> f : pool.invokeAll(workers)) f.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException("interrupted", e);
+      } catch (ExecutionException e) {
+        throw new IllegalStateException("playout failed", e.getCause());
+      }
+    }
+    synchronized (lock) {
+      return new Estimate(
+          root.colors, wins.clone(), playouts, System.nanoTime() - start, converged);
+    }
+  }
+
+  /** Win probability under a fixed budget, for search players. */
+  public Evaluator asEvaluator(double halfWidth, long budgetNanos, long maxPlayouts) {
+    return (state, color) ->
+        estimate(state, halfWidth, budgetNanos, maxPlayouts).probability(color);
+  }
+
+  @Override
+  public void close() {
+    if (pool != null) pool.shutdownNow();
+  }
+
+  private void work(RolloutEngine engine, State root) {
+    while (!stop) {
+      State state = root.copy();
+      engine.reseed(state);
+      PlayerColor winner = engine.playout(state, horizonTurns);
+      record(winner == null ? -1 : root.colors.indexOf(winner));
+    }
+  }
+
+  private void record(int winnerSeat) {
+    synchronized (lock) {
+      if (stop) return; // finished after the estimate was settled
+      if (winnerSeat >= 0) wins[winnerSeat]++;
+      playouts++;
+      if (playouts >= MIN_PLAYOUTS) {
+        double widest = 0;
+        for (long w : wins) widest = Math.max(widest, wilsonHalfWidth(w, playouts));
+        converged = widest <= targetHalfWidth;
+      }
+      if (converged || playouts >= maxPlayouts || System.nanoTime() >= deadline) stop = true;
+    }
+  }
+
+  static double wilsonCenter(long successes, long n) {
+    if (n == 0) return 0.5;
+    double z2 = Z95 * Z95;
+    return ((double) successes / n + z2 / (2 * n)) / (1 + z2 / n);
+  }
+
+  static double wilsonHalfWidth(long successes, long n) {
+    if (n == 0) return 0.5;
+    double p = (double) successes / n;
+    double z2 = Z95 * Z95;
+    return Z95 / (1 + z2 / n) * Math.sqrt(p * (1 - p) / n + z2 / (4.0 * n * n));
+  }
+
+  private static Thread daemon(Runnable r) {
+    Thread t = new Thread(r, "win-probability");
+    t.setDaemon(true);
+    return t;
+  }
+}
@@ -0,0 +1,44 @@
+package com.catanatron.core.tournament;
+
+/**
+ * Elo ratings fitted to pairwise results (Bradley-Terry maximum likelihood), so they do not depend
+ * on the order in which parallel games finished. Every pair that met gets one virtual draw, which
+ * keeps unbeaten or winless players finite. Ratings are centered on 0.
+ */
+public final class EloRatings {
+  private EloRatings() {}
+
+  /**
+   * @param scores scores[i][j]: points player i took off j (win 1, draw 0.5)
+   * @param games games[i][j]: games between i and j (symmetric)
+   */
+  public static double[] fit(double[][] scores, int[][] games) {
+    int n = scores.length;
+    double[] strength = new double[n];
+    java.util.Arrays.fill(strength, 1);
+    for (int iter = 0; iter < 1000; iter++) {
+      double maxChange = 0;
+      for (int i = 0; i < n; i++) {
+        double won = 0, denom = 0;
+        for (int j = 0; j < n; j++) {
+          if (i == j || games[i][j] == 0) continue;
+          won += scores[i][j] + 0.5;
+          denom += (games[i][j] + 1) / (strength[i] + strength[j]);
+        }
+        if (denom == 0) continue;
+        double next = won / denom;
+        maxChange = Math.max(maxChange, Math.abs(Math.log(next / strength[i])));
+        strength[i] = next;
+      }
+      if (maxChange < 1e-9) break;
+    }
+    double[] elo = new double[n];
+    double mean = 0;
+    for (int i = 0; i < n; i++) {
+      elo[i] = 400 * Math.log10(strength[i]);
+      mean += elo[i] / n;
+    }
+    for (int i = 0; i < n; i++) elo[i] -= mean;
+    return elo;
+  }
+}
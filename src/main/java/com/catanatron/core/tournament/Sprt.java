@@ -0,0 +1,65 @@
+package com.catanatron.core.tournament;
+
+/**
+ * Sequential probability ratio test on the Elo difference of a head-to-head match, using the normal
+ * approximation of the game score (win 1, draw 0.5, loss 0).
+ *
+ * @param elo0 Elo difference under H0
+ * @param elo1 Elo difference under H1 (greater than elo0)
+ * @param alpha false positive rate (accepting H1 when H0 holds)
+ * @param beta false negative rate
+ */
+public record Sprt(double elo0, double elo1, double alpha, double beta) {
+  public enum Decision {
+    CONTINUE,
+    ACCEPT_H0,
+    ACCEPT_H1
+  }
+
+  public Sprt {
+    if (!(elo1 > elo0)) throw new IllegalArgumentException("elo1 must exceed elo0");
+    if (alpha <= 0 || alpha >= 1 || beta <= 0 || beta >= 1)
+      throw new IllegalArgumentException("alpha and beta must be in (0, 1)");
+  }
+
+  /** Is the first player at least {@code elo} stronger, at 5% error rates? */
+  public static Sprt stronger(double elo) {
+    return new Sprt(0, elo, 0.05, 0.05);
+  }
+
+  public double lowerBound() {
+    return Math.log(beta / (1 - alpha));
+  }
+
+  public double upperBound() {
+    return Math.log((1 - beta) / alpha);
+  }
+
+  /** Log-likelihood ratio of H1 over H0 given the first player's wins, draws and losses. */
+  public double llr(int wins, int draws, int losses) {
+    if (wins + draws + losses == 0) return 0;
+    // A one-sided record has no variance; count it as if one game had been drawn
+    if (wins + draws == 0 || losses + draws == 0) draws++;
+    int n = wins + draws + losses;
+    double mean = (wins + 0.5 * draws) / n;
+    double variance = (wins * sq(1 - mean) + draws * sq(0.5 - mean) + losses * sq(mean)) / n;
+    double s0 = expectedScore(elo0);
+    double s1 = expectedScore(elo1);
+    return n * (s1 - s0) * (2 * mean - s0 - s1) / (2 * variance);
+  }
+
+  public Decision decide(int wins, int draws, int losses) {
+    double llr = llr(wins, draws, losses);
+    if (llr >= upperBound()) return Decision.ACCEPT_H1;
+    if (llr <= lowerBound()) return Decision.ACCEPT_H0;
+    return Decision.CONTINUE;
+  }
+
+  static double expectedScore(double elo) {
+    return 1 / (1 + Math.pow(10, -elo / 400));
+  }
+
+  private static double sq(double x) {
+    return x * x;
+  }
+}
@@ -0,0 +1,187 @@
+package com.catanatron.core.tournament;
+
+import com.catanatron.core.engine.Game;
+import com.catanatron.core.engine.Player;
+import com.catanatron.core.engine.TimeControl;
+import com.catanatron.core.model.PlayerColor;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+/**
+ * Runs head-to-head matches between {@link Player} implementations across threads and rates them. A
+ * match is played in pairs of two-player games on the same seed with seats swapped, so neither side
+ * profits from the board or from moving first. With an {@link Sprt} a match stops as soon as the
+ * test decides; otherwise it plays {@code maxGames}.
+ */
+public final class Tournament {
+  /** A contestant; the factory builds a fresh player for every game. */
+  public record Entrant(String name, Function<PlayerColor, Player> factory) {}
+
+  /** Wins, draws and losses are from {@code first}'s point of view. */
+  public record MatchResult(
+      String first, String second, int wins, int draws, int losses, Sprt.Decision decision) {
+    public int games() {
+      return wins + draws + losses;
+    }
+  }
+
+  public record Standing(String name, double elo, int games, double score) {}
+
+  public record Result(List<MatchResult> matches, List<Standing> standings) {}
+
+  private static final PlayerColor[] SEATS = {PlayerColor.RED, PlayerColor.BLUE};
+
+  private final List<Entrant> entrants;
+  private final int threads;
+  private final long seed;
+  private final Sprt sprt; // null: always play maxGames
+  private final TimeControl timeControl;
+
+  public Tournament(List<Entrant> entrants, int threads, long seed, Sprt sprt) {
+    this(entrants, threads, seed, sprt, TimeControl.UNLIMITED);
+  }
+
+  /** Games are played under {@code timeControl}; over-budget moves fall back. */
+  public Tournament(
+      List<Entrant> entrants, int threads, long seed, Sprt sprt, TimeControl timeControl) {
+    if (entrants.size() < 2) throw new IllegalArgumentException("need two entrants");
+    this.entrants = List.copyOf(entrants);
+    this.threads = threads;
+    this.seed = seed;
+    this.sprt = sprt;
+    this.timeControl = timeControl;
+  }
+
+  /** Every entrant plays every other. */
+  public Result roundRobin(int maxGames) {
+    List<int[]> pairs = new ArrayList<>();
+    for (int i = 0; i < entrants.size(); i++) {
+      for (int j = i + 1; j < entrants.size(); j++) pairs.add(new int[] {i, j});
+    }
+    return run(pairs, maxGames);
+  }
+
+  /** The first entrant plays each of the others. */
+  public Result gauntlet(int maxGames) {
+    List<int[]> pairs = new ArrayList<>();
+    for (int j = 1; j < entrants.size(); j++) pairs.add(new int[] {0, j});
+    return run(pairs, maxGames);
+  }
+
+  private Result run(List<int[]> pairs, int maxGames) {
+    List<Match> matches = new ArrayList<>();
+    for (int[] pair : pairs) matches.add(new Match(pair[0], pair[1]));
+    ExecutorService pool = Executors.newFixedThreadPool(threads);
+    try {
+      // Interleave matches so they all progress and stop early together; round r is played on
+      // the same board in every match
+      List<Future<?>> futures = new ArrayList<>();
+      for (int round = 0; 2 * round < maxGames; round++) {
+        long gameSeed = mix(seed, round);
+        for (Match match : matches) futures.add(pool.submit(() -> match.playPair(gameSeed)));
+      }
+      for (Future<?> future : futures) future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("interrupted", e);
+    } catch (ExecutionException e) {
+      throw new IllegalStateException("game failed", e.getCause());
+    } finally {
+      pool.shutdownNow();
+    }
+    return summarize(matches);
+  }
+
+  private Result summarize(List<Match> matches) {
+    int n = entrants.size();
+    double[][] scores = new double[n][n];
+    int[][] games = new int[n][n];
+    List<MatchResult> results = new ArrayList<>();
+    for (Match m : matches) {
+      results.add(m.result());
+      scores[m.a][m.b] += m.wins + 0.5 * m.draws;
+      scores[m.b][m.a] += m.losses + 0.5 * m.draws;
+      games[m.a][m.b] += m.games();
+      games[m.b][m.a] += m.games();
+    }
+    double[] elo = EloRatings.fit(scores, games);
+    List<Standing> standings = new ArrayList<>();
+    for (int i = 0; i < n; i++) {
+      int played = 0;
+      double score = 0;
+      for (int j = 0; j < n; j++) {
+        played += games[i][j];
+        score += scores[i][j];
+      }
+      standings.add(new Standing(entrants.get(i).name(), elo[i], played, score));
+    }
+    standings.sort(Comparator.comparingDouble(Standing::elo).reversed());
+    return new Result(results, standings);
+  }
+
+  private final class Match {
+    final int a, b;
+    int wins, draws, losses;
+    Sprt.Decision decision = Sprt.Decision.CONTINUE;
+
+    Match(int a, int b) {
+      this.a = a;
+      this.b = b;
+    }
+
+    synchronized int games() {
+      return wins + draws + losses;
+    }
+
+    synchronized MatchResult result() {
+      return new MatchResult(
+          entrants.get(a).name(), entrants.get(b).name(), wins, draws, losses, decision);
+    }
+
+    void playPair(long gameSeed) {
+      synchronized (this) {
+        if (decision != Sprt.Decision.CONTINUE) return;
+      }
+      // The pair is recorded as a unit so that the test always sees both seatings of a board
+      int first = play(a, b, gameSeed);
+      int second = -play(b, a, gameSeed);
+      synchronized (this) {
+        record(first);
+        record(second);
+        if (sprt != null && decision == Sprt.Decision.CONTINUE) {
+          decision = sprt.decide(wins, draws, losses);
+        }
+      }
+    }
+
+    private void record(int outcome) {
+      if (outcome > 0) wins++;
+      else if (outcome < 0) losses++;
+      else draws++;
+    }
+
+    // +1 if the entrant in the first seat wins, -1 if the other does, 0 at the turn limit
+    private int play(int firstSeat, int secondSeat, long gameSeed) {
+      List<Player> players =
+          List.of(
+              entrants.get(firstSeat).factory().apply(SEATS[0]),
+              entrants.get(secondSeat).factory().apply(SEATS[1]));
+      PlayerColor winner = new Game(players, gameSeed).play(timeControl).winner();
+      if (winner == null) return 0;
+      return winner == SEATS[0] ? 1 : -1;
+    }
+  }
+
+  private static long mix(long seed, int round) {
+    long h = seed * 0x9E3779B97F4A7C15L + round;
+    h ^= h >>> 31;
+    h *= 0x94D049BB133111EBL;
+    return h ^ (h >>> 29);
+  }
+}
@@ -0,0 +1,47 @@
+package com.catanatron.core.util;
+
+/**
+ * Bitsets stored as runs of 64-bit words inside a {@code long[]}, so that several sets (one per
+ * color, say) share one array: a set is the {@code length} words from {@code offset}, and bit
+ * {@code i} lives in word {@code i >>> 6}. Maps of up to 64 nodes need a single word.
+ */
+public final class Bits {
+  private Bits() {}
+
+  /** Words needed for {@code bits} bits. */
+  public static int words(int bits) {
+    return (bits + 63) >>> 6;
+  }
+
+  public static boolean get(long[] words, int offset, int bit) {
+    return (words[offset + (bit >>> 6)] & (1L << bit)) != 0;
+  }
+
+  public static void set(long[] words, int offset, int bit) {
+    words[offset + (bit >>> 6)] |= 1L << bit;
+  }
+
+  public static void clear(long[] words, int offset, int bit) {
+    words[offset + (bit >>> 6)] &= ~(1L << bit);
+  }
+
+  public static int count(long[] words, int offset, int length) {
+    int count = 0;
+    for (int w = offset; w < offset + length; w++) count += Long.bitCount(words[w]);
+    return count;
+  }
+
+  /** Index of the k-th (from 0) set bit of the set. */
+  public static int nth(long[] words, int offset, int length, int k) {
+    for (int w = 0; w < length; w++) {
+      long word = words[offset + w];
+      int n = Long.bitCount(word);
+      if (k < n) {
+        for (int i = 0; i < k; i++) word &= word - 1;
+        return (w << 6) + Long.numberOfTrailingZeros(word);
+      }
+      k -= n;
+    }
+    throw new IndexOutOfBoundsException("fewer than " + (k + 1) + " bits set");
+  }
+}
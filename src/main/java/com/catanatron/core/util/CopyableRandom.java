@@ -0,0 +1,55 @@
+package com.catanatron.core.util;
+
+import java.util.Random;
+
+/**
+ * {@link Random}'s generator (same sequence for the same seed) with its state exposed to copying,
+ * which {@code Random} does not allow. {@link #split} derives an independent stream without
+ * advancing this one, so a game state can be copied without changing its own future dice. Not
+ * thread-safe.
+ */
+public final class CopyableRandom extends Random {
+  private static final long serialVersionUID = 1L;
+  private static final long MULTIPLIER = 0x5DEECE66DL;
+  private static final long ADDEND = 0xBL;
+  private static final long MASK = (1L << 48) - 1;
+
+  private long seed; // set by Random's constructors through setSeed
+
+  public CopyableRandom() {
+    super();
+  }
+
+  public CopyableRandom(long seed) {
+    super(seed);
+  }
+
+  /** A generator that will draw exactly what this one draws next. */
+  public CopyableRandom copy() {
+    CopyableRandom copy = new CopyableRandom(0);
+    copy.seed = seed;
+    return copy;
+  }
+
+  /**
+   * A generator seeded with what {@code nextLong()} would return here, leaving this one as it is:
+   * its stream is determined by, but differs from, this one's.
+   */
+  public CopyableRandom split() {
+    CopyableRandom split = copy();
+    split.setSeed(split.nextLong());
+    return split;
+  }
+
+  @Override
+  public void setSeed(long seed) {
+    super.setSeed(seed);
+    this.seed = (seed ^ MULTIPLIER) & MASK;
+  }
+
+  @Override
+  protected int next(int bits) {
+    seed = (seed * MULTIPLIER + ADDEND) & MASK;
+    return (int) (seed >>> (48 - bits));
+  }
+}
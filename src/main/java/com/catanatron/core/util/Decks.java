@@ -13,6 +13,13 @@ public final class Decks {
     return new int[] {19, 19, 19, 19, 19};
   }
 
+  public static final int DEVELOPMENT_DECK_SIZE = 25;
+
+  /** Cards of a new development deck, by {@code DevCard} ordinal. */
+  public static int[] startingDevelopmentDeck() {
+    return new int[] {14, 2, 2, 2, 5};
+  }
+
   public static int index(Resource r) {
     return switch (r) {
       case WOOD -> 0;
@@ -0,0 +1,28 @@
+package com.catanatron.core.board;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.catanatron.core.map.CatanMap;
+import com.catanatron.core.model.PlayerColor;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+public class BoardTest {
+  @Test
+  public void roadWithBothEndsInANewWordListsItOnce() {
+    CatanMap map = CatanMap.extension(new Random(0));
+    assertEquals(2, map.nodeWords);
+    int edge = 0;
+    while (map.edgeA[edge] < 64 || map.edgeB[edge] < 64) edge++;
+
+    Board board = new Board(map);
+    board.buildRoad(PlayerColor.RED, map.edgeA[edge], map.edgeB[edge]);
+    assertEquals(1, board.activeNodeWords(PlayerColor.RED));
+    assertEquals(1, board.activeNodeWord(PlayerColor.RED, 0));
+
+    board.buildSettlement(PlayerColor.RED, 0);
+    assertEquals(2, board.activeNodeWords(PlayerColor.RED));
+    assertEquals(0, board.activeNodeWord(PlayerColor.RED, 0));
+    assertEquals(1, board.activeNodeWord(PlayerColor.RED, 1));
+  }
+}
@@ -0,0 +1,139 @@
+package com.catanatron.core.book;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.catanatron.core.engine.MoveGeneration;
+import com.catanatron.core.engine.Player;
+import com.catanatron.core.engine.RandomPlayer;
+import com.catanatron.core.engine.Reducer;
+import com.catanatron.core.engine.State;
+import com.catanatron.core.map.CatanMap;
+import com.catanatron.core.map.Coordinate;
+import com.catanatron.core.map.Direction;
+import com.catanatron.core.map.MapTemplate;
+import com.catanatron.core.model.Action;
+import com.catanatron.core.model.PlayerColor;
+import com.catanatron.core.sim.RolloutPolicy;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class OpeningBookTest {
+  private static final List<Player> PLAYERS =
+      List.of(new RandomPlayer(PlayerColor.RED), new RandomPlayer(PlayerColor.BLUE));
+
+  @Test
+  public void rotatedLayoutsShareKeys() {
+    MapTemplate template = MapTemplate.buildBaseTemplate(new Random(7));
+    CatanMap map = CatanMap.fromTemplate(template);
+    CatanMap rotated = CatanMap.fromTemplate(rotate(template));
+    CanonicalLayout a = CanonicalLayout.of(map), b = CanonicalLayout.of(rotated);
+    assertEquals(a.layoutHash(), b.layoutHash());
+    assertNotEquals(a.layoutHash(), CanonicalLayout.of(CatanMap.base(new Random(8))).layoutHash());
+
+    // Every first settlement, then every road after it, keys alike on both drawings
+    State onA = new State(PLAYERS, 1, map), onB = new State(PLAYERS, 1, rotated);
+    assertEquals(placementKeys(a, onA), placementKeys(b, onB));
+    assertEquals(a.positionKey(onA, a.symmetry(onA)), b.positionKey(onB, b.symmetry(onB)));
+    Set<Long> afterB = new HashSet<>();
+    for (Action<?> settlement : MoveGeneration.generatePlayable(onB)) {
+      State next = onB.copy();
+      Reducer.step(next, settlement);
+      afterB.add(b.positionKey(next, b.symmetry(next)));
+    }
+    State next = onA.copy();
+    Reducer.step(next, MoveGeneration.generatePlayable(onA).get(5));
+    assertTrue(afterB.contains(a.positionKey(next, a.symmetry(next))));
+  }
+
+  @Test
+  public void bookGrowsAndPersists(@TempDir Path dir) {
+    Path file = dir.resolve("book.bin");
+    var entry = new OpeningBook.Entry();
+    try (OpeningBook book = OpeningBook.open(file, 16)) {
+      for (long key = 0; key < 100; key++) book.add(key * 0x9E3779B97F4A7C15L, 10, key);
+      book.add(0, 5, 1);
+      assertEquals(100, book.size());
+      assertTrue(book.capacity() >= 128);
+    }
+    try (OpeningBook book = OpeningBook.open(file)) {
+      assertEquals(100, book.size());
+      assertTrue(book.probe(0, entry));
+      assertEquals(15, entry.playouts);
+      assertEquals(1.0 / 15, entry.value(), 1e-12);
+      assertTrue(book.probe(42 * 0x9E3779B97F4A7C15L, entry));
+      assertEquals(42.0 / 10, entry.value(), 1e-12);
+      assertFalse(book.probe(12345, entry));
+    }
+  }
+
+  @Test
+  public void builtBookDrivesThePlacements(@TempDir Path dir) {
+    CatanMap map = CatanMap.base(new Random(3));
+    State root = new State(PLAYERS, 3, map);
+    try (OpeningBook book = OpeningBook.open(dir.resolve("book.bin"));
+        var builder = new OpeningBookBuilder(book, RolloutPolicy.BUILD_FIRST, 2, 4)) {
+      CanonicalLayout layout = CanonicalLayout.of(map);
+      assertFalse(builder.contains(layout, 2));
+      int evaluated = builder.analyze(root);
+      assertTrue(builder.contains(layout, 2));
+      assertTrue(evaluated > 54, evaluated + " placements");
+      assertEquals(evaluated + 1, book.size());
+
+      // The player follows the book through the whole initial phase
+      var player = new OpeningBookPlayer(book, new RandomPlayer(PlayerColor.RED), 4);
+      State state = new State(PLAYERS, 3, map);
+      while (state.isInitialBuildPhase) {
+        List<Action<?>> playable = MoveGeneration.generatePlayable(state);
+        Action<?> action = player.lookup(state, playable);
+        assertNotNull(action, "no book move at turn " + state.numTurns);
+        assertTrue(playable.contains(action));
+        Reducer.step(state, action);
+      }
+      assertNull(player.lookup(state, MoveGeneration.generatePlayable(state)));
+    }
+  }
+
+  private static Set<Long> placementKeys(CanonicalLayout layout, State state) {
+    int symmetry = layout.symmetry(state);
+    long position = layout.positionKey(state, symmetry);
+    Set<Long> keys = new HashSet<>();
+    for (Action<?> action : MoveGeneration.generatePlayable(state))
+      keys.add(layout.actionKey(position, symmetry, action));
+    return keys;
+  }
+
+  // The same board turned by 60 degrees about the centre hex
+  private static MapTemplate rotate(MapTemplate template) {
+    Map<Coordinate, Object> topology = new LinkedHashMap<>();
+    template
+        .topology()
+        .forEach(
+            (c, kind) -> {
+              Object turned = kind;
+              if (kind instanceof Map.Entry<?, ?> port)
+                turned = Map.entry(port.getKey(), rotate((Direction) port.getValue()));
+              topology.put(rotate(c), turned);
+            });
+    return new MapTemplate(
+        template.numbers(), template.portResources(), template.tileResources(), topology);
+  }
+
+  private static Coordinate rotate(Coordinate c) {
+    return new Coordinate(-c.r, -c.s, -c.q);
+  }
+
+  private static Direction rotate(Direction d) {
+    Coordinate origin = new Coordinate(0, 0, 0);
+    Coordinate turned = rotate(origin.neighbor(d));
+    for (Direction candidate : Direction.values())
+      if (origin.neighbor(candidate).equals(turned)) return candidate;
+    throw new AssertionError(d);
+  }
+}
@@ -0,0 +1,120 @@
+package com.catanatron.core.engine;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.catanatron.core.map.CatanMap;
+import com.catanatron.core.model.Action;
+import com.catanatron.core.model.PlayerColor;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Heap bytes allocated by seeded games, per game and per action, against the budgets in {@code
+ * allocation-budget.properties}. A budget is exceeded by a new allocation on the hot path of {@link
+ * MoveGeneration}, {@link LegalActions} or {@link Reducer}; lower it when an allocation is removed.
+ */
+public class AllocationBudgetTest {
+  private static final com.sun.management.ThreadMXBean THREADS =
+      (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+  private static final int WARMUP_GAMES = 200;
+  private static final int GAMES = 100;
+
+  // Totals over the measured games
+  private record Usage(long bytes, long actions, long collections) {}
+
+  @Test
+  public void pooledGamesStayWithinBudget() throws IOException {
+    State state = new State(players(), 0);
+    CatanMap layout = CatanMap.base(new Random(4));
+    LegalActions legal = new LegalActions();
+    Usage usage =
+        measure(
+            seed -> {
+              state.reset(seed, layout);
+              Random rng = new Random(seed);
+              long actions = 0;
+              while (state.winner() == null && state.numTurns < Game.TURNS_LIMIT) {
+                legal.reset(state);
+                if (legal.count() == 0) break;
+                Reducer.step(state, legal.get(rng.nextInt(legal.count())));
+                actions++;
+              }
+              return actions;
+            });
+    check("pooled", usage);
+  }
+
+  @Test
+  public void listGamesStayWithinBudget() throws IOException {
+    Usage usage =
+        measure(
+            seed -> {
+              State state = new State(players(), seed);
+              Random rng = new Random(seed);
+              long actions = 0;
+              while (state.winner() == null && state.numTurns < Game.TURNS_LIMIT) {
+                List<Action<?>> playable = MoveGeneration.generatePlayable(state);
+                if (playable.isEmpty()) break;
+                Reducer.apply(state, playable.get(rng.nextInt(playable.size())));
+                actions++;
+              }
+              return actions;
+            });
+    check("list", usage);
+  }
+
+  private interface SeededGame {
+    long play(long seed);
+  }
+
+  private static Usage measure(SeededGame game) {
+    for (int i = 0; i < WARMUP_GAMES; i++) game.play(GAMES + i);
+    long thread = Thread.currentThread().getId();
+    long collections = collections();
+    long bytes = THREADS.getThreadAllocatedBytes(thread);
+    long actions = 0;
+    for (int seed = 0; seed < GAMES; seed++) actions += game.play(seed);
+    return new Usage(
+        THREADS.getThreadAllocatedBytes(thread) - bytes, actions, collections() - collections);
+  }
+
+  private static long collections() {
+    long count = 0;
+    for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+      count += Math.max(0, gc.getCollectionCount());
+    }
+    return count;
+  }
+
+  private static void check(String path, Usage usage) throws IOException {
+    Properties budget = new Properties();
+    try (InputStream in =
+        AllocationBudgetTest.class.getResourceAsStream("/allocation-budget.properties")) {
+      budget.load(in);
+    }
+    long perGame = usage.bytes() / GAMES;
+    long perAction = usage.bytes() / usage.actions();
+    System.out.printf(
+        "%s: %d games, %d actions, %d bytes/game, %d bytes/action, %d collections%n",
+        path, GAMES, usage.actions(), perGame, perAction, usage.collections());
+    long gameBudget = Long.parseLong(budget.getProperty(path + ".bytesPerGame"));
+    long actionBudget = Long.parseLong(budget.getProperty(path + ".bytesPerAction"));
+    assertTrue(perGame <= gameBudget, path + ": " + perGame + " bytes/game > " + gameBudget);
+    assertTrue(
+        perAction <= actionBudget, path + ": " + perAction + " bytes/action > " + actionBudget);
+  }
+
+  private static List<Player> players() {
+    return List.of(
+        new RandomPlayer(PlayerColor.RED),
+        new RandomPlayer(PlayerColor.BLUE),
+        new RandomPlayer(PlayerColor.WHITE),
+        new RandomPlayer(PlayerColor.ORANGE));
+  }
+}
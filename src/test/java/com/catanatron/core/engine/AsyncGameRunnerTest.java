@@ -0,0 +1,114 @@
+package com.catanatron.core.engine;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.catanatron.core.model.Action;
+import com.catanatron.core.model.PlayerColor;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+public class AsyncGameRunnerTest {
+  // Answers randomly after a delay; optionally never answers its first decision
+  private static final class DelayedPlayer extends AsyncPlayer {
+    private final ScheduledExecutorService timer;
+    private final long delayMicros;
+    private final Random rng = new Random(3);
+    private boolean hangOnce;
+
+    DelayedPlayer(
+        PlayerColor color, ScheduledExecutorService timer, long delayMicros, boolean hang) {
+      super(color, true);
+      this.timer = timer;
+      this.delayMicros = delayMicros;
+      this.hangOnce = hang;
+    }
+
+    @Override
+    public CompletableFuture<Action<?>> decideAsync(Game game, List<Action<?>> playable) {
+      var future = new CompletableFuture<Action<?>>();
+      if (hangOnce) {
+        hangOnce = false;
+        return future;
+      }
+      Action<?> choice = playable.get(rng.nextInt(playable.size()));
+      timer.schedule(() -> future.complete(choice), delayMicros, TimeUnit.MICROSECONDS);
+      return future;
+    }
+  }
+
+  @Test
+  public void manyConcurrentGamesOnFewThreads() throws Exception {
+    ScheduledExecutorService timer = Executors.newScheduledThreadPool(1);
+    var executor = Executors.newFixedThreadPool(2);
+    try {
+      var runner = new AsyncGameRunner(executor, 1000, FallbackPolicy.RANDOM);
+      List<CompletableFuture<AsyncGameRunner.Result>> games = new ArrayList<>();
+      for (int g = 0; g < 64; g++) {
+        List<Player> players =
+            List.of(
+                new DelayedPlayer(PlayerColor.RED, timer, 50, false),
+                new RandomPlayer(PlayerColor.BLUE));
+        games.add(runner.play(new Game(players, g)));
+      }
+      for (var game : games) {
+        var result = game.get(60, TimeUnit.SECONDS);
+        assertTrue(result.winner() != null || result.game().state.numTurns >= Game.TURNS_LIMIT);
+        assertArrayEquals(new int[] {0, 0}, result.fallbacks());
+      }
+    } finally {
+      executor.shutdownNow();
+      timer.shutdownNow();
+    }
+  }
+
+  @Test
+  public void timedOutDecisionFallsBack() throws Exception {
+    ScheduledExecutorService timer = Executors.newScheduledThreadPool(1);
+    var executor = Executors.newSingleThreadExecutor();
+    try {
+      var runner = new AsyncGameRunner(executor, 20, FallbackPolicy.PASSIVE);
+      List<Player> players =
+          List.of(
+              new DelayedPlayer(PlayerColor.RED, timer, 0, true),
+              new DelayedPlayer(PlayerColor.BLUE, timer, 0, false));
+      var result = runner.play(new Game(players, 1)).get(60, TimeUnit.SECONDS);
+      assertArrayEquals(new int[] {1, 0}, result.timeouts());
+      assertArrayEquals(new int[] {1, 0}, result.fallbacks());
+    } finally {
+      executor.shutdownNow();
+      timer.shutdownNow();
+    }
+  }
+
+  @Test
+  public void illegalDecisionFallsBack() throws Exception {
+    var executor = Executors.newSingleThreadExecutor();
+    try {
+      Player cheater =
+          new Player(PlayerColor.RED, true) {
+            @Override
+            public Action<?> decide(Game game, List<Action<?>> playable) {
+              return new Action<>(
+                  PlayerColor.RED, com.catanatron.core.model.ActionType.END_TURN, null);
+            }
+          };
+      Game game = new Game(List.of(cheater, new RandomPlayer(PlayerColor.BLUE)), 2);
+      game.state.numTurns = Game.TURNS_LIMIT - 1;
+      var result =
+          new AsyncGameRunner(executor, 0, FallbackPolicy.PASSIVE)
+              .play(game)
+              .get(60, TimeUnit.SECONDS);
+      // END_TURN is never legal during the opening, so every RED move fell back
+      assertTrue(result.fallbacks()[0] > 0);
+      assertEquals(0, result.timeouts()[0]);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+}
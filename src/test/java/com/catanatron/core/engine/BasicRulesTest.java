@@ -2,6 +2,8 @@ package com.catanatron.core.engine;
 
 import static org.junit.jupiter.api.Assertions.*;
 
+import com.catanatron.core.model.Action;
+import com.catanatron.core.model.ActionType;
 import com.catanatron.core.model.PlayerColor;
 import org.junit.jupiter.api.Test;
 
@@ -390,11 +392,11 @@ public class BasicRulesTest {
     game.state.playerState.put("P0_SHEEP_IN_HAND", 1);
     game.state.playerState.put("P0_WHEAT_IN_HAND", 1);
     game.state.playerState.put("P0_ORE_IN_HAND", 1);
-    int deckBefore = game.state.developmentDeck.size();
+    int deckBefore = game.state.developmentCardsLeft();
     game.execute(
         new com.catanatron.core.model.Action<>(
             PlayerColor.RED, com.catanatron.core.model.ActionType.BUY_DEVELOPMENT_CARD, null));
-    int deckAfter = game.state.developmentDeck.size();
+    int deckAfter = game.state.developmentCardsLeft();
     assertEquals(deckBefore - 1, deckAfter);
     // Ensure resources paid
     assertEquals(0, game.state.playerState.get("P0_SHEEP_IN_HAND"));
@@ -410,6 +412,100 @@ public class BasicRulesTest {
     assertEquals(1, inHandTotal);
   }
 
+  @Test
+  public void derivedValuesFollowPlayerStateWrites() {
+    State state =
+        new State(
+            java.util.List.of(
+                new RandomPlayer(PlayerColor.RED), new RandomPlayer(PlayerColor.BLUE)));
+    state.playerState.put("P1_WOOD_IN_HAND", 3);
+    state.playerState.put("P1_ORE_IN_HAND", 2);
+    state.playerState.add(1, PlayerStateMap.FIRST_RESOURCE + 1, 1);
+    assertEquals(6, state.handSize(1));
+    assertEquals(0, state.handSize(0));
+    assertNull(state.winner());
+    state.playerState.put("P1_ACTUAL_VICTORY_POINTS", 10);
+    assertEquals(PlayerColor.BLUE, state.winner());
+    State copy = state.copy();
+    copy.playerState.put("P1_ACTUAL_VICTORY_POINTS", 9);
+    assertNull(copy.winner());
+    assertEquals(PlayerColor.BLUE, state.winner(), "copies do not share the cache");
+    state.playerState.verifyDerived();
+    copy.playerState.verifyDerived();
+    // Keys outside the counters still work as a map
+    state.playerState.put("CUSTOM", 1);
+    assertEquals(1, state.playerState.get("CUSTOM"));
+    assertNull(state.playerState.get("P3_WOOD_IN_HAND"), "no such seat");
+  }
+
+  @Test
+  public void fieldConstantsNameTheirCounters() {
+    assertEquals(PlayerStateMap.field("_VICTORY_POINTS"), PlayerStateMap.VICTORY_POINTS);
+    assertEquals(
+        PlayerStateMap.field("_ACTUAL_VICTORY_POINTS"), PlayerStateMap.ACTUAL_VICTORY_POINTS);
+    assertEquals(PlayerStateMap.field("_HAS_ROLLED"), PlayerStateMap.HAS_ROLLED);
+    assertEquals(PlayerStateMap.field("_ROADS_AVAILABLE"), PlayerStateMap.ROADS_AVAILABLE);
+    assertEquals(
+        PlayerStateMap.field("_SETTLEMENTS_AVAILABLE"), PlayerStateMap.SETTLEMENTS_AVAILABLE);
+    assertEquals(PlayerStateMap.field("_CITIES_AVAILABLE"), PlayerStateMap.CITIES_AVAILABLE);
+    assertEquals(PlayerStateMap.field("_HAS_ROAD"), PlayerStateMap.HAS_ROAD);
+    assertEquals(PlayerStateMap.field("_LONGEST_ROAD_LENGTH"), PlayerStateMap.LONGEST_ROAD_LENGTH);
+    assertEquals(PlayerStateMap.field("_HAS_ARMY"), PlayerStateMap.HAS_ARMY);
+    assertEquals(
+        PlayerStateMap.field("_HAS_PLAYED_DEVELOPMENT_CARD_IN_TURN"),
+        PlayerStateMap.HAS_PLAYED_DEVELOPMENT_CARD_IN_TURN);
+    assertEquals(PlayerStateMap.field("_WOOD_IN_HAND"), PlayerStateMap.FIRST_RESOURCE);
+  }
+
+  @Test
+  public void seededDeckDrawsTheSameSequenceWhateverTheDice() {
+    java.util.List<Object> first = drawAll(1, 7);
+    assertEquals(first, drawAll(2, 7), "other randomness does not change the draws");
+    assertNotEquals(first, drawAll(1, 8));
+    int[] counts = new int[com.catanatron.core.model.DevCard.values().length];
+    for (Object card : first) counts[((com.catanatron.core.model.DevCard) card).ordinal()]++;
+    assertArrayEquals(com.catanatron.core.util.Decks.startingDevelopmentDeck(), counts);
+  }
+
+  @Test
+  public void copyingLeavesTheSourceDiceAlone() {
+    java.util.List<Player> players =
+        java.util.List.of(new RandomPlayer(PlayerColor.RED), new RandomPlayer(PlayerColor.BLUE));
+    State copied = new State(players, 5), untouched = new State(players, 5);
+    State copy = copied.copy();
+    for (int i = 0; i < 10; i++) copied.copy();
+    java.util.Random reference = new java.util.Random(5);
+    com.catanatron.core.map.CatanMap.base(reference); // drawn like the states' boards
+    int sameAsSource = 0;
+    for (int i = 0; i < 20; i++) {
+      int die = copied.rng.nextInt(6);
+      assertEquals(untouched.rng.nextInt(6), die);
+      assertEquals(reference.nextInt(6), die);
+      if (copy.rng.nextInt(6) == die) sameAsSource++;
+    }
+    assertTrue(sameAsSource < 20, "the copy rolls its own dice");
+  }
+
+  // Buys the whole deck, rolling dice in between so the state's own stream moves on
+  private static java.util.List<Object> drawAll(long gameSeed, long deckSeed) {
+    State state = new State(java.util.List.of(new RandomPlayer(PlayerColor.RED)), gameSeed);
+    state.seedDevelopmentDeck(deckSeed);
+    state.isInitialBuildPhase = false;
+    state.currentPrompt = ActionPrompt.PLAY_TURN;
+    java.util.List<Object> drawn = new java.util.ArrayList<>();
+    while (state.developmentCardsLeft() > 0) {
+      state.rng.nextInt(6);
+      state.playerState.put("P0_SHEEP_IN_HAND", 1);
+      state.playerState.put("P0_WHEAT_IN_HAND", 1);
+      state.playerState.put("P0_ORE_IN_HAND", 1);
+      var buy =
+          new com.catanatron.core.model.Action<>(
+              PlayerColor.RED, com.catanatron.core.model.ActionType.BUY_DEVELOPMENT_CARD, null);
+      drawn.add(Reducer.apply(state, buy).result);
+    }
+    return drawn;
+  }
+
   @Test
   public void monopolyTransfersAllOfResourceFromOpponents() {
     java.util.ArrayList<Player> players = new java.util.ArrayList<>();
@@ -498,6 +594,250 @@ public class BasicRulesTest {
     assertEquals(0, game.state.playerState.get("P0_HAS_ARMY"));
   }
 
+  @Test
+  public void baseMapPlacesNinePortsOnLandNodes() {
+    java.util.ArrayList<Player> players = new java.util.ArrayList<>();
+    players.add(new RandomPlayer(PlayerColor.RED));
+    var game = new Game(players);
+
+    assertEquals(9, game.state.map.ports.size());
+    int portNodes = 0;
+    for (int nodeId = 0; nodeId < game.state.map.nodePortMask.length; nodeId++) {
+      if (game.state.map.nodePortMask[nodeId] != 0) {
+        portNodes++;
+        assertTrue(game.state.map.landNodes.contains(nodeId));
+      }
+    }
+    assertEquals(18, portNodes);
+  }
+
+  @Test
+  public void maritimeTradeFourToOneUsesBank() {
+    java.util.ArrayList<Player> players = new java.util.ArrayList<>();
+    players.add(new RandomPlayer(PlayerColor.RED));
+    var game = new Game(players);
+
+    game.state.isInitialBuildPhase = false;
+    game.state.currentPrompt = ActionPrompt.PLAY_TURN;
+    game.state.playerState.put("P0_HAS_ROLLED", 1);
+    game.state.playerState.put("P0_WOOD_IN_HAND", 4);
+    // 4 wood can be traded for any of the 4 other resources
+    long offered =
+        MoveGeneration.generatePlayable(game.state).stream()
+            .filter(a -> a.type == com.catanatron.core.model.ActionType.MARITIME_TRADE)
+            .count();
+    assertEquals(4, offered);
+
+    int[] bankBefore = game.state.bank.clone();
+    game.execute(
+        new com.catanatron.core.model.Action<>(
+            PlayerColor.RED,
+            com.catanatron.core.model.ActionType.MARITIME_TRADE,
+            new String[] {"WOOD", "WOOD", "WOOD", "WOOD", "ORE"}));
+    assertEquals(0, getRes(game, 0, "WOOD"));
+    assertEquals(1, getRes(game, 0, "ORE"));
+    assertEquals(bankBefore[0] + 4, game.state.bank[0]);
+    assertEquals(bankBefore[4] - 1, game.state.bank[4]);
+
+    // An empty bank pile cannot be traded for
+    game.state.playerState.put("P0_WOOD_IN_HAND", 4);
+    game.state.bank[4] = 0;
+    assertTrue(
+        MoveGeneration.generatePlayable(game.state).stream()
+            .noneMatch(
+                a ->
+                    a.type == com.catanatron.core.model.ActionType.MARITIME_TRADE
+                        && ((String[]) a.value)[((String[]) a.value).length - 1].equals("ORE")));
+  }
+
+  @Test
+  public void settlingOnPortGrantsItsRate() {
+    java.util.ArrayList<Player> players = new java.util.ArrayList<>();
+    players.add(new RandomPlayer(PlayerColor.RED));
+    var game = new Game(players);
+
+    // Settle on a node of a 2:1 port
+    var port =
+        game.state.map.ports.stream().filter(p -> p.resource() != null).findFirst().orElseThrow();
+    int portBit = 1 << port.resource().ordinal();
+    int nodeId = -1;
+    for (int n = 0; n < game.state.map.nodePortMask.length; n++) {
+      if ((game.state.map.nodePortMask[n] & portBit) != 0) nodeId = n;
+    }
+    game.execute(
+        new com.catanatron.core.model.Action<>(
+            PlayerColor.RED, com.catanatron.core.model.ActionType.BUILD_SETTLEMENT, nodeId));
+    assertEquals(portBit, game.state.portAccess[0] & portBit);
+
+    game.state.isInitialBuildPhase = false;
+    game.state.currentPrompt = ActionPrompt.PLAY_TURN;
+    game.state.playerState.put("P0_HAS_ROLLED", 1);
+    String res = port.resource().name();
+    game.state.playerState.put("P0_" + res + "_IN_HAND", 2);
+    String target = res.equals("ORE") ? "WOOD" : "ORE";
+    game.execute(
+        new com.catanatron.core.model.Action<>(
+            PlayerColor.RED,
+            com.catanatron.core.model.ActionType.MARITIME_TRADE,
+            new String[] {res, res, target}));
+    assertEquals(0, getRes(game, 0, res));
+    assertEquals(1, getRes(game, 0, target));
+  }
+
+  @Test
+  public void payoutSkipsResourceTheBankCannotCover() {
+    java.util.ArrayList<Player> players = new java.util.ArrayList<>();
+    players.add(new RandomPlayer(PlayerColor.RED));
+    var game = new Game(players);
+
+    int tileId = game.state.map.getTileIdsByNumber(8).iterator().next();
+    int nodeId = game.state.map.getTileNodes(tileId).iterator().next();
+    var res = game.state.map.getTileResource(tileId);
+    game.execute(
+        new com.catanatron.core.model.Action<>(
+            PlayerColor.RED, com.catanatron.core.model.ActionType.BUILD_SETTLEMENT, nodeId));
+    game.state.isInitialBuildPhase = false;
+    game.state.currentPrompt = ActionPrompt.PLAY_TURN;
+
+    // A single recipient gets whatever is left in the bank
+    game.state.bank[res.ordinal()] = 0;
+    int before = getRes(game, 0, res.name());
+    game.execute(
+        new com.catanatron.core.model.Action<>(
+            PlayerColor.RED, com.catanatron.core.model.ActionType.ROLL, new int[] {3, 5}));
+    assertEquals(before, getRes(game, 0, res.name()));
+    assertEquals(0, game.state.bank[res.ordinal()]);
+  }
+
+  @Test
+  public void domesticTradeOfferAcceptAndConfirm() {
+    java.util.ArrayList<Player> players = new java.util.ArrayList<>();
+    players.add(new RandomPlayer(PlayerColor.RED));
+    players.add(new RandomPlayer(PlayerColor.BLUE));
+    players.add(new RandomPlayer(PlayerColor.ORANGE));
+    var game = new Game(players);
+
+    game.state.isInitialBuildPhase = false;
+    game.state.currentPrompt = ActionPrompt.PLAY_TURN;
+    game.state.playerState.put("P0_HAS_ROLLED", 1);
+    game.state.playerState.put("P0_WOOD_IN_HAND", 2);
+    game.state.playerState.put("P2_ORE_IN_HAND", 1);
+    // Default options: 1:1 and 2:1 offers of wood for each of the 4 other resources
+    assertEquals(8, new LegalActions().reset(game.state).count(ActionType.OFFER_TRADE));
+
+    int[] bankBefore = game.state.bank.clone();
+    game.execute(
+        new Action<>(
+            PlayerColor.RED, ActionType.OFFER_TRADE, new int[] {2, 0, 0, 0, 0, 0, 0, 0, 0, 1}));
+    assertEquals(ActionPrompt.DECIDE_TRADE, game.state.currentPrompt);
+    // BLUE has no ore, so it can only reject
+    assertEquals(PlayerColor.BLUE, game.state.currentColor());
+    assertEquals(0, new LegalActions().reset(game.state).count(ActionType.ACCEPT_TRADE));
+    game.execute(new Action<>(PlayerColor.BLUE, ActionType.REJECT_TRADE, null));
+    game.execute(new Action<>(PlayerColor.ORANGE, ActionType.ACCEPT_TRADE, null));
+
+    assertEquals(ActionPrompt.DECIDE_ACCEPTEES, game.state.currentPrompt);
+    assertEquals(PlayerColor.RED, game.state.currentColor());
+    assertEquals(1, new LegalActions().reset(game.state).count(ActionType.CONFIRM_TRADE));
+    game.execute(new Action<>(PlayerColor.RED, ActionType.CONFIRM_TRADE, PlayerColor.ORANGE));
+
+    assertEquals(ActionPrompt.PLAY_TURN, game.state.currentPrompt);
+    assertEquals(0, getRes(game, 0, "WOOD"));
+    assertEquals(1, getRes(game, 0, "ORE"));
+    assertEquals(2, getRes(game, 2, "WOOD"));
+    assertEquals(0, getRes(game, 2, "ORE"));
+    assertArrayEquals(bankBefore, game.state.bank);
+    // One offer per turn by default
+    assertEquals(0, new LegalActions().reset(game.state).count(ActionType.OFFER_TRADE));
+  }
+
+  @Test
+  public void domesticTradeRejectedByAllReturnsToOfferer() {
+    java.util.ArrayList<Player> players = new java.util.ArrayList<>();
+    players.add(new RandomPlayer(PlayerColor.RED));
+    players.add(new RandomPlayer(PlayerColor.BLUE));
+    var game = new Game(players);
+
+    game.state.isInitialBuildPhase = false;
+    game.state.currentPrompt = ActionPrompt.PLAY_TURN;
+    game.state.playerState.put("P0_HAS_ROLLED", 1);
+    game.state.playerState.put("P0_BRICK_IN_HAND", 1);
+    game.execute(
+        new Action<>(
+            PlayerColor.RED, ActionType.OFFER_TRADE, new int[] {0, 1, 0, 0, 0, 1, 0, 0, 0, 0}));
+    game.execute(new Action<>(PlayerColor.BLUE, ActionType.REJECT_TRADE, null));
+
+    assertEquals(ActionPrompt.PLAY_TURN, game.state.currentPrompt);
+    assertEquals(PlayerColor.RED, game.state.currentColor());
+    assertFalse(game.state.isResolvingTrade);
+    assertEquals(1, getRes(game, 0, "BRICK"));
+    // The reducer enforces the per-turn cap, not only move generation
+    Action<int[]> again =
+        new Action<>(
+            PlayerColor.RED, ActionType.OFFER_TRADE, new int[] {0, 1, 0, 0, 0, 0, 0, 1, 0, 0});
+    assertThrows(IllegalStateException.class, () -> Reducer.step(game.state, again));
+    assertFalse(game.state.isResolvingTrade);
+    game.state.tradeOptions = new TradeOptions(2, true, true, false);
+    Reducer.step(game.state, again);
+    assertTrue(game.state.isResolvingTrade);
+
+    game.state.tradeOptions = TradeOptions.DISABLED;
+    game.state.tradeOffersThisTurn = 0;
+    assertEquals(0, new LegalActions().reset(game.state).count(ActionType.OFFER_TRADE));
+  }
+
+  @Test
+  public void invalidDiceAreRejectedBeforeAnythingChanges() {
+    java.util.ArrayList<Player> players = new java.util.ArrayList<>();
+    players.add(new RandomPlayer(PlayerColor.RED));
+    players.add(new RandomPlayer(PlayerColor.BLUE));
+    var game = new Game(players);
+    game.state.isInitialBuildPhase = false;
+    game.state.currentPrompt = ActionPrompt.PLAY_TURN;
+
+    Action<int[]> invalid = new Action<>(PlayerColor.RED, ActionType.ROLL, new int[] {0, 7});
+    assertThrows(IllegalArgumentException.class, () -> Reducer.step(game.state, invalid));
+    assertEquals(0, game.state.playerState.get("P0_HAS_ROLLED"));
+    assertEquals(ActionPrompt.PLAY_TURN, game.state.currentPrompt);
+
+    // A record's dice are its own: editing them does not change later rolls
+    Action<int[]> roll = new Action<>(PlayerColor.RED, ActionType.ROLL, new int[] {3, 4});
+    State before = game.state.copy();
+    int[] recorded = (int[]) Reducer.apply(game.state, roll).result;
+    recorded[0] = 0;
+    assertArrayEquals(new int[] {3, 4}, (int[]) Reducer.step(before, roll));
+  }
+
+  @Test
+  public void nodeValuesMatchAdjacentTiles() {
+    var map = com.catanatron.core.map.CatanMap.base(new java.util.Random(5));
+    var values = map.nodeValues;
+    for (int node : map.landNodes) {
+      int[] expected = new int[com.catanatron.core.model.Resource.COUNT];
+      for (var tile : map.adjacentTiles.get(node)) {
+        if (tile.resource() != null)
+          expected[tile.resource().ordinal()] +=
+              com.catanatron.core.map.NodeValues.pips(tile.number());
+      }
+      int total = 0;
+      for (int r = 0; r < expected.length; r++) {
+        assertEquals(expected[r], values.pips[node * expected.length + r]);
+        total += expected[r];
+      }
+      assertEquals(total, values.totalPips[node]);
+      assertEquals(total / 36.0, values.income[node], 1e-12);
+      assertEquals(map.nodePortMask[node] != 0, values.portValue[node] > 0);
+    }
+    // 18 numbered tiles hold 58 pips; the robber's impacts add up to 1 per resource
+    assertEquals(58, java.util.Arrays.stream(values.resourcePips).sum());
+    double[] impact = new double[com.catanatron.core.model.Resource.COUNT];
+    for (int tileId : map.landTileIds) {
+      var res = map.getTileResource(tileId);
+      if (res != null) impact[res.ordinal()] += values.robberImpact[tileId];
+    }
+    for (double sum : impact) assertEquals(1.0, sum, 1e-9);
+  }
+
   private int getRes(Game game, int playerIndex, String resName) {
     return game.state.playerState.get("P" + playerIndex + "_" + resName + "_IN_HAND");
   }
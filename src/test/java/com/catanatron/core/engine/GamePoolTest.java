@@ -0,0 +1,124 @@
+package com.catanatron.core.engine;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.catanatron.core.map.CatanMap;
+import com.catanatron.core.model.PlayerColor;
+import com.catanatron.core.search.Zobrist;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+public class GamePoolTest {
+  @Test
+  public void resetReplaysLikeANewGame() {
+    Game reused = new Game(players(), 99);
+    playOut(reused.state, new Random(5));
+    reused.state.seedDevelopmentDeck(1);
+    CatanMap map = reused.state.map;
+    ActionSpace space = ActionSpace.of(map);
+    reused.reset(3, null);
+    State fresh = new State(players(), 3);
+    // The game's own board is re-dealt in place, keeping its action space
+    assertSame(map, reused.state.map);
+    assertSame(space, ActionSpace.of(reused.state.map));
+    assertArrayEquals(fresh.map.tileResources, map.tileResources);
+    assertArrayEquals(fresh.map.tileNumbers, map.tileNumbers);
+    assertArrayEquals(fresh.map.nodePortMask, map.nodePortMask);
+    assertArrayEquals(fresh.map.nodeValues.income, map.nodeValues.income);
+    assertEquals(fresh.map.tiles, map.tiles);
+    assertEquals(fresh.map.adjacentTiles, map.adjacentTiles);
+    assertEquals(Zobrist.hash(fresh), Zobrist.hash(reused.state));
+    assertEquals(fresh.playerState, reused.state.playerState);
+    assertFalse(reused.state.isDeckSeeded);
+    // Same seed and same choices: the two games stay identical to the end
+    Random a = new Random(8), b = new Random(8);
+    LegalActions la = new LegalActions(), lb = new LegalActions();
+    while (Game.winningColor(fresh) == null && fresh.numTurns < Game.TURNS_LIMIT) {
+      la.reset(fresh);
+      lb.reset(reused.state);
+      assertEquals(la.count(), lb.count());
+      if (la.count() == 0) break;
+      Reducer.apply(fresh, la.get(a.nextInt(la.count())));
+      Reducer.apply(reused.state, lb.get(b.nextInt(lb.count())));
+      assertEquals(Zobrist.hash(fresh), Zobrist.hash(reused.state));
+    }
+  }
+
+  @Test
+  public void poolReusesGamesOnAFixedLayout() {
+    CatanMap layout = CatanMap.base(new Random(4));
+    var pool = new GamePool(2, GamePoolTest::players);
+    assertEquals(2, pool.idle());
+    Game first = pool.borrow(1, layout);
+    assertSame(layout, first.state.map);
+    assertEquals(layout.getDesertTileId(), first.state.robberTileId);
+    playOut(first.state, new Random(1));
+    pool.release(first);
+    pool.release(new Game(players())); // over capacity: dropped
+    assertEquals(2, pool.idle());
+    pool.borrow(2, layout);
+    Game again = pool.borrow(2, layout);
+    assertSame(first, again);
+    assertEquals(0, again.state.numTurns);
+    assertTrue(again.state.isInitialBuildPhase);
+    assertFalse(again.playableActions.isEmpty());
+  }
+
+  @Test
+  public void resetForgetsPlayerState() {
+    int[] resets = new int[1];
+    Player counting =
+        new RandomPlayer(PlayerColor.RED) {
+          @Override
+          public void resetState() {
+            resets[0]++;
+          }
+        };
+    var pool = new GamePool(1, () -> List.of(counting, new RandomPlayer(PlayerColor.BLUE)));
+    Game game = pool.borrow(1, null);
+    assertEquals(1, resets[0]);
+    pool.release(game);
+    pool.borrow(2, null);
+    assertEquals(2, resets[0]);
+  }
+
+  @Test
+  public void resetOnAFixedLayoutAllocatesLittle() {
+    var threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    long thread = Thread.currentThread().getId();
+    CatanMap layout = CatanMap.base(new Random(4));
+    State state = new State(players(), 1);
+    for (int i = 0; i < 1000; i++) state.reset(i, layout); // warm up
+    long before = threads.getThreadAllocatedBytes(thread);
+    for (int i = 0; i < 1000; i++) state.reset(i, layout);
+    long perReset = (threads.getThreadAllocatedBytes(thread) - before) / 1000;
+    long beforeNew = threads.getThreadAllocatedBytes(thread);
+    for (int i = 0; i < 100; i++) new State(players(), i);
+    long perNew = (threads.getThreadAllocatedBytes(thread) - beforeNew) / 100;
+    assertTrue(perReset * 20 < perNew, perReset + " bytes per reset vs " + perNew + " per state");
+    // Without a layout the state's own board is re-dealt rather than rebuilt
+    for (int i = 0; i < 1000; i++) state.reset(i, null);
+    long beforeDeal = threads.getThreadAllocatedBytes(thread);
+    for (int i = 0; i < 1000; i++) state.reset(i, null);
+    long perDeal = (threads.getThreadAllocatedBytes(thread) - beforeDeal) / 1000;
+    assertTrue(perDeal * 10 < perNew, perDeal + " bytes per re-deal vs " + perNew + " per state");
+  }
+
+  private static void playOut(State state, Random rng) {
+    LegalActions legal = new LegalActions();
+    while (Game.winningColor(state) == null && state.numTurns < Game.TURNS_LIMIT) {
+      legal.reset(state);
+      if (legal.count() == 0) break;
+      Reducer.apply(state, legal.get(rng.nextInt(legal.count())));
+    }
+  }
+
+  private static List<Player> players() {
+    return List.of(
+        new RandomPlayer(PlayerColor.RED),
+        new RandomPlayer(PlayerColor.BLUE),
+        new RandomPlayer(PlayerColor.WHITE));
+  }
+}
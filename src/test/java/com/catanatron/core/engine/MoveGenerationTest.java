@@ -0,0 +1,53 @@
+package com.catanatron.core.engine;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.catanatron.core.model.Action;
+import com.catanatron.core.model.PlayerColor;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+public class MoveGenerationTest {
+  @Test
+  public void lazyEnumerationMatchesGeneratedList() {
+    java.util.ArrayList<Player> players = new java.util.ArrayList<>();
+    players.add(new RandomPlayer(PlayerColor.RED));
+    players.add(new RandomPlayer(PlayerColor.BLUE));
+    players.add(new RandomPlayer(PlayerColor.ORANGE));
+    var game = new Game(players);
+    Random rng = new Random(7);
+
+    for (int tick = 0; tick < 600 && game.winningColor() == null; tick++) {
+      List<Action<?>> playable = MoveGeneration.generatePlayable(game.state);
+      assertEquals(playable.size(), MoveGeneration.countPlayable(game.state));
+      if (playable.isEmpty()) break;
+      for (int k = 0; k < playable.size(); k++) {
+        Action<?> lazy = MoveGeneration.playableAt(game.state, k);
+        assertEquals(playable.get(k).type, lazy.type);
+        if (!(lazy.value instanceof String[])) assertEquals(playable.get(k), lazy);
+      }
+      // no duplicate road offers
+      assertEquals(
+          playable.stream().filter(a -> a.value instanceof com.catanatron.core.model.Edge).count(),
+          playable.stream()
+              .filter(a -> a.value instanceof com.catanatron.core.model.Edge)
+              .distinct()
+              .count());
+      game.execute(MoveGeneration.sampleRandom(game.state, rng));
+    }
+  }
+
+  @Test
+  public void mapsOfOneLayoutShareTheirActionSpace() {
+    var first = com.catanatron.core.map.CatanMap.base(new Random(1));
+    var second = com.catanatron.core.map.CatanMap.base(new Random(2));
+    assertNotSame(first, second);
+    assertSame(ActionSpace.of(first), ActionSpace.of(second));
+    var extension = com.catanatron.core.map.CatanMap.extension(new Random(1));
+    assertNotSame(ActionSpace.of(first), ActionSpace.of(extension));
+    assertEquals(
+        extension.edgeA.length,
+        ActionSpace.of(extension).robberBase - ActionSpace.of(extension).roadBase);
+  }
+}
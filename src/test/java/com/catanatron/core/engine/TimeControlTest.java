@@ -0,0 +1,69 @@
+package com.catanatron.core.engine;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import com.catanatron.core.model.Action;
+import com.catanatron.core.model.PlayerColor;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+public class TimeControlTest {
+  // Spins for a fixed time before answering with the first playable action
+  private static final class SlowPlayer extends Player {
+    private final long spinNanos;
+
+    SlowPlayer(PlayerColor color, long spinNanos) {
+      super(color, true);
+      this.spinNanos = spinNanos;
+    }
+
+    @Override
+    public Action<?> decide(Game game, List<Action<?>> playable) {
+      long end = System.nanoTime() + spinNanos;
+      while (System.nanoTime() < end) Thread.onSpinWait();
+      return playable.get(0);
+    }
+  }
+
+  @Test
+  public void overBudgetMovesFallBack() {
+    List<Player> players =
+        List.of(new SlowPlayer(PlayerColor.RED, 2_000_000), new RandomPlayer(PlayerColor.BLUE));
+    Game game = new Game(players, 1);
+    game.state.numTurns = Game.TURNS_LIMIT - 3;
+    GameResult result = game.play(TimeControl.perMoveMillis(1));
+
+    GameResult.Usage red = result.usage(PlayerColor.RED);
+    assertTrue(red.decisions() > 0);
+    assertEquals(red.decisions(), red.overBudget());
+    assertEquals(red.decisions(), red.fallbacks());
+    assertTrue(red.wallNanos() >= red.decisions() * 2_000_000L);
+    assertTrue(red.maxMoveWallNanos() >= 2_000_000L);
+    // A JIT or GC pause may push some of BLUE's moves past 1 ms too; only those fall back
+    GameResult.Usage blue = result.usage(PlayerColor.BLUE);
+    assertTrue(blue.decisions() > 0);
+    assertEquals(blue.overBudget(), blue.fallbacks());
+  }
+
+  @Test
+  public void spentGameBudgetStopsAskingThePlayer() {
+    List<Player> players =
+        List.of(new SlowPlayer(PlayerColor.RED, 1_000_000), new RandomPlayer(PlayerColor.BLUE));
+    Game game = new Game(players, 2);
+    game.state.numTurns = Game.TURNS_LIMIT - 20;
+    var control = new TimeControl(0, 0, 5_000_000, 0, FallbackPolicy.RANDOM);
+    GameResult result = game.play(control);
+
+    GameResult.Usage red = result.usage(PlayerColor.RED);
+    // Asked until 5 ms were spent, then every move fell back
+    assertTrue(red.decisions() <= 6, "decisions " + red.decisions());
+    assertTrue(red.fallbacks() > 0);
+    assertEquals(0, red.overBudget());
+    // Game.play records no CPU time where the JVM cannot measure it
+    var threads = ManagementFactory.getThreadMXBean();
+    assumeTrue(threads.isCurrentThreadCpuTimeSupported() && threads.isThreadCpuTimeEnabled());
+    assertTrue(red.cpuNanos() > 0);
+  }
+}
@@ -0,0 +1,54 @@
+package com.catanatron.core.engine;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.catanatron.core.model.PlayerColor;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+public class ValueFunctionPlayerTest {
+  @Test
+  public void beatsRandomPlay() {
+    int wins = 0;
+    for (int g = 0; g < 10; g++) {
+      // Alternate seats so that moving first does not decide the result
+      Player greedy =
+          new ValueFunctionPlayer(
+              g % 2 == 0 ? PlayerColor.RED : PlayerColor.BLUE,
+              ValueFunctionPlayer.Weights.DEFAULT,
+              new Random(g));
+      Player random = new RandomPlayer(g % 2 == 0 ? PlayerColor.BLUE : PlayerColor.RED);
+      List<Player> players = g % 2 == 0 ? List.of(greedy, random) : List.of(random, greedy);
+      if (new Game(players, g).play() == greedy.color) wins++;
+    }
+    assertTrue(wins >= 9, "won " + wins + " of 10");
+  }
+
+  @Test
+  public void settlementScoresAboveEndingTheTurn() {
+    List<Player> players =
+        List.of(new ValueFunctionPlayer(PlayerColor.RED), new RandomPlayer(PlayerColor.BLUE));
+    State state = new State(players, 1);
+    int node = state.map.edgeA[0];
+    state.board.buildSettlement(PlayerColor.RED, node);
+    State built = state.copy();
+    built.board.buildSettlement(PlayerColor.RED, farNode(state, node));
+    built.playerState.put("P0_ACTUAL_VICTORY_POINTS", 1);
+    var w = ValueFunctionPlayer.Weights.DEFAULT;
+    assertTrue(
+        ValueFunctionPlayer.evaluate(built, PlayerColor.RED, w)
+            > ValueFunctionPlayer.evaluate(state, PlayerColor.RED, w));
+  }
+
+  // A land node not adjacent to node
+  private static int farNode(State state, int node) {
+    for (int n : state.map.landNodes) {
+      if (n == node) continue;
+      boolean adjacent = false;
+      for (int m : state.map.nodeNeighborIds[node]) adjacent |= m == n;
+      if (!adjacent) return n;
+    }
+    throw new AssertionError();
+  }
+}
@@ -0,0 +1,83 @@
+package com.catanatron.core.env;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+public class BatchEnvTest {
+  // Picks a uniformly random legal id per game from the masks
+  private static void sampleActions(BatchEnv env, Random rng, int[] actions) {
+    for (int e = 0; e < env.numEnvs; e++) {
+      int legal = 0;
+      for (int w = 0; w < env.maskWords; w++)
+        legal += Long.bitCount(env.masks[e * env.maskWords + w]);
+      assertTrue(legal > 0);
+      int k = rng.nextInt(legal);
+      for (int id = 0; id < env.actionCount; id++) {
+        if (env.isLegal(e, id) && k-- == 0) {
+          actions[e] = id;
+          break;
+        }
+      }
+    }
+  }
+
+  @Test
+  public void threadedBatchMatchesSingleThreaded() {
+    try (BatchEnv single = new BatchEnv(12, 4, 7, 1);
+        BatchEnv threaded = new BatchEnv(12, 4, 7, 3)) {
+      Random rng = new Random(1);
+      int[] actions = new int[12];
+      int dones = 0;
+      for (int t = 0; t < 3000; t++) {
+        sampleActions(single, rng, actions);
+        single.step(actions);
+        threaded.step(actions);
+        assertArrayEquals(single.masks, threaded.masks);
+        assertArrayEquals(single.hands, threaded.hands);
+        assertArrayEquals(single.buildings, threaded.buildings);
+        assertArrayEquals(single.roads, threaded.roads);
+        assertArrayEquals(single.rewards, threaded.rewards);
+        for (int e = 0; e < 12; e++) {
+          if (single.dones[e]) {
+            dones++;
+            // A finished game is replaced at once
+            assertEquals(0, single.state(e).numTurns);
+          }
+        }
+      }
+      assertTrue(dones > 0);
+    }
+  }
+
+  @Test
+  public void wonGameRewardsWinnerAndResets() {
+    try (BatchEnv env = new BatchEnv(4, 2, 3, 2)) {
+      Random rng = new Random(5);
+      int[] actions = new int[4];
+      for (int t = 0; t < 100_000; t++) {
+        sampleActions(env, rng, actions);
+        env.step(actions);
+        for (int e = 0; e < 4; e++) {
+          float sum = env.rewards[e * 2] + env.rewards[e * 2 + 1];
+          assertEquals(0f, sum);
+          if (env.dones[e] && env.rewards[e * 2] != 0) {
+            assertEquals(1f, Math.abs(env.rewards[e * 2]));
+            assertEquals(0, env.victoryPoints[e * 2]);
+            return;
+          }
+        }
+      }
+      fail("no game was won");
+    }
+  }
+
+  @Test
+  public void illegalActionIsRejected() {
+    try (BatchEnv env = new BatchEnv(2, 3, 1, 1)) {
+      // Every game starts by placing a settlement, so END_TURN is not legal
+      assertThrows(IllegalArgumentException.class, () -> env.step(new int[] {1, 1}));
+    }
+  }
+}
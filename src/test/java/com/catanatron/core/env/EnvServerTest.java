@@ -0,0 +1,84 @@
+package com.catanatron.core.env;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.Pipe;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CompletableFuture;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class EnvServerTest {
+  @Test
+  public void stepsArriveInSharedFile(@TempDir Path dir) throws Exception {
+    Path file = dir.resolve("env.bin");
+    Pipe requests = Pipe.open();
+    Pipe replies = Pipe.open();
+    try (BatchEnv served = new BatchEnv(3, 4, 9, 1);
+        BatchEnv reference = new BatchEnv(3, 4, 9, 1);
+        EnvServer server = new EnvServer(served, file);
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      var session =
+          CompletableFuture.supplyAsync(
+              () -> {
+                try {
+                  return server.serve(requests.source(), replies.sink());
+                } catch (Exception e) {
+                  throw new IllegalStateException(e);
+                }
+              });
+      MappedByteBuffer shared = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      shared.order(ByteOrder.LITTLE_ENDIAN);
+      assertEquals(EnvServer.MAGIC, shared.getInt(0));
+      assertEquals(3, shared.getInt(8));
+      int maskWords = shared.getInt(28);
+      int masksAt = shared.getInt(40);
+      int handsAt = shared.getInt(44);
+
+      ByteBuffer status = ByteBuffer.allocate(5).order(ByteOrder.LITTLE_ENDIAN);
+      for (int t = 0; t < 200; t++) {
+        int[] actions = new int[3];
+        for (int e = 0; e < 3; e++) actions[e] = firstLegal(reference, e);
+        ByteBuffer step = ByteBuffer.allocate(13).order(ByteOrder.LITTLE_ENDIAN);
+        step.put(EnvServer.STEP);
+        for (int a : actions) step.putInt(a);
+        requests.sink().write(step.flip());
+        status.clear().limit(1);
+        while (status.hasRemaining()) replies.source().read(status);
+        assertEquals(0, status.get(0));
+
+        reference.step(actions);
+        assertEquals(t + 2, shared.getLong(32));
+        for (int i = 0; i < 3 * maskWords; i++) {
+          assertEquals(reference.masks[i], shared.getLong(masksAt + 8 * i));
+        }
+        for (int i = 0; i < reference.hands.length; i++) {
+          assertEquals(reference.hands[i], shared.getInt(handsAt + 4 * i));
+        }
+      }
+
+      // An illegal action is refused with a message
+      ByteBuffer bad = ByteBuffer.allocate(13).order(ByteOrder.LITTLE_ENDIAN);
+      bad.put(EnvServer.STEP).putInt(-1).putInt(-1).putInt(-1);
+      requests.sink().write(bad.flip());
+      status.clear();
+      while (status.hasRemaining()) replies.source().read(status);
+      assertEquals(1, status.get(0));
+      ByteBuffer message = ByteBuffer.allocate(status.getInt(1));
+      while (message.hasRemaining()) replies.source().read(message);
+
+      requests.sink().write(ByteBuffer.wrap(new byte[] {EnvServer.CLOSE}));
+      assertTrue(session.get());
+    }
+  }
+
+  private static int firstLegal(BatchEnv env, int e) {
+    for (int id = 0; id < env.actionCount; id++) if (env.isLegal(e, id)) return id;
+    throw new AssertionError("no legal action");
+  }
+}
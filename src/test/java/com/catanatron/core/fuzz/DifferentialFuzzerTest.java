@@ -0,0 +1,75 @@
+package com.catanatron.core.fuzz;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.catanatron.core.engine.ActionSpace;
+import com.catanatron.core.engine.Player;
+import com.catanatron.core.engine.RandomPlayer;
+import com.catanatron.core.engine.State;
+import com.catanatron.core.model.PlayerColor;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+public class DifferentialFuzzerTest {
+  private static final List<Player> PLAYERS =
+      List.of(
+          new RandomPlayer(PlayerColor.RED),
+          new RandomPlayer(PlayerColor.BLUE),
+          new RandomPlayer(PlayerColor.WHITE));
+
+  @Test
+  public void referenceAndPooledEnginesAgree() {
+    var fuzzer = new DifferentialFuzzer(new ReferenceEngine(PLAYERS), new PooledEngine(PLAYERS));
+    for (long seed = 0; seed < 20; seed++) {
+      assertNull(fuzzer.fuzz(seed, new Random(seed), Integer.MAX_VALUE));
+    }
+    assertTrue(fuzzer.steps() > 10_000, fuzzer.steps() + " steps");
+  }
+
+  @Test
+  public void divergenceShrinksToAMinimalTrace() {
+    // Loses a card from the bank when the third turn ends
+    Engine broken =
+        new Engine() {
+          final PooledEngine engine = new PooledEngine(PLAYERS);
+          int turnsEnded;
+
+          @Override
+          public String name() {
+            return "broken";
+          }
+
+          @Override
+          public State newGame(long seed) {
+            turnsEnded = 0;
+            return engine.newGame(seed);
+          }
+
+          @Override
+          public int legalIds(State state, int[] out) {
+            return engine.legalIds(state, out);
+          }
+
+          @Override
+          public void apply(State state, int id) {
+            engine.apply(state, id);
+            if (id == ActionSpace.END_TURN && ++turnsEnded == 3) state.bank[0]--;
+          }
+        };
+    var fuzzer = new DifferentialFuzzer(new ReferenceEngine(PLAYERS), broken);
+    DifferentialFuzzer.Failure failure = fuzzer.fuzz(1, new Random(1), Integer.MAX_VALUE);
+    assertNotNull(failure);
+    assertTrue(failure.message().startsWith("bank"), failure.message());
+    DifferentialFuzzer.Failure shrunk = fuzzer.shrink(failure);
+    assertNotNull(fuzzer.replay(shrunk.seed(), shrunk.choices()));
+    assertTrue(shrunk.choices().length <= failure.choices().length);
+    // 1-minimal: without any single choice the trace no longer diverges
+    for (int i = 0; i < shrunk.choices().length; i++) {
+      int[] without = new int[shrunk.choices().length - 1];
+      System.arraycopy(shrunk.choices(), 0, without, 0, i);
+      System.arraycopy(shrunk.choices(), i + 1, without, i, without.length - i);
+      assertNull(fuzzer.replay(shrunk.seed(), without), "still fails without choice " + i);
+    }
+  }
+}
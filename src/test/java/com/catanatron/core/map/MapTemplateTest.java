@@ -0,0 +1,105 @@
+package com.catanatron.core.map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.catanatron.core.engine.Game;
+import com.catanatron.core.engine.LegalActions;
+import com.catanatron.core.engine.Player;
+import com.catanatron.core.engine.RandomPlayer;
+import com.catanatron.core.engine.Reducer;
+import com.catanatron.core.engine.State;
+import com.catanatron.core.model.ActionType;
+import com.catanatron.core.model.PlayerColor;
+import com.catanatron.core.model.Resource;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+public class MapTemplateTest {
+  @Test
+  public void extensionBoardHasThirtyTilesAndElevenPorts() {
+    CatanMap map = CatanMap.extension(new Random(2));
+    assertEquals(30, map.landTileIds.length);
+    assertEquals(11, map.ports.size());
+    int deserts = 0, numbered = 0;
+    for (int tileId : map.landTileIds) if (map.tileResources[tileId] == null) deserts++;
+    for (int[] tiles : map.tileIdsByNumber) numbered += tiles.length;
+    assertEquals(2, deserts);
+    assertEquals(28, numbered);
+    assertNull(map.tileResources[map.getDesertTileId()]);
+    // More than 64 nodes: node bitsets take two words
+    assertTrue(map.landNodes.size() > 64, map.landNodes.size() + " nodes");
+    assertEquals(2, map.nodeWords);
+    int portNodes = 0;
+    for (int bits : map.nodePortMask) if (bits != 0) portNodes++;
+    assertEquals(22, portNodes);
+    int sheepPorts = 0;
+    for (var port : map.ports) if (port.resource() == Resource.SHEEP) sheepPorts++;
+    assertEquals(2, sheepPorts);
+  }
+
+  @Test
+  public void proceduralMapsHaveTheRequestedSize() {
+    CatanMap map = CatanMap.procedural(2000, new Random(1));
+    assertEquals(2000, map.landTileIds.length);
+    int deserts = 0;
+    for (int tileId : map.landTileIds) if (map.tileResources[tileId] == null) deserts++;
+    assertEquals(2000 / 19 + (2000 % 19 > 18 ? 1 : 0), deserts);
+    assertTrue(map.ports.size() > 50, map.ports.size() + " ports");
+    assertTrue(map.nodeWords > 1);
+    // Every land node touches one to three land tiles and has two or three neighbours
+    for (int node : map.landNodes) {
+      assertTrue(map.nodeTileIds[node].length >= 1 && map.nodeTileIds[node].length <= 3);
+      assertTrue(map.nodeNeighborIds[node].length >= 2 && map.nodeNeighborIds[node].length <= 3);
+    }
+    assertEquals(
+        Arrays.toString(CatanMap.procedural(300, new Random(4)).edgeA),
+        Arrays.toString(CatanMap.procedural(300, new Random(4)).edgeA));
+  }
+
+  @Test
+  public void sixPlayersPlayOnTheExtensionBoard() {
+    CatanMap map = CatanMap.extension(new Random(5));
+    List<Player> players = new ArrayList<>();
+    for (PlayerColor color : PlayerColor.values()) players.add(new RandomPlayer(color));
+    for (long seed = 0; seed < 4; seed++) {
+      State state = new State(players, seed, map);
+      LegalActions legal = new LegalActions().reset(state);
+      // Every land node is open to the first settlement, across both bitset words
+      assertEquals(map.landNodes.size(), legal.count(ActionType.BUILD_SETTLEMENT));
+      Random rng = new Random(seed);
+      int highNodes = 0;
+      while (Game.winningColor(state) == null && state.numTurns < Game.TURNS_LIMIT) {
+        legal.reset(state);
+        if (legal.count() == 0) break;
+        var action = legal.get(rng.nextInt(legal.count()));
+        if (action.type == ActionType.BUILD_SETTLEMENT && (int) action.value >= 64) highNodes++;
+        Reducer.apply(state, action);
+      }
+      assertTrue(state.numTurns > 6, "game stalled");
+      assertTrue(highNodes > 0, "no settlement beyond node 63");
+      for (PlayerColor color : PlayerColor.values()) {
+        assertEquals(
+            state.board.ownedSettlementNodes(color).size(),
+            state.playerState.get("P" + state.colors.indexOf(color) + "_VICTORY_POINTS")
+                - 2 * countCities(state, color)
+                - bonusPoints(state, color));
+      }
+    }
+  }
+
+  private static int countCities(State state, PlayerColor color) {
+    int cities = 0;
+    for (int w = 0; w < state.board.nodeWords(); w++)
+      cities += Long.bitCount(state.board.cityNodeWord(color, w));
+    return cities;
+  }
+
+  private static int bonusPoints(State state, PlayerColor color) {
+    String key = "P" + state.colors.indexOf(color);
+    return 2
+        * (state.playerState.get(key + "_HAS_ROAD") + state.playerState.get(key + "_HAS_ARMY"));
+  }
+}
@@ -0,0 +1,106 @@
+package com.catanatron.core.search;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.catanatron.core.engine.Game;
+import com.catanatron.core.engine.LegalActions;
+import com.catanatron.core.engine.Player;
+import com.catanatron.core.engine.RandomPlayer;
+import com.catanatron.core.engine.Reducer;
+import com.catanatron.core.engine.State;
+import com.catanatron.core.model.Action;
+import com.catanatron.core.model.DevCard;
+import com.catanatron.core.model.PlayerColor;
+import com.catanatron.core.model.Resource;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+public class DeterminizerTest {
+  private static final PlayerColor ME = PlayerColor.RED;
+
+  @Test
+  public void samplesAreConsistentWithTheObserversView() {
+    int hiddenSeen = 0;
+    for (long seed = 0; seed < 6; seed++) {
+      State truth = new State(fourPlayers(), seed);
+      var belief = new BeliefTracker(truth, ME);
+      var determinizer = new Determinizer(belief);
+      var legal = new LegalActions();
+      Random rng = new Random(seed);
+      for (int step = 0;
+          Game.winningColor(truth) == null && truth.numTurns < Game.TURNS_LIMIT;
+          step++) {
+        legal.reset(truth);
+        if (legal.count() == 0) break;
+        Action<?> action = legal.get(rng.nextInt(legal.count()));
+        Reducer.apply(truth, action);
+        belief.observe(action, truth);
+        for (int s = 0; s < truth.colors.size(); s++) {
+          PlayerColor color = truth.colors.get(s);
+          int size = belief.unknown(color);
+          for (Resource r : Resource.values()) {
+            int held = hand(truth, s, r.name());
+            assertTrue(belief.known(color, r) <= held, "belief claims a card that is not held");
+            size += belief.known(color, r);
+          }
+          assertEquals(handSize(truth, s), size);
+          if (color == ME) assertEquals(0, belief.unknown(color));
+          else hiddenSeen += belief.unknown(color);
+        }
+        if (step % 25 == 0) assertConsistent(truth, determinizer.sample(truth, rng));
+      }
+    }
+    assertTrue(hiddenSeen > 0, "no steal between opponents in any game");
+  }
+
+  private static void assertConsistent(State truth, State sample) {
+    assertArrayEquals(truth.bank, sample.bank);
+    assertEquals(truth.developmentCardsLeft(), sample.developmentCardsLeft());
+    int[] resources = new int[Resource.COUNT];
+    int[] cards = sample.developmentDeck.clone();
+    for (int s = 0; s < truth.colors.size(); s++) {
+      assertEquals(handSize(truth, s), handSize(sample, s));
+      int held = 0, sampledHeld = 0;
+      for (DevCard card : DevCard.values()) {
+        held += hand(truth, s, card.name());
+        sampledHeld += hand(sample, s, card.name());
+        cards[card.ordinal()] +=
+            hand(sample, s, card.name())
+                + sample.playerState.getOrDefault("P" + s + "_PLAYED_" + card.name(), 0);
+      }
+      assertEquals(held, sampledHeld);
+      int vpCards = hand(sample, s, "VICTORY_POINT");
+      assertEquals(
+          sample.playerState.get("P" + s + "_VICTORY_POINTS") + vpCards,
+          sample.playerState.get("P" + s + "_ACTUAL_VICTORY_POINTS"));
+      for (Resource r : Resource.values()) resources[r.ordinal()] += hand(sample, s, r.name());
+      if (truth.colors.get(s) == ME) {
+        for (Resource r : Resource.values())
+          assertEquals(hand(truth, s, r.name()), hand(sample, s, r.name()));
+        for (DevCard card : DevCard.values())
+          assertEquals(hand(truth, s, card.name()), hand(sample, s, card.name()));
+      }
+    }
+    for (int r = 0; r < Resource.COUNT; r++) assertEquals(19, resources[r] + sample.bank[r]);
+    assertArrayEquals(new int[] {14, 2, 2, 2, 5}, cards);
+  }
+
+  private static int hand(State state, int seat, String card) {
+    return state.playerState.get("P" + seat + "_" + card + "_IN_HAND");
+  }
+
+  private static int handSize(State state, int seat) {
+    int size = 0;
+    for (Resource r : Resource.values()) size += hand(state, seat, r.name());
+    return size;
+  }
+
+  private static List<Player> fourPlayers() {
+    return List.of(
+        new RandomPlayer(PlayerColor.RED),
+        new RandomPlayer(PlayerColor.BLUE),
+        new RandomPlayer(PlayerColor.WHITE),
+        new RandomPlayer(PlayerColor.ORANGE));
+  }
+}
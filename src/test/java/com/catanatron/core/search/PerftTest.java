@@ -0,0 +1,65 @@
+package com.catanatron.core.search;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.catanatron.core.engine.MoveGeneration;
+import com.catanatron.core.engine.Reducer;
+import com.catanatron.core.engine.State;
+import com.catanatron.core.model.Action;
+import com.catanatron.core.model.ActionType;
+import org.junit.jupiter.api.Test;
+
+public class PerftTest {
+  // Regression fixtures: a change in these counts is a change in move generation or the reducer
+  @Test
+  public void countsFromTheOpening() {
+    long[] expected = {1, 54, 144, 7236, 19248};
+    for (int depth = 0; depth < expected.length; depth++) {
+      assertEquals(
+          expected[depth], new Perft().count(Perft.position(0, 0), depth), "depth " + depth);
+    }
+  }
+
+  @Test
+  public void countsFromAMidGamePosition() {
+    long[] expected = {1, 9, 23, 197, 1010, 9250};
+    var perft = new Perft();
+    for (int depth = 0; depth < expected.length; depth++) {
+      assertEquals(expected[depth], perft.count(Perft.position(0, 300), depth), "depth " + depth);
+    }
+    long byType = 0;
+    for (ActionType type : ActionType.values()) byType += perft.count(type);
+    assertEquals(expected[5], byType);
+    assertTrue(perft.count(ActionType.ROLL) > 0);
+  }
+
+  @Test
+  public void divideAddsUpAndMatchesAPlainListWalk() {
+    var perft = new Perft();
+    long total = 0;
+    for (Perft.Divide entry : perft.divide(Perft.position(0, 300), 4)) total += entry.nodes();
+    assertEquals(1010, total);
+    assertEquals(1010, naive(Perft.position(0, 300), 4));
+  }
+
+  // The same walk over materialized move lists, with every leaf applied
+  private static long naive(State state, int depth) {
+    if (depth == 0) return 1;
+    if (state.winner() != null) return 0;
+    long nodes = 0;
+    for (Action<?> action : MoveGeneration.generatePlayable(state)) {
+      if (action.type != ActionType.ROLL) {
+        State next = state.copy();
+        Reducer.apply(next, action);
+        nodes += naive(next, depth - 1);
+        continue;
+      }
+      for (int[] dice : Perft.DICE) {
+        State next = state.copy();
+        Reducer.apply(next, new Action<>(action.color, ActionType.ROLL, dice));
+        nodes += naive(next, depth - 1);
+      }
+    }
+    return nodes;
+  }
+}
@@ -0,0 +1,96 @@
+package com.catanatron.core.search;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.catanatron.core.engine.Game;
+import com.catanatron.core.engine.LegalActions;
+import com.catanatron.core.engine.Player;
+import com.catanatron.core.engine.RandomPlayer;
+import com.catanatron.core.engine.Reducer;
+import com.catanatron.core.engine.State;
+import com.catanatron.core.fuzz.StateDiff;
+import com.catanatron.core.map.CatanMap;
+import com.catanatron.core.model.PlayerColor;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+public class StateArenaTest {
+  @Test
+  public void positionsRoundTripThroughTheArena() {
+    for (CatanMap map : List.of(CatanMap.base(new Random(1)), CatanMap.extension(new Random(2)))) {
+      List<Player> players = new ArrayList<>();
+      int seats = map.nodeWords > 1 ? 6 : 4;
+      for (int s = 0; s < seats; s++) players.add(new RandomPlayer(PlayerColor.values()[s]));
+      State game = new State(players, 3, map);
+      State scratch = new State(players, 4, map);
+      // Small slabs, so that nodes spread over several buffers
+      var arena = new StateArena(map, seats, 5000, 64 * 1024);
+      var legal = new LegalActions();
+      var probe = new LegalActions();
+      Random rng = new Random(3);
+      List<State> kept = new ArrayList<>();
+      while (game.winner() == null && game.numTurns < Game.TURNS_LIMIT && arena.size() < 5000) {
+        kept.add(game.copy());
+        arena.add(game, arena.size() - 1, -1);
+        legal.reset(game);
+        Reducer.step(game, legal.get(rng.nextInt(legal.count())));
+      }
+      assertTrue(arena.reservedBytes() > 64 * 1024, "one slab only");
+      StateArena.Cursor cursor = arena.cursor(scratch);
+      for (int node = kept.size() - 1; node >= 0; node -= 7) {
+        State decoded = cursor.seek(node).decode();
+        State original = kept.get(node);
+        assertNull(StateDiff.firstDifference(original, decoded), "node " + node);
+        assertEquals(Zobrist.hash(original), Zobrist.hash(decoded));
+        legal.reset(original);
+        probe.reset(decoded);
+        assertEquals(legal.count(), probe.count());
+        assertEquals(
+            original.board.longestRoadLength(original.currentColor()),
+            decoded.board.longestRoadLength(decoded.currentColor()));
+      }
+    }
+  }
+
+  @Test
+  public void allocatesChildrenInBulkAndResets() {
+    CatanMap map = CatanMap.base(new Random(1));
+    List<Player> players =
+        List.of(new RandomPlayer(PlayerColor.RED), new RandomPlayer(PlayerColor.BLUE));
+    State root = new State(players, 1, map);
+    var arena = new StateArena(map, 2, 100);
+    int rootNode = arena.add(root, -1, -1);
+    int first = arena.allocate(10);
+    arena.setChildren(rootNode, first, 10);
+    for (int i = 0; i < 10; i++) {
+      arena.setLink(first + i, rootNode, 100 + i);
+      arena.encode(first + i, root);
+    }
+    arena.update(first + 3, 1.0);
+    arena.update(first + 3, 0.5);
+    arena.update(rootNode, 1.5);
+
+    StateArena.Cursor cursor = arena.cursor(new State(players, 2, map));
+    cursor.seek(rootNode).child(3);
+    assertEquals(103, cursor.action());
+    assertEquals(2, cursor.visits());
+    assertEquals(1.5, cursor.valueSum());
+    assertTrue(cursor.toParent());
+    assertEquals(rootNode, cursor.node());
+    assertFalse(cursor.toParent());
+    assertEquals(11, arena.size());
+    assertThrows(IllegalStateException.class, () -> arena.allocate(90));
+
+    long reserved = arena.reservedBytes();
+    arena.reset();
+    assertEquals(0, arena.size());
+    int again = arena.allocate(1);
+    assertEquals(0, again);
+    assertEquals(0, arena.visits(again));
+    assertEquals(-1, arena.firstChild(again));
+    assertEquals(reserved, arena.reservedBytes());
+    assertThrows(IndexOutOfBoundsException.class, () -> cursor.seek(1));
+  }
+}
@@ -0,0 +1,133 @@
+package com.catanatron.core.search;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.catanatron.core.engine.ActionPrompt;
+import com.catanatron.core.engine.Player;
+import com.catanatron.core.engine.PlayerStateMap;
+import com.catanatron.core.engine.RandomPlayer;
+import com.catanatron.core.engine.Reducer;
+import com.catanatron.core.engine.State;
+import com.catanatron.core.model.Action;
+import com.catanatron.core.model.ActionType;
+import com.catanatron.core.model.Edge;
+import com.catanatron.core.model.PlayerColor;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+public class TranspositionTableTest {
+  @Test
+  public void storesAndProbes() {
+    var tt = new TranspositionTable(1);
+    var entry = new TranspositionTable.Entry();
+    assertFalse(tt.probe(42, entry));
+    tt.store(42, 0.75, 120, 17, 3);
+    assertTrue(tt.probe(42, entry));
+    assertEquals(0.75, entry.value);
+    assertEquals(120, entry.visits);
+    assertEquals(17, entry.bestAction);
+    assertEquals(3, entry.depth);
+    tt.store(42, 0.5, 1, -1, 0);
+    assertTrue(tt.probe(42, entry));
+    assertEquals(-1, entry.bestAction);
+    assertFalse(tt.probe(43, entry));
+  }
+
+  @Test
+  public void replacementKeepsDeepAndRecentEntries() {
+    var tt = new TranspositionTable(1);
+    var entry = new TranspositionTable.Entry();
+    // Keys that share a bucket: same low bits, as the table has fewer than 2^32 buckets
+    long[] keys = new long[TranspositionTable.WAYS + 1];
+    for (int i = 0; i < keys.length; i++) keys[i] = ((long) (i + 1) << 40) | ((long) (i + 1) << 8);
+    for (int i = 0; i < TranspositionTable.WAYS; i++) tt.store(keys[i], i, 1, i, i == 0 ? 1 : 10);
+    tt.store(keys[TranspositionTable.WAYS], 9, 1, 9, 5);
+    assertFalse(tt.probe(keys[0], entry), "shallowest entry is replaced");
+    for (int i = 1; i <= TranspositionTable.WAYS; i++) assertTrue(tt.probe(keys[i], entry));
+
+    // Entries of an old search lose against fresh shallow ones
+    for (int s = 0; s < 2; s++) tt.newSearch();
+    tt.store(keys[0], 0, 1, 0, 0);
+    assertTrue(tt.probe(keys[0], entry));
+  }
+
+  @Test
+  public void concurrentWritersNeverYieldForeignData() throws InterruptedException {
+    var tt = new TranspositionTable(1);
+    List<Thread> threads = new ArrayList<>();
+    int[] bad = new int[1];
+    for (int t = 0; t < 4; t++) {
+      int seed = t;
+      threads.add(
+          new Thread(
+              () -> {
+                var entry = new TranspositionTable.Entry();
+                var rng = new java.util.Random(seed);
+                for (int i = 0; i < 200_000; i++) {
+                  // Few keys so that writers collide on the same slots
+                  long key = Zobrist.key(0, rng.nextInt(50_000));
+                  if (rng.nextBoolean()) {
+                    tt.store(key, key & 0xFFFF, key & 0xFFFF, (int) (key & 0xFFF), 4);
+                  } else if (tt.probe(key, entry)
+                      && (entry.value != (key & 0xFFFF) || entry.bestAction != (key & 0xFFF))) {
+                    synchronized (bad) {
+                      bad[0]++;
+                    }
+                  }
+                }
+              }));
+    }
+    for (Thread t : threads) t.start();
+    for (Thread t : threads) t.join();
+    assertEquals(0, bad[0]);
+  }
+
+  @Test
+  public void roadsBuiltInEitherOrderHashAlike() {
+    List<Player> players =
+        List.of(new RandomPlayer(PlayerColor.RED), new RandomPlayer(PlayerColor.BLUE));
+    State a = new State(players, 3);
+    a.isInitialBuildPhase = false;
+    a.currentPrompt = ActionPrompt.PLAY_TURN;
+    a.isRoadBuilding = true;
+    a.freeRoadsAvailable = 4;
+    a.playerState.put("P0_HAS_ROLLED", 1);
+    int node = a.map.edgeA[0];
+    a.board.buildSettlement(PlayerColor.RED, node);
+    int[] edges = a.map.nodeEdgeIds[node];
+    State b = a.copy();
+    assertEquals(Zobrist.hash(a), Zobrist.hash(b));
+
+    Edge first = new Edge(a.map.edgeA[edges[0]], a.map.edgeB[edges[0]]);
+    Edge second = new Edge(a.map.edgeA[edges[1]], a.map.edgeB[edges[1]]);
+    Reducer.apply(a, new Action<>(PlayerColor.RED, ActionType.BUILD_ROAD, first));
+    assertNotEquals(Zobrist.hash(a), Zobrist.hash(b));
+    Reducer.apply(a, new Action<>(PlayerColor.RED, ActionType.BUILD_ROAD, second));
+    Reducer.apply(b, new Action<>(PlayerColor.RED, ActionType.BUILD_ROAD, second));
+    Reducer.apply(b, new Action<>(PlayerColor.RED, ActionType.BUILD_ROAD, first));
+    assertEquals(Zobrist.hash(a), Zobrist.hash(b));
+  }
+
+  @Test
+  public void hashReadsCountersWithoutAllocating() {
+    State state = Perft.position(0, 300);
+    long before = Zobrist.hash(state);
+    state.playerState.set(
+        1,
+        PlayerStateMap.FIRST_RESOURCE,
+        1 + state.playerState.get(1, PlayerStateMap.FIRST_RESOURCE));
+    assertNotEquals(before, Zobrist.hash(state));
+
+    var threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    long thread = Thread.currentThread().getId(), sink = 0, least = Long.MAX_VALUE;
+    // Best of several rounds: the first ones run before the JIT has compiled hash
+    for (int round = 0; round < 10 && least > 0; round++) {
+      long bytes = threads.getThreadAllocatedBytes(thread);
+      for (int i = 0; i < 20_000; i++) sink += Zobrist.hash(state);
+      least = Math.min(least, threads.getThreadAllocatedBytes(thread) - bytes);
+    }
+    assertTrue(least < 1024, least + " bytes over 20000 hashes (" + sink + ")");
+  }
+}
@@ -0,0 +1,79 @@
+package com.catanatron.core.sim;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.catanatron.core.engine.ActionPrompt;
+import com.catanatron.core.engine.Player;
+import com.catanatron.core.engine.RandomPlayer;
+import com.catanatron.core.engine.State;
+import com.catanatron.core.model.PlayerColor;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+public class RolloutEngineTest {
+  private static List<Player> players() {
+    return List.of(
+        new RandomPlayer(PlayerColor.RED),
+        new RandomPlayer(PlayerColor.BLUE),
+        new RandomPlayer(PlayerColor.ORANGE));
+  }
+
+  @Test
+  public void playoutFromCopyLeavesRootUntouched() {
+    State root = new State(players(), 5);
+    var engine = new RolloutEngine(RolloutPolicy.BUILD_FIRST, 9);
+    State copy = root.copy();
+    engine.playout(copy);
+    assertTrue(copy.numTurns > 0);
+    assertFalse(copy.isInitialBuildPhase);
+    assertEquals(0, root.numTurns);
+    assertEquals(ActionPrompt.BUILD_INITIAL_SETTLEMENT, root.currentPrompt);
+    assertEquals(
+        root.map.landNodes.size(), root.board.buildableNodeIds(PlayerColor.RED, true).size());
+  }
+
+  @Test
+  public void seededPlayoutsAreReproducible() {
+    State a = new State(players(), 11);
+    State b = new State(players(), 11);
+    PlayerColor winnerA = new RolloutEngine(RolloutPolicy.BUILD_FIRST, 3).playout(a);
+    PlayerColor winnerB = new RolloutEngine(RolloutPolicy.BUILD_FIRST, 3).playout(b);
+    assertEquals(winnerA, winnerB);
+    assertEquals(a.numTurns, b.numTurns);
+    assertEquals(a.playerState, b.playerState);
+  }
+
+  @Test
+  public void horizonStopsEarly() {
+    State state = new State(players(), 2);
+    var engine = new RolloutEngine(RolloutPolicy.UNIFORM, 1);
+    engine.playout(state, 30);
+    assertTrue(state.numTurns <= 30);
+    assertEquals(1, engine.playouts());
+  }
+
+  @Test
+  public void stepsAllocateNothingOnceWarmedUp() {
+    var threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    long thread = Thread.currentThread().getId();
+    State root = new State(players(), 6);
+    var engine = new RolloutEngine(RolloutPolicy.UNIFORM, 8);
+    long best = Long.MAX_VALUE;
+    // The JIT settles over the first rounds; the best one shows what the steps themselves cost
+    for (int round = 0; round < 8; round++) {
+      long bytes = 0;
+      for (int i = 0; i < 100; i++) {
+        State state = root.copy();
+        engine.reseed(state);
+        // A copy makes its scratch buffers on first use, within its first turns
+        engine.playout(state, 30);
+        long before = threads.getThreadAllocatedBytes(thread);
+        engine.playout(state);
+        bytes += threads.getThreadAllocatedBytes(thread) - before;
+      }
+      best = Math.min(best, bytes);
+    }
+    assertEquals(0, best, "bytes allocated by 100 playouts past their first 30 turns");
+  }
+}
@@ -0,0 +1,49 @@
+package com.catanatron.core.sim;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.catanatron.core.engine.ActionPrompt;
+import com.catanatron.core.engine.Player;
+import com.catanatron.core.engine.RandomPlayer;
+import com.catanatron.core.engine.State;
+import com.catanatron.core.model.PlayerColor;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+public class WinProbabilityEstimatorTest {
+  private static List<Player> players() {
+    return List.of(new RandomPlayer(PlayerColor.RED), new RandomPlayer(PlayerColor.BLUE));
+  }
+
+  @Test
+  public void stopsOncePrecisionIsReached() {
+    State root = new State(players(), 4);
+    try (var estimator = new WinProbabilityEstimator(RolloutPolicy.BUILD_FIRST, 2, 1)) {
+      var estimate = estimator.estimate(root, 0.1, 60_000_000_000L);
+      assertTrue(estimate.converged());
+      assertTrue(estimate.halfWidth(PlayerColor.RED) <= 0.1);
+      assertTrue(estimate.halfWidth(PlayerColor.BLUE) <= 0.1);
+      double red = estimate.probability(PlayerColor.RED);
+      assertTrue(estimate.lower(PlayerColor.RED) <= red && red <= estimate.upper(PlayerColor.RED));
+      assertEquals(
+          estimate.playouts(), estimate.wins()[0] + estimate.wins()[1] + estimate.undecided());
+    }
+    // The position itself is not played
+    assertEquals(0, root.numTurns);
+    assertEquals(ActionPrompt.BUILD_INITIAL_SETTLEMENT, root.currentPrompt);
+  }
+
+  @Test
+  public void playoutCapAndHorizonBoundTheWork() {
+    State root = new State(players(), 4);
+    try (var estimator = new WinProbabilityEstimator(RolloutPolicy.UNIFORM, 1, 1, 3)) {
+      var estimate = estimator.estimate(root, 0.0, 60_000_000_000L, 50);
+      assertEquals(50, estimate.playouts());
+      assertFalse(estimate.converged());
+      // Three turns past the opening are not enough to win
+      assertEquals(50, estimate.undecided());
+      Evaluator eval = estimator.asEvaluator(0.0, 60_000_000_000L, 10);
+      assertEquals(0.0, eval.evaluate(root, PlayerColor.RED));
+    }
+  }
+}
@@ -0,0 +1,78 @@
+package com.catanatron.core.tournament;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.catanatron.core.engine.Game;
+import com.catanatron.core.engine.Player;
+import com.catanatron.core.engine.RandomPlayer;
+import com.catanatron.core.model.Action;
+import com.catanatron.core.model.ActionType;
+import com.catanatron.core.model.PlayerColor;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+public class TournamentTest {
+  // Never builds after the opening: ends its turn whenever it may
+  private static final class PassivePlayer extends Player {
+    PassivePlayer(PlayerColor color) {
+      super(color, true);
+    }
+
+    @Override
+    public Action<?> decide(Game game, List<Action<?>> playable) {
+      for (Action<?> a : playable) if (a.type == ActionType.END_TURN) return a;
+      return playable.get(0);
+    }
+  }
+
+  @Test
+  public void sprtStopsClearMismatchEarly() {
+    var tournament =
+        new Tournament(
+            List.of(
+                new Tournament.Entrant("random", RandomPlayer::new),
+                new Tournament.Entrant("passive", PassivePlayer::new)),
+            2,
+            1,
+            Sprt.stronger(100));
+    var result = tournament.gauntlet(400);
+    var match = result.matches().get(0);
+    assertEquals(Sprt.Decision.ACCEPT_H1, match.decision());
+    assertTrue(match.games() < 400, "played " + match.games());
+    assertEquals(0, match.games() % 2);
+    assertEquals("random", result.standings().get(0).name());
+    assertTrue(result.standings().get(0).elo() > 0);
+  }
+
+  @Test
+  public void roundRobinPlaysEveryPairWithoutSprt() {
+    var tournament =
+        new Tournament(
+            List.of(
+                new Tournament.Entrant("a", RandomPlayer::new),
+                new Tournament.Entrant("b", PassivePlayer::new),
+                new Tournament.Entrant("c", PassivePlayer::new)),
+            2,
+            3,
+            null);
+    var result = tournament.roundRobin(4);
+    assertEquals(3, result.matches().size());
+    for (var match : result.matches()) {
+      assertEquals(4, match.games());
+      assertEquals(Sprt.Decision.CONTINUE, match.decision());
+    }
+    double elo = 0;
+    for (var standing : result.standings()) elo += standing.elo();
+    assertEquals(0, elo, 1e-6);
+  }
+
+  @Test
+  public void sprtBoundsFollowErrorRates() {
+    Sprt sprt = new Sprt(0, 10, 0.05, 0.05);
+    assertEquals(Math.log(19), sprt.upperBound(), 1e-12);
+    assertEquals(-Math.log(19), sprt.lowerBound(), 1e-12);
+    assertEquals(Sprt.Decision.CONTINUE, sprt.decide(6, 0, 4));
+    assertEquals(Sprt.Decision.ACCEPT_H0, sprt.decide(400, 200, 600));
+    assertEquals(Sprt.Decision.ACCEPT_H1, sprt.decide(700, 200, 300));
+  }
+}